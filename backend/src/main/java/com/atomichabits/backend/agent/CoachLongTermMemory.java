@@ -1,9 +1,10 @@
 package com.atomichabits.backend.agent;
 
-import com.atomichabits.backend.model.User;
-import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.security.AuthenticatedUser;
+import com.atomichabits.backend.service.CoachContextAssembler;
 import com.atomichabits.backend.service.CoachTurnMemoryHitService;
-import com.atomichabits.backend.service.MemoryService;
+import com.atomichabits.backend.service.MemoryExtractionQueue;
+import com.atomichabits.backend.service.UserVersionService;
 import io.agentscope.core.memory.LongTermMemory;
 import io.agentscope.core.message.Msg;
 import io.agentscope.core.message.MsgRole;
@@ -25,26 +26,34 @@ public class CoachLongTermMemory implements LongTermMemory {
     private static final Logger log = LoggerFactory.getLogger(CoachLongTermMemory.class);
     private static final String USER_THREAD_PREFIX = "user-";
 
-    private final MemoryService memoryService;
+    private final CoachContextAssembler contextAssembler;
+    private final MemoryExtractionQueue memoryExtractionQueue;
     private final CoachTurnMemoryHitService coachTurnMemoryHitService;
-    private final UserRepository userRepository;
+    private final UserVersionService userVersionService;
 
-    public CoachLongTermMemory(MemoryService memoryService,
+    public CoachLongTermMemory(CoachContextAssembler contextAssembler,
+                               MemoryExtractionQueue memoryExtractionQueue,
                                CoachTurnMemoryHitService coachTurnMemoryHitService,
-                               UserRepository userRepository) {
-        this.memoryService = memoryService;
+                               UserVersionService userVersionService) {
+        this.contextAssembler = contextAssembler;
+        this.memoryExtractionQueue = memoryExtractionQueue;
         this.coachTurnMemoryHitService = coachTurnMemoryHitService;
-        this.userRepository = userRepository;
+        this.userVersionService = userVersionService;
     }
 
     @Override
     public Mono<Void> record(List<Msg> messages) {
         return Mono.<Void>fromRunnable(() -> {
-                    String email = resolveEmail(null, messages);
-                    if (!StringUtils.hasText(email) || messages == null || messages.isEmpty()) {
+                    Long userId = resolveUserId(null, messages);
+                    if (userId == null || messages == null || messages.isEmpty()) {
                         return;
                     }
-                    memoryService.ingestConversationSignals(email, messages);
+                    // The reply is done, so the turn's snapshot is too
+                    contextAssembler.invalidate(userId);
+                    Msg lastUserMessage = findLastUserMessage(messages);
+                    if (lastUserMessage != null && lastUserMessage.getRole() == MsgRole.USER) {
+                        memoryExtractionQueue.submit(userId, lastUserMessage.getTextContent());
+                    }
                 })
                 .subscribeOn(Schedulers.boundedElastic())
                 .onErrorResume(error -> {
@@ -56,13 +65,14 @@ public class CoachLongTermMemory implements LongTermMemory {
     @Override
     public Mono<String> retrieve(Msg msg) {
         return Mono.fromSupplier(() -> {
-                    String email = resolveEmail(msg, null);
-                    if (!StringUtils.hasText(email)) {
+                    Long userId = resolveUserId(msg, null);
+                    if (userId == null) {
                         return "";
                     }
                     String query = msg != null ? msg.getTextContent() : "";
-                    String context = memoryService.getRelevantMemoryContext(email, query, 8);
-                    coachTurnMemoryHitService.updateHits(email, extractMemoryHits(context));
+                    // Opens the turn's snapshot; get_user_status reads the rest of it
+                    String context = contextAssembler.open(userId, query).memoryContext();
+                    coachTurnMemoryHitService.updateHits(userId, extractMemoryHits(context));
                     return context;
                 })
                 .subscribeOn(Schedulers.boundedElastic())
@@ -72,9 +82,9 @@ public class CoachLongTermMemory implements LongTermMemory {
                 });
     }
 
-    private String resolveEmail(Msg msg, List<Msg> messages) {
-        String fromAuth = resolveEmailFromAuthentication();
-        if (StringUtils.hasText(fromAuth)) {
+    private Long resolveUserId(Msg msg, List<Msg> messages) {
+        Long fromAuth = resolveUserIdFromAuthentication();
+        if (fromAuth != null) {
             return fromAuth;
         }
 
@@ -82,20 +92,23 @@ public class CoachLongTermMemory implements LongTermMemory {
         if (probe == null) {
             return null;
         }
-        return resolveEmailFromMetadata(probe.getMetadata());
+        return resolveUserIdFromMetadata(probe.getMetadata());
     }
 
-    private String resolveEmailFromAuthentication() {
+    private Long resolveUserIdFromAuthentication() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             return null;
         }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null) {
+            return user.id();
+        }
 
         String principal = authentication.getName();
         if (!StringUtils.hasText(principal) || "anonymousUser".equalsIgnoreCase(principal)) {
             return null;
         }
-        return principal;
+        return userVersionService.findUserId(principal).orElse(null);
     }
 
     private Msg findLastUserMessage(List<Msg> messages) {
@@ -112,35 +125,31 @@ public class CoachLongTermMemory implements LongTermMemory {
         return messages.get(messages.size() - 1);
     }
 
-    private String resolveEmailFromMetadata(Map<String, Object> metadata) {
+    private Long resolveUserIdFromMetadata(Map<String, Object> metadata) {
         if (metadata == null || metadata.isEmpty()) {
             return null;
         }
 
-        String fromEmail = valueAsString(metadata.get("email"));
-        if (!StringUtils.hasText(fromEmail)) {
-            fromEmail = valueAsString(metadata.get("userEmail"));
-        }
-        if (StringUtils.hasText(fromEmail)) {
-            return fromEmail;
-        }
-
-        Long userId = null;
         Object userIdValue = metadata.get("userId");
         if (userIdValue == null) {
             userIdValue = metadata.get("uid");
         }
         if (userIdValue instanceof Number number) {
-            userId = number.longValue();
+            return number.longValue();
         } else if (userIdValue != null) {
             try {
-                userId = Long.parseLong(userIdValue.toString().trim());
+                return Long.parseLong(userIdValue.toString().trim());
             } catch (Exception ignored) {
                 // ignore malformed user id
             }
         }
-        if (userId != null) {
-            return userRepository.findById(userId).map(User::getEmail).orElse(null);
+
+        String email = valueAsString(metadata.get("email"));
+        if (!StringUtils.hasText(email)) {
+            email = valueAsString(metadata.get("userEmail"));
+        }
+        if (StringUtils.hasText(email)) {
+            return userVersionService.findUserId(email).orElse(null);
         }
 
         String threadId = valueAsString(metadata.get("threadId"));
@@ -149,8 +158,7 @@ public class CoachLongTermMemory implements LongTermMemory {
         }
         if (StringUtils.hasText(threadId) && threadId.startsWith(USER_THREAD_PREFIX)) {
             try {
-                long parsedId = Long.parseLong(threadId.substring(USER_THREAD_PREFIX.length()));
-                return userRepository.findById(parsedId).map(User::getEmail).orElse(null);
+                return Long.parseLong(threadId.substring(USER_THREAD_PREFIX.length()));
             } catch (Exception ignored) {
                 // ignore malformed thread id
             }
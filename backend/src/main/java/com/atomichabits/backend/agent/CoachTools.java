@@ -5,11 +5,14 @@ import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.dto.UserProfileResponse;
 import com.atomichabits.backend.model.CoachMemory;
 import com.atomichabits.backend.model.MoodLog;
-import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.security.AuthenticatedUser;
+import com.atomichabits.backend.service.CoachContextAssembler;
+import com.atomichabits.backend.service.CoachContextSnapshot;
 import com.atomichabits.backend.service.HabitService;
 import com.atomichabits.backend.service.MemoryService;
 import com.atomichabits.backend.service.MoodService;
 import com.atomichabits.backend.service.UserService;
+import com.atomichabits.backend.service.UserVersionService;
 import io.agentscope.core.agent.Agent;
 import io.agentscope.core.tool.Tool;
 import io.agentscope.core.tool.ToolParam;
@@ -28,39 +31,45 @@ public class CoachTools {
     private final HabitService habitService;
     private final MoodService moodService;
     private final MemoryService memoryService;
-    private final UserRepository userRepository;
+    private final UserVersionService userVersionService;
     private final TrackingThreadSessionManager threadSessionManager;
+    private final CoachContextAssembler contextAssembler;
 
     public CoachTools(UserService userService,
                       HabitService habitService,
                       MoodService moodService,
                       MemoryService memoryService,
-                      UserRepository userRepository,
-                      TrackingThreadSessionManager threadSessionManager) {
+                      UserVersionService userVersionService,
+                      TrackingThreadSessionManager threadSessionManager,
+                      CoachContextAssembler contextAssembler) {
         this.userService = userService;
         this.habitService = habitService;
         this.moodService = moodService;
         this.memoryService = memoryService;
-        this.userRepository = userRepository;
+        this.userVersionService = userVersionService;
         this.threadSessionManager = threadSessionManager;
+        this.contextAssembler = contextAssembler;
     }
 
-    private String resolveEmail(String email, Agent agent) {
+    private Long resolveUserId(String email, Agent agent) {
         if (StringUtils.hasText(email)) {
-            return email.trim();
+            return userVersionService.findUserId(email.trim()).orElse(null);
         }
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
+            if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null) {
+                return user.id();
+            }
             String principal = authentication.getName();
             if (StringUtils.hasText(principal) && !"anonymousUser".equalsIgnoreCase(principal)) {
-                return principal;
+                return userVersionService.findUserId(principal).orElse(null);
             }
         }
-        return resolveEmailFromAgentThread(agent);
+        return resolveUserIdFromAgentThread(agent);
     }
 
-    private String resolveEmailFromAgentThread(Agent agent) {
+    private Long resolveUserIdFromAgentThread(Agent agent) {
         if (agent == null) {
             return null;
         }
@@ -71,9 +80,8 @@ public class CoachTools {
         }
 
         try {
-            long userId = Long.parseLong(threadId.substring(USER_THREAD_PREFIX.length()));
-            return userRepository.findById(userId).map(user -> user.getEmail()).orElse(null);
-        } catch (Exception ignored) {
+            return Long.parseLong(threadId.substring(USER_THREAD_PREFIX.length()));
+        } catch (NumberFormatException ignored) {
             return null;
         }
     }
@@ -95,13 +103,15 @@ public class CoachTools {
             @ToolParam(name = "habitName", description = "The name of the habit to complete.") String habitName,
             Agent agent) {
         try {
-            String resolvedEmail = resolveEmail(email, agent);
-            if (!StringUtils.hasText(resolvedEmail)) {
+            Long userId = resolveUserId(email, agent);
+            if (userId == null) {
                 return "Failed to complete habit: user is not authenticated.";
             }
 
             // Find habit by name (case-insensitive for better UX)
-            List<HabitResponse> habits = habitService.getUserHabits(resolvedEmail);
+            List<HabitResponse> habits = contextAssembler.current(userId)
+                    .map(CoachContextSnapshot::habits)
+                    .orElseGet(() -> habitService.getUserHabits(userId));
             HabitResponse target = habits.stream()
                     .filter(h -> h.getName().equalsIgnoreCase(habitName))
                     .findFirst()
@@ -111,7 +121,8 @@ public class CoachTools {
                 return "Error: Habit '" + habitName + "' not found.";
             }
             
-            habitService.completeHabit(target.getId(), resolvedEmail);
+            habitService.completeHabit(target.getId(), userId);
+            contextAssembler.invalidate(userId);
             return "Habit '" + habitName + "' marked as completed!";
         } catch (Exception e) {
             return "Failed to complete habit: " + e.getMessage();
@@ -132,13 +143,14 @@ public class CoachTools {
             @ToolParam(name = "note", description = "A short note or reason for the mood (optional).") String note,
             Agent agent) {
         try {
-            String resolvedEmail = resolveEmail(email, agent);
-            if (!StringUtils.hasText(resolvedEmail)) {
+            Long userId = resolveUserId(email, agent);
+            if (userId == null) {
                 return "Failed to log mood: user is not authenticated.";
             }
 
             String normalizedMoodType = moodType == null ? "NEUTRAL" : moodType.toUpperCase();
-            moodService.logMood(resolvedEmail, normalizedMoodType, note);
+            moodService.logMood(userId, normalizedMoodType, note);
+            contextAssembler.invalidate(userId);
             return "Mood logged: " + normalizedMoodType;
         } catch (Exception e) {
             return "Failed to log mood: " + e.getMessage();
@@ -151,14 +163,15 @@ public class CoachTools {
             Agent agent) {
         StringBuilder context = new StringBuilder();
         try {
-            String resolvedEmail = resolveEmail(email, agent);
-            if (!StringUtils.hasText(resolvedEmail)) {
+            Long userId = resolveUserId(email, agent);
+            if (userId == null) {
                 return "Error retrieving user status: user is not authenticated.";
             }
 
-            UserProfileResponse profile = userService.getUserProfile(resolvedEmail);
-            Long uId = profile.getId();
-            
+            // The turn's snapshot while one is open, so this costs no extra queries
+            CoachContextSnapshot snapshot = contextAssembler.currentOrLoad(userId);
+            UserProfileResponse profile = snapshot.profile();
+
             // Identity
             if (profile.getIdentityStatement() != null) {
                 context.append("Identity: ").append(profile.getIdentityStatement()).append("\n");
@@ -167,7 +180,7 @@ public class CoachTools {
             }
 
             // Habits Status (Today)
-            List<HabitResponse> habits = habitService.getUserHabits(resolvedEmail);
+            List<HabitResponse> habits = snapshot.habits();
             long completedCount = habits.stream().filter(HabitResponse::isCompletedToday).count();
             long totalCount = habits.size();
             context.append("HABIT STATUS (Today): ").append(completedCount).append("/").append(totalCount).append(" completed.\n");
@@ -176,7 +189,7 @@ public class CoachTools {
             context.append("\n");
 
             // Recent Moods
-            List<MoodLog> moods = moodService.getRecentMoods(uId);
+            List<MoodLog> moods = snapshot.moods();
             if (!moods.isEmpty()) {
                 context.append("RECENT MOODS (Last 24h): ");
                 for (MoodLog m : moods) {
@@ -197,11 +210,11 @@ public class CoachTools {
     public String getUserMemoryContext(
             @ToolParam(name = "email", description = "The user's email address. Optional when user is authenticated.") String email,
             Agent agent) {
-        String resolvedEmail = resolveEmail(email, agent);
-        if (!StringUtils.hasText(resolvedEmail)) {
+        Long userId = resolveUserId(email, agent);
+        if (userId == null) {
             return "No memory context available: user is not authenticated.";
         }
-        return memoryService.getMemoryContext(resolvedEmail, 6, 8, 5);
+        return memoryService.getMemoryContext(userId, 6, 8, 5);
     }
 
     @Tool(name = "save_user_insight", description = "Save a concise behavioral insight about the user. Use when user reveals preferences, obstacles, motivation, or routines.")
@@ -209,11 +222,11 @@ public class CoachTools {
             @ToolParam(name = "email", description = "The user's email address. Optional when user is authenticated.") String email,
             @ToolParam(name = "insight", description = "A concise, reusable user insight in one sentence.") String insight,
             Agent agent) {
-        String resolvedEmail = resolveEmail(email, agent);
-        if (!StringUtils.hasText(resolvedEmail)) {
+        Long userId = resolveUserId(email, agent);
+        if (userId == null) {
             return "Failed to save insight: user is not authenticated.";
         }
-        boolean saved = memoryService.saveUserMemory(resolvedEmail, CoachMemory.MemoryType.USER_INSIGHT, insight);
+        boolean saved = memoryService.saveUserMemory(userId, CoachMemory.MemoryType.USER_INSIGHT, insight);
         return saved ? "Saved user insight." : "Skipped saving insight (empty or duplicate).";
     }
 
@@ -222,11 +235,11 @@ public class CoachTools {
             @ToolParam(name = "email", description = "The user's email address. Optional when user is authenticated.") String email,
             @ToolParam(name = "fact", description = "A durable fact in one sentence.") String fact,
             Agent agent) {
-        String resolvedEmail = resolveEmail(email, agent);
-        if (!StringUtils.hasText(resolvedEmail)) {
+        Long userId = resolveUserId(email, agent);
+        if (userId == null) {
             return "Failed to save long-term fact: user is not authenticated.";
         }
-        boolean saved = memoryService.saveUserMemory(resolvedEmail, CoachMemory.MemoryType.LONG_TERM_FACT, fact);
+        boolean saved = memoryService.saveUserMemory(userId, CoachMemory.MemoryType.LONG_TERM_FACT, fact);
         return saved ? "Saved long-term fact." : "Skipped saving fact (empty or duplicate).";
     }
 
@@ -235,11 +248,12 @@ public class CoachTools {
             @ToolParam(name = "email", description = "The user's email address. Optional when user is authenticated.") String email,
             @ToolParam(name = "identity", description = "The identity statement.") String identity,
             Agent agent) {
-        String resolvedEmail = resolveEmail(email, agent);
-        if (!StringUtils.hasText(resolvedEmail)) {
+        Long userId = resolveUserId(email, agent);
+        if (userId == null) {
             return "Failed to save identity: user is not authenticated.";
         }
-        userService.updateIdentity(resolvedEmail, identity);
+        userService.updateProfile(userId, identity, null);
+        contextAssembler.invalidate(userId);
         return "Identity saved: " + identity;
     }
 
@@ -249,8 +263,8 @@ public class CoachTools {
             @ToolParam(name = "habitName", description = "The name of the habit.") String habitName,
             @ToolParam(name = "twoMinuteVersion", description = "The 2-minute version of the habit.") String twoMinuteVersion,
             Agent agent) {
-        String resolvedEmail = resolveEmail(email, agent);
-        if (!StringUtils.hasText(resolvedEmail)) {
+        Long userId = resolveUserId(email, agent);
+        if (userId == null) {
             return "Failed to create habit: user is not authenticated.";
         }
 
@@ -261,7 +275,8 @@ public class CoachTools {
         request.setCueImplementationIntention("When I wake up");
         request.setCueHabitStack("After my morning coffee");
         
-        habitService.createHabit(resolvedEmail, request);
+        habitService.createHabit(userId, request);
+        contextAssembler.invalidate(userId);
         return "Habit created: " + habitName + " (2-min: " + twoMinuteVersion + ")";
     }
 
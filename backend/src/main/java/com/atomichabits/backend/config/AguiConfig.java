@@ -2,13 +2,12 @@ package com.atomichabits.backend.config;
 
 import com.atomichabits.backend.agent.CoachTools;
 import com.atomichabits.backend.agent.CoachLongTermMemory;
+import com.atomichabits.backend.service.ChatModelPool;
 import io.agentscope.spring.boot.agui.common.AguiAgentRegistryCustomizer;
 import io.agentscope.core.ReActAgent;
 import io.agentscope.core.agent.Agent;
 import io.agentscope.core.memory.InMemoryMemory;
 import io.agentscope.core.memory.LongTermMemoryMode;
-import io.agentscope.core.model.OpenAIChatModel;
-import io.agentscope.core.tool.Toolkit;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,9 +15,6 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class AguiConfig {
 
-    @Value("${agentscope.model.api-key}")
-    private String apiKey;
-
     @Value("${agentscope.model.model-name}")
     private String modelName;
 
@@ -27,10 +23,12 @@ public class AguiConfig {
 
     private final CoachTools coachTools;
     private final CoachLongTermMemory coachLongTermMemory;
+    private final ChatModelPool chatModelPool;
 
-    public AguiConfig(CoachTools coachTools, CoachLongTermMemory coachLongTermMemory) {
+    public AguiConfig(CoachTools coachTools, CoachLongTermMemory coachLongTermMemory, ChatModelPool chatModelPool) {
         this.coachTools = coachTools;
         this.coachLongTermMemory = coachLongTermMemory;
+        this.chatModelPool = chatModelPool;
     }
 
     @Bean
@@ -39,35 +37,7 @@ public class AguiConfig {
     }
 
     private Agent createAgent() {
-        // Initialize Toolkit
-        Toolkit toolkit = new Toolkit();
-        toolkit.registration()
-                .tool(coachTools)
-                .apply();
-
-        // Configure HTTP transport with explicit timeouts
-        var transportConfig = io.agentscope.core.model.transport.HttpTransportConfig.builder()
-                .connectTimeout(java.time.Duration.ofSeconds(30))
-                .readTimeout(java.time.Duration.ofMinutes(3))
-                .writeTimeout(java.time.Duration.ofSeconds(30))
-                .build();
-        var httpTransport = io.agentscope.core.model.transport.JdkHttpTransport.builder()
-                .config(transportConfig)
-                .build();
-
-        // Initialize Model
-        OpenAIChatModel model = OpenAIChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(modelName)
-                .baseUrl(baseUrl)
-                .httpTransport(httpTransport)
-                // Some provider/model combinations emit malformed streaming tool events,
-                // which breaks @ag-ui/client verification and surfaces as "Connection failed".
-                // Disable model-level streaming so AG-UI can emit a stable event sequence.
-                .stream(false)
-                .build();
-
-        // Initialize Agent
+        // Agents are per session; the model, its connections and the toolkit are shared
         return ReActAgent.builder()
                 .name("AtomicCoach")
                 .sysPrompt("""
@@ -114,8 +84,11 @@ public class AguiConfig {
                         - At the VERY END of each response, provide 2-3 short quick replies in:
                         ```replies ["Reply 1", "Reply 2"] ```
                         """)
-                .model(model)
-                .toolkit(toolkit)
+                // Some provider/model combinations emit malformed streaming tool events,
+                // which breaks @ag-ui/client verification and surfaces as "Connection failed".
+                // Disable model-level streaming so AG-UI can emit a stable event sequence.
+                .model(chatModelPool.model(baseUrl, modelName, false))
+                .toolkit(chatModelPool.toolkit(coachTools))
                 .memory(new InMemoryMemory())
                 .longTermMemory(coachLongTermMemory)
                 .longTermMemoryMode(LongTermMemoryMode.STATIC_CONTROL)
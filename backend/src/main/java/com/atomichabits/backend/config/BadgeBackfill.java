@@ -0,0 +1,57 @@
+package com.atomichabits.backend.config;
+
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.service.BadgeEngine;
+import com.atomichabits.backend.service.BadgeRule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out badges for rules added after users already qualified for them. Completions only
+ * re-evaluate the rules they affect, so a new rule is otherwise first checked at a user's next
+ * matching completion. List the rules by name in {@code app.badges.backfill-rules} (for example
+ * {@code STREAK_30,WEEKEND_WARRIOR}) for one start; users are processed a page at a time.
+ */
+@Slf4j
+@Configuration
+public class BadgeBackfill {
+
+    private static final int PAGE_SIZE = 200;
+
+    @Bean
+    public CommandLineRunner backfillBadges(UserRepository userRepository, BadgeEngine badgeEngine,
+                                            @Value("${app.badges.backfill-rules:}") String ruleNames) {
+        return args -> {
+            Set<BadgeRule> rules = Arrays.stream(ruleNames.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .map(BadgeRule::valueOf)
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(BadgeRule.class)));
+            if (rules.isEmpty()) {
+                return;
+            }
+            int users = 0;
+            int awarded = 0;
+            Page<User> page;
+            int pageNumber = 0;
+            do {
+                page = userRepository.findAll(PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                awarded += badgeEngine.backfill(page.map(User::getId).getContent(), rules);
+                users += page.getNumberOfElements();
+            } while (page.hasNext());
+            log.info("Backfilled badge rules {} for {} users: {} badges awarded", rules, users, awarded);
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.atomichabits.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "coach.prompt-budget")
+public class CoachPromptBudgetProperties {
+    /**
+     * Estimated tokens for the system prompt and user prompt of a chat call together.
+     */
+    private int maxTokens = 4000;
+    /**
+     * Most recent messages quoted verbatim; older ones are folded into the rolling summary.
+     */
+    private int recentMessages = 20;
+    /**
+     * Older messages that have to pile up before the summary is rewritten.
+     */
+    private int summaryBatchMessages = 10;
+    /**
+     * Longer messages are cut to this many characters when quoted or summarized.
+     */
+    private int maxMessageChars = 1200;
+    private int summaryThreads = 1;
+}
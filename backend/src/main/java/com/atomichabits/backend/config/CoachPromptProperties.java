@@ -19,4 +19,5 @@ public class CoachPromptProperties {
     private String reminderSystem;
     private String memoryDailySummary;
     private String memorySignalExtraction;
+    private String chatSummary;
 }
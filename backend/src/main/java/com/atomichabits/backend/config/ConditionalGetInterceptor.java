@@ -0,0 +1,73 @@
+package com.atomichabits.backend.config;
+
+import com.atomichabits.backend.security.AuthenticatedUser;
+import com.atomichabits.backend.service.UserVersionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.LocalDate;
+
+/**
+ * Answers conditional GETs on the polled per-user endpoints before the controller runs. The ETag
+ * is built from the user's change version, today's date (streaks and "completed today" roll over
+ * at midnight without a write) and the locale (badge texts are localized), so a matching
+ * {@code If-None-Match} gets a 304 without touching the database.
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    static final String METRIC = "http.conditional.get";
+
+    private final UserVersionService userVersionService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.etag.enabled:true}")
+    private boolean enabled = true;
+
+    public ConditionalGetInterceptor(UserVersionService userVersionService, MeterRegistry meterRegistry) {
+        this.userVersionService = userVersionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String versionTag = null;
+        if (authentication != null) {
+            versionTag = authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null
+                    ? userVersionService.versionTag(user.id())
+                    : userVersionService.versionTag(authentication.getName());
+        }
+        if (versionTag == null) {
+            return true;
+        }
+
+        String etag = "\"" + versionTag + "-" + LocalDate.now().toEpochDay() + "-"
+                + LocaleContextHolder.getLocale().toLanguageTag() + "\"";
+        // Spring Security sends no-store unless the response already carries a Cache-Control header
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+
+        boolean conditional = request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        boolean notModified = new ServletWebRequest(request, response).checkNotModified(etag);
+        meterRegistry.counter(METRIC,
+                "endpoint", String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)),
+                "result", notModified ? "not_modified" : conditional ? "modified" : "unconditional").increment();
+        return !notModified;
+    }
+}
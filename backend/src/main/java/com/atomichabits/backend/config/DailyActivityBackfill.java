@@ -0,0 +1,75 @@
+package com.atomichabits.backend.config;
+
+import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.service.DailyActivityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+/**
+ * Fills {@code user_daily_activity} from the raw completion and mood tables for every user not yet
+ * marked {@code daily_activity_backfilled}. Each user is rebuilt and marked in one transaction, so
+ * an interrupted run picks up where it stopped and users whose rebuild failed are tried again on
+ * the next start. Users registered since the rollup went in are marked from the start, as the
+ * writers keep their rows current. Databases running with {@code ddl-auto: validate} need the
+ * tables and column first:
+ *
+ * <pre>
+ * CREATE TABLE user_daily_activity (
+ *     id BIGSERIAL PRIMARY KEY,
+ *     user_id BIGINT NOT NULL,
+ *     activity_day DATE NOT NULL,
+ *     completion_count INTEGER NOT NULL,
+ *     distinct_habit_count INTEGER NOT NULL,
+ *     first_completion_at TIMESTAMP,
+ *     last_completion_at TIMESTAMP,
+ *     updated_at TIMESTAMP,
+ *     CONSTRAINT uk_user_daily_activity_user_day UNIQUE (user_id, activity_day));
+ * CREATE TABLE user_daily_mood_counts (
+ *     activity_id BIGINT NOT NULL REFERENCES user_daily_activity (id),
+ *     mood_type VARCHAR(255) NOT NULL,
+ *     log_count INTEGER NOT NULL,
+ *     PRIMARY KEY (activity_id, mood_type));
+ * ALTER TABLE users ADD COLUMN daily_activity_backfilled BOOLEAN NOT NULL DEFAULT FALSE;
+ * </pre>
+ */
+@Slf4j
+@Configuration
+public class DailyActivityBackfill {
+
+    private static final int PAGE_SIZE = 200;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.activity-rollup", name = "backfill-on-startup", havingValue = "true", matchIfMissing = true)
+    public CommandLineRunner backfillDailyActivity(UserRepository userRepository,
+                                                   DailyActivityService dailyActivityService) {
+        return args -> {
+            int users = 0;
+            int failed = 0;
+            int days = 0;
+            long afterId = 0L;
+            List<Long> batch;
+            while (!(batch = userRepository.findIdsAwaitingActivityBackfill(afterId, PageRequest.of(0, PAGE_SIZE))).isEmpty()) {
+                for (Long userId : batch) {
+                    try {
+                        days += dailyActivityService.rebuildUser(userId);
+                        users++;
+                    } catch (Exception e) {
+                        failed++;
+                        log.warn("Failed to backfill daily activity for user {}: {}", userId, e.getMessage());
+                    }
+                }
+                // Failed users stay unmarked and are retried on the next start
+                afterId = batch.get(batch.size() - 1);
+            }
+            if (users > 0 || failed > 0) {
+                log.info("Backfilled {} days of activity for {} users; {} left for the next start", days, users, failed);
+            }
+        };
+    }
+}
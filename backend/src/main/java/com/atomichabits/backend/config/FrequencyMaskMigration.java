@@ -0,0 +1,61 @@
+package com.atomichabits.backend.config;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.service.HabitSchedule;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+/**
+ * Converts the legacy {@code habits.frequency_json} day lists into {@code frequency_mask}.
+ *
+ * <p>Converted rows get their JSON cleared, so each start only touches rows that are still
+ * pending and the job is a no-op once everything has been migrated. Databases running with
+ * {@code ddl-auto: validate} need the column first:
+ * {@code ALTER TABLE habits ADD COLUMN frequency_mask INTEGER NOT NULL DEFAULT 0}.</p>
+ */
+@Slf4j
+@Configuration
+public class FrequencyMaskMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Bean
+    public CommandLineRunner migrateFrequencyJson(HabitRepository habitRepository, ObjectMapper objectMapper) {
+        return args -> {
+            int migrated = 0;
+            List<Habit> batch;
+            while (!(batch = habitRepository.findByFrequencyJsonIsNotNull(PageRequest.of(0, BATCH_SIZE)).getContent()).isEmpty()) {
+                for (Habit habit : batch) {
+                    habit.setFrequencyMask(toMask(objectMapper, habit));
+                    habit.setFrequencyJson(null);
+                }
+                habitRepository.saveAll(batch);
+                migrated += batch.size();
+            }
+            if (migrated > 0) {
+                log.info("Migrated frequency of {} habits to weekday masks", migrated);
+            }
+        };
+    }
+
+    private int toMask(ObjectMapper objectMapper, Habit habit) {
+        String json = habit.getFrequencyJson();
+        if (json.isBlank()) {
+            return HabitSchedule.DAILY;
+        }
+        try {
+            return HabitSchedule.fromDays(objectMapper.readValue(json, new TypeReference<List<String>>() {}));
+        } catch (Exception e) {
+            log.warn("Habit {} has unreadable frequency '{}', treating it as daily", habit.getId(), json);
+            return HabitSchedule.DAILY;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.atomichabits.backend.config;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.service.HabitStreakStateService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+/**
+ * Stores a {@code habit_streak_state} row for every live habit that has none yet, so streak reads
+ * find one instead of computing it on each request. Habits that already have a row are skipped,
+ * which makes the job cheap once it has run; a habit that fails is tried again on the next start.
+ */
+@Slf4j
+@Configuration
+public class HabitStreakStateBackfill {
+
+    private static final int PAGE_SIZE = 500;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.streaks", name = "backfill-on-startup", havingValue = "true", matchIfMissing = true)
+    public CommandLineRunner backfillStreakStates(HabitRepository habitRepository,
+                                                  HabitStreakStateService streakStateService) {
+        return args -> {
+            int habits = 0;
+            long afterId = 0L;
+            List<Habit> batch;
+            while (!(batch = habitRepository.findWithoutStreakState(afterId, PageRequest.of(0, PAGE_SIZE))).isEmpty()) {
+                try {
+                    streakStateService.refreshAll(batch);
+                    habits += batch.size();
+                } catch (Exception e) {
+                    log.warn("Failed to backfill streak state for habits {} to {}: {}",
+                            batch.get(0).getId(), batch.get(batch.size() - 1).getId(), e.getMessage());
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            if (habits > 0) {
+                log.info("Backfilled streak state for {} habits", habits);
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.atomichabits.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+    /**
+     * {@code memory} keeps buckets per instance, {@code jdbc} shares them through the database.
+     */
+    private String backend = "memory";
+    private int stripes = 16;
+    private int maxKeys = 100_000;
+    private long idleTtlMs = 3_600_000;
+    /**
+     * Bucket sizes per namespace. Namespaces without an entry, or with a capacity of 0, are not limited.
+     */
+    private Map<String, Limit> limits = new HashMap<>();
+
+    @Data
+    public static class Limit {
+        private int capacity;
+        private double refillPerMinute;
+    }
+}
@@ -1,18 +1,43 @@
 package com.atomichabits.backend.config;
 
+import com.atomichabits.backend.security.CurrentUserIdArgumentResolver;
+import com.atomichabits.backend.service.UserVersionService;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
+    private final ConditionalGetInterceptor conditionalGetInterceptor;
+    private final UserVersionService userVersionService;
+
+    public WebMvcConfig(ConditionalGetInterceptor conditionalGetInterceptor, UserVersionService userVersionService) {
+        this.conditionalGetInterceptor = conditionalGetInterceptor;
+        this.userVersionService = userVersionService;
+    }
+
     @Bean
     public LocalValidatorFactoryBean getValidator(MessageSource messageSource) {
         LocalValidatorFactoryBean bean = new LocalValidatorFactoryBean();
         bean.setValidationMessageSource(messageSource);
         return bean;
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(conditionalGetInterceptor)
+                .addPathPatterns("/api/habits", "/api/users/stats", "/api/users/badges");
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserIdArgumentResolver(userVersionService));
+    }
 }
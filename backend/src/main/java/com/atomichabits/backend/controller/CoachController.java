@@ -1,11 +1,14 @@
 package com.atomichabits.backend.controller;
 
+import com.atomichabits.backend.security.CurrentUserId;
 import com.atomichabits.backend.service.CoachService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
 import com.atomichabits.backend.dto.ChatMessageResponse;
+import com.atomichabits.backend.dto.ChatStreamEvent;
 import com.atomichabits.backend.dto.MemoryHitResponse;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +19,7 @@ import com.atomichabits.backend.dto.CoachMemoryResponse;
 import com.atomichabits.backend.dto.WeeklyReviewResponse;
 import com.atomichabits.backend.service.CoachTurnMemoryHitService;
 import com.atomichabits.backend.service.MemoryService;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api/coach")
@@ -32,8 +36,8 @@ public class CoachController {
     }
 
     @GetMapping("/memories")
-    public ResponseEntity<List<CoachMemoryResponse>> getMemories(Authentication authentication) {
-        List<CoachMemoryResponse> memories = memoryService.getRecentMemories(authentication.getName()).stream()
+    public ResponseEntity<List<CoachMemoryResponse>> getMemories(@CurrentUserId Long userId) {
+        List<CoachMemoryResponse> memories = memoryService.getRecentMemories(userId).stream()
                 .map(m -> CoachMemoryResponse.builder()
                         .id(m.getId())
                         .type(m.getType())
@@ -55,34 +59,46 @@ public class CoachController {
     }
 
     @PostMapping("/chat")
-    public ResponseEntity<Map<String, String>> chat(@RequestBody Map<String, String> request, Authentication authentication) {
+    public ResponseEntity<Map<String, String>> chat(@RequestBody Map<String, String> request, @CurrentUserId Long userId) {
         String message = request.get("message");
-        String response = coachService.chat(authentication.getName(), message);
+        String response = coachService.chat(userId, message);
         return ResponseEntity.ok(Map.of("response", response));
     }
 
+    /**
+     * Streams the reply as server-sent events named after {@link ChatStreamEvent#getType()}. Events
+     * are written one at a time as the client takes them, and a client that disconnects cancels
+     * the model call.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatStreamEvent>> chatStream(@RequestBody Map<String, String> request, @CurrentUserId Long userId) {
+        String message = request.get("message");
+        return coachService.chatStream(userId, message)
+                .map(event -> ServerSentEvent.builder(event).event(event.getType()).build());
+    }
+
     @PostMapping("/weekly-review")
-    public ResponseEntity<Map<String, String>> weeklyReview(Authentication authentication) {
-        String response = coachService.weeklyReview(authentication.getName());
+    public ResponseEntity<Map<String, String>> weeklyReview(@CurrentUserId Long userId) {
+        String response = coachService.weeklyReview(userId);
         return ResponseEntity.ok(Map.of("response", response));
     }
 
     @GetMapping("/weekly-reviews")
     public ResponseEntity<List<WeeklyReviewResponse>> getWeeklyReviews(
-            Authentication authentication,
+            @CurrentUserId Long userId,
             @RequestParam(defaultValue = "10") int limit) {
-        return ResponseEntity.ok(coachService.getRecentWeeklyReviews(authentication.getName(), limit));
+        return ResponseEntity.ok(coachService.getRecentWeeklyReviews(userId, limit));
     }
 
     @GetMapping("/greeting")
-    public ResponseEntity<Map<String, String>> getGreeting(Authentication authentication) {
-        String response = coachService.generateGreeting(authentication.getName());
+    public ResponseEntity<Map<String, String>> getGreeting(@CurrentUserId Long userId) {
+        String response = coachService.generateGreeting(userId);
         return ResponseEntity.ok(Map.of("response", response));
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<ChatMessageResponse>> getChatHistory(Authentication authentication) {
-        List<ChatMessageResponse> history = coachService.getChatHistory(authentication.getName()).stream()
+    public ResponseEntity<List<ChatMessageResponse>> getChatHistory(@CurrentUserId Long userId) {
+        List<ChatMessageResponse> history = coachService.getChatHistory(userId).stream()
                 .map(msg -> ChatMessageResponse.builder()
                         .role(msg.getRole())
                         .content(msg.getContent())
@@ -93,8 +109,8 @@ public class CoachController {
     }
 
     @GetMapping("/memory-hits")
-    public ResponseEntity<MemoryHitResponse> getMemoryHits(Authentication authentication) {
-        var snapshot = coachTurnMemoryHitService.getLatestHits(authentication.getName());
+    public ResponseEntity<MemoryHitResponse> getMemoryHits(@CurrentUserId Long userId) {
+        var snapshot = coachTurnMemoryHitService.getLatestHits(userId);
         MemoryHitResponse response = MemoryHitResponse.builder()
                 .hits(snapshot.hits())
                 .updatedAt(snapshot.updatedAt())
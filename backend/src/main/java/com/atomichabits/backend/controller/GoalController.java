@@ -3,10 +3,10 @@ package com.atomichabits.backend.controller;
 import com.atomichabits.backend.dto.GoalRequest;
 import com.atomichabits.backend.dto.GoalResponse;
 import com.atomichabits.backend.dto.HabitRequest;
+import com.atomichabits.backend.security.CurrentUserId;
 import com.atomichabits.backend.service.GoalService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -22,22 +22,22 @@ public class GoalController {
     }
 
     @PostMapping
-    public ResponseEntity<GoalResponse> createGoal(Authentication authentication, @Valid @RequestBody GoalRequest request) {
-        return ResponseEntity.ok(goalService.createGoal(authentication.getName(), request));
+    public ResponseEntity<GoalResponse> createGoal(@CurrentUserId Long userId, @Valid @RequestBody GoalRequest request) {
+        return ResponseEntity.ok(goalService.createGoal(userId, request));
     }
 
     @GetMapping
-    public ResponseEntity<List<GoalResponse>> getUserGoals(Authentication authentication) {
-        return ResponseEntity.ok(goalService.getUserGoals(authentication.getName()));
+    public ResponseEntity<List<GoalResponse>> getUserGoals(@CurrentUserId Long userId) {
+        return ResponseEntity.ok(goalService.getGoals(userId));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<GoalResponse> getGoal(Authentication authentication, @PathVariable Long id) {
-        return ResponseEntity.ok(goalService.getGoal(id, authentication.getName()));
+    public ResponseEntity<GoalResponse> getGoal(@CurrentUserId Long userId, @PathVariable Long id) {
+        return ResponseEntity.ok(goalService.getGoal(id, userId));
     }
 
     @PostMapping("/{id}/habits")
-    public ResponseEntity<GoalResponse> addHabitsToGoal(Authentication authentication, @PathVariable Long id, @Valid @RequestBody List<HabitRequest> habits) {
-        return ResponseEntity.ok(goalService.addHabitsToGoal(id, habits, authentication.getName()));
+    public ResponseEntity<GoalResponse> addHabitsToGoal(@CurrentUserId Long userId, @PathVariable Long id, @Valid @RequestBody List<HabitRequest> habits) {
+        return ResponseEntity.ok(goalService.addHabitsToGoal(id, habits, userId));
     }
 }
@@ -1,12 +1,14 @@
 package com.atomichabits.backend.controller;
 
+import com.atomichabits.backend.dto.CompletionBatchRequest;
+import com.atomichabits.backend.dto.CompletionBatchResponse;
 import com.atomichabits.backend.dto.HabitRequest;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.dto.HabitStatsResponse;
+import com.atomichabits.backend.security.CurrentUserId;
 import com.atomichabits.backend.service.HabitService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
@@ -23,55 +25,66 @@ public class HabitController {
     }
 
     @PostMapping
-    public ResponseEntity<HabitResponse> createHabit(@Valid @RequestBody HabitRequest request, Authentication authentication) {
-        return ResponseEntity.ok(habitService.createHabit(authentication.getName(), request));
+    public ResponseEntity<HabitResponse> createHabit(@Valid @RequestBody HabitRequest request, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.createHabit(userId, request));
     }
 
     @PostMapping("/batch")
-    public ResponseEntity<List<HabitResponse>> createHabits(@RequestBody List<HabitRequest> requests, Authentication authentication) {
-        return ResponseEntity.ok(habitService.createHabits(authentication.getName(), requests));
+    public ResponseEntity<List<HabitResponse>> createHabits(@RequestBody List<HabitRequest> requests, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.createHabits(userId, requests));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<HabitResponse> updateHabit(@PathVariable Long id, @Valid @RequestBody HabitRequest request, Authentication authentication) {
-        return ResponseEntity.ok(habitService.updateHabit(id, authentication.getName(), request));
+    public ResponseEntity<HabitResponse> updateHabit(@PathVariable Long id, @Valid @RequestBody HabitRequest request, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.updateHabit(id, userId, request));
     }
 
     @PatchMapping("/{id}/status")
-    public ResponseEntity<HabitResponse> toggleHabitStatus(@PathVariable Long id, Authentication authentication) {
-        return ResponseEntity.ok(habitService.toggleHabitStatus(id, authentication.getName()));
+    public ResponseEntity<HabitResponse> toggleHabitStatus(@PathVariable Long id, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.toggleHabitStatus(id, userId));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteHabit(@PathVariable Long id, Authentication authentication) {
-        habitService.deleteHabit(id, authentication.getName());
+    public ResponseEntity<?> deleteHabit(@PathVariable Long id,
+                                         @RequestParam(defaultValue = "false") boolean archive,
+                                         @CurrentUserId Long userId) {
+        if (archive) {
+            habitService.archiveHabit(id, userId);
+        } else {
+            habitService.deleteHabit(id, userId);
+        }
         return ResponseEntity.ok().build();
     }
 
     @GetMapping
-    public ResponseEntity<List<HabitResponse>> getHabits(Authentication authentication) {
-        return ResponseEntity.ok(habitService.getUserHabits(authentication.getName()));
+    public ResponseEntity<List<HabitResponse>> getHabits(@CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.getUserHabits(userId));
     }
 
     @GetMapping("/completions")
-    public ResponseEntity<List<LocalDate>> getCompletions(Authentication authentication) {
-        return ResponseEntity.ok(habitService.getAllCompletions(authentication.getName()));
+    public ResponseEntity<List<LocalDate>> getCompletions(@CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.getAllCompletions(userId));
+    }
+
+    @PostMapping("/completions/batch")
+    public ResponseEntity<CompletionBatchResponse> completeHabits(@Valid @RequestBody CompletionBatchRequest request, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.completeHabits(userId, request.getCompletions()));
     }
 
     @PostMapping("/{id}/complete")
-    public ResponseEntity<?> completeHabit(@PathVariable Long id, Authentication authentication) {
-        habitService.completeHabit(id, authentication.getName());
+    public ResponseEntity<?> completeHabit(@PathVariable Long id, @CurrentUserId Long userId) {
+        habitService.completeHabit(id, userId);
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{id}/complete")
-    public ResponseEntity<?> uncompleteHabit(@PathVariable Long id, Authentication authentication) {
-        habitService.uncompleteHabit(id, authentication.getName());
+    public ResponseEntity<?> uncompleteHabit(@PathVariable Long id, @CurrentUserId Long userId) {
+        habitService.uncompleteHabit(id, userId);
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/{id}/stats")
-    public ResponseEntity<HabitStatsResponse> getHabitStats(@PathVariable Long id, Authentication authentication) {
-        return ResponseEntity.ok(habitService.getHabitStats(id, authentication.getName()));
+    public ResponseEntity<HabitStatsResponse> getHabitStats(@PathVariable Long id, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(habitService.getHabitStats(id, userId));
     }
 }
@@ -1,8 +1,8 @@
 package com.atomichabits.backend.controller;
 
+import com.atomichabits.backend.security.CurrentUserId;
 import com.atomichabits.backend.service.MoodService;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -32,24 +32,24 @@ public class MoodController {
     }
 
     @PostMapping
-    public ResponseEntity<MoodLog> logMood(@RequestBody Map<String, String> payload, Authentication authentication) {
+    public ResponseEntity<MoodLog> logMood(@RequestBody Map<String, String> payload, @CurrentUserId Long userId) {
         String moodType = payload.get("moodType");
         String note = payload.get("note");
         
-        MoodLog log = moodService.logMood(authentication.getName(), moodType, note);
+        MoodLog log = moodService.logMood(userId, moodType, note);
         return ResponseEntity.ok(log);
     }
     
     @GetMapping
     public ResponseEntity<Page<MoodLog>> getMoodHistory(
-            Authentication authentication,
+            @CurrentUserId Long userId,
             @PageableDefault(size = 20) Pageable pageable) {
-        return ResponseEntity.ok(moodService.getMoodHistory(authentication.getName(), pageable));
+        return ResponseEntity.ok(moodService.getMoodHistory(userId, pageable));
     }
 
     @GetMapping("/recent")
     public ResponseEntity<?> getRecentMoods(
-            Authentication authentication,
+            @CurrentUserId Long userId,
             @RequestParam(required = false) String hours) {
         int parsedHours = 24;
         if (hours != null && !hours.isBlank()) {
@@ -62,12 +62,12 @@ public class MoodController {
             }
         }
         parsedHours = Math.max(1, Math.min(parsedHours, 168));
-        return ResponseEntity.ok(moodService.getRecentMoods(authentication.getName(), parsedHours));
+        return ResponseEntity.ok(moodService.getRecentMoods(userId, parsedHours));
     }
 
     @GetMapping("/since")
     public ResponseEntity<?> getMoodsSince(
-            Authentication authentication,
+            @CurrentUserId Long userId,
             @RequestParam String since) {
         LocalDateTime parsedSince;
         try {
@@ -77,17 +77,17 @@ public class MoodController {
             body.put("message", "Invalid since; expected ISO-8601 date-time like 2026-02-16T10:15:30");
             return ResponseEntity.badRequest().body(body);
         }
-        return ResponseEntity.ok(moodService.getMoodsSince(authentication.getName(), parsedSince));
+        return ResponseEntity.ok(moodService.getMoodsSince(userId, parsedSince));
     }
 
     @GetMapping("/gratitude")
-    public ResponseEntity<List<MoodLog>> getGratitudeLogs(Authentication authentication) {
-        return ResponseEntity.ok(moodService.getGratitudeLogs(authentication.getName()));
+    public ResponseEntity<List<MoodLog>> getGratitudeLogs(@CurrentUserId Long userId) {
+        return ResponseEntity.ok(moodService.getGratitudeLogs(userId));
     }
 
     @GetMapping("/gratitude/today")
-    public ResponseEntity<MoodLog> getTodayGratitude(Authentication authentication) {
-        MoodLog log = moodService.getTodayGratitude(authentication.getName());
+    public ResponseEntity<MoodLog> getTodayGratitude(@CurrentUserId Long userId) {
+        MoodLog log = moodService.getTodayGratitude(userId);
         if (log == null) {
             return ResponseEntity.noContent().build();
         }
@@ -98,14 +98,14 @@ public class MoodController {
     public ResponseEntity<MoodLog> updateMood(
             @PathVariable Long id,
             @RequestBody Map<String, String> payload,
-            Authentication authentication) {
+            @CurrentUserId Long userId) {
         String note = payload.get("note");
-        return ResponseEntity.ok(moodService.updateMood(id, note, authentication.getName()));
+        return ResponseEntity.ok(moodService.updateMood(id, note, userId));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteMood(@PathVariable Long id, Authentication authentication) {
-        moodService.deleteMood(id, authentication.getName());
+    public ResponseEntity<Void> deleteMood(@PathVariable Long id, @CurrentUserId Long userId) {
+        moodService.deleteMood(id, userId);
         return ResponseEntity.ok().build();
     }
 }
@@ -1,8 +1,8 @@
 package com.atomichabits.backend.controller;
 
+import com.atomichabits.backend.security.CurrentUserId;
 import com.atomichabits.backend.service.NotificationService;
 import org.springframework.http.MediaType;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,12 +20,12 @@ public class NotificationController {
     }
 
     @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter subscribe(Authentication authentication) {
-        return notificationService.subscribe(authentication.getName());
+    public SseEmitter subscribe(@CurrentUserId Long userId) {
+        return notificationService.subscribe(userId);
     }
 
     @PostMapping("/test")
-    public void testNotification(Authentication authentication) {
-        notificationService.sendNotification(authentication.getName(), "Test notification from Atomic Habits!");
+    public void testNotification(@CurrentUserId Long userId) {
+        notificationService.sendNotification(userId, "Test notification from Atomic Habits!");
     }
 }
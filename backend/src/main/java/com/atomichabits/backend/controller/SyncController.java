@@ -0,0 +1,23 @@
+package com.atomichabits.backend.controller;
+
+import com.atomichabits.backend.dto.SyncResponse;
+import com.atomichabits.backend.security.CurrentUserId;
+import com.atomichabits.backend.service.SyncService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private final SyncService syncService;
+
+    public SyncController(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    @GetMapping
+    public ResponseEntity<SyncResponse> sync(@RequestParam(required = false) Long since, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(syncService.sync(userId, since));
+    }
+}
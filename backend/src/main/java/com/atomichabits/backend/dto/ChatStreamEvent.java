@@ -0,0 +1,43 @@
+package com.atomichabits.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One event of a streamed coach reply: a piece of text, a tool the coach used, the end of the
+ * reply, or an error in place of the rest of it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatStreamEvent {
+    public static final String TOKEN = "token";
+    public static final String TOOL = "tool";
+    public static final String DONE = "done";
+    public static final String ERROR = "error";
+
+    private String type;
+    private String text;
+    private String tool;
+
+    public static ChatStreamEvent token(String text) {
+        return ChatStreamEvent.builder().type(TOKEN).text(text).build();
+    }
+
+    public static ChatStreamEvent tool(String tool) {
+        return ChatStreamEvent.builder().type(TOOL).tool(tool).build();
+    }
+
+    public static ChatStreamEvent done() {
+        return ChatStreamEvent.builder().type(DONE).build();
+    }
+
+    public static ChatStreamEvent error(String text) {
+        return ChatStreamEvent.builder().type(ERROR).text(text).build();
+    }
+}
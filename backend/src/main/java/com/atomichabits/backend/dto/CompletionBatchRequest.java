@@ -0,0 +1,30 @@
+package com.atomichabits.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class CompletionBatchRequest {
+    @NotEmpty(message = "At least one completion is required")
+    @Size(max = 500, message = "At most 500 completions per batch")
+    private List<@NotNull @Valid Entry> completions;
+
+    @Data
+    public static class Entry {
+        @NotNull(message = "Habit id is mandatory")
+        private Long habitId;
+
+        @NotNull(message = "Date is mandatory")
+        private LocalDate date;
+
+        // When the client recorded the completion while offline (optional)
+        private LocalDateTime clientTimestamp;
+    }
+}
@@ -0,0 +1,38 @@
+package com.atomichabits.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompletionBatchResponse {
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private List<Result> results; // Same order as the request entries
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,   // Already recorded for that day, or repeated within the batch
+        NOT_FOUND,   // Unknown habit or owned by another user
+        INVALID_DATE // Date lies in the future or before the habit was created
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Result {
+        private int index;
+        private Long habitId;
+        private LocalDate date;
+        private Status status;
+    }
+}
@@ -21,5 +21,9 @@ public class GoalResponse {
     private LocalDate endDate;
     private String status;
     private List<HabitResponse> habits;
+    // Progress over the goal's start/end window, up to today
+    private int completions;
+    private int scheduledDays;
+    private double completionRate;
     private LocalDateTime createdAt;
 }
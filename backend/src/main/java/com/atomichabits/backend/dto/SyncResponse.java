@@ -0,0 +1,35 @@
+package com.atomichabits.backend.dto;
+
+import com.atomichabits.backend.model.MoodLog;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncResponse {
+    private long token;             // Pass back as ?since= on the next sync
+    private boolean full;           // true: replace local state; false: apply as a delta
+    private List<HabitResponse> habits;
+    private List<Long> deletedHabitIds; // Their completions are gone too
+    private List<CompletionChange> completions;
+    private List<MoodLog> moods;
+    private List<Long> deletedMoodIds;
+    private List<GoalResponse> goals;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CompletionChange {
+        private Long habitId;
+        private LocalDate date;
+        private boolean completed; // false: the completion was removed
+    }
+}
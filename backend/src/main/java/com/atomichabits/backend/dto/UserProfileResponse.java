@@ -14,4 +14,6 @@ public class UserProfileResponse {
     private String email;
     private String identityStatement;
     private java.time.LocalDateTime createdAt;
+    // Only set when the email was changed, replacing the caller's token that names the old one
+    private String accessToken;
 }
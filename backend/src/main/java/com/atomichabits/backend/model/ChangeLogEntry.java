@@ -0,0 +1,69 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One change to a user's synced data, stamped with the user's version at the time of the write.
+ * Completions have no stable id of their own, so they are keyed by habit id and day.
+ */
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_user_version", columnList = "user_id, version"),
+        @Index(name = "idx_change_log_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeLogEntry {
+
+    public enum EntityType {
+        HABIT,
+        COMPLETION,
+        MOOD,
+        GOAL,
+        BADGE // Not synced; recorded so badge awards change the user's version
+    }
+
+    public enum Operation {
+        UPSERT,
+        DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EntityType entityType;
+
+    // Habit id for completions
+    @Column(nullable = false)
+    private Long entityId;
+
+    // Completion day; null for other entity types
+    private LocalDate entityDay;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Operation operation;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
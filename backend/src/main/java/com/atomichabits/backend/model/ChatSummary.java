@@ -0,0 +1,36 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rolling summary of a user's older {@link ChatMessage chat messages}. Messages up to
+ * {@code coveredThroughMessageId} are only seen by the coach through this summary; later
+ * ones are quoted verbatim while the prompt budget allows.
+ */
+@Entity
+@Table(name = "chat_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSummary {
+
+    @Id
+    private Long userId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    @Column(nullable = false)
+    private Long coveredThroughMessageId;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -42,11 +42,19 @@ public class Habit {
     @Builder.Default
     private boolean isActive = true;
 
-    // Frequency: JSON array of day names e.g. ["MONDAY","WEDNESDAY","FRIDAY"]
-    // null or empty means daily (every day)
+    // Scheduled weekdays: bit 0 = Monday ... bit 6 = Sunday; 0 means daily (every day)
+    @Column(nullable = false)
+    private int frequencyMask;
+
+    // Legacy JSON array of day names e.g. ["MONDAY","WEDNESDAY","FRIDAY"].
+    // Only read by FrequencyMaskMigration, which converts it to frequencyMask and clears it.
     @Column(columnDefinition = "TEXT")
     private String frequencyJson;
 
+    // Set when the habit is deleted in archive mode. Archived habits are hidden everywhere and
+    // HabitPurgeService removes them together with their completions.
+    private LocalDateTime archivedAt;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
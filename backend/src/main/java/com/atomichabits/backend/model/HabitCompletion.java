@@ -6,10 +6,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "habit_completions")
+@Table(name = "habit_completions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_habit_completions_habit_day", columnNames = {"habit_id", "completion_day"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,4 +29,18 @@ public class HabitCompletion {
 
     @Column(nullable = false)
     private LocalDateTime completedAt;
+
+    // Calendar day of completedAt, so that one completion per habit and day can be enforced by the
+    // database. Existing databases: add the column, backfill it with cast(completed_at as date),
+    // delete duplicate rows, then create the unique index.
+    @Column(nullable = false)
+    private LocalDate completionDay;
+
+    @PrePersist
+    @PreUpdate
+    void deriveCompletionDay() {
+        if (completedAt != null) {
+            completionDay = completedAt.toLocalDate();
+        }
+    }
 }
@@ -0,0 +1,36 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted form of a habit's {@link com.atomichabits.backend.service.CompletionBitmap}:
+ * one bit per day starting at {@code originDay}, stored as little-endian 64-bit words.
+ */
+@Entity
+@Table(name = "habit_completion_index")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HabitCompletionIndex {
+
+    @Id
+    private Long habitId;
+
+    @Column(nullable = false)
+    private LocalDate originDay;
+
+    @Column(nullable = false, length = 8192)
+    private byte[] bits;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
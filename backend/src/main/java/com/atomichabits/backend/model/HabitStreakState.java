@@ -0,0 +1,48 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Streak aggregate for a habit, rewritten whenever a completion is added or removed.
+ * Figures are as of {@code asOfDay}; readers roll them forward to today without
+ * touching {@code habit_completions}.
+ */
+@Entity
+@Table(name = "habit_streak_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HabitStreakState {
+
+    @Id
+    private Long habitId;
+
+    private int currentStreak;
+
+    private int longestStreak;
+
+    private LocalDate lastCompletedDay;
+
+    private int totalCompletions;
+
+    // Scheduled days from habit creation through asOfDay
+    private long scheduledDayCount;
+
+    // Schedule the figures were computed against
+    private int weekdayMask;
+
+    @Column(nullable = false)
+    private LocalDate asOfDay;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,46 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user message waiting for long-term memory extraction. Rows are deleted once the user's
+ * pending messages have been processed, so whatever is here after a restart is picked up again.
+ * Databases running with {@code ddl-auto: validate} need the retry column first:
+ * {@code ALTER TABLE memory_extraction_task ADD COLUMN next_attempt_at TIMESTAMP}.
+ */
+@Entity
+@Table(name = "memory_extraction_task", indexes = {
+        @Index(name = "idx_memory_extraction_task_user", columnList = "user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MemoryExtractionTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Builder.Default
+    private int attempts = 0;
+
+    /** Set after a failed run; the user's messages are not picked up again before it. */
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+}
@@ -0,0 +1,32 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Token bucket shared by all backend instances when {@code app.rate-limit.backend} is {@code jdbc}.
+ * Only written through plain SQL; mapped so the schema is created and validated with the rest.
+ */
+@Entity
+@Table(name = "rate_limit_bucket", indexes = {
+        @Index(name = "idx_rate_limit_bucket_updated_at", columnList = "updated_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateLimitBucket {
+
+    @Id
+    @Column(name = "bucket_key", length = 200)
+    private String bucketKey;
+
+    private double tokens;
+
+    // Epoch milliseconds
+    @Column(name = "updated_at")
+    private long updatedAt;
+}
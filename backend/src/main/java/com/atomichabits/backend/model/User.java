@@ -38,6 +38,10 @@ public class User {
 
     private String identityStatement;
 
+    // Set once user_daily_activity holds this user's history; DailyActivityBackfill fills the rest
+    @Column(nullable = false)
+    private boolean dailyActivityBackfilled;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
@@ -0,0 +1,57 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What happened on one day for one user: completions and logged moods, kept up to date by
+ * the write paths so readers never have to scan raw completions or mood logs.
+ */
+@Entity
+@Table(name = "user_daily_activity", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_daily_activity_user_day", columnNames = {"user_id", "activity_day"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserDailyActivity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "activity_day", nullable = false)
+    private LocalDate activityDay;
+
+    private int completionCount;
+
+    private int distinctHabitCount;
+
+    private LocalDateTime firstCompletionAt;
+
+    private LocalDateTime lastCompletionAt;
+
+    // Mood type -> number of logs of that type on this day
+    @ElementCollection
+    @CollectionTable(name = "user_daily_mood_counts", joinColumns = @JoinColumn(name = "activity_id"))
+    @MapKeyColumn(name = "mood_type")
+    @Column(name = "log_count", nullable = false)
+    @Builder.Default
+    private Map<String, Integer> moodCounts = new HashMap<>();
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,26 @@
+package com.atomichabits.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-user change counter. Every write to synced data increments it with a row-locking
+ * UPDATE, so versions are handed out in commit order and a reader that sees version N
+ * has already seen every change up to N.
+ */
+@Entity
+@Table(name = "user_sync_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSyncState {
+
+    @Id
+    private Long userId;
+
+    private long version;
+}
@@ -0,0 +1,30 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.ChangeLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+
+    @Query("select e from ChangeLogEntry e where e.userId = :userId and e.version > :since and e.version <= :upTo " +
+            "order by e.version, e.id")
+    List<ChangeLogEntry> findChanges(@Param("userId") Long userId, @Param("since") long since, @Param("upTo") long upTo);
+
+    @Query("select min(e.version) from ChangeLogEntry e where e.userId = :userId")
+    Long findOldestVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from ChangeLogEntry e where e.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from ChangeLogEntry e where e.userId = :userId")
+    int deleteByUserIdInBulk(@Param("userId") Long userId);
+}
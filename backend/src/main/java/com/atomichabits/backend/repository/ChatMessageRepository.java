@@ -13,4 +13,6 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     List<ChatMessage> findByUserIdOrderByTimestampAsc(Long userId);
     List<ChatMessage> findByUserIdOrderByTimestampDesc(Long userId, Pageable pageable);
     List<ChatMessage> findByUserIdAndTimestampBetweenOrderByTimestampAsc(Long userId, LocalDateTime start, LocalDateTime end);
+    long countByUserIdAndIdGreaterThan(Long userId, Long id);
+    List<ChatMessage> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long id, Pageable pageable);
 }
@@ -0,0 +1,9 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.ChatSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatSummaryRepository extends JpaRepository<ChatSummary, Long> {
+}
@@ -0,0 +1,72 @@
+package com.atomichabits.backend.repository;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Runs INSERTs that should silently skip rows clashing with a unique key.
+ *
+ * <p>PostgreSQL gets {@code ON CONFLICT (...) DO NOTHING}, which neither fails nor aborts the
+ * surrounding transaction. Other databases (H2 in dev and tests) run the plain insert and
+ * treat the constraint violation as "already there".</p>
+ */
+@Component
+public class ConflictIgnoringInserts {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public ConflictIgnoringInserts(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return true if the row was inserted
+     */
+    public boolean insert(String insertSql, String conflictColumns, PreparedStatementSetter setter) {
+        if (isPostgres()) {
+            return jdbcTemplate.update(insertSql + onConflictDoNothing(conflictColumns), setter) > 0;
+        }
+        try {
+            return jdbcTemplate.update(insertSql, setter) > 0;
+        } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+            // Lost the race against another insert of the same key
+            return false;
+        }
+    }
+
+    /**
+     * Batched variant. Only PostgreSQL skips clashing rows; elsewhere a clash fails the batch,
+     * so callers are expected to have filtered out rows that already exist.
+     */
+    public <T> void batchInsert(String insertSql, String conflictColumns, Collection<T> rows, int batchSize,
+                                ParameterizedPreparedStatementSetter<T> setter) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = isPostgres() ? insertSql + onConflictDoNothing(conflictColumns) : insertSql;
+        jdbcTemplate.batchUpdate(sql, rows, batchSize, setter);
+    }
+
+    private static String onConflictDoNothing(String conflictColumns) {
+        return " on conflict (" + conflictColumns + ") do nothing";
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres"));
+            postgres = result;
+        }
+        return Boolean.TRUE.equals(result);
+    }
+}
@@ -2,12 +2,29 @@ package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.Goal;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface GoalRepository extends JpaRepository<Goal, Long> {
     List<Goal> findByUserId(Long userId);
     List<Goal> findByUserIdAndStatus(Long userId, String status);
+
+    /**
+     * The user's goals with their habits, in one query.
+     */
+    @Query("select distinct g from Goal g left join fetch g.habits where g.user.id = :userId order by g.id")
+    List<Goal> findWithHabitsByUserId(@Param("userId") Long userId);
+
+    @Query("select distinct g from Goal g left join fetch g.habits " +
+            "where g.user.id = :userId and g.id in :goalIds order by g.id")
+    List<Goal> findWithHabitsByUserIdAndIdIn(@Param("userId") Long userId, @Param("goalIds") Collection<Long> goalIds);
+
+    @Query("select g from Goal g left join fetch g.habits where g.id = :goalId")
+    Optional<Goal> findWithHabitsById(@Param("goalId") Long goalId);
 }
@@ -0,0 +1,19 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.HabitCompletionIndex;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface HabitCompletionIndexRepository extends JpaRepository<HabitCompletionIndex, Long>, HabitCompletionIndexRepositoryCustom {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from HabitCompletionIndex i where i.habitId = :habitId")
+    Optional<HabitCompletionIndex> findForUpdate(@Param("habitId") Long habitId);
+}
@@ -0,0 +1,11 @@
+package com.atomichabits.backend.repository;
+
+import java.time.LocalDate;
+
+public interface HabitCompletionIndexRepositoryCustom {
+
+    /**
+     * Stores the habit's bitmap unless a row exists, so it can be locked.
+     */
+    void insertIfAbsent(Long habitId, LocalDate originDay, byte[] bits);
+}
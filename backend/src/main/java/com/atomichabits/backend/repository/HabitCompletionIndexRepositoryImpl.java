@@ -0,0 +1,25 @@
+package com.atomichabits.backend.repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+public class HabitCompletionIndexRepositoryImpl implements HabitCompletionIndexRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into habit_completion_index " +
+            "(habit_id, origin_day, bits) values (?, ?, ?)";
+
+    private final ConflictIgnoringInserts inserts;
+
+    public HabitCompletionIndexRepositoryImpl(ConflictIgnoringInserts inserts) {
+        this.inserts = inserts;
+    }
+
+    @Override
+    public void insertIfAbsent(Long habitId, LocalDate originDay, byte[] bits) {
+        inserts.insert(INSERT_SQL, "habit_id", ps -> {
+            ps.setLong(1, habitId);
+            ps.setDate(2, Date.valueOf(originDay));
+            ps.setBytes(3, bits);
+        });
+    }
+}
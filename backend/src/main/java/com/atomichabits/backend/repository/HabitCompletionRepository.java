@@ -2,18 +2,120 @@ package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.HabitCompletion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface HabitCompletionRepository extends JpaRepository<HabitCompletion, Long> {
+public interface HabitCompletionRepository extends JpaRepository<HabitCompletion, Long>, HabitCompletionRepositoryCustom {
     List<HabitCompletion> findByHabitId(Long habitId);
     List<HabitCompletion> findByHabitUserId(Long userId);
     boolean existsByHabitIdAndCompletedAtBetween(Long habitId, LocalDateTime start, LocalDateTime end);
     void deleteByHabitIdAndCompletedAtBetween(Long habitId, LocalDateTime start, LocalDateTime end);
     java.util.Optional<HabitCompletion> findFirstByHabitIdOrderByCompletedAtDesc(Long habitId);
+
+    @Query("select distinct c.completionDay from HabitCompletion c where c.habit.id = :habitId")
+    List<LocalDate> findCompletionDaysByHabitId(@Param("habitId") Long habitId);
+
+    /**
+     * Deletes every completion of a habit with a single statement.
+     */
+    @Modifying
+    @Query("delete from HabitCompletion c where c.habit.id = :habitId")
+    int bulkDeleteByHabitId(@Param("habitId") Long habitId);
+
+    /**
+     * Deletes at most {@code limit} completions of a habit, so a large history can be removed
+     * in short transactions.
+     */
+    @Modifying
+    @Query(value = "delete from habit_completions where id in " +
+            "(select id from habit_completions where habit_id = :habitId limit :limit)", nativeQuery = true)
+    int deleteChunkByHabitId(@Param("habitId") Long habitId, @Param("limit") int limit);
     List<HabitCompletion> findByHabitIdOrderByCompletedAtDesc(Long habitId);
     List<HabitCompletion> findByHabitUserIdAndCompletedAtBetween(Long userId, LocalDateTime start, LocalDateTime end);
+
+    @Query("select c.habit.id as habitId, c.completedAt as completedAt from HabitCompletion c where c.habit.id in :habitIds")
+    List<CompletionTime> findCompletionTimesByHabitIds(@Param("habitIds") Collection<Long> habitIds);
+
+    @Query("select c.habit.id as habitId, c.completedAt as completedAt from HabitCompletion c " +
+            "where c.habit.id in :habitIds and c.completedAt between :start and :end")
+    List<CompletionTime> findCompletionTimesByHabitIdsBetween(@Param("habitIds") Collection<Long> habitIds,
+                                                             @Param("start") LocalDateTime start,
+                                                             @Param("end") LocalDateTime end);
+
+    /**
+     * Completions per day and habit name since the given day, for the advanced stats window.
+     */
+    @Query("select c.completionDay as day, h.name as habitName, count(c) as count from HabitCompletion c join c.habit h " +
+            "where h.user.id = :userId and c.completionDay >= :since group by c.completionDay, h.name")
+    List<DailyHabitCount> countByDayAndHabitNameSince(@Param("userId") Long userId, @Param("since") LocalDate since);
+
+    @Query("select h.name as habitName, count(c) as count from HabitCompletion c join c.habit h " +
+            "where h.user.id = :userId group by h.name")
+    List<HabitNameCount> countByHabitName(@Param("userId") Long userId);
+
+    /**
+     * Per-day completion figures for the daily activity rollup.
+     */
+    @Query("select c.completionDay as day, count(c) as completions, count(distinct c.habit.id) as habits, " +
+            "min(c.completedAt) as firstAt, max(c.completedAt) as lastAt from HabitCompletion c " +
+            "where c.habit.user.id = :userId and c.completionDay between :from and :to group by c.completionDay")
+    List<DaySummary> summarizeDays(@Param("userId") Long userId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("select c.completionDay as day, count(c) as completions, count(distinct c.habit.id) as habits, " +
+            "min(c.completedAt) as firstAt, max(c.completedAt) as lastAt from HabitCompletion c " +
+            "where c.habit.user.id = :userId group by c.completionDay")
+    List<DaySummary> summarizeAllDays(@Param("userId") Long userId);
+
+    @Query("select h.name from HabitCompletion c join c.habit h where h.user.id = :userId and c.completionDay = :day")
+    List<String> findHabitNamesCompletedOn(@Param("userId") Long userId, @Param("day") LocalDate day);
+
+    @Query("select distinct c.habit.id from HabitCompletion c where c.habit.id in :habitIds and c.completionDay = :day")
+    List<Long> findHabitIdsCompletedOn(@Param("habitIds") Collection<Long> habitIds, @Param("day") LocalDate day);
+
+    /**
+     * Completions per goal inside each goal's start/end window, up to {@code today}.
+     */
+    @Query("select g.id as goalId, count(c) as completions from HabitCompletion c join c.habit h join h.goal g " +
+            "where g.id in :goalIds and c.completionDay <= :today " +
+            "and (g.startDate is null or c.completionDay >= g.startDate) " +
+            "and (g.endDate is null or c.completionDay <= g.endDate) group by g.id")
+    List<GoalCompletionCount> countCompletionsInGoalWindows(@Param("goalIds") Collection<Long> goalIds,
+                                                           @Param("today") LocalDate today);
+
+    interface CompletionTime {
+        Long getHabitId();
+        LocalDateTime getCompletedAt();
+    }
+
+    interface DailyHabitCount {
+        LocalDate getDay();
+        String getHabitName();
+        long getCount();
+    }
+
+    interface HabitNameCount {
+        String getHabitName();
+        long getCount();
+    }
+
+    interface DaySummary {
+        LocalDate getDay();
+        long getCompletions();
+        long getHabits();
+        LocalDateTime getFirstAt();
+        LocalDateTime getLastAt();
+    }
+
+    interface GoalCompletionCount {
+        Long getGoalId();
+        long getCompletions();
+    }
 }
@@ -0,0 +1,22 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.HabitCompletion;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface HabitCompletionRepositoryCustom {
+
+    /**
+     * Inserts a completion unless the habit already has one on that day, in a single statement.
+     *
+     * @return true if a row was inserted
+     */
+    boolean insertIfAbsent(Long habitId, LocalDateTime completedAt);
+
+    /**
+     * Inserts the completions with JDBC batching, skipping days that are already recorded.
+     * Generated ids are not written back.
+     */
+    void insertAll(Collection<HabitCompletion> completions);
+}
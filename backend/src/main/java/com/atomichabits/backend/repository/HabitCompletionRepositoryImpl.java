@@ -0,0 +1,46 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.HabitCompletion;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * JDBC side of {@link HabitCompletionRepository}. Completions use IDENTITY ids, which keeps
+ * Hibernate from batching their inserts, so bulk writes go through JDBC. Days that already
+ * have a completion are skipped via the unique (habit_id, completion_day) index.
+ */
+public class HabitCompletionRepositoryImpl implements HabitCompletionRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "insert into habit_completions (habit_id, completed_at, completion_day) values (?, ?, ?)";
+    private static final String UNIQUE_KEY = "habit_id, completion_day";
+    private static final int BATCH_SIZE = 100;
+
+    private final ConflictIgnoringInserts inserts;
+
+    public HabitCompletionRepositoryImpl(ConflictIgnoringInserts inserts) {
+        this.inserts = inserts;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Long habitId, LocalDateTime completedAt) {
+        return inserts.insert(INSERT_SQL, UNIQUE_KEY, ps -> bind(ps, habitId, completedAt));
+    }
+
+    @Override
+    public void insertAll(Collection<HabitCompletion> completions) {
+        inserts.batchInsert(INSERT_SQL, UNIQUE_KEY, completions, BATCH_SIZE,
+                (ps, completion) -> bind(ps, completion.getHabit().getId(), completion.getCompletedAt()));
+    }
+
+    private static void bind(PreparedStatement ps, Long habitId, LocalDateTime completedAt) throws SQLException {
+        ps.setLong(1, habitId);
+        ps.setTimestamp(2, Timestamp.valueOf(completedAt));
+        ps.setDate(3, Date.valueOf(completedAt.toLocalDate()));
+    }
+}
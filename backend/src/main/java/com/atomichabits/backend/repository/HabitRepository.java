@@ -1,13 +1,38 @@
 package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.Habit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface HabitRepository extends JpaRepository<Habit, Long> {
     List<Habit> findByUserIdAndIsActiveTrue(Long userId);
     List<Habit> findByUserId(Long userId);
+    List<Habit> findByUserIdAndArchivedAtIsNull(Long userId);
+    List<Habit> findByUserIdAndIdInAndArchivedAtIsNull(Long userId, Collection<Long> ids);
+    Page<Habit> findByArchivedAtIsNotNull(Pageable pageable);
+
+    /**
+     * Active habits of a user that are scheduled on the weekday given by {@code dayBit}
+     * (see {@code HabitSchedule.bit}). A mask of 0 means daily.
+     */
+    @Query("select h from Habit h where h.user.id = :userId and h.isActive = true " +
+            "and (h.frequencyMask = 0 or mod(h.frequencyMask, :dayBit * 2) >= :dayBit)")
+    List<Habit> findActiveScheduledOn(@Param("userId") Long userId, @Param("dayBit") int dayBit);
+
+    Page<Habit> findByFrequencyJsonIsNotNull(Pageable pageable);
+
+    /**
+     * Live habits with no {@code habit_streak_state} row yet, in id order after {@code afterId}.
+     */
+    @Query("select h from Habit h where h.id > :afterId and h.archivedAt is null " +
+            "and not exists (select s from HabitStreakState s where s.habitId = h.id) order by h.id")
+    List<Habit> findWithoutStreakState(@Param("afterId") Long afterId, Pageable pageable);
 }
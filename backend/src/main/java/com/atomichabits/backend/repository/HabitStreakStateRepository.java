@@ -0,0 +1,9 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.HabitStreakState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface HabitStreakStateRepository extends JpaRepository<HabitStreakState, Long> {
+}
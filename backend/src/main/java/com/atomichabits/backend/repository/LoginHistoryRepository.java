@@ -1,17 +1,22 @@
 package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.LoginHistory;
-import com.atomichabits.backend.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface LoginHistoryRepository extends JpaRepository<LoginHistory, Long> {
     Page<LoginHistory> findByUserIdOrderByLoginTimeDesc(Long userId, Pageable pageable);
     
-    long countByUserAndStatusAndLoginTimeAfter(User user, String status, LocalDateTime loginTime);
+    @Query("select h.loginTime from LoginHistory h where h.user.id = :userId and h.status = :status and h.loginTime > :after")
+    List<LocalDateTime> findLoginTimesByUserIdAndStatusAfter(@Param("userId") Long userId,
+                                                             @Param("status") String status,
+                                                             @Param("after") LocalDateTime after);
 }
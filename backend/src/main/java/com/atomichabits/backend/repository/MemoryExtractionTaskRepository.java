@@ -0,0 +1,40 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.MemoryExtractionTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MemoryExtractionTaskRepository extends JpaRepository<MemoryExtractionTask, Long> {
+    List<MemoryExtractionTask> findByUserIdOrderByIdAsc(Long userId);
+
+    /**
+     * Users who have been quiet since {@code quietSince}, or have waited since {@code overdueSince},
+     * and have no message still backing off after a failed run as of {@code now}.
+     */
+    @Query("select t.userId from MemoryExtractionTask t group by t.userId " +
+            "having (max(t.createdAt) <= :quietSince or min(t.createdAt) <= :overdueSince) " +
+            "and (max(t.nextAttemptAt) is null or max(t.nextAttemptAt) <= :now) " +
+            "order by min(t.createdAt)")
+    List<Long> findReadyUserIds(@Param("quietSince") LocalDateTime quietSince,
+                                @Param("overdueSince") LocalDateTime overdueSince,
+                                @Param("now") LocalDateTime now,
+                                Pageable pageable);
+
+    @Modifying
+    @Query("update MemoryExtractionTask t set t.attempts = t.attempts + 1, t.nextAttemptAt = :nextAttemptAt " +
+            "where t.id in :ids")
+    int incrementAttempts(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("delete from MemoryExtractionTask t where t.userId = :userId")
+    int deleteByUserIdInBulk(@Param("userId") Long userId);
+}
@@ -2,9 +2,12 @@ package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.MoodLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -17,4 +20,18 @@ public interface MoodRepository extends JpaRepository<MoodLog, Long> {
     List<MoodLog> findByUserIdAndMoodTypeOrderByCreatedAtDesc(Long userId, String moodType);
     Optional<MoodLog> findTopByUserIdAndMoodTypeAndCreatedAtBetweenOrderByCreatedAtDesc(Long userId, String moodType, LocalDateTime start, LocalDateTime end);
     Page<MoodLog> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+    List<MoodLog> findByUserId(Long userId);
+    List<MoodLog> findByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    @Query("select m.moodType as moodType, m.createdAt as createdAt from MoodLog m " +
+            "where m.userId = :userId and m.createdAt between :start and :end")
+    List<MoodTime> findMoodTimes(@Param("userId") Long userId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select m.moodType as moodType, m.createdAt as createdAt from MoodLog m where m.userId = :userId")
+    List<MoodTime> findAllMoodTimes(@Param("userId") Long userId);
+
+    interface MoodTime {
+        String getMoodType();
+        LocalDateTime getCreatedAt();
+    }
 }
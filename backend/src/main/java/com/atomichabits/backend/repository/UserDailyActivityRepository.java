@@ -0,0 +1,30 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.UserDailyActivity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserDailyActivityRepository extends JpaRepository<UserDailyActivity, Long>, UserDailyActivityRepositoryCustom {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from UserDailyActivity a where a.userId = :userId and a.activityDay = :day")
+    Optional<UserDailyActivity> findForUpdate(@Param("userId") Long userId, @Param("day") LocalDate day);
+
+    @Query("select distinct a from UserDailyActivity a left join fetch a.moodCounts " +
+            "where a.userId = :userId and a.activityDay between :from and :to order by a.activityDay")
+    List<UserDailyActivity> findRange(@Param("userId") Long userId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Mood counts are not needed here and stay unloaded
+    List<UserDailyActivity> findByUserIdAndCompletionCountGreaterThanOrderByActivityDay(Long userId, int completionCount);
+
+    List<UserDailyActivity> findByUserId(Long userId);
+}
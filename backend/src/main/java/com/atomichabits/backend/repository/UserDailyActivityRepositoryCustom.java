@@ -0,0 +1,11 @@
+package com.atomichabits.backend.repository;
+
+import java.time.LocalDate;
+
+public interface UserDailyActivityRepositoryCustom {
+
+    /**
+     * Creates an empty row for the user and day unless one exists, so it can be locked.
+     */
+    void insertIfAbsent(Long userId, LocalDate day);
+}
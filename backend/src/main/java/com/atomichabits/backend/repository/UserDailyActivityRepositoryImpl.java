@@ -0,0 +1,24 @@
+package com.atomichabits.backend.repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+public class UserDailyActivityRepositoryImpl implements UserDailyActivityRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into user_daily_activity " +
+            "(user_id, activity_day, completion_count, distinct_habit_count) values (?, ?, 0, 0)";
+
+    private final ConflictIgnoringInserts inserts;
+
+    public UserDailyActivityRepositoryImpl(ConflictIgnoringInserts inserts) {
+        this.inserts = inserts;
+    }
+
+    @Override
+    public void insertIfAbsent(Long userId, LocalDate day) {
+        inserts.insert(INSERT_SQL, "user_id, activity_day", ps -> {
+            ps.setLong(1, userId);
+            ps.setDate(2, Date.valueOf(day));
+        });
+    }
+}
@@ -1,13 +1,36 @@
 package com.atomichabits.backend.repository;
 
 import com.atomichabits.backend.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByEmail(String email);
+
+    @Query("select u.id from User u where u.dailyActivityBackfilled = false and u.id > :afterId order by u.id")
+    List<Long> findIdsAwaitingActivityBackfill(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Writers of a user's daily activity hold the user's row shared, a rebuild of it exclusively
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select u from User u where u.id = :userId")
+    Optional<User> findForShare(@Param("userId") Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from User u where u.id = :userId")
+    Optional<User> findForUpdate(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("update User u set u.dailyActivityBackfilled = true where u.id = :userId")
+    int markActivityBackfilled(@Param("userId") Long userId);
 }
@@ -0,0 +1,22 @@
+package com.atomichabits.backend.repository;
+
+import com.atomichabits.backend.model.UserSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserSyncStateRepository extends JpaRepository<UserSyncState, Long>, UserSyncStateRepositoryCustom {
+
+    /**
+     * Bumps the version; the row lock taken here is held until the writing transaction commits.
+     */
+    @Modifying
+    @Query("update UserSyncState s set s.version = s.version + 1 where s.userId = :userId")
+    int increment(@Param("userId") Long userId);
+
+    @Query("select s.version from UserSyncState s where s.userId = :userId")
+    Long findVersion(@Param("userId") Long userId);
+}
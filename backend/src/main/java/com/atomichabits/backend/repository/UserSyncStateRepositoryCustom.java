@@ -0,0 +1,9 @@
+package com.atomichabits.backend.repository;
+
+public interface UserSyncStateRepositoryCustom {
+
+    /**
+     * Creates the user's row at version 0 unless it exists.
+     */
+    void insertIfAbsent(Long userId);
+}
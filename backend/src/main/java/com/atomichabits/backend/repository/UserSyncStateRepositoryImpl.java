@@ -0,0 +1,17 @@
+package com.atomichabits.backend.repository;
+
+public class UserSyncStateRepositoryImpl implements UserSyncStateRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into user_sync_state (user_id, version) values (?, 0)";
+
+    private final ConflictIgnoringInserts inserts;
+
+    public UserSyncStateRepositoryImpl(ConflictIgnoringInserts inserts) {
+        this.inserts = inserts;
+    }
+
+    @Override
+    public void insertIfAbsent(Long userId) {
+        inserts.insert(INSERT_SQL, "user_id", ps -> ps.setLong(1, userId));
+    }
+}
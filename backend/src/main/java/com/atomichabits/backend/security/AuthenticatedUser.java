@@ -0,0 +1,30 @@
+package com.atomichabits.backend.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The caller of an authenticated request, built from the access token's claims alone.
+ * {@code Authentication.getName()} still yields the email, so email-based code keeps working.
+ */
+public record AuthenticatedUser(Long id, String email, List<String> roles) implements AuthenticatedPrincipal {
+
+    public AuthenticatedUser {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+    }
+}
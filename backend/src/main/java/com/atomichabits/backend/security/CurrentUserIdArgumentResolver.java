@@ -0,0 +1,45 @@
+package com.atomichabits.backend.security;
+
+import com.atomichabits.backend.exception.ResourceNotFoundException;
+import com.atomichabits.backend.service.UserVersionService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves {@link CurrentUserId} parameters from the {@link AuthenticatedUser} principal without
+ * touching the database. Other principals, such as test users, are looked up by name through the
+ * cached email-to-id map.
+ */
+public class CurrentUserIdArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final UserVersionService userVersionService;
+
+    public CurrentUserIdArgumentResolver(UserVersionService userVersionService) {
+        this.userVersionService = userVersionService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUserId.class)
+                && Long.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Long resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null) {
+            return user.id();
+        }
+        return userVersionService.findUserId(authentication.getName())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    }
+}
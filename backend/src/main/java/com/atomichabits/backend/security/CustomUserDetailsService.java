@@ -10,7 +10,9 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,4 +40,13 @@ public class CustomUserDetailsService implements UserDetailsService {
                 authorities
         );
     }
+
+    /**
+     * The principal for an access token that does not carry the user's id yet.
+     */
+    @Transactional(readOnly = true)
+    public Optional<AuthenticatedUser> loadAuthenticatedUser(String email) {
+        return userRepository.findByEmail(email)
+                .map(user -> new AuthenticatedUser(user.getId(), user.getEmail(), new ArrayList<>(user.getRoles())));
+    }
 }
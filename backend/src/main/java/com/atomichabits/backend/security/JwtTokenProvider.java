@@ -1,33 +1,82 @@
 package com.atomichabits.backend.security;
 
+import com.atomichabits.backend.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.util.Base64;
-import java.util.Date;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Generates and validates JSON Web Tokens (JWT) for user authentication.
  *
  * <p>The signing key is read from {@code spring.security.jwt.secret} and
  * must be a Base64-encoded string of at least 256 bits (32 bytes) for HS256.</p>
+ *
+ * <p>Besides the email as subject, tokens carry the user's id and roles, so requests are
+ * authenticated without loading the user.</p>
+ *
+ * <p>The key and parser are built once. Tokens that passed verification are remembered by their
+ * SHA-256 digest until they expire, so a client sending the same access token on every request
+ * pays for the signature check and claims parsing only once. The cache is bounded by
+ * {@code app.jwt.max-cached-tokens}; 0 turns it off.</p>
  */
 @Slf4j
 @Component
 public class JwtTokenProvider {
 
-    @Value("${spring.security.jwt.secret}")
-    private String jwtSecret;
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+    static final String METRIC = "jwt.verification";
 
-    @Value("${spring.security.jwt.expiration}")
-    private int jwtExpirationMs;
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final Key key;
+    private final JwtParser parser;
+    private final int jwtExpirationMs;
+    private final int maxCachedTokens;
+    private final Map<String, VerifiedToken> verifiedTokens;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer verificationTimer;
+
+    public JwtTokenProvider(@Value("${spring.security.jwt.secret}") String jwtSecret,
+                            @Value("${spring.security.jwt.expiration}") int jwtExpirationMs,
+                            @Value("${app.jwt.max-cached-tokens:10000}") int maxCachedTokens,
+                            MeterRegistry meterRegistry) {
+        this.key = key(jwtSecret);
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.maxCachedTokens = maxCachedTokens;
+        this.verifiedTokens = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > JwtTokenProvider.this.maxCachedTokens;
+            }
+        });
+        this.cacheHits = meterRegistry.counter(METRIC + ".cache", "result", "hit");
+        this.cacheMisses = meterRegistry.counter(METRIC + ".cache", "result", "miss");
+        this.verificationTimer = meterRegistry.timer(METRIC + ".time");
+    }
 
-    private Key key() {
+    private static Key key(String jwtSecret) {
         byte[] keyBytes;
         try {
             keyBytes = Base64.getDecoder().decode(jwtSecret);
@@ -38,36 +87,64 @@ public class JwtTokenProvider {
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
-    public String generateToken(Authentication authentication) {
-        String username = authentication.getName();
-        return generateTokenFromUsername(username);
+    public String generateToken(User user) {
+        return generateToken(new AuthenticatedUser(user.getId(), user.getEmail(), new ArrayList<>(user.getRoles())));
     }
 
-    public String generateTokenFromUsername(String username) {
+    public String generateToken(AuthenticatedUser user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
         return Jwts.builder()
-                .setSubject(username)
+                .setSubject(user.email())
+                .claim(USER_ID_CLAIM, user.id())
+                .claim(ROLES_CLAIM, user.roles())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Validates the token and reads the caller from its claims. Tokens issued before the id was
+     * embedded yield a user with a null id and no roles.
+     *
+     * @return the caller, or empty if the token is invalid or expired
+     */
+    public Optional<AuthenticatedUser> parseToken(String authToken) {
+        if (maxCachedTokens <= 0) {
+            return verify(authToken).map(VerifiedToken::user);
+        }
+        String digest = digest(authToken);
+        VerifiedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (cached.expiresAt() > System.currentTimeMillis()) {
+                cacheHits.increment();
+                return Optional.of(cached.user());
+            }
+            // Expired: verify again so the rejection is logged like any other
+            verifiedTokens.remove(digest);
+        }
+        cacheMisses.increment();
+        Optional<VerifiedToken> verified = verify(authToken);
+        // Tokens without an expiry are not remembered
+        verified.filter(token -> token.expiresAt() > 0)
+                .ifPresent(token -> verifiedTokens.put(digest, token));
+        return verified.map(VerifiedToken::user);
     }
 
-    public boolean validateJwtToken(String authToken) {
+    private Optional<VerifiedToken> verify(String authToken) {
+        long start = System.nanoTime();
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parseClaimsJws(authToken);
-            return true;
+            Claims claims = parser.parseClaimsJws(authToken).getBody();
+            Number userId = claims.get(USER_ID_CLAIM, Number.class);
+            List<?> roles = claims.get(ROLES_CLAIM, List.class);
+            AuthenticatedUser user = new AuthenticatedUser(
+                    userId != null ? userId.longValue() : null,
+                    claims.getSubject(),
+                    roles != null ? roles.stream().map(String::valueOf).collect(Collectors.toList()) : null);
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0;
+            return Optional.of(new VerifiedToken(user, expiresAt));
         } catch (ExpiredJwtException e) {
             log.warn("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
@@ -78,7 +155,19 @@ public class JwtTokenProvider {
             log.warn("JWT signature validation failed: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.warn("JWT claims string is empty: {}", e.getMessage());
+        } finally {
+            verificationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        return false;
+        return Optional.empty();
+    }
+
+    // Only digests are kept, so the cache does not hold usable bearer tokens
+    private static String digest(String token) {
+        MessageDigest sha256 = SHA_256.get();
+        sha256.reset();
+        return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private record VerifiedToken(AuthenticatedUser user, long expiresAt) {
     }
 }
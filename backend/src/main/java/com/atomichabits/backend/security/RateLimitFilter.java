@@ -0,0 +1,86 @@
+package com.atomichabits.backend.security;
+
+import com.atomichabits.backend.service.RateLimiterService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies the {@code coach} and {@code habits} rate limits. Runs after
+ * {@link JwtAuthenticationFilter}, so signed-in callers are limited by user id and anyone else by
+ * address. Only added to the security filter chain, not registered as a servlet filter on its own.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Map<String, String> GROUPS = Map.of(
+            "/api/coach", "coach",
+            "/api/habits", "habits");
+
+    private final RateLimiterService rateLimiterService;
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(RateLimiterService rateLimiterService, MessageSource messageSource, ObjectMapper objectMapper) {
+        this.rateLimiterService = rateLimiterService;
+        this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String group = groupOf(request);
+        if (group == null || rateLimiterService.tryAcquire(group, callerOf(request))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String message = messageSource.getMessage("error.too.many.requests", null, "Too many requests. Please try again later.", LocaleContextHolder.getLocale());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now().toString());
+        body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        body.put("error", message);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimiterService.retryAfterSeconds(group)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(), body);
+    }
+
+    private static String groupOf(HttpServletRequest request) {
+        if ("OPTIONS".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, String> group : GROUPS.entrySet()) {
+            String prefix = group.getKey();
+            if (path.equals(prefix) || path.startsWith(prefix + "/")) {
+                return group.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String callerOf(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null) {
+            return "user:" + user.id();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -1,6 +1,10 @@
 package com.atomichabits.backend.security;
 
+import com.atomichabits.backend.service.RateLimiterService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -25,12 +29,27 @@ import java.util.List;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
 
     @Value("${app.cors.allowed-origins:http://localhost:5173}")
     private String allowedOrigins;
 
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    @Value("${app.auth.password-hashing.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${app.auth.password-hashing.threads:2}")
+    private int hashingThreads;
+
+    @Value("${app.auth.password-hashing.queue-capacity:32}")
+    private int hashingQueueCapacity;
+
+    @Value("${app.auth.password-hashing.wait-timeout-ms:5000}")
+    private long hashingWaitTimeoutMs;
+
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, RateLimiterService rateLimiterService,
+                          MessageSource messageSource, ObjectMapper objectMapper) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = new RateLimitFilter(rateLimiterService, messageSource, objectMapper);
     }
 
     @Bean
@@ -49,6 +68,7 @@ public class SecurityConfig {
                 .headers(headers -> headers.frameOptions(org.springframework.security.config.annotation.web.configurers.HeadersConfigurer.FrameOptionsConfig::disable)); // For H2 Console
 
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -72,8 +92,13 @@ public class SecurityConfig {
         return authenticationConfiguration.getAuthenticationManager();
     }
 
+    /**
+     * BCrypt off the request threads; the strength only applies to new hashes, existing ones keep
+     * the cost they were created with.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength),
+                hashingThreads, hashingQueueCapacity, hashingWaitTimeoutMs, meterRegistry);
     }
 }
@@ -1,22 +1,45 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.dto.ChatStreamEvent;
 import io.agentscope.core.ReActAgent;
+import io.agentscope.core.agent.Event;
+import io.agentscope.core.agent.EventType;
+import io.agentscope.core.agent.StreamOptions;
 import io.agentscope.core.message.Msg;
 import io.agentscope.core.message.MsgRole;
 import io.agentscope.core.message.TextBlock;
-import io.agentscope.core.model.OpenAIChatModel;
+import io.agentscope.core.message.ToolResultBlock;
 import io.agentscope.core.tool.Toolkit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-
-import java.time.Duration;
-
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One-shot agent calls for chat, greetings, reviews, reminders and memory work. Models and
+ * toolkits come from the {@link ChatModelPool}; only the agent, which carries the system prompt
+ * and the conversation, is built per call.
+ */
 @Slf4j
 @Service
 public class AgentScopeClient {
 
+    private static final String FAILED_REPLY = "I am currently unable to connect to the AI service (Invalid API Key or Service Unavailable). " +
+            "Please check your backend configuration. In the meantime, I'm here to support your habit tracking!";
+
+    private final ChatModelPool chatModelPool;
+    private final Timer callTimer;
+    private final AtomicInteger activeCalls = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
     @Value("${agentscope.model.api-key}")
     private String apiKey;
 
@@ -29,93 +52,142 @@ public class AgentScopeClient {
     @Value("${agentscope.enabled:true}")
     private boolean agentscopeEnabled;
 
-    @Value("${agentscope.proxy.host:}")
-    private String proxyHost;
-
-    @Value("${agentscope.proxy.port:0}")
-    private int proxyPort;
-
-    @Value("${agentscope.proxy.enabled:false}")
-    private boolean proxyEnabled;
+    public AgentScopeClient(ChatModelPool chatModelPool, MeterRegistry meterRegistry) {
+        this.chatModelPool = chatModelPool;
+        this.callTimer = meterRegistry.timer("llm.call.time");
+        meterRegistry.gauge("llm.calls.active", activeCalls);
+        meterRegistry.gauge("llm.streams.active", activeStreams);
+    }
 
     public String call(String userMessage, String systemPrompt) {
         return call(userMessage, systemPrompt, (Object[]) null);
     }
 
     public String call(String userMessage, String systemPrompt, Object... tools) {
-        if (!agentscopeEnabled) {
-            return "AI disabled (tests).";
+        String unavailable = unavailableReply();
+        if (unavailable != null) {
+            return unavailable;
         }
-        if (!StringUtils.hasText(apiKey)) {
-            log.warn("AgentScope API Key is missing. Returning fallback response.");
-            return "I am currently unable to connect to the AI service (Missing API Key). Please check your configuration.";
+
+        try {
+            return invoke(userMessage, systemPrompt, tools);
+        } catch (Exception e) {
+            log.error("AI call failed: {}", e.getMessage());
+            return FAILED_REPLY;
         }
+    }
 
-        configureProxy();
+    /**
+     * Like {@link #call(String, String)}, but empty instead of a fallback text when the model is
+     * unavailable, fails or answers with nothing; for replies that are stored rather than shown.
+     */
+    public Optional<String> tryCall(String userMessage, String systemPrompt) {
+        if (unavailableReply() != null) {
+            return Optional.empty();
+        }
 
         try {
-            OpenAIChatModel model = buildModel();
-            ReActAgent agent = buildAgent(model, systemPrompt, tools);
+            return Optional.ofNullable(invoke(userMessage, systemPrompt)).filter(StringUtils::hasText);
+        } catch (Exception e) {
+            log.error("AI call failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
 
-            Msg response = agent.call(Msg.builder()
-                            .role(MsgRole.USER)
-                            .content(TextBlock.builder().text(userMessage).build())
-                            .build())
-                    .block();
+    /**
+     * Whether calls reach a model at all rather than answering with a fallback text.
+     */
+    public boolean isAvailable() {
+        return agentscopeEnabled && StringUtils.hasText(apiKey);
+    }
+
+    private String invoke(String userMessage, String systemPrompt, Object... tools) {
+        Timer.Sample sample = Timer.start();
+        activeCalls.incrementAndGet();
+        try {
+            ReActAgent agent = buildAgent(systemPrompt, tools);
+
+            Msg response = agent.call(userMessage(userMessage)).block();
 
             return response != null ? response.getTextContent() : "";
-        } catch (Exception e) {
-            log.error("AI call failed: {}", e.getMessage());
-            return "I am currently unable to connect to the AI service (Invalid API Key or Service Unavailable). " +
-                    "Please check your backend configuration. In the meantime, I'm here to support your habit tracking!";
+        } finally {
+            activeCalls.decrementAndGet();
+            sample.stop(callTimer);
         }
     }
 
-    private void configureProxy() {
-        if (proxyEnabled) {
-            if (proxyHost != null && !proxyHost.isBlank() && proxyPort > 0) {
-                try {
-                    System.setProperty("http.proxyHost", proxyHost);
-                    System.setProperty("http.proxyPort", String.valueOf(proxyPort));
-                    System.setProperty("https.proxyHost", proxyHost);
-                    System.setProperty("https.proxyPort", String.valueOf(proxyPort));
-                } catch (Exception e) {
-                    log.warn("Failed to configure proxy: {}", e.getMessage());
-                }
-            } else {
-                log.warn("Proxy is enabled but host/port is invalid — skipping proxy configuration.");
+    /**
+     * Streams the reply as it is generated: text as {@link ChatStreamEvent#TOKEN} events and each
+     * finished tool call as a {@link ChatStreamEvent#TOOL} event. The model is only called once
+     * subscribed, and cancelling the subscription cancels the upstream request. A failure ends
+     * the stream with an {@link ChatStreamEvent#ERROR} event carrying the usual fallback text.
+     */
+    public Flux<ChatStreamEvent> stream(String userMessage, String systemPrompt, Object... tools) {
+        String unavailable = unavailableReply();
+        if (unavailable != null) {
+            return Flux.just(ChatStreamEvent.token(unavailable));
+        }
+
+        StreamOptions options = StreamOptions.builder()
+                .eventTypes(EventType.REASONING, EventType.TOOL_RESULT)
+                .incremental(true)
+                .build();
+        return Flux.defer(() -> buildAgent(systemPrompt, tools).stream(userMessage(userMessage), options))
+                .concatMapIterable(AgentScopeClient::toStreamEvents)
+                .onErrorResume(e -> {
+                    log.error("AI stream failed: {}", e.getMessage());
+                    return Flux.just(ChatStreamEvent.error(FAILED_REPLY));
+                })
+                .doOnSubscribe(subscription -> activeStreams.incrementAndGet())
+                .doFinally(signal -> activeStreams.decrementAndGet());
+    }
+
+    private static List<ChatStreamEvent> toStreamEvents(Event event) {
+        Msg message = event.getMessage();
+        if (message == null) {
+            return List.of();
+        }
+        List<ChatStreamEvent> events = new ArrayList<>();
+        if (event.getType() == EventType.TOOL_RESULT) {
+            message.getContent().stream()
+                    .filter(ToolResultBlock.class::isInstance)
+                    .map(block -> ChatStreamEvent.tool(((ToolResultBlock) block).getName()))
+                    .forEach(events::add);
+        } else {
+            String text = message.getTextContent();
+            if (StringUtils.hasLength(text)) {
+                events.add(ChatStreamEvent.token(text));
             }
         }
+        return events;
     }
 
-    private OpenAIChatModel buildModel() {
-        var transportConfig = io.agentscope.core.model.transport.HttpTransportConfig.builder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .readTimeout(Duration.ofMinutes(3))
-                .writeTimeout(Duration.ofSeconds(30))
-                .build();
-        var httpTransport = io.agentscope.core.model.transport.JdkHttpTransport.builder()
-                .config(transportConfig)
-                .build();
-        return OpenAIChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(modelName)
-                .baseUrl(baseUrl)
-                .httpTransport(httpTransport)
+    private String unavailableReply() {
+        if (!agentscopeEnabled) {
+            return "AI disabled (tests).";
+        }
+        if (!StringUtils.hasText(apiKey)) {
+            log.warn("AgentScope API Key is missing. Returning fallback response.");
+            return "I am currently unable to connect to the AI service (Missing API Key). Please check your configuration.";
+        }
+        return null;
+    }
+
+    private static Msg userMessage(String text) {
+        return Msg.builder()
+                .role(MsgRole.USER)
+                .content(TextBlock.builder().text(text).build())
                 .build();
     }
 
-    private ReActAgent buildAgent(OpenAIChatModel model, String systemPrompt, Object... tools) {
+    private ReActAgent buildAgent(String systemPrompt, Object... tools) {
         var builder = ReActAgent.builder()
                 .name("AtomicCoach")
                 .sysPrompt(systemPrompt)
-                .model(model);
+                .model(chatModelPool.model(baseUrl, modelName));
 
-        if (tools != null && tools.length > 0) {
-            Toolkit toolkit = new Toolkit();
-            toolkit.registration()
-                    .tool(tools)
-                    .apply();
+        Toolkit toolkit = chatModelPool.toolkit(tools);
+        if (toolkit != null) {
             builder.toolkit(toolkit);
         }
 
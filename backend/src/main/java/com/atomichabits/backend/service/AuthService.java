@@ -1,15 +1,13 @@
 package com.atomichabits.backend.service;
 
-import com.atomichabits.backend.dto.DeviceMetadata;
 import com.atomichabits.backend.dto.LoginRequest;
 import com.atomichabits.backend.dto.RegisterRequest;
 import com.atomichabits.backend.exception.AccountLockedException;
 import com.atomichabits.backend.exception.RateLimitExceededException;
+import com.atomichabits.backend.exception.ServiceBusyException;
 import com.atomichabits.backend.exception.TokenRefreshException;
-import com.atomichabits.backend.model.LoginHistory;
 import com.atomichabits.backend.model.RefreshToken;
 import com.atomichabits.backend.model.User;
-import com.atomichabits.backend.repository.LoginHistoryRepository;
 import com.atomichabits.backend.repository.UserRepository;
 import com.atomichabits.backend.security.JwtTokenProvider;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,7 +20,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
@@ -46,10 +43,7 @@ public class AuthService {
     private RefreshTokenService refreshTokenService;
 
     @Autowired
-    private LoginHistoryRepository loginHistoryRepository;
-
-    @Autowired
-    private DeviceService deviceService;
+    private LoginHistoryService loginHistoryService;
 
     @Autowired
     private MessageSource messageSource;
@@ -58,24 +52,15 @@ public class AuthService {
     private RateLimiterService rateLimiterService;
 
     public AuthResult login(LoginRequest loginRequest, String ipAddress, String userAgent) {
-        if (rateLimiterService.isBlocked(ipAddress)) {
+        if (!rateLimiterService.tryAcquire(RateLimiterService.AUTH, "ip:" + ipAddress)) {
             String message = messageSource.getMessage("error.too.many.requests", null, "Too many requests. Please try again later.", LocaleContextHolder.getLocale());
             throw new RateLimitExceededException(message);
         }
-        rateLimiterService.recordRequest(ipAddress);
 
         Optional<User> userOpt = userRepository.findByEmail(loginRequest.getEmail());
-        if (userOpt.isPresent()) {
-            long failedAttempts = loginHistoryRepository.countByUserAndStatusAndLoginTimeAfter(
-                    userOpt.get(),
-                    "FAILED",
-                    LocalDateTime.now().minusMinutes(15)
-            );
-
-            if (failedAttempts >= 5) {
-                String message = messageSource.getMessage("error.account.locked", null, "Account locked due to too many failed attempts. Please try again in 15 minutes.", LocaleContextHolder.getLocale());
-                throw new AccountLockedException(message);
-            }
+        if (userOpt.isPresent() && loginHistoryService.isLockedOut(userOpt.get().getId())) {
+            String message = messageSource.getMessage("error.account.locked", null, "Account locked due to too many failed attempts. Please try again in 15 minutes.", LocaleContextHolder.getLocale());
+            throw new AccountLockedException(message);
         }
 
         try {
@@ -84,8 +69,8 @@ public class AuthService {
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
-            String jwt = tokenProvider.generateToken(authentication);
             User user = userOpt.orElseThrow();
+            String jwt = tokenProvider.generateToken(user);
 
             String deviceId = loginRequest.getDeviceId();
             if (deviceId != null && !deviceId.trim().isEmpty()) {
@@ -96,12 +81,15 @@ public class AuthService {
 
             RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId(), ipAddress, userAgent, deviceId);
 
-            recordLoginHistory(user, ipAddress, userAgent, "SUCCESS");
+            loginHistoryService.record(user.getId(), ipAddress, userAgent, LoginHistoryService.SUCCESS);
 
             return new AuthResult(jwt, refreshToken.getToken());
 
+        } catch (ServiceBusyException e) {
+            // The password was never checked, so this must not count towards the lockout
+            throw e;
         } catch (Exception e) {
-            userOpt.ifPresent(user -> recordLoginHistory(user, ipAddress, userAgent, "FAILED"));
+            userOpt.ifPresent(user -> loginHistoryService.record(user.getId(), ipAddress, userAgent, LoginHistoryService.FAILED));
             throw e;
         }
     }
@@ -113,7 +101,7 @@ public class AuthService {
                     // Rotate the token: delete old, create new
                     RefreshToken newRefreshToken = refreshTokenService.rotate(token.getToken(), ipAddress, userAgent);
 
-                    String accessToken = tokenProvider.generateTokenFromUsername(token.getUser().getEmail());
+                    String accessToken = tokenProvider.generateToken(token.getUser());
 
                     return new AuthResult(accessToken, newRefreshToken.getToken());
                 })
@@ -127,11 +115,10 @@ public class AuthService {
     }
 
     public void register(RegisterRequest registerRequest, String ipAddress) {
-        if (rateLimiterService.isBlocked(ipAddress)) {
+        if (!rateLimiterService.tryAcquire(RateLimiterService.AUTH, "ip:" + ipAddress)) {
             String message = messageSource.getMessage("error.too.many.requests", null, "Too many requests. Please try again later.", LocaleContextHolder.getLocale());
             throw new RateLimitExceededException(message);
         }
-        rateLimiterService.recordRequest(ipAddress);
 
         if (userRepository.existsByEmail(registerRequest.getEmail())) {
             String message = messageSource.getMessage("auth.email.taken", null, "Email is already taken.", LocaleContextHolder.getLocale());
@@ -143,28 +130,13 @@ public class AuthService {
                 .password(passwordEncoder.encode(registerRequest.getPassword()))
                 .identityStatement(registerRequest.getIdentityStatement())
                 .roles(new HashSet<>(Collections.singletonList("ROLE_USER")))
+                // Writers keep the rollup current from the first completion on
+                .dailyActivityBackfilled(true)
                 .build();
 
         userRepository.save(user);
     }
 
-    private void recordLoginHistory(User user, String ipAddress, String userAgent, String status) {
-        DeviceMetadata metadata = deviceService.parseUserAgent(userAgent);
-        String location = deviceService.getLocationFromIp(ipAddress);
-
-        LoginHistory history = LoginHistory.builder()
-                .user(user)
-                .ipAddress(ipAddress)
-                .deviceInfo(userAgent)
-                .browser(metadata.getBrowser())
-                .operatingSystem(metadata.getOperatingSystem())
-                .deviceType(metadata.getDeviceType())
-                .location(location)
-                .status(status)
-                .build();
-        loginHistoryRepository.save(history);
-    }
-
     @lombok.Getter
     public static class AuthResult {
         private final String accessToken;
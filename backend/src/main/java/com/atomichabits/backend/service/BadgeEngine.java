@@ -0,0 +1,262 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Badge;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.model.UserDailyActivity;
+import com.atomichabits.backend.repository.BadgeRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Awards badges in the background when habits are completed, so reads never write.
+ *
+ * <p>A {@link HabitCompletedEvent} only re-evaluates the {@link BadgeRule rules} the new
+ * completions can affect and the user has not earned yet, checked against a cached mask of
+ * earned badges. Users are spread over single-threaded workers by id, so one user's badges are
+ * always evaluated and written by the same thread and a rule is never awarded twice.</p>
+ */
+@Service
+public class BadgeEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BadgeEngine.class);
+
+    private final BadgeRepository badgeRepository;
+    private final UserRepository userRepository;
+    private final HabitRepository habitRepository;
+    private final CompletionIndexService completionIndexService;
+    private final DailyActivityService dailyActivityService;
+    private final ChangeLogService changeLogService;
+    private final GamificationService gamificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService[] workers;
+    private final Map<Long, Long> earnedMasks = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > maxCachedUsers;
+        }
+    });
+
+    @Value("${app.badges.max-cached-users:10000}")
+    private int maxCachedUsers = 10000;
+
+    public BadgeEngine(BadgeRepository badgeRepository,
+                       UserRepository userRepository,
+                       HabitRepository habitRepository,
+                       CompletionIndexService completionIndexService,
+                       DailyActivityService dailyActivityService,
+                       ChangeLogService changeLogService,
+                       GamificationService gamificationService,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.badges.worker-threads:2}") int workerThreads) {
+        this.badgeRepository = badgeRepository;
+        this.userRepository = userRepository;
+        this.habitRepository = habitRepository;
+        this.completionIndexService = completionIndexService;
+        this.dailyActivityService = dailyActivityService;
+        this.changeLogService = changeLogService;
+        this.gamificationService = gamificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = new ExecutorService[Math.max(1, workerThreads)];
+        for (int i = 0; i < workers.length; i++) {
+            String name = "badge-engine-" + (i + 1);
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @TransactionalEventListener
+    public void onHabitCompleted(HabitCompletedEvent event) {
+        Set<BadgeRule> affected = EnumSet.noneOf(BadgeRule.class);
+        for (BadgeRule rule : BadgeRule.values()) {
+            if (event.completedAts().stream().anyMatch(rule::isAffectedBy)) {
+                affected.add(rule);
+            }
+        }
+        submit(event.userId(), () -> award(event.userId(), affected, event.completedAts()))
+                .exceptionally(e -> {
+                    logger.warn("Failed to evaluate badges for user {}: {}", event.userId(), e.getMessage());
+                    return Collections.emptyList();
+                });
+    }
+
+    /**
+     * Evaluates {@code rules} against the full history of each user, on the users' workers, and
+     * waits for the result. Used to hand out rules added after users had already qualified.
+     *
+     * @return number of badges awarded
+     */
+    public int backfill(Collection<Long> userIds, Set<BadgeRule> rules) {
+        List<CompletableFuture<List<BadgeRule>>> results = userIds.stream()
+                .map(userId -> submit(userId, () -> award(userId, rules, null))
+                        .exceptionally(e -> {
+                            logger.warn("Failed to backfill badges for user {}: {}", userId, e.getMessage());
+                            return Collections.emptyList();
+                        }))
+                .collect(Collectors.toList());
+        return results.stream().mapToInt(result -> result.join().size()).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        // Give queued awards a moment to land; anything left is picked up by the next completion
+        for (ExecutorService worker : workers) {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private CompletableFuture<List<BadgeRule>> submit(Long userId, Supplier<List<BadgeRule>> task) {
+        return CompletableFuture.supplyAsync(task, workers[Math.floorMod(userId.hashCode(), workers.length)]);
+    }
+
+    /**
+     * @param newCompletions the completions that triggered the evaluation, or null to test the time
+     *                       rules against the whole history
+     */
+    List<BadgeRule> award(Long userId, Set<BadgeRule> rules, List<LocalDateTime> newCompletions) {
+        long earned = earnedMask(userId);
+        List<BadgeRule> candidates = rules.stream()
+                .filter(rule -> (earned & rule.bit()) == 0)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<BadgeRule> awarded = transactionTemplate.execute(status -> {
+            UserFacts facts = new UserFacts(userId, newCompletions);
+            List<BadgeRule> met = candidates.stream()
+                    .filter(rule -> rule.isMet(facts))
+                    .collect(Collectors.toList());
+            if (met.isEmpty()) {
+                return met;
+            }
+            User user = userRepository.getReferenceById(userId);
+            List<Badge> badges = met.stream()
+                    .map(rule -> Badge.builder()
+                            .user(user)
+                            .name(rule.getName())
+                            .description(rule.getDescription())
+                            .icon(rule.getIcon())
+                            .build())
+                    .collect(Collectors.toList());
+            badgeRepository.saveAll(badges);
+            changeLogService.record(userId, EntityType.BADGE, Operation.UPSERT,
+                    badges.stream().map(Badge::getId).collect(Collectors.toList()));
+            return met;
+        });
+
+        if (!awarded.isEmpty()) {
+            long mask = awarded.stream().mapToLong(BadgeRule::bit).reduce(0L, (a, b) -> a | b);
+            earnedMasks.merge(userId, mask, (a, b) -> a | b);
+            gamificationService.evictUserBadges(userId);
+            logger.debug("Awarded {} to user {}", awarded, userId);
+        }
+        return awarded;
+    }
+
+    private long earnedMask(Long userId) {
+        Long mask = earnedMasks.get(userId);
+        if (mask != null) {
+            return mask;
+        }
+        long loaded = BadgeRule.maskOf(badgeRepository.findByUserId(userId).stream()
+                .map(Badge::getName)
+                .collect(Collectors.toSet()));
+        // Only this user's worker awards badges, so nothing newer can have been merged meanwhile
+        earnedMasks.put(userId, loaded);
+        return loaded;
+    }
+
+    // Reads what the rules ask for, at most once each
+    private final class UserFacts implements BadgeRule.Facts {
+        private final Long userId;
+        private final List<LocalDateTime> newCompletions;
+        private Integer totalCompletions;
+        private Integer currentStreak;
+        private List<UserDailyActivity> completionDays;
+
+        UserFacts(Long userId, List<LocalDateTime> newCompletions) {
+            this.userId = userId;
+            this.newCompletions = newCompletions;
+        }
+
+        @Override
+        public int totalCompletions() {
+            loadTotals();
+            return totalCompletions;
+        }
+
+        @Override
+        public int currentStreak() {
+            loadTotals();
+            return currentStreak;
+        }
+
+        // Only each day's first and last completion times are kept, which is exact for the late badge.
+        // The early badge looks at those two times, so a 06:30 completion between a 04:00 and a 21:00 one is not seen.
+        @Override
+        public Collection<LocalDateTime> completionTimes() {
+            if (newCompletions != null) {
+                return newCompletions;
+            }
+            return completionDays().stream()
+                    .flatMap(day -> Stream.of(day.getFirstCompletionAt(), day.getLastCompletionAt()))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public Set<DayOfWeek> completedDaysOfWeek() {
+            return completionDays().stream()
+                    .map(day -> day.getActivityDay().getDayOfWeek())
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(DayOfWeek.class)));
+        }
+
+        private void loadTotals() {
+            if (totalCompletions == null) {
+                List<Habit> habits = habitRepository.findByUserIdAndArchivedAtIsNull(userId);
+                Collection<CompletionBitmap> bitmaps = habits.isEmpty()
+                        ? Collections.emptyList()
+                        : completionIndexService.getBitmaps(habits).values();
+                // Same figures as the stats endpoint: a day counts if any habit was completed on it
+                LocalDate today = LocalDate.now();
+                totalCompletions = bitmaps.stream().mapToInt(CompletionBitmap::cardinality).sum();
+                currentStreak = CompletionBitmap.union(bitmaps, today).currentStreak(today, CompletionBitmap.EVERY_DAY);
+            }
+        }
+
+        private List<UserDailyActivity> completionDays() {
+            if (completionDays == null) {
+                completionDays = dailyActivityService.getCompletionDays(userId);
+            }
+            return completionDays;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.atomichabits.backend.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The badges a user can earn. {@code badges.name} and {@code badges.description} store the message
+ * keys, and each rule's ordinal is its bit in an earned-badge mask, so new rules go at the end.
+ */
+public enum BadgeRule {
+
+    STREAK_3("badge.streak.3", "flame", Kind.STREAK, 3),
+    STREAK_7("badge.streak.7", "zap", Kind.STREAK, 7),
+    STREAK_14("badge.streak.14", "zap-filled", Kind.STREAK, 14),
+    STREAK_30("badge.streak.30", "diamond", Kind.STREAK, 30),
+    COUNT_1("badge.count.1", "footprints", Kind.COUNT, 1),
+    COUNT_10("badge.count.10", "arrow-up", Kind.COUNT, 10),
+    COUNT_50("badge.count.50", "star", Kind.COUNT, 50),
+    COUNT_100("badge.count.100", "trophy", Kind.COUNT, 100),
+    EARLY_BIRD("badge.time.early", "sunrise", Kind.EARLY, 0),
+    NIGHT_OWL("badge.time.late", "moon", Kind.LATE, 0),
+    WEEKEND_WARRIOR("badge.time.weekend", "calendar", Kind.WEEKEND, 0);
+
+    /**
+     * What a rule needs to know about the user. Implementations compute each figure at most once
+     * and only when a rule asks for it.
+     */
+    public interface Facts {
+        int totalCompletions();
+
+        int currentStreak();
+
+        /**
+         * Completion times to test the time-of-day rules against.
+         */
+        Collection<LocalDateTime> completionTimes();
+
+        Set<DayOfWeek> completedDaysOfWeek();
+    }
+
+    private enum Kind { STREAK, COUNT, EARLY, LATE, WEEKEND }
+
+    private final String key;
+    private final String icon;
+    private final Kind kind;
+    private final int threshold;
+
+    BadgeRule(String key, String icon, Kind kind, int threshold) {
+        this.key = key;
+        this.icon = icon;
+        this.kind = kind;
+        this.threshold = threshold;
+    }
+
+    public String getName() {
+        return key + ".title";
+    }
+
+    public String getDescription() {
+        return key + ".desc";
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Whether a completion at {@code completedAt} can make this rule hold when it did not before.
+     * Streaks and counts move with every completion; the time rules only with completions at
+     * the matching time or day.
+     */
+    public boolean isAffectedBy(LocalDateTime completedAt) {
+        return switch (kind) {
+            case STREAK, COUNT -> true;
+            case EARLY -> isEarlyMorning(completedAt.toLocalTime());
+            case LATE -> isLateNight(completedAt.toLocalTime());
+            case WEEKEND -> isWeekend(completedAt.getDayOfWeek());
+        };
+    }
+
+    public boolean isMet(Facts facts) {
+        return switch (kind) {
+            case STREAK -> facts.currentStreak() >= threshold;
+            case COUNT -> facts.totalCompletions() >= threshold;
+            case EARLY -> facts.completionTimes().stream().anyMatch(t -> isEarlyMorning(t.toLocalTime()));
+            case LATE -> facts.completionTimes().stream().anyMatch(t -> isLateNight(t.toLocalTime()));
+            // Has completed habits on a Saturday and on a Sunday, not necessarily the same weekend
+            case WEEKEND -> facts.completedDaysOfWeek().containsAll(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        };
+    }
+
+    /**
+     * Mask of the rules among the given badge names; names of retired rules are ignored.
+     */
+    public static long maskOf(Collection<String> badgeNames) {
+        long mask = 0;
+        for (BadgeRule rule : values()) {
+            if (badgeNames.contains(rule.getName())) {
+                mask |= rule.bit();
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isEarlyMorning(LocalTime time) {
+        return time.isAfter(LocalTime.of(5, 0)) && time.isBefore(LocalTime.of(8, 0));
+    }
+
+    private static boolean isLateNight(LocalTime time) {
+        return time.isAfter(LocalTime.of(22, 0)) || time.isBefore(LocalTime.of(2, 0));
+    }
+
+    private static boolean isWeekend(DayOfWeek day) {
+        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+    }
+}
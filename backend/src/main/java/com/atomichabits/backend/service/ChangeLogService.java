@@ -0,0 +1,128 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
+import com.atomichabits.backend.repository.ChangeLogRepository;
+import com.atomichabits.backend.repository.UserSyncStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Write side of delta sync. Writers call it inside their own transaction so the change
+ * entries commit together with the data they describe.
+ */
+@Service
+public class ChangeLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogService.class);
+
+    private final ChangeLogRepository changeLogRepository;
+    private final UserSyncStateRepository syncStateRepository;
+    private final UserVersionService userVersionService;
+    private final UserAggregateService userAggregateService;
+
+    @Value("${app.sync.retention-days:30}")
+    private int retentionDays = 30;
+
+    public ChangeLogService(ChangeLogRepository changeLogRepository, UserSyncStateRepository syncStateRepository,
+                            UserVersionService userVersionService, UserAggregateService userAggregateService) {
+        this.changeLogRepository = changeLogRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.userVersionService = userVersionService;
+        this.userAggregateService = userAggregateService;
+    }
+
+    @Transactional
+    public void record(Long userId, EntityType type, Operation operation, Long entityId) {
+        record(userId, type, operation, List.of(entityId));
+    }
+
+    @Transactional
+    public void record(Long userId, EntityType type, Operation operation, Collection<Long> entityIds) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        long version = nextVersion(userId);
+        save(userId, version, entityIds.stream()
+                .map(id -> entry(userId, version, type, operation, id, null))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Records completion changes, keyed by habit id and day.
+     */
+    @Transactional
+    public void recordCompletions(Long userId, Operation operation, Map<Long, ? extends Collection<LocalDate>> daysByHabit) {
+        if (daysByHabit.values().stream().allMatch(Collection::isEmpty)) {
+            return;
+        }
+        long version = nextVersion(userId);
+        save(userId, version, daysByHabit.entrySet().stream()
+                .flatMap(e -> e.getValue().stream()
+                        .map(day -> entry(userId, version, EntityType.COMPLETION, operation, e.getKey(), day)))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Current version for the user; 0 if nothing was ever recorded.
+     */
+    public long currentVersion(Long userId) {
+        Long version = syncStateRepository.findVersion(userId);
+        return version != null ? version : 0L;
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        changeLogRepository.deleteByUserIdInBulk(userId);
+        syncStateRepository.deleteById(userId);
+    }
+
+    /**
+     * Drops entries past the retention window. Clients holding an older token get a full sync.
+     */
+    @Scheduled(cron = "${app.sync.prune-cron:0 15 4 * * ?}")
+    @Transactional
+    public void pruneOldEntries() {
+        int deleted = changeLogRepository.deleteOlderThan(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            logger.info("Pruned {} change log entries older than {} days", deleted, retentionDays);
+        }
+    }
+
+    private long nextVersion(Long userId) {
+        syncStateRepository.insertIfAbsent(userId);
+        syncStateRepository.increment(userId);
+        long version = syncStateRepository.findVersion(userId);
+        userVersionService.advanceAfterCommit(userId, version);
+        return version;
+    }
+
+    private void save(Long userId, long version, List<ChangeLogEntry> entries) {
+        changeLogRepository.saveAll(entries);
+        userAggregateService.publishAfterCommit(userId, version, entries);
+    }
+
+    private static ChangeLogEntry entry(Long userId, long version, EntityType type, Operation operation,
+                                        Long entityId, LocalDate day) {
+        return ChangeLogEntry.builder()
+                .userId(userId)
+                .version(version)
+                .entityType(type)
+                .entityId(entityId)
+                .entityDay(day)
+                .operation(operation)
+                .build();
+    }
+}
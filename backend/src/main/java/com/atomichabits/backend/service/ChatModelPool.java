@@ -0,0 +1,165 @@
+package com.atomichabits.backend.service;
+
+import io.agentscope.core.model.OpenAIChatModel;
+import io.agentscope.core.model.transport.HttpTransport;
+import io.agentscope.core.model.transport.HttpTransportConfig;
+import io.agentscope.core.model.transport.JdkHttpTransport;
+import io.agentscope.core.tool.Toolkit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived chat models, one per base URL, model name and streaming mode, each with its own
+ * HTTP client so connections (and their TLS sessions) are kept alive and reused across calls.
+ * The proxy is set on those clients rather than through the JVM-wide system properties.
+ *
+ * <p>Toolkits are registered once per set of tool objects and shared by every agent using that
+ * set; the tool beans are singletons, so a set is recognised by its members.</p>
+ *
+ * <p>Metrics: {@code llm.model.lookups{result=created|reused}}, {@code llm.models} and the
+ * HTTP clients' shared executor as {@code llm.http.threads.active} and
+ * {@code llm.http.threads.queued}. The JDK client keeps no connection statistics of its own, so
+ * reuse is reported per model.</p>
+ */
+@Slf4j
+@Component
+public class ChatModelPool {
+
+    private final ConcurrentMap<ModelKey, PooledModel> models = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<Object>, Toolkit> toolkits = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor httpExecutor;
+    private final Counter created;
+    private final Counter reused;
+
+    @Value("${agentscope.model.api-key:}")
+    private String apiKey;
+
+    @Value("${agentscope.proxy.enabled:false}")
+    private boolean proxyEnabled;
+
+    @Value("${agentscope.proxy.host:}")
+    private String proxyHost;
+
+    @Value("${agentscope.proxy.port:0}")
+    private int proxyPort;
+
+    public ChatModelPool(MeterRegistry meterRegistry,
+                         @Value("${agentscope.http.threads:8}") int httpThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.httpExecutor = new ThreadPoolExecutor(httpThreads, httpThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "llm-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpExecutor.allowCoreThreadTimeOut(true);
+        this.created = meterRegistry.counter("llm.model.lookups", "result", "created");
+        this.reused = meterRegistry.counter("llm.model.lookups", "result", "reused");
+        meterRegistry.gauge("llm.models", models, ConcurrentMap::size);
+        meterRegistry.gauge("llm.http.threads.active", httpExecutor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("llm.http.threads.queued", httpExecutor, executor -> executor.getQueue().size());
+    }
+
+    /**
+     * The model for {@code baseUrl} and {@code modelName} with the provider's default streaming mode.
+     */
+    public OpenAIChatModel model(String baseUrl, String modelName) {
+        return model(new ModelKey(baseUrl, modelName, null));
+    }
+
+    public OpenAIChatModel model(String baseUrl, String modelName, boolean stream) {
+        return model(new ModelKey(baseUrl, modelName, stream));
+    }
+
+    private OpenAIChatModel model(ModelKey key) {
+        PooledModel pooled = models.get(key);
+        if (pooled != null) {
+            reused.increment();
+            return pooled.model();
+        }
+        return models.computeIfAbsent(key, k -> {
+            created.increment();
+            return build(k);
+        }).model();
+    }
+
+    /**
+     * @return a toolkit with {@code tools} registered, or null if there are none
+     */
+    public Toolkit toolkit(Object... tools) {
+        if (tools == null || tools.length == 0) {
+            return null;
+        }
+        return toolkits.computeIfAbsent(Arrays.asList(tools.clone()), key -> {
+            Toolkit toolkit = new Toolkit();
+            toolkit.registration()
+                    .tool(key.toArray())
+                    .apply();
+            return toolkit;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        models.values().forEach(pooled -> pooled.transport().close());
+        models.clear();
+        httpExecutor.shutdown();
+    }
+
+    private PooledModel build(ModelKey key) {
+        HttpClient.Builder client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(httpExecutor);
+        if (proxyEnabled) {
+            if (proxyHost != null && !proxyHost.isBlank() && proxyPort > 0) {
+                client.proxy(ProxySelector.of(new InetSocketAddress(proxyHost, proxyPort)));
+            } else {
+                log.warn("Proxy is enabled but host/port is invalid — skipping proxy configuration.");
+            }
+        }
+
+        var transportConfig = HttpTransportConfig.builder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .readTimeout(Duration.ofMinutes(3))
+                .writeTimeout(Duration.ofSeconds(30))
+                .build();
+        JdkHttpTransport transport = JdkHttpTransport.builder()
+                .config(transportConfig)
+                .client(client.build())
+                .build();
+
+        var model = OpenAIChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(key.modelName())
+                .baseUrl(key.baseUrl())
+                .httpTransport(transport);
+        if (key.stream() != null) {
+            model.stream(key.stream());
+        }
+        log.info("Created chat model {} at {}", key.modelName(), key.baseUrl());
+        return new PooledModel(model.build(), transport);
+    }
+
+    private record ModelKey(String baseUrl, String modelName, Boolean stream) {
+    }
+
+    private record PooledModel(OpenAIChatModel model, HttpTransport transport) {
+    }
+}
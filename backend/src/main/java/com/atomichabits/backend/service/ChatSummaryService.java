@@ -0,0 +1,169 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.CoachPromptBudgetProperties;
+import com.atomichabits.backend.config.CoachPromptProperties;
+import com.atomichabits.backend.model.ChatMessage;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.repository.ChatMessageRepository;
+import com.atomichabits.backend.repository.ChatSummaryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps each user's {@link ChatSummary} rolling forward so prompts can quote only the most
+ * recent messages.
+ *
+ * <p>After a turn, once at least {@code summary-batch-messages} messages have fallen out of the
+ * {@code recent-messages} window, the previous summary and those messages are merged into a new
+ * summary by the model, in the background. A failed run leaves the old summary in place and is
+ * tried again after the next turn.</p>
+ */
+@Service
+public class ChatSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSummaryService.class);
+    // Bounds the summarization prompt when a long history is first folded; the rest follows on later turns
+    private static final int MAX_MESSAGES_PER_RUN = 200;
+
+    private final ChatSummaryRepository summaryRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final AgentScopeClient agentScopeClient;
+    private final CoachPromptProperties promptProperties;
+    private final CoachPromptBudgetProperties budgetProperties;
+    private final ExecutorService workers;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter succeeded;
+    private final Counter failed;
+
+    public ChatSummaryService(ChatSummaryRepository summaryRepository,
+                              ChatMessageRepository chatMessageRepository,
+                              AgentScopeClient agentScopeClient,
+                              CoachPromptProperties promptProperties,
+                              CoachPromptBudgetProperties budgetProperties,
+                              MeterRegistry meterRegistry) {
+        this.summaryRepository = summaryRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.agentScopeClient = agentScopeClient;
+        this.promptProperties = promptProperties;
+        this.budgetProperties = budgetProperties;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, budgetProperties.getSummaryThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "chat-summary-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.succeeded = meterRegistry.counter("coach.summary.runs", "result", "success");
+        this.failed = meterRegistry.counter("coach.summary.runs", "result", "failed");
+    }
+
+    public Optional<ChatSummary> find(Long userId) {
+        return summaryRepository.findById(userId);
+    }
+
+    /**
+     * Folds the user's older messages into their summary in the background, if enough have piled up.
+     */
+    public void refreshAsync(Long userId) {
+        if (userId == null || !inFlight.add(userId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    refresh(userId);
+                } catch (Exception e) {
+                    failed.increment();
+                    logger.warn("Failed to summarize chat for user {}: {}", userId, e.getMessage());
+                } finally {
+                    inFlight.remove(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(userId);
+        }
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        summaryRepository.deleteById(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    void refresh(Long userId) {
+        ChatSummary current = summaryRepository.findById(userId).orElse(null);
+        long coveredThrough = current != null ? current.getCoveredThroughMessageId() : 0L;
+
+        long foldable = chatMessageRepository.countByUserIdAndIdGreaterThan(userId, coveredThrough)
+                - budgetProperties.getRecentMessages();
+        if (foldable < Math.max(1, budgetProperties.getSummaryBatchMessages())) {
+            return;
+        }
+
+        List<ChatMessage> older = chatMessageRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(
+                userId, coveredThrough, PageRequest.of(0, (int) Math.min(foldable, MAX_MESSAGES_PER_RUN)));
+        if (older.isEmpty()) {
+            return;
+        }
+
+        Optional<String> summary = agentScopeClient.tryCall(buildPrompt(current, older), systemPrompt());
+        if (summary.isEmpty()) {
+            failed.increment();
+            return;
+        }
+
+        summaryRepository.save(ChatSummary.builder()
+                .userId(userId)
+                .content(summary.get().trim())
+                .coveredThroughMessageId(older.get(older.size() - 1).getId())
+                .build());
+        succeeded.increment();
+    }
+
+    private String buildPrompt(ChatSummary current, List<ChatMessage> older) {
+        StringBuilder sb = new StringBuilder();
+        if (current != null && StringUtils.hasText(current.getContent())) {
+            sb.append("Previous summary:\n").append(current.getContent()).append("\n\n");
+        }
+        sb.append("New messages:\n");
+        for (ChatMessage message : older) {
+            sb.append(message.getRole().toUpperCase()).append(": ")
+                    .append(clip(message.getContent(), budgetProperties.getMaxMessageChars())).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private String systemPrompt() {
+        String systemPrompt = promptProperties.getChatSummary();
+        if (!StringUtils.hasText(systemPrompt)) {
+            systemPrompt = "Merge the previous summary and the new messages into one concise summary of the conversation.";
+        }
+        return systemPrompt;
+    }
+
+    static String clip(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() <= maxChars ? text : text.substring(0, Math.max(0, maxChars)) + "...";
+    }
+}
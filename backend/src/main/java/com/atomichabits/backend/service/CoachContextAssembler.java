@@ -0,0 +1,172 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.dto.UserProfileResponse;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.model.MoodLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the {@link CoachContextSnapshot} for a chat turn, fetching profile, habits, moods,
+ * memory and the chat summary side by side.
+ *
+ * <p>{@link #open} also keeps the snapshot as the user's current turn, so the tools the model
+ * calls during the turn read it instead of loading everything again. Tools that change the
+ * user's state {@link #invalidate} it, as does the end of the turn; a snapshot older than
+ * {@code coach.context.max-age-ms} is never handed out, and is swept away if its turn never ended.</p>
+ *
+ * <p>Every fetch holds a database connection, so {@code coach.context.fetch-threads} should stay
+ * well below the connection pool size.</p>
+ */
+@Service
+public class CoachContextAssembler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoachContextAssembler.class);
+    private static final int MEMORY_LIMIT = 8;
+
+    private final UserService userService;
+    private final HabitService habitService;
+    private final MoodService moodService;
+    private final MemoryService memoryService;
+    private final ChatSummaryService chatSummaryService;
+    private final ExecutorService fetchers;
+    private final ConcurrentMap<Long, OpenTurn> openTurns = new ConcurrentHashMap<>();
+    private final Timer assembleTimer;
+
+    @Value("${coach.context.max-age-ms:120000}")
+    private long maxAgeMs = 120000;
+
+    public CoachContextAssembler(UserService userService,
+                                 HabitService habitService,
+                                 MoodService moodService,
+                                 MemoryService memoryService,
+                                 ChatSummaryService chatSummaryService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${coach.context.fetch-threads:4}") int fetchThreads) {
+        this.userService = userService;
+        this.habitService = habitService;
+        this.moodService = moodService;
+        this.memoryService = memoryService;
+        this.chatSummaryService = chatSummaryService;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.fetchers = Executors.newFixedThreadPool(Math.max(1, fetchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "coach-context-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.assembleTimer = meterRegistry.timer("coach.context.assemble");
+    }
+
+    /**
+     * Assembles the snapshot for a new turn on {@code message} and makes it the user's current one.
+     */
+    public CoachContextSnapshot open(Long userId, String message) {
+        CoachContextSnapshot snapshot = assemble(userId, message, true);
+        openTurns.put(userId, new OpenTurn(snapshot, System.nanoTime()));
+        return snapshot;
+    }
+
+    /**
+     * The snapshot of the user's turn in progress, if any.
+     */
+    public Optional<CoachContextSnapshot> current(Long userId) {
+        OpenTurn turn = openTurns.get(userId);
+        if (turn == null) {
+            return Optional.empty();
+        }
+        if (isExpired(turn, System.nanoTime())) {
+            openTurns.remove(userId, turn);
+            return Optional.empty();
+        }
+        return Optional.of(turn.snapshot());
+    }
+
+    /**
+     * The current snapshot, or a fresh one without memory when no turn is open.
+     */
+    public CoachContextSnapshot currentOrLoad(Long userId) {
+        return current(userId).orElseGet(() -> assemble(userId, null, false));
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            openTurns.remove(userId);
+        }
+    }
+
+    /**
+     * Drops turns that were opened but never ended, e.g. when a stream was cut off before it started.
+     */
+    @Scheduled(fixedDelayString = "${coach.context.sweep-delay-ms:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        openTurns.values().removeIf(turn -> isExpired(turn, now));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchers.shutdownNow();
+    }
+
+    int openTurnCount() {
+        return openTurns.size();
+    }
+
+    private boolean isExpired(OpenTurn turn, long now) {
+        return now - turn.openedAt() > TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+    }
+
+    private CoachContextSnapshot assemble(Long userId, String message, boolean withMemory) {
+        Timer.Sample sample = Timer.start();
+        try {
+            CompletableFuture<UserProfileResponse> profile =
+                    CompletableFuture.supplyAsync(() -> userService.getUserProfile(userId), fetchers);
+            CompletableFuture<List<HabitResponse>> habits =
+                    CompletableFuture.supplyAsync(() -> habitService.getUserHabits(userId), fetchers);
+            CompletableFuture<List<MoodLog>> moods =
+                    CompletableFuture.supplyAsync(() -> moodService.getRecentMoods(userId), fetchers);
+            CompletableFuture<String> memory = withMemory
+                    ? CompletableFuture.supplyAsync(() -> memoryService.getRelevantMemoryContext(userId, message, MEMORY_LIMIT), fetchers)
+                            .exceptionally(e -> {
+                                // The turn can go ahead without memory
+                                logger.warn("Failed to retrieve memory for user {}: {}", userId, e.getMessage());
+                                return "";
+                            })
+                    : CompletableFuture.completedFuture("");
+            CompletableFuture<ChatSummary> summary = withMemory
+                    ? CompletableFuture.supplyAsync(() -> chatSummaryService.find(userId).orElse(null), fetchers)
+                    : CompletableFuture.completedFuture(null);
+
+            return new CoachContextSnapshot(userId, profile.join(), habits.join(), moods.join(), memory.join(),
+                    summary.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            sample.stop(assembleTimer);
+        }
+    }
+
+    private record OpenTurn(CoachContextSnapshot snapshot, long openedAt) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.dto.UserProfileResponse;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.model.MoodLog;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * What the coach knows about a user for one chat turn: profile, today's habits, the last 24h of
+ * moods, the long-term memory retrieved for the turn's message and the rolling summary of older
+ * chat, if any. Built once per turn by {@link CoachContextAssembler} and read by the prompt, the
+ * context text and the tools.
+ */
+public record CoachContextSnapshot(Long userId,
+                                   UserProfileResponse profile,
+                                   List<HabitResponse> habits,
+                                   List<MoodLog> moods,
+                                   String memoryContext,
+                                   ChatSummary conversationSummary) {
+
+    /**
+     * No habits or identity yet, so the coach should onboard rather than coach.
+     */
+    public boolean isColdStart() {
+        return habits.isEmpty() || !StringUtils.hasText(profile.getIdentityStatement());
+    }
+
+    public boolean hasMemory() {
+        return StringUtils.hasText(memoryContext) && !memoryContext.startsWith("No saved long-term memory");
+    }
+}
@@ -0,0 +1,209 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.CoachPromptBudgetProperties;
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.model.ChatMessage;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.model.MoodLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Turns a {@link CoachContextSnapshot} into the user prompt of a coach call, within
+ * {@code coach.prompt-budget.max-tokens} as estimated by {@link TokenEstimator}.
+ *
+ * <p>The system prompt and the user's message always go in. What is left is handed out in
+ * priority order: identity, today's habit status and moods, the most relevant memories, the
+ * most recent messages newest first, and then the rolling summary of the older ones. A section
+ * that does not fit is left out, or cut line by line for memories and messages.</p>
+ *
+ * <p>Metrics: {@code coach.prompt.tokens} (estimated system plus user prompt per call) and
+ * {@code coach.prompt.trimmed} (calls that lost something to the budget).</p>
+ */
+@Component
+public class CoachPromptBuilder {
+
+    // Headers and separators added around the sections
+    private static final int FRAMING_TOKENS = 32;
+
+    private final CoachPromptBudgetProperties budgetProperties;
+    private final DistributionSummary promptTokens;
+    private final Counter trimmed;
+
+    public CoachPromptBuilder(CoachPromptBudgetProperties budgetProperties, MeterRegistry meterRegistry) {
+        this.budgetProperties = budgetProperties;
+        this.promptTokens = DistributionSummary.builder("coach.prompt.tokens")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.trimmed = meterRegistry.counter("coach.prompt.trimmed");
+    }
+
+    /**
+     * How many recent messages to load for {@link #chatPrompt}. Up to a batch of messages past the
+     * {@code recent-messages} window waits to be folded into the summary, so those are loaded too;
+     * anything the summary already covers is skipped when the prompt is built.
+     */
+    public int recentMessages() {
+        return Math.max(0, budgetProperties.getRecentMessages())
+                + Math.max(1, budgetProperties.getSummaryBatchMessages());
+    }
+
+    /**
+     * @param recentMessages the latest messages, newest first; those already in the summary are skipped
+     */
+    public String chatPrompt(CoachContextSnapshot snapshot, List<ChatMessage> recentMessages,
+                             String systemPrompt, String userMessage) {
+        String context = snapshot != null
+                ? context(snapshot, recentMessages, budgetFor(systemPrompt, userMessage))
+                : "";
+        String prompt = (!context.isEmpty() ? "Context:\n" + context + "\nUser Message: " : "") + userMessage;
+        promptTokens.record(TokenEstimator.estimate(systemPrompt) + TokenEstimator.estimate(prompt));
+        return prompt;
+    }
+
+    public String greetingPrompt(CoachContextSnapshot snapshot, String systemPrompt, String instruction) {
+        String context = context(snapshot, List.of(), budgetFor(systemPrompt, instruction));
+        String prompt = "Context:\n" + context + "\n\n" + instruction;
+        promptTokens.record(TokenEstimator.estimate(systemPrompt) + TokenEstimator.estimate(prompt));
+        return prompt;
+    }
+
+    private int budgetFor(String systemPrompt, String tail) {
+        return budgetProperties.getMaxTokens() - FRAMING_TOKENS
+                - TokenEstimator.estimate(systemPrompt) - TokenEstimator.estimate(tail);
+    }
+
+    private String context(CoachContextSnapshot snapshot, List<ChatMessage> recentMessages, int tokens) {
+        Budget budget = new Budget(tokens);
+
+        // Highest priority first
+        String identity = budget.takeOrEmpty(identity(snapshot));
+        String status = budget.takeOrEmpty(habitStatus(snapshot.habits()));
+        String moods = budget.takeOrEmpty(moods(snapshot.moods()));
+        String memory = snapshot.hasMemory() ? memory(snapshot.memoryContext(), budget) : "";
+        ChatSummary summary = snapshot.conversationSummary();
+        String turns = turns(recentMessages, summary != null ? summary.getCoveredThroughMessageId() : null, budget);
+        String earlier = summary != null ? budget.takeOrEmpty(summary.getContent()) : "";
+
+        if (budget.trimmed) {
+            trimmed.increment();
+        }
+
+        StringBuilder context = new StringBuilder();
+        context.append(status).append(moods).append(identity);
+        if (!memory.isEmpty()) {
+            context.append("\n").append(memory).append("\n");
+        }
+        if (!earlier.isEmpty()) {
+            context.append("\nEARLIER CONVERSATION (summary):\n").append(earlier.trim()).append("\n");
+        }
+        if (!turns.isEmpty()) {
+            context.append("\nRECENT CONVERSATION HISTORY:\n").append(turns).append("\n");
+        }
+        return context.toString();
+    }
+
+    private static String identity(CoachContextSnapshot snapshot) {
+        String identity = snapshot.profile().getIdentityStatement();
+        return identity != null ? "Identity: " + identity + "\n" : "";
+    }
+
+    private static String habitStatus(List<HabitResponse> habits) {
+        StringBuilder sb = new StringBuilder();
+        long completedCount = habits.stream().filter(HabitResponse::isCompletedToday).count();
+        sb.append("HABIT STATUS (Today): ").append(completedCount).append("/").append(habits.size()).append(" completed.\n");
+        sb.append("Uncompleted Habits Today: ");
+        habits.stream().filter(h -> !h.isCompletedToday()).forEach(h -> sb.append(h.getName()).append(", "));
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    private static String moods(List<MoodLog> moods) {
+        if (moods.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("RECENT USER MOOD/LOGS (Last 24h): ");
+        for (MoodLog m : moods) {
+            sb.append("[").append(m.getMoodType()).append("] ");
+            if ("GRATITUDE".equals(m.getMoodType()) && m.getNote() != null) {
+                sb.append("Gratitude: \"").append(m.getNote()).append("\" ");
+            }
+        }
+        sb.append("\nIf mood is OVERWHELMED, be extra gentle and suggest only tiny steps. If GRATITUDE is present, acknowledge it positively.\n");
+        return sb.toString();
+    }
+
+    /**
+     * Memory lines in the order retrieved (most relevant first), skipping those that do not fit.
+     * A heading only goes in along with at least one of its lines.
+     */
+    private static String memory(String memoryContext, Budget budget) {
+        String[] lines = memoryContext.trim().split("\\R");
+        StringBuilder sb = new StringBuilder();
+        String title = lines[0] + "\n";
+        String heading = "";
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i] + "\n";
+            if (!lines[i].trim().startsWith("- ")) {
+                heading = line;
+                continue;
+            }
+            String candidate = title + heading + line;
+            if (budget.take(candidate)) {
+                sb.append(candidate);
+                title = "";
+                heading = "";
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * As many of the latest messages after the summary as fit, oldest first.
+     */
+    private String turns(List<ChatMessage> newestFirst, Long coveredThrough, Budget budget) {
+        Deque<String> kept = new ArrayDeque<>();
+        for (ChatMessage message : newestFirst) {
+            if (coveredThrough != null && message.getId() != null && message.getId() <= coveredThrough) {
+                break;
+            }
+            String line = message.getRole().toUpperCase() + ": "
+                    + ChatSummaryService.clip(message.getContent(), budgetProperties.getMaxMessageChars()) + "\n";
+            if (!budget.take(line)) {
+                break;
+            }
+            kept.addFirst(line);
+        }
+        return String.join("", kept);
+    }
+
+    private static final class Budget {
+        private int remaining;
+        private boolean trimmed;
+
+        private Budget(int remaining) {
+            this.remaining = remaining;
+        }
+
+        boolean take(String text) {
+            int cost = TokenEstimator.estimate(text);
+            if (cost > remaining) {
+                trimmed = true;
+                return false;
+            }
+            remaining -= cost;
+            return true;
+        }
+
+        String takeOrEmpty(String text) {
+            return StringUtils.hasText(text) && take(text) ? text : "";
+        }
+    }
+}
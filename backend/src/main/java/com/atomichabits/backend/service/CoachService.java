@@ -1,12 +1,14 @@
 package com.atomichabits.backend.service;
 
 import lombok.extern.slf4j.Slf4j;
+import com.atomichabits.backend.dto.ChatStreamEvent;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.dto.UserProfileResponse;
 import com.atomichabits.backend.dto.UserStatsResponse;
 import com.atomichabits.backend.dto.WeeklyReviewResponse;
+import com.atomichabits.backend.exception.ResourceNotFoundException;
 import com.atomichabits.backend.model.ChatMessage;
-import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.model.UserDailyActivity;
 import com.atomichabits.backend.model.WeeklyReview;
 import com.atomichabits.backend.repository.WeeklyReviewRepository;
 import com.atomichabits.backend.repository.ChatMessageRepository;
@@ -18,18 +20,19 @@ import com.atomichabits.backend.model.MoodLog;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.agentscope.core.message.Msg;
-import io.agentscope.core.message.MsgRole;
-import io.agentscope.core.message.TextBlock;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,13 +52,19 @@ public class CoachService {
     private final UserRepository userRepository;
     private final WeeklyReviewRepository weeklyReviewRepository;
     private final CoachPromptProperties promptProperties;
-    private final MemoryService memoryService;
+    private final MemoryExtractionQueue memoryExtractionQueue;
+    private final DailyActivityService dailyActivityService;
+    private final CoachContextAssembler contextAssembler;
+    private final CoachPromptBuilder promptBuilder;
+    private final ChatSummaryService chatSummaryService;
     private final ObjectMapper objectMapper;
 
     public CoachService(AgentScopeClient agentScopeClient, CoachTools coachTools, HabitService habitService, UserService userService, MoodService moodService,
                         ChatMessageRepository chatMessageRepository, UserRepository userRepository,
                         WeeklyReviewRepository weeklyReviewRepository, CoachPromptProperties promptProperties,
-                        MemoryService memoryService) {
+                        MemoryExtractionQueue memoryExtractionQueue,
+                        DailyActivityService dailyActivityService, CoachContextAssembler contextAssembler,
+                        CoachPromptBuilder promptBuilder, ChatSummaryService chatSummaryService) {
         this.agentScopeClient = agentScopeClient;
         this.coachTools = coachTools;
         this.habitService = habitService;
@@ -65,22 +74,68 @@ public class CoachService {
         this.userRepository = userRepository;
         this.weeklyReviewRepository = weeklyReviewRepository;
         this.promptProperties = promptProperties;
-        this.memoryService = memoryService;
+        this.memoryExtractionQueue = memoryExtractionQueue;
+        this.dailyActivityService = dailyActivityService;
+        this.contextAssembler = contextAssembler;
+        this.promptBuilder = promptBuilder;
+        this.chatSummaryService = chatSummaryService;
         this.objectMapper = new ObjectMapper();
     }
 
-    public String chat(String email, String userMessage) {
-        // Build context
-        String context = buildDailyContext(email, userMessage);
+    public String chat(Long userId, String userMessage) {
+        try {
+            ChatPrompt prompt = prepareChat(userId, userMessage);
+
+            String aiResponse = agentScopeClient.call(prompt.userPrompt(), prompt.systemPrompt(), coachTools);
+
+            completeChat(userId, userMessage, aiResponse);
+            return aiResponse;
+        } finally {
+            contextAssembler.invalidate(userId);
+        }
+    }
 
-        // Fetch last 20 messages for better context memory
-        String history = getFormattedChatHistory(email);
-        if (!history.isEmpty()) {
-            context += "\nRECENT CONVERSATION HISTORY:\n" + history + "\n";
+    /**
+     * Same as {@link #chat} but streams the reply as it is generated. The reply is saved once the
+     * stream completes, just before the final {@link ChatStreamEvent#DONE} event. A stream that
+     * fails ends with its {@link ChatStreamEvent#ERROR} event instead, and neither it nor one the
+     * client abandons part way through is saved.
+     */
+    public Flux<ChatStreamEvent> chatStream(Long userId, String userMessage) {
+        ChatPrompt prompt;
+        try {
+            prompt = prepareChat(userId, userMessage);
+        } catch (RuntimeException e) {
+            contextAssembler.invalidate(userId);
+            throw e;
         }
+        StringBuilder aiResponse = new StringBuilder();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        return agentScopeClient.stream(prompt.userPrompt(), prompt.systemPrompt(), coachTools)
+                .doOnNext(event -> {
+                    if (ChatStreamEvent.ERROR.equals(event.getType())) {
+                        failed.set(true);
+                    } else if (ChatStreamEvent.TOKEN.equals(event.getType())) {
+                        aiResponse.append(event.getText());
+                    }
+                })
+                .concatWith(Flux.defer(() -> {
+                    if (failed.get()) {
+                        return Flux.<ChatStreamEvent>empty();
+                    }
+                    completeChat(userId, userMessage, aiResponse.toString());
+                    return Flux.just(ChatStreamEvent.done());
+                }).subscribeOn(Schedulers.boundedElastic())) // Off the model client's event loop, as saving blocks on JDBC
+                .doFinally(signal -> contextAssembler.invalidate(userId));
+    }
+
+    private ChatPrompt prepareChat(Long userId, String userMessage) {
+        // One snapshot for the whole turn, shared with the tools the model calls
+        CoachContextSnapshot snapshot = openSnapshot(userId, userMessage);
 
         // Check for cold-start users (no habits/identity yet).
-        boolean isColdStart = isColdStartUser(email);
+        boolean isColdStart = isColdStartUser(snapshot);
 
         String systemPrompt;
         if (isColdStart) {
@@ -89,36 +144,46 @@ public class CoachService {
             systemPrompt = promptProperties.getRegularSystem();
         }
 
+        // Context and recent messages, cut to the prompt budget
+        String userPrompt = promptBuilder.chatPrompt(snapshot, getRecentMessages(userId), systemPrompt, userMessage);
+
         // Save user message
-        saveMessage(email, "user", userMessage);
+        saveMessage(userId, "user", userMessage);
 
-        String aiResponse = agentScopeClient.call((!context.isEmpty() ? "Context:\n" + context + "\nUser Message: " : "") + userMessage, systemPrompt, coachTools);
+        return new ChatPrompt(userPrompt, systemPrompt);
+    }
 
+    private void completeChat(Long userId, String userMessage, String aiResponse) {
         // Save AI response
-        saveMessage(email, "ai", aiResponse);
+        saveMessage(userId, "ai", aiResponse);
 
         try {
-            memoryService.ingestConversationSignals(email, List.of(
-                    Msg.builder()
-                            .role(MsgRole.USER)
-                            .content(TextBlock.builder().text(userMessage).build())
-                            .build(),
-                    Msg.builder()
-                            .role(MsgRole.ASSISTANT)
-                            .content(TextBlock.builder().text(aiResponse).build())
-                            .build()
-            ));
-        } catch (Exception ignored) {
-            // Memory extraction should not block normal chat responses.
+            memoryExtractionQueue.submit(userId, userMessage);
+            chatSummaryService.refreshAsync(userId);
+        } catch (Exception e) {
+            // Memory extraction and summarizing should not block normal chat responses.
+            log.warn("Failed to queue background memory work: {}", e.getMessage());
         }
+    }
 
-        return aiResponse;
+    private record ChatPrompt(String userPrompt, String systemPrompt) {
+    }
+
+    public String generateGreeting(Long userId) {
+        try {
+            return greet(userId);
+        } finally {
+            contextAssembler.invalidate(userId);
+        }
     }
 
-    public String generateGreeting(String email) {
-        String context = buildDailyContext(email, null);
-        UserProfileResponse profile = userService.getUserProfile(email);
-        boolean isColdStart = isColdStartUser(email);
+    private String greet(Long userId) {
+        CoachContextSnapshot snapshot = openSnapshot(userId, null);
+        if (snapshot == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        UserProfileResponse profile = snapshot.profile();
+        boolean isColdStart = isColdStartUser(snapshot);
 
         boolean isNewUser = false;
         if (profile.getCreatedAt() != null) {
@@ -135,99 +200,49 @@ public class CoachService {
         String systemPrompt = promptProperties.getGreetingSystem();
 
         // Only save if we get a valid response (which callAgent handles)
-        String aiResponse = agentScopeClient.call("Context:\n" + context + "\n\n" + userPrompt, systemPrompt, coachTools);
-        saveMessage(email, "ai", aiResponse);
+        String aiResponse = agentScopeClient.call(promptBuilder.greetingPrompt(snapshot, systemPrompt, userPrompt), systemPrompt, coachTools);
+        saveMessage(userId, "ai", aiResponse);
         return aiResponse;
     }
 
-    private boolean isColdStartUser(String email) {
+    private CoachContextSnapshot openSnapshot(Long userId, String userMessage) {
         try {
-            UserProfileResponse profile = userService.getUserProfile(email);
-            List<HabitResponse> habits = habitService.getUserHabits(email);
-            boolean missingIdentity = profile.getIdentityStatement() == null || profile.getIdentityStatement().isBlank();
-            return habits.isEmpty() || missingIdentity;
+            return contextAssembler.open(userId, userMessage);
         } catch (Exception e) {
-            // If context cannot be loaded, default to cold-start guidance.
-            return true;
+            log.warn("Failed to load coach context: {}", e.getMessage());
+            return null;
         }
     }
 
-    public List<ChatMessage> getChatHistory(String email) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) return Collections.emptyList();
-        return chatMessageRepository.findByUserIdOrderByTimestampAsc(user.getId());
+    private boolean isColdStartUser(CoachContextSnapshot snapshot) {
+        // If context cannot be loaded, default to cold-start guidance.
+        return snapshot == null || snapshot.isColdStart();
     }
 
-    private String getFormattedChatHistory(String email) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) return "";
-        List<ChatMessage> messages = chatMessageRepository.findByUserIdOrderByTimestampDesc(user.getId(), PageRequest.of(0, 20));
-        Collections.reverse(messages); // Oldest first
-
-        StringBuilder sb = new StringBuilder();
-        for (ChatMessage msg : messages) {
-            sb.append(msg.getRole().toUpperCase()).append(": ").append(msg.getContent()).append("\n");
-        }
-        return sb.toString();
+    public List<ChatMessage> getChatHistory(Long userId) {
+        return chatMessageRepository.findByUserIdOrderByTimestampAsc(userId);
     }
 
-    private void saveMessage(String email, String role, String content) {
-        userRepository.findByEmail(email).ifPresent(user -> {
-            ChatMessage message = ChatMessage.builder()
-                    .user(user)
-                    .role(role)
-                    .content(content)
-                    .build();
-            chatMessageRepository.save(message);
-        });
+    private List<ChatMessage> getRecentMessages(Long userId) {
+        if (userId == null) return Collections.emptyList();
+        // Newest first, as the prompt builder fills the budget from the latest message back
+        return chatMessageRepository.findByUserIdOrderByTimestampDesc(userId, PageRequest.of(0, Math.max(1, promptBuilder.recentMessages())));
     }
 
-    private String buildDailyContext(String email, String currentUserMessage) {
-        StringBuilder context = new StringBuilder();
-        try {
-            UserProfileResponse profile = userService.getUserProfile(email);
-            Long uId = profile.getId();
-
-            // Inject Habits Status (Today)
-            List<HabitResponse> habits = habitService.getUserHabits(email);
-            long completedCount = habits.stream().filter(HabitResponse::isCompletedToday).count();
-            long totalCount = habits.size();
-            context.append("HABIT STATUS (Today): ").append(completedCount).append("/").append(totalCount).append(" completed.\n");
-            context.append("Uncompleted Habits Today: ");
-            habits.stream().filter(h -> !h.isCompletedToday()).forEach(h -> context.append(h.getName()).append(", "));
-            context.append("\n");
-
-            List<MoodLog> moods = moodService.getRecentMoods(uId);
-            if (!moods.isEmpty()) {
-                context.append("RECENT USER MOOD/LOGS (Last 24h): ");
-                for (MoodLog m : moods) {
-                    context.append("[").append(m.getMoodType()).append("] ");
-                    if ("GRATITUDE".equals(m.getMoodType()) && m.getNote() != null) {
-                        context.append("Gratitude: \"").append(m.getNote()).append("\" ");
-                    }
-                }
-                context.append("\nIf mood is OVERWHELMED, be extra gentle and suggest only tiny steps. If GRATITUDE is present, acknowledge it positively.\n");
-            }
-
-            if (profile.getIdentityStatement() != null) {
-                context.append("Identity: ").append(profile.getIdentityStatement()).append("\n");
-            }
-
-            String memoryContext = memoryService.getRelevantMemoryContext(email, currentUserMessage, 8);
-            if (StringUtils.hasText(memoryContext) && !memoryContext.startsWith("No saved long-term memory")) {
-                context.append("\n").append(memoryContext).append("\n");
-            }
-        } catch (Exception e) {
-            // Ignore if user lookup fails
-        }
-        return context.toString();
+    private void saveMessage(Long userId, String role, String content) {
+        if (userId == null) return;
+        chatMessageRepository.save(ChatMessage.builder()
+                .user(userRepository.getReferenceById(userId))
+                .role(role)
+                .content(content)
+                .build());
     }
 
-    public String weeklyReview(String email) {
+    public String weeklyReview(Long userId) {
         // Gather user context
-        List<HabitResponse> habits = habitService.getUserHabits(email);
-        UserStatsResponse stats = userService.getUserStats(email);
-        UserProfileResponse profile = userService.getUserProfile(email);
+        List<HabitResponse> habits = habitService.getUserHabits(userId);
+        UserStatsResponse stats = userService.getUserStats(userId);
+        UserProfileResponse profile = userService.getUserProfile(userId);
 
         StringBuilder context = new StringBuilder();
         context.append("User Identity: ").append(profile.getIdentityStatement()).append("\n");
@@ -240,9 +255,10 @@ public class CoachService {
         }
 
         try {
-             Long uId = profile.getId();
+             appendWeekActivity(context, userId);
+
              // Fetch last 7 days of moods for weekly review
-             List<MoodLog> moods = moodService.getMoodsSince(uId, java.time.LocalDateTime.now().minusDays(7));
+             List<MoodLog> moods = moodService.getMoodsSince(userId, java.time.LocalDateTime.now().minusDays(7));
              List<String> gratitude = moods.stream()
                      .filter(m -> "GRATITUDE".equals(m.getMoodType()))
                      .map(MoodLog::getNote)
@@ -260,33 +276,42 @@ public class CoachService {
 
         String systemPrompt = promptProperties.getWeeklyReviewSystem();
 
-        saveMessage(email, "user", "Start Weekly Review");
+        saveMessage(userId, "user", "Start Weekly Review");
         String aiResponse = agentScopeClient.call("Context:\n" + context + "\n\n" + userPrompt, systemPrompt, true);
-        saveMessage(email, "ai", aiResponse);
+        saveMessage(userId, "ai", aiResponse);
 
-        saveWeeklyReviewRecord(email, stats, aiResponse);
+        saveWeeklyReviewRecord(userId, stats, aiResponse);
         return aiResponse;
     }
 
-    public List<WeeklyReviewResponse> getRecentWeeklyReviews(String email, int limit) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) return Collections.emptyList();
+    private void appendWeekActivity(StringBuilder context, Long userId) {
+        LocalDate today = LocalDate.now();
+        List<UserDailyActivity> days = dailyActivityService.getRange(userId, today.minusDays(6), today);
+        int completions = days.stream().mapToInt(UserDailyActivity::getCompletionCount).sum();
+        long activeDays = days.stream().filter(d -> d.getCompletionCount() > 0).count();
+        Map<String, Integer> moodCounts = new TreeMap<>();
+        days.forEach(d -> d.getMoodCounts().forEach((mood, count) -> moodCounts.merge(mood, count, Integer::sum)));
+
+        context.append("\nLast 7 Days: ").append(completions).append(" completions on ")
+               .append(activeDays).append(" of 7 days\n");
+        if (!moodCounts.isEmpty()) {
+            context.append("Moods Logged (Last 7 Days): ").append(moodCounts).append("\n");
+        }
+    }
 
+    public List<WeeklyReviewResponse> getRecentWeeklyReviews(Long userId, int limit) {
         int safeLimit = Math.max(1, Math.min(limit, 50));
         return weeklyReviewRepository
-                .findByUserIdOrderByCreatedAtDesc(user.getId(), PageRequest.of(0, safeLimit))
+                .findByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(0, safeLimit))
                 .stream()
                 .map(this::mapToWeeklyReviewResponse)
                 .collect(Collectors.toList());
     }
 
-    private void saveWeeklyReviewRecord(String email, UserStatsResponse stats, String aiResponse) {
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (userOpt.isEmpty()) return;
-
+    private void saveWeeklyReviewRecord(Long userId, UserStatsResponse stats, String aiResponse) {
         WeeklyReviewPayload payload = extractWeeklyReviewPayload(aiResponse, stats);
         WeeklyReview review = WeeklyReview.builder()
-                .user(userOpt.get())
+                .user(userRepository.getReferenceById(userId))
                 .totalCompleted(payload.totalCompleted())
                 .currentStreak(payload.currentStreak())
                 .bestStreak(payload.bestStreak())
@@ -442,14 +467,14 @@ public class CoachService {
                                        List<String> highlights, String suggestion) {
     }
 
-    public String generateReminder(String email, String habitName, int currentStreak) {
+    public String generateReminder(Long userId, String habitName, int currentStreak) {
         StringBuilder context = new StringBuilder();
         try {
-            UserProfileResponse profile = userService.getUserProfile(email);
+            UserProfileResponse profile = userService.getUserProfile(userId);
             if (profile.getIdentityStatement() != null) {
                 context.append("User Identity: ").append(profile.getIdentityStatement()).append("\n");
             }
-            List<MoodLog> moods = moodService.getRecentMoods(profile.getId());
+            List<MoodLog> moods = moodService.getRecentMoods(userId);
             if (!moods.isEmpty()) {
                 context.append("Recent Mood: ").append(moods.get(0).getMoodType());
                 if (moods.get(0).getNote() != null) {
@@ -17,28 +17,28 @@ public class CoachTurnMemoryHitService {
     private static final int MAX_HITS = 6;
     private static final int SNAPSHOT_TTL_MINUTES = 10;
 
-    private final ConcurrentMap<String, MemoryHitSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, MemoryHitSnapshot> snapshots = new ConcurrentHashMap<>();
 
-    public void updateHits(String email, List<String> hits) {
-        if (!StringUtils.hasText(email)) {
+    public void updateHits(Long userId, List<String> hits) {
+        if (userId == null) {
             return;
         }
 
         List<String> normalizedHits = normalizeHits(hits);
-        snapshots.put(email, new MemoryHitSnapshot(normalizedHits, LocalDateTime.now()));
+        snapshots.put(userId, new MemoryHitSnapshot(normalizedHits, LocalDateTime.now()));
     }
 
-    public MemoryHitSnapshot getLatestHits(String email) {
-        if (!StringUtils.hasText(email)) {
+    public MemoryHitSnapshot getLatestHits(Long userId) {
+        if (userId == null) {
             return new MemoryHitSnapshot(Collections.emptyList(), null);
         }
-        MemoryHitSnapshot snapshot = snapshots.get(email);
+        MemoryHitSnapshot snapshot = snapshots.get(userId);
         if (snapshot == null) {
             return new MemoryHitSnapshot(Collections.emptyList(), null);
         }
 
         if (snapshot.updatedAt() == null || snapshot.updatedAt().isBefore(LocalDateTime.now().minusMinutes(SNAPSHOT_TTL_MINUTES))) {
-            snapshots.remove(email);
+            snapshots.remove(userId);
             return new MemoryHitSnapshot(Collections.emptyList(), null);
         }
         return snapshot;
@@ -0,0 +1,291 @@
+package com.atomichabits.backend.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Day-granular completion set for a habit (or the union of a user's habits).
+ *
+ * <p>Bit {@code i} represents the day {@code origin + i}, where the origin is normally the
+ * habit's creation day. Streak queries work on whole 64-bit words: a weekday schedule is
+ * expanded into a repeating 64-day pattern, so "scheduled but not completed" days can be
+ * located with a handful of bit operations per word instead of a per-day walk.</p>
+ *
+ * <p>Instances handed out by {@link CompletionIndexService} are treated as immutable;
+ * writers mutate a {@link #copy()} and publish it.</p>
+ */
+public final class CompletionBitmap {
+
+    /** Weekday mask with every day scheduled (bit 0 = Monday ... bit 6 = Sunday). */
+    public static final int EVERY_DAY = 0x7F;
+
+    private static final long[] NO_WORDS = new long[0];
+
+    // SCHEDULE_PATTERNS[mask * 7 + startDow]: 64-day pattern for a word whose first day has ISO index startDow.
+    private static final long[] SCHEDULE_PATTERNS = new long[128 * 7];
+
+    static {
+        for (int mask = 0; mask < 128; mask++) {
+            for (int start = 0; start < 7; start++) {
+                long pattern = 0L;
+                for (int bit = 0; bit < 64; bit++) {
+                    if ((mask & (1 << ((start + bit) % 7))) != 0) {
+                        pattern |= 1L << bit;
+                    }
+                }
+                SCHEDULE_PATTERNS[mask * 7 + start] = pattern;
+            }
+        }
+    }
+
+    private long originDay;
+    private long[] words;
+
+    private CompletionBitmap(long originDay, long[] words) {
+        this.originDay = originDay;
+        this.words = words;
+    }
+
+    public static CompletionBitmap empty(LocalDate origin) {
+        return new CompletionBitmap(origin.toEpochDay(), NO_WORDS);
+    }
+
+    public static CompletionBitmap of(LocalDate origin, Collection<LocalDate> days) {
+        long start = origin.toEpochDay();
+        long end = start;
+        for (LocalDate day : days) {
+            long epochDay = day.toEpochDay();
+            start = Math.min(start, epochDay);
+            end = Math.max(end, epochDay);
+        }
+        CompletionBitmap bitmap = new CompletionBitmap(start, new long[wordsFor(end - start + 1)]);
+        for (LocalDate day : days) {
+            long offset = day.toEpochDay() - start;
+            bitmap.words[(int) (offset >>> 6)] |= 1L << offset;
+        }
+        return bitmap;
+    }
+
+    public static CompletionBitmap fromBytes(LocalDate origin, byte[] bytes) {
+        long[] words = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words);
+        return new CompletionBitmap(origin.toEpochDay(), words);
+    }
+
+    /**
+     * Union of several bitmaps, aligned to the earliest origin.
+     */
+    public static CompletionBitmap union(Collection<CompletionBitmap> bitmaps, LocalDate fallbackOrigin) {
+        long start = fallbackOrigin.toEpochDay();
+        long end = start;
+        for (CompletionBitmap bitmap : bitmaps) {
+            start = Math.min(start, bitmap.originDay);
+            end = Math.max(end, bitmap.originDay + ((long) bitmap.words.length << 6) - 1);
+        }
+        CompletionBitmap result = new CompletionBitmap(start, new long[wordsFor(end - start + 1)]);
+        for (CompletionBitmap bitmap : bitmaps) {
+            orShifted(result.words, bitmap.words, bitmap.originDay - start);
+        }
+        return result;
+    }
+
+    public CompletionBitmap copy() {
+        return new CompletionBitmap(originDay, words.clone());
+    }
+
+    public LocalDate getOrigin() {
+        return LocalDate.ofEpochDay(originDay);
+    }
+
+    public boolean contains(LocalDate day) {
+        long offset = day.toEpochDay() - originDay;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return false;
+        }
+        return (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+    }
+
+    /**
+     * @return true if the day was not already set
+     */
+    public boolean set(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if (epochDay < originDay) {
+            rebase(epochDay);
+        }
+        long offset = epochDay - originDay;
+        int index = (int) (offset >>> 6);
+        if (index >= words.length) {
+            words = Arrays.copyOf(words, Math.max(index + 1, words.length + (words.length >> 1)));
+        }
+        long before = words[index];
+        words[index] = before | (1L << offset);
+        return before != words[index];
+    }
+
+    /**
+     * @return true if the day was set before
+     */
+    public boolean clear(LocalDate day) {
+        long offset = day.toEpochDay() - originDay;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return false;
+        }
+        int index = (int) (offset >>> 6);
+        long before = words[index];
+        words[index] = before & ~(1L << offset);
+        return before != words[index];
+    }
+
+    /**
+     * @return the latest set day, or null if the bitmap is empty
+     */
+    public LocalDate lastDay() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                long offset = ((long) w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+                return LocalDate.ofEpochDay(originDay + offset);
+            }
+        }
+        return null;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Current streak as of {@code today}: consecutive scheduled days that were completed,
+     * walking backwards. Unscheduled days are skipped, and a scheduled day that is still
+     * open today does not break the streak yet.
+     */
+    public int currentStreak(LocalDate today, int weekdayMask) {
+        int mask = weekdayMask & EVERY_DAY;
+        long start = today.toEpochDay() - originDay;
+        if (start < 0 || mask == 0) {
+            return 0;
+        }
+        if (isScheduled(today, mask) && !contains(today)) {
+            start--;
+        }
+        if (start < 0) {
+            return 0;
+        }
+
+        int streak = 0;
+        int startDow = isoIndex(originDay);
+        for (long w = start >>> 6; w >= 0; w--) {
+            long valid = w == (start >>> 6) ? -1L >>> (63 - (start & 63)) : -1L;
+            long scheduled = schedulePattern(mask, startDow, w) & valid;
+            long completed = w < words.length ? words[(int) w] : 0L;
+            long missed = scheduled & ~completed;
+            long done = scheduled & completed;
+            if (missed != 0) {
+                int highestMiss = 63 - Long.numberOfLeadingZeros(missed);
+                return streak + Long.bitCount(done >>> highestMiss);
+            }
+            streak += Long.bitCount(done);
+        }
+        return streak;
+    }
+
+    /**
+     * Longest run of completed scheduled days; unscheduled days neither extend nor break a run.
+     */
+    public int longestStreak(int weekdayMask) {
+        int mask = weekdayMask & EVERY_DAY;
+        if (mask == 0) {
+            return 0;
+        }
+        int startDow = isoIndex(originDay);
+        int best = 0;
+        int run = 0;
+        for (int w = 0; w < words.length; w++) {
+            long scheduled = schedulePattern(mask, startDow, w);
+            long done = scheduled & words[w];
+            long missed = scheduled & ~words[w];
+            while (missed != 0) {
+                long lowestMiss = missed & -missed;
+                run += Long.bitCount(done & (lowestMiss - 1));
+                best = Math.max(best, run);
+                run = 0;
+                done &= -lowestMiss;
+                missed &= missed - 1;
+            }
+            run += Long.bitCount(done);
+        }
+        return Math.max(best, run);
+    }
+
+    /**
+     * Number of completed days that fall on a scheduled weekday.
+     */
+    public int scheduledCardinality(int weekdayMask) {
+        int mask = weekdayMask & EVERY_DAY;
+        int startDow = isoIndex(originDay);
+        int count = 0;
+        for (int w = 0; w < words.length; w++) {
+            count += Long.bitCount(words[w] & schedulePattern(mask, startDow, w));
+        }
+        return count;
+    }
+
+    public byte[] toBytes() {
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) {
+            used--;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(used * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(words, 0, used);
+        return buffer.array();
+    }
+
+    private void rebase(long newOriginDay) {
+        long shift = originDay - newOriginDay;
+        long lastDay = originDay + ((long) words.length << 6) - 1;
+        long[] shifted = new long[wordsFor(Math.max(lastDay, originDay) - newOriginDay + 1)];
+        orShifted(shifted, words, shift);
+        originDay = newOriginDay;
+        words = shifted;
+    }
+
+    private static void orShifted(long[] target, long[] source, long bitOffset) {
+        int wordShift = (int) (bitOffset >>> 6);
+        int bitShift = (int) (bitOffset & 63);
+        for (int i = 0; i < source.length; i++) {
+            long word = source[i];
+            if (word == 0) {
+                continue;
+            }
+            target[i + wordShift] |= word << bitShift;
+            if (bitShift != 0 && i + wordShift + 1 < target.length) {
+                target[i + wordShift + 1] |= word >>> (64 - bitShift);
+            }
+        }
+    }
+
+    private static long schedulePattern(int mask, int originDow, long wordIndex) {
+        // 64 % 7 == 1, so each word starts one weekday later than the previous one.
+        return SCHEDULE_PATTERNS[mask * 7 + (int) ((originDow + wordIndex) % 7)];
+    }
+
+    private static boolean isScheduled(LocalDate day, int mask) {
+        return (mask & (1 << (day.getDayOfWeek().getValue() - 1))) != 0;
+    }
+
+    private static int isoIndex(long epochDay) {
+        // 1970-01-01 was a Thursday (index 3).
+        return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    private static int wordsFor(long days) {
+        return (int) ((days + 63) >>> 6);
+    }
+}
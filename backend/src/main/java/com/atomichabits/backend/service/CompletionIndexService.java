@@ -0,0 +1,231 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.HabitCompletionIndex;
+import com.atomichabits.backend.repository.HabitCompletionIndexRepository;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one {@link CompletionBitmap} per habit in memory, backed by the
+ * {@code habit_completion_index} table.
+ *
+ * <p>Reads never touch {@code habit_completions} once a habit is cached. On a cache miss the
+ * persisted bitmap is used when present, otherwise it is rebuilt from completion timestamps.</p>
+ *
+ * <p>Writers lock the habit's row and change the stored bitmap, not the cached one, so concurrent
+ * writes (from this instance or another) apply one after the other. The result reaches the cache
+ * once the transaction commits; a bitmap loaded by a reader never replaces one put there by a
+ * writer.</p>
+ *
+ * <p>The cache holds the {@code app.completion-index.max-habits} most recently used habits and is
+ * local to this instance: it never sees writes made through another one, so it should be switched
+ * off ({@code app.completion-index.cache-enabled=false}) when scaling out. Reads then go to the
+ * index table every time.</p>
+ */
+@Service
+public class CompletionIndexService {
+
+    private final HabitCompletionIndexRepository indexRepository;
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final Map<Long, Cached> bitmaps = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+            return size() > maxHabits;
+        }
+    });
+    // Orders this instance's writes to a habit, which the row lock already serializes
+    private final AtomicLong writes = new AtomicLong();
+
+    @Value("${app.completion-index.cache-enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${app.completion-index.max-habits:20000}")
+    private int maxHabits = 20000;
+
+    public CompletionIndexService(HabitCompletionIndexRepository indexRepository,
+                                  HabitCompletionRepository habitCompletionRepository) {
+        this.indexRepository = indexRepository;
+        this.habitCompletionRepository = habitCompletionRepository;
+    }
+
+    public CompletionBitmap getBitmap(Habit habit) {
+        return getBitmaps(List.of(habit)).get(habit.getId());
+    }
+
+    /**
+     * Bitmaps for the given habits, keyed by habit id. Misses are loaded with at most two queries.
+     */
+    public Map<Long, CompletionBitmap> getBitmaps(Collection<Habit> habits) {
+        Map<Long, CompletionBitmap> result = new HashMap<>();
+        Map<Long, Habit> missing = new HashMap<>();
+        for (Habit habit : habits) {
+            Cached cached = cacheEnabled ? bitmaps.get(habit.getId()) : null;
+            if (cached != null) {
+                result.put(habit.getId(), cached.bitmap());
+            } else {
+                missing.put(habit.getId(), habit);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing).forEach((habitId, bitmap) -> {
+                Cached cached = cacheEnabled ? bitmaps.putIfAbsent(habitId, new Cached(bitmap, 0)) : null;
+                result.put(habitId, cached != null ? cached.bitmap() : bitmap);
+            });
+        }
+        return result;
+    }
+
+    @Transactional
+    public CompletionBitmap recordCompletion(Habit habit, LocalDate day) {
+        return update(habit, bitmap -> bitmap.set(day));
+    }
+
+    @Transactional
+    public CompletionBitmap recordCompletions(Habit habit, Collection<LocalDate> days) {
+        return update(habit, bitmap -> {
+            boolean changed = false;
+            for (LocalDate day : days) {
+                changed |= bitmap.set(day);
+            }
+            return changed;
+        });
+    }
+
+    @Transactional
+    public CompletionBitmap removeCompletion(Habit habit, LocalDate day) {
+        return update(habit, bitmap -> bitmap.clear(day));
+    }
+
+    /**
+     * The stored bitmap, read under the habit's row lock: it reflects every committed write, and
+     * writers of the habit wait until the caller's transaction ends. Use it when deriving state
+     * from the bitmap that a writer could otherwise overwrite with a newer one out of order.
+     */
+    @Transactional
+    public CompletionBitmap lockBitmap(Habit habit) {
+        return update(habit, bitmap -> false);
+    }
+
+    /**
+     * Replaces the stored bitmap, e.g. after it was rebuilt from raw completions.
+     */
+    @Transactional
+    public void replace(Long habitId, CompletionBitmap bitmap) {
+        HabitCompletionIndex stored = lock(habitId, () -> bitmap);
+        persist(stored, bitmap);
+        publishAfterCommit(habitId, bitmap);
+    }
+
+    /**
+     * Rebuilds a bitmap from {@code habit_completions} without consulting the cache or the index table.
+     */
+    public Map<Long, CompletionBitmap> buildFromCompletions(Collection<Habit> habits) {
+        Map<Long, Habit> byId = habits.stream().collect(Collectors.toMap(Habit::getId, h -> h));
+        return buildFromCompletions(byId, byId.keySet());
+    }
+
+    public void remove(Long habitId) {
+        bitmaps.remove(habitId);
+        indexRepository.deleteById(habitId);
+    }
+
+    private CompletionBitmap update(Habit habit, Predicate<CompletionBitmap> change) {
+        Long habitId = habit.getId();
+        HabitCompletionIndex stored = lock(habitId,
+                () -> buildFromCompletions(Map.of(habitId, habit), Set.of(habitId)).get(habitId));
+        CompletionBitmap updated = CompletionBitmap.fromBytes(stored.getOriginDay(), stored.getBits());
+        if (change.test(updated)) {
+            persist(stored, updated);
+        }
+        publishAfterCommit(habitId, updated);
+        return updated;
+    }
+
+    /**
+     * The habit's index row, locked until the transaction ends; created from {@code initial} if missing.
+     */
+    private HabitCompletionIndex lock(Long habitId, Supplier<CompletionBitmap> initial) {
+        Optional<HabitCompletionIndex> stored = indexRepository.findForUpdate(habitId);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        CompletionBitmap bitmap = initial.get();
+        indexRepository.insertIfAbsent(habitId, bitmap.getOrigin(), bitmap.toBytes());
+        return indexRepository.findForUpdate(habitId)
+                .orElseThrow(() -> new IllegalStateException("Completion index row missing for habit " + habitId));
+    }
+
+    private Map<Long, CompletionBitmap> load(Map<Long, Habit> habits) {
+        Map<Long, CompletionBitmap> loaded = new HashMap<>();
+        for (HabitCompletionIndex stored : indexRepository.findAllById(habits.keySet())) {
+            loaded.put(stored.getHabitId(), CompletionBitmap.fromBytes(stored.getOriginDay(), stored.getBits()));
+        }
+
+        Set<Long> unindexed = new HashSet<>(habits.keySet());
+        unindexed.removeAll(loaded.keySet());
+        if (!unindexed.isEmpty()) {
+            loaded.putAll(buildFromCompletions(habits, unindexed));
+        }
+        return loaded;
+    }
+
+    private Map<Long, CompletionBitmap> buildFromCompletions(Map<Long, Habit> habits, Set<Long> habitIds) {
+        Map<Long, List<LocalDate>> daysByHabit = habitCompletionRepository.findCompletionTimesByHabitIds(habitIds).stream()
+                .collect(Collectors.groupingBy(HabitCompletionRepository.CompletionTime::getHabitId,
+                        Collectors.mapping(c -> c.getCompletedAt().toLocalDate(), Collectors.toList())));
+        Map<Long, CompletionBitmap> built = new HashMap<>();
+        for (Long habitId : habitIds) {
+            built.put(habitId, CompletionBitmap.of(originOf(habits.get(habitId)),
+                    daysByHabit.getOrDefault(habitId, Collections.emptyList())));
+        }
+        return built;
+    }
+
+    private void persist(HabitCompletionIndex stored, CompletionBitmap bitmap) {
+        stored.setOriginDay(bitmap.getOrigin());
+        stored.setBits(bitmap.toBytes());
+        indexRepository.save(stored);
+    }
+
+    private void publishAfterCommit(Long habitId, CompletionBitmap bitmap) {
+        if (!cacheEnabled) {
+            return;
+        }
+        // Taken under the row lock, so a later write of the habit always gets a higher number
+        Cached written = new Cached(bitmap, writes.incrementAndGet());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(habitId, written);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(habitId, written);
+            }
+        });
+    }
+
+    private void publish(Long habitId, Cached written) {
+        // Commit callbacks may run out of order; the later write wins
+        bitmaps.merge(habitId, written, (current, next) -> next.sequence() > current.sequence() ? next : current);
+    }
+
+    private static LocalDate originOf(Habit habit) {
+        return habit.getCreatedAt() != null ? habit.getCreatedAt().toLocalDate() : LocalDate.now();
+    }
+
+    private record Cached(CompletionBitmap bitmap, long sequence) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.UserDailyActivity;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.MoodRepository;
+import com.atomichabits.backend.repository.UserDailyActivityRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code user_daily_activity} rollup.
+ *
+ * <p>Writers update the affected day inside their own transaction while holding a row lock
+ * on it, so concurrent writes for the same user and day are applied one after another.
+ * Completion inserts and mood changes are applied as deltas; completion deletes recompute
+ * the day, since they may remove the first or last completion.</p>
+ *
+ * <p>Writers also hold the user's row shared, which lets them run side by side but not alongside
+ * {@link #rebuildUser}, which holds it exclusively while it replaces every row of the user.</p>
+ */
+@Service
+public class DailyActivityService {
+
+    private final UserDailyActivityRepository activityRepository;
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final MoodRepository moodRepository;
+    private final UserRepository userRepository;
+
+    public DailyActivityService(UserDailyActivityRepository activityRepository,
+                                HabitCompletionRepository habitCompletionRepository,
+                                MoodRepository moodRepository,
+                                UserRepository userRepository) {
+        this.activityRepository = activityRepository;
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.moodRepository = moodRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Adds newly inserted completions. Each one is for a different habit on its day, since
+     * completions are unique per habit and day.
+     */
+    @Transactional
+    public void recordCompletions(Long userId, Collection<LocalDateTime> completedAts) {
+        if (completedAts.isEmpty()) {
+            return;
+        }
+        holdUser(userId);
+        Map<LocalDate, List<LocalDateTime>> byDay = completedAts.stream()
+                .collect(Collectors.groupingBy(LocalDateTime::toLocalDate, TreeMap::new, Collectors.toList()));
+        byDay.forEach((day, times) -> {
+            UserDailyActivity activity = lockDay(userId, day);
+            activity.setCompletionCount(activity.getCompletionCount() + times.size());
+            activity.setDistinctHabitCount(activity.getDistinctHabitCount() + times.size());
+            for (LocalDateTime time : times) {
+                if (activity.getFirstCompletionAt() == null || time.isBefore(activity.getFirstCompletionAt())) {
+                    activity.setFirstCompletionAt(time);
+                }
+                if (activity.getLastCompletionAt() == null || time.isAfter(activity.getLastCompletionAt())) {
+                    activity.setLastCompletionAt(time);
+                }
+            }
+            activityRepository.save(activity);
+        });
+    }
+
+    @Transactional
+    public void recordMood(Long userId, String moodType, LocalDateTime loggedAt) {
+        holdUser(userId);
+        UserDailyActivity activity = lockDay(userId, loggedAt.toLocalDate());
+        activity.getMoodCounts().merge(moodType, 1, Integer::sum);
+        activityRepository.save(activity);
+    }
+
+    @Transactional
+    public void removeMood(Long userId, String moodType, LocalDateTime loggedAt) {
+        holdUser(userId);
+        UserDailyActivity activity = lockDay(userId, loggedAt.toLocalDate());
+        activity.getMoodCounts().computeIfPresent(moodType, (type, count) -> count > 1 ? count - 1 : null);
+        activityRepository.save(activity);
+    }
+
+    /**
+     * Rebuilds the given days from {@code habit_completions} and {@code mood_logs}.
+     */
+    @Transactional
+    public void recomputeDays(Long userId, Collection<LocalDate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+        holdUser(userId);
+        SortedSet<LocalDate> sorted = new TreeSet<>(days);
+        // Lock first so that the aggregates below see every committed write for these days
+        Map<LocalDate, UserDailyActivity> locked = new LinkedHashMap<>();
+        for (LocalDate day : sorted) {
+            locked.put(day, lockDay(userId, day));
+        }
+
+        LocalDate from = sorted.first();
+        LocalDate to = sorted.last();
+        Map<LocalDate, HabitCompletionRepository.DaySummary> completions = habitCompletionRepository
+                .summarizeDays(userId, from, to).stream()
+                .collect(Collectors.toMap(HabitCompletionRepository.DaySummary::getDay, Function.identity()));
+        Map<LocalDate, Map<String, Integer>> moods = countMoodsByDay(
+                moodRepository.findMoodTimes(userId, from.atStartOfDay(), to.atTime(LocalTime.MAX)));
+
+        locked.forEach((day, activity) -> {
+            apply(activity, completions.get(day), moods.getOrDefault(day, Collections.emptyMap()));
+            activityRepository.save(activity);
+        });
+    }
+
+    /**
+     * Replaces all of a user's rollup rows with ones built from the raw tables, and marks the
+     * user as backfilled in the same transaction.
+     * Used by the backfill job, which runs while the application is already serving requests:
+     * writers for the user wait until the rebuild commits and then apply their change to the
+     * rebuilt rows, and the rebuild waits for writers already running and then reads what they wrote.
+     *
+     * @return number of days written
+     */
+    @Transactional
+    public int rebuildUser(Long userId) {
+        userRepository.findForUpdate(userId);
+        activityRepository.deleteAll(activityRepository.findByUserId(userId));
+        activityRepository.flush();
+
+        Map<LocalDate, HabitCompletionRepository.DaySummary> completions = habitCompletionRepository
+                .summarizeAllDays(userId).stream()
+                .collect(Collectors.toMap(HabitCompletionRepository.DaySummary::getDay, Function.identity()));
+        Map<LocalDate, Map<String, Integer>> moods = countMoodsByDay(moodRepository.findAllMoodTimes(userId));
+
+        Set<LocalDate> days = new TreeSet<>(completions.keySet());
+        days.addAll(moods.keySet());
+        List<UserDailyActivity> rows = new ArrayList<>(days.size());
+        for (LocalDate day : days) {
+            UserDailyActivity activity = UserDailyActivity.builder()
+                    .userId(userId)
+                    .activityDay(day)
+                    .build();
+            apply(activity, completions.get(day), moods.getOrDefault(day, Collections.emptyMap()));
+            rows.add(activity);
+        }
+        activityRepository.saveAll(rows);
+        userRepository.markActivityBackfilled(userId);
+        return rows.size();
+    }
+
+    /**
+     * Rows for every day in the range that had any activity, oldest first, with mood counts loaded.
+     */
+    public List<UserDailyActivity> getRange(Long userId, LocalDate from, LocalDate to) {
+        return activityRepository.findRange(userId, from, to);
+    }
+
+    public Optional<UserDailyActivity> getDay(Long userId, LocalDate day) {
+        return getRange(userId, day, day).stream().findFirst();
+    }
+
+    /**
+     * Every day with at least one completion, oldest first. Mood counts are not loaded.
+     */
+    public List<UserDailyActivity> getCompletionDays(Long userId) {
+        return activityRepository.findByUserIdAndCompletionCountGreaterThanOrderByActivityDay(userId, 0);
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        activityRepository.deleteAll(activityRepository.findByUserId(userId));
+    }
+
+    private void holdUser(Long userId) {
+        userRepository.findForShare(userId);
+    }
+
+    private UserDailyActivity lockDay(Long userId, LocalDate day) {
+        activityRepository.insertIfAbsent(userId, day);
+        return activityRepository.findForUpdate(userId, day)
+                .orElseThrow(() -> new IllegalStateException("Daily activity row missing for user " + userId + " on " + day));
+    }
+
+    private static void apply(UserDailyActivity activity, HabitCompletionRepository.DaySummary completions,
+                              Map<String, Integer> moods) {
+        activity.setCompletionCount(completions != null ? (int) completions.getCompletions() : 0);
+        activity.setDistinctHabitCount(completions != null ? (int) completions.getHabits() : 0);
+        activity.setFirstCompletionAt(completions != null ? completions.getFirstAt() : null);
+        activity.setLastCompletionAt(completions != null ? completions.getLastAt() : null);
+        activity.getMoodCounts().clear();
+        activity.getMoodCounts().putAll(moods);
+    }
+
+    private static Map<LocalDate, Map<String, Integer>> countMoodsByDay(List<MoodRepository.MoodTime> moods) {
+        Map<LocalDate, Map<String, Integer>> byDay = new HashMap<>();
+        for (MoodRepository.MoodTime mood : moods) {
+            byDay.computeIfAbsent(mood.getCreatedAt().toLocalDate(), d -> new HashMap<>())
+                    .merge(mood.getMoodType(), 1, Integer::sum);
+        }
+        return byDay;
+    }
+}
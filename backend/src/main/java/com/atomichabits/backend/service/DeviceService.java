@@ -1,45 +1,167 @@
 package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.dto.DeviceMetadata;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives browser, operating system and device type from a User-Agent header.
+ *
+ * <p>A user agent is scanned once by a single compiled pattern that knows every token of
+ * interest; where several browsers or systems are named (Edge and Opera also claim to be Chrome
+ * and Safari, Android also names Linux, iOS also names Mac OS X) the most specific one wins.
+ * Results are kept in a small LRU, since logins, refresh tokens and login history keep asking
+ * about the same few user agents.</p>
+ */
 @Service
 public class DeviceService {
 
+    private static final String UNKNOWN = "Unknown";
+    // Longer headers are parsed but not remembered
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    private static final Pattern TOKENS = Pattern.compile(
+            "(?<edge>Edg(?:e|A|iOS)?/)"
+                    + "|(?<opera>OPR/|Opera)"
+                    + "|(?<samsung>SamsungBrowser/)"
+                    + "|(?<firefox>Firefox/|FxiOS/)"
+                    + "|(?<chrome>Chrome/|CriOS/|Chromium/)"
+                    + "|(?<ie>Trident/|MSIE )"
+                    + "|(?<safari>Safari/)"
+                    + "|(?<windowsPhone>Windows Phone)"
+                    + "|Windows NT (?<windows>\\d+\\.\\d+)"
+                    + "|(?<android>Android)(?: (?<androidVersion>\\d+(?:\\.\\d+)?))?"
+                    + "|CPU (?:iPhone )?OS (?<ios>\\d+(?:_\\d+)?)"
+                    + "|(?<iPad>iPad)"
+                    + "|(?<iPhone>iPhone|iPod)"
+                    + "|(?<mac>Mac OS X)(?: (?<macVersion>\\d+(?:[_.]\\d+)*))?"
+                    + "|(?<chromeOs>CrOS)"
+                    + "|(?<linux>Linux)"
+                    + "|(?<mobile>Mobile)"
+                    + "|(?<bot>[Bb]ot\\b|crawler|spider)");
+
+    // Most specific first
+    private static final String[] BROWSERS = {"edge", "opera", "samsung", "firefox", "chrome", "ie", "safari"};
+    private static final String[] BROWSER_NAMES = {"Edge", "Opera", "Samsung Internet", "Firefox", "Chrome", "Internet Explorer", "Safari"};
+
+    private final Map<String, DeviceMetadata> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DeviceMetadata> eldest) {
+            return size() > maxCachedAgents;
+        }
+    });
+
+    @Value("${app.devices.max-cached-agents:1000}")
+    private int maxCachedAgents = 1000;
+
     public DeviceMetadata parseUserAgent(String userAgent) {
         if (userAgent == null) {
             return DeviceMetadata.builder()
-                    .browser("Unknown")
-                    .operatingSystem("Unknown")
-                    .deviceType("Unknown")
+                    .browser(UNKNOWN)
+                    .operatingSystem(UNKNOWN)
+                    .deviceType(UNKNOWN)
                     .build();
         }
+        DeviceMetadata metadata = cache.get(userAgent);
+        if (metadata == null) {
+            metadata = match(userAgent);
+            if (userAgent.length() <= MAX_CACHED_LENGTH) {
+                cache.put(userAgent, metadata);
+            }
+        }
+        // Callers get their own copy of the cached value
+        return new DeviceMetadata(metadata.getBrowser(), metadata.getOperatingSystem(), metadata.getDeviceType());
+    }
 
-        String browser = "Unknown";
-        String os = "Unknown";
-        String deviceType = "Desktop"; // Default
+    static DeviceMetadata match(String userAgent) {
+        int browser = BROWSERS.length;
+        String os = null;
+        int osRank = Integer.MAX_VALUE;
+        boolean iPad = false;
+        boolean iPhone = false;
+        boolean android = false;
+        boolean mobile = false;
+        boolean bot = false;
 
-        // Simple OS detection
-        if (userAgent.contains("Windows")) os = "Windows";
-        else if (userAgent.contains("Mac OS")) os = "macOS";
-        else if (userAgent.contains("Linux")) os = "Linux";
-        else if (userAgent.contains("Android")) { os = "Android"; deviceType = "Mobile"; }
-        else if (userAgent.contains("iPhone") || userAgent.contains("iPad")) { os = "iOS"; deviceType = "Mobile"; }
+        Matcher matcher = TOKENS.matcher(userAgent);
+        while (matcher.find()) {
+            for (int i = 0; i < browser; i++) {
+                if (matcher.start(BROWSERS[i]) >= 0) {
+                    browser = i;
+                    break;
+                }
+            }
+            if (matcher.start("windowsPhone") >= 0 && osRank > 0) {
+                os = "Windows Phone";
+                osRank = 0;
+            } else if (matcher.start("ios") >= 0 && osRank > 1) {
+                os = "iOS " + matcher.group("ios").replace('_', '.');
+                osRank = 1;
+            } else if ((matcher.start("iPad") >= 0 || matcher.start("iPhone") >= 0) && osRank > 2) {
+                // iOS without a version
+                os = "iOS";
+                osRank = 2;
+            } else if (matcher.start("android") >= 0 && osRank > 3) {
+                String version = matcher.group("androidVersion");
+                os = version != null ? "Android " + version : "Android";
+                osRank = 3;
+            } else if (matcher.start("chromeOs") >= 0 && osRank > 4) {
+                os = "ChromeOS";
+                osRank = 4;
+            } else if (matcher.start("windows") >= 0 && osRank > 5) {
+                os = windowsName(matcher.group("windows"));
+                osRank = 5;
+            } else if (matcher.start("mac") >= 0 && osRank > 6) {
+                String version = matcher.group("macVersion");
+                os = version != null ? "macOS " + version.replace('_', '.') : "macOS";
+                osRank = 6;
+            } else if (matcher.start("linux") >= 0 && osRank > 7) {
+                os = "Linux";
+                osRank = 7;
+            }
+            iPad |= matcher.start("iPad") >= 0;
+            iPhone |= matcher.start("iPhone") >= 0;
+            android |= matcher.start("android") >= 0;
+            mobile |= matcher.start("mobile") >= 0;
+            bot |= matcher.start("bot") >= 0;
+        }
 
-        // Simple Browser detection
-        if (userAgent.contains("Edg")) browser = "Edge";
-        else if (userAgent.contains("Chrome") && !userAgent.contains("Edg")) browser = "Chrome";
-        else if (userAgent.contains("Firefox")) browser = "Firefox";
-        else if (userAgent.contains("Safari") && !userAgent.contains("Chrome")) browser = "Safari";
-        else if (userAgent.contains("Trident")) browser = "Internet Explorer";
+        String deviceType;
+        if (bot) {
+            deviceType = "Bot";
+        } else if (iPad || (android && !mobile)) {
+            deviceType = "Tablet";
+        } else if (iPhone || android || osRank == 0 || mobile) {
+            deviceType = "Mobile";
+        } else {
+            deviceType = "Desktop";
+        }
 
         return DeviceMetadata.builder()
-                .browser(browser)
-                .operatingSystem(os)
+                .browser(browser < BROWSERS.length ? BROWSER_NAMES[browser] : UNKNOWN)
+                .operatingSystem(os != null ? os : UNKNOWN)
                 .deviceType(deviceType)
                 .build();
     }
 
+    private static String windowsName(String ntVersion) {
+        return switch (ntVersion) {
+            case "10.0" -> "Windows 10";
+            case "6.3" -> "Windows 8.1";
+            case "6.2" -> "Windows 8";
+            case "6.1" -> "Windows 7";
+            case "6.0" -> "Windows Vista";
+            case "5.1", "5.2" -> "Windows XP";
+            default -> "Windows";
+        };
+    }
+
     public String getLocationFromIp(String ipAddress) {
         // Placeholder for GeoIP service
         if (ipAddress.equals("127.0.0.1") || ipAddress.equals("0:0:0:0:0:0:0:1")) {
@@ -2,122 +2,152 @@ package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.dto.BadgeResponse;
 import com.atomichabits.backend.model.Badge;
-import com.atomichabits.backend.model.User;
 import com.atomichabits.backend.repository.BadgeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 
-import com.atomichabits.backend.model.HabitCompletion;
-import java.time.DayOfWeek;
-import java.time.LocalTime;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Serves users' badges with localized texts from two caches: badge texts per message bundle,
+ * filled for every {@link BadgeRule} the first time a bundle is used, and each user's earned
+ * badges, dropped by {@link #evictUserBadges} when new ones are awarded. A warm request does no
+ * query and no message resolution.
+ */
 @Service
 public class GamificationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(GamificationService.class);
+
     private final BadgeRepository badgeRepository;
     private final MessageSource messageSource;
+    // Locales that have their own messages file; requests for any other locale share the default bundle
+    private final Set<Locale> bundles;
+    private final ConcurrentMap<Locale, ConcurrentMap<String, String>> texts = new ConcurrentHashMap<>();
+    private final Map<Long, List<Badge>> userBadges = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<Badge>> eldest) {
+            return size() > maxCachedUsers;
+        }
+    });
+    private final AtomicLong evictions = new AtomicLong();
 
-    public GamificationService(BadgeRepository badgeRepository, MessageSource messageSource) {
+    @Value("${app.badges.max-cached-users:10000}")
+    private int maxCachedUsers = 10000;
+
+    public GamificationService(BadgeRepository badgeRepository, MessageSource messageSource,
+                               @Value("${spring.messages.basename:messages}") String basename) {
         this.badgeRepository = badgeRepository;
         this.messageSource = messageSource;
+        this.bundles = findBundles(basename);
     }
 
-    public void checkAndAwardBadges(User user, int currentStreak, int totalCompletions, List<HabitCompletion> completions) {
-        // Streak Badges
-        if (currentStreak >= 3) {
-            awardBadgeIfNotExists(user, "badge.streak.3.title", "badge.streak.3.desc", "flame");
-        }
-        if (currentStreak >= 7) {
-            awardBadgeIfNotExists(user, "badge.streak.7.title", "badge.streak.7.desc", "zap");
-        }
-        if (currentStreak >= 14) {
-            awardBadgeIfNotExists(user, "badge.streak.14.title", "badge.streak.14.desc", "zap-filled");
-        }
-        if (currentStreak >= 30) {
-            awardBadgeIfNotExists(user, "badge.streak.30.title", "badge.streak.30.desc", "diamond");
-        }
-
-        // Total Completion Badges
-        if (totalCompletions >= 1) {
-            awardBadgeIfNotExists(user, "badge.count.1.title", "badge.count.1.desc", "footprints");
-        }
-        if (totalCompletions >= 10) {
-            awardBadgeIfNotExists(user, "badge.count.10.title", "badge.count.10.desc", "arrow-up");
-        }
-        if (totalCompletions >= 50) {
-            awardBadgeIfNotExists(user, "badge.count.50.title", "badge.count.50.desc", "star");
+    public List<Badge> getUserBadges(Long userId) {
+        List<Badge> cached = userBadges.get(userId);
+        if (cached != null) {
+            return cached;
         }
-        if (totalCompletions >= 100) {
-            awardBadgeIfNotExists(user, "badge.count.100.title", "badge.count.100.desc", "trophy");
+        long evictionsBefore = evictions.get();
+        List<Badge> loaded = badgeRepository.findByUserId(userId).stream()
+                .map(GamificationService::copyOf)
+                .collect(Collectors.toUnmodifiableList());
+        // An award committed while loading may be missing from what was read
+        if (evictions.get() == evictionsBefore) {
+            userBadges.put(userId, loaded);
         }
+        return loaded;
+    }
 
-        // Time-based Badges
-        checkTimeBasedBadges(user, completions);
+    /**
+     * Called once newly awarded badges are committed.
+     */
+    public void evictUserBadges(Long userId) {
+        evictions.incrementAndGet();
+        userBadges.remove(userId);
     }
 
-    private void checkTimeBasedBadges(User user, List<HabitCompletion> completions) {
-        boolean hasEarlyMorning = completions.stream()
-                .anyMatch(c -> {
-                    LocalTime time = c.getCompletedAt().toLocalTime();
-                    return time.isAfter(LocalTime.of(5, 0)) && time.isBefore(LocalTime.of(8, 0));
-                });
-        
-        if (hasEarlyMorning) {
-            awardBadgeIfNotExists(user, "badge.time.early.title", "badge.time.early.desc", "sunrise");
-        }
+    public List<BadgeResponse> getLocalizedUserBadges(Long userId) {
+        return getLocalizedBadges(getUserBadges(userId));
+    }
 
-        boolean hasLateNight = completions.stream()
-                .anyMatch(c -> {
-                    LocalTime time = c.getCompletedAt().toLocalTime();
-                    return time.isAfter(LocalTime.of(22, 0)) || time.isBefore(LocalTime.of(2, 0));
-                });
+    public List<BadgeResponse> getLocalizedBadges(List<Badge> badges) {
+        Locale locale = LocaleContextHolder.getLocale();
+        Map<String, String> localized = texts(locale);
+        return badges.stream()
+                .map(badge -> BadgeResponse.builder()
+                        .id(badge.getId())
+                        .name(text(localized, badge.getName(), locale))
+                        .description(text(localized, badge.getDescription(), locale))
+                        .icon(badge.getIcon())
+                        .earnedAt(badge.getEarnedAt())
+                        .build())
+                .collect(Collectors.toList());
+    }
 
-        if (hasLateNight) {
-            awardBadgeIfNotExists(user, "badge.time.late.title", "badge.time.late.desc", "moon");
-        }
+    private Map<String, String> texts(Locale locale) {
+        return texts.computeIfAbsent(bundleFor(locale), bundle -> {
+            ConcurrentMap<String, String> resolved = new ConcurrentHashMap<>();
+            for (BadgeRule rule : BadgeRule.values()) {
+                resolved.put(rule.getName(), resolve(rule.getName(), locale));
+                resolved.put(rule.getDescription(), resolve(rule.getDescription(), locale));
+            }
+            return resolved;
+        });
+    }
 
-        // Weekend Warrior: Completed habits on both Sat and Sun in the same weekend?
-        // Simplified: Has completed habits on a Saturday AND a Sunday (ever)
-        Set<DayOfWeek> days = completions.stream()
-                .map(c -> c.getCompletedAt().getDayOfWeek())
-                .collect(Collectors.toSet());
-        
-        if (days.contains(DayOfWeek.SATURDAY) && days.contains(DayOfWeek.SUNDAY)) {
-            awardBadgeIfNotExists(user, "badge.time.weekend.title", "badge.time.weekend.desc", "calendar");
-        }
+    // Keys of retired rules are resolved on first use and kept as well
+    private String text(Map<String, String> localized, String key, Locale locale) {
+        return localized.computeIfAbsent(key, k -> resolve(k, locale));
     }
 
-    private void awardBadgeIfNotExists(User user, String name, String description, String icon) {
-        if (!badgeRepository.existsByUserIdAndName(user.getId(), name)) {
-            Badge badge = Badge.builder()
-                    .user(user)
-                    .name(name)
-                    .description(description)
-                    .icon(icon)
-                    .build();
-            badgeRepository.save(badge);
-        }
+    private String resolve(String key, Locale locale) {
+        return messageSource.getMessage(key, null, key, locale);
     }
 
-    public List<Badge> getUserBadges(Long userId) {
-        return badgeRepository.findByUserId(userId);
+    private Locale bundleFor(Locale locale) {
+        Locale withCountry = new Locale(locale.getLanguage(), locale.getCountry());
+        if (bundles.contains(withCountry)) {
+            return withCountry;
+        }
+        Locale language = new Locale(locale.getLanguage());
+        return bundles.contains(language) ? language : Locale.ROOT;
     }
 
-    public List<BadgeResponse> getLocalizedUserBadges(Long userId) {
-        return getUserBadges(userId).stream()
-                .map(this::mapToLocalizedResponse)
-                .collect(Collectors.toList());
+    private static Set<Locale> findBundles(String basenames) {
+        Set<Locale> found = new HashSet<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String basename : basenames.split(",")) {
+            String base = basename.trim();
+            String prefix = base.substring(base.lastIndexOf('/') + 1) + "_";
+            try {
+                for (Resource resource : resolver.getResources("classpath*:" + base + "_*.properties")) {
+                    String filename = Objects.requireNonNull(resource.getFilename());
+                    String[] parts = filename.substring(prefix.length(), filename.length() - ".properties".length()).split("_");
+                    found.add(parts.length > 1 ? new Locale(parts[0], parts[1]) : new Locale(parts[0]));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not list message bundles for {}: {}", base, e.getMessage());
+            }
+        }
+        return Collections.unmodifiableSet(found);
     }
 
-    private BadgeResponse mapToLocalizedResponse(Badge badge) {
-        return BadgeResponse.builder()
+    private static Badge copyOf(Badge badge) {
+        return Badge.builder()
                 .id(badge.getId())
-                .name(messageSource.getMessage(badge.getName(), null, badge.getName(), LocaleContextHolder.getLocale()))
-                .description(messageSource.getMessage(badge.getDescription(), null, badge.getDescription(), LocaleContextHolder.getLocale()))
+                .name(badge.getName())
+                .description(badge.getDescription())
                 .icon(badge.getIcon())
                 .earnedAt(badge.getEarnedAt())
                 .build();
@@ -6,21 +6,26 @@ import com.atomichabits.backend.dto.HabitRequest;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.exception.ResourceNotFoundException;
 import com.atomichabits.backend.exception.UnauthorizedException;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
 import com.atomichabits.backend.model.Goal;
 import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.User;
 import com.atomichabits.backend.repository.GoalRepository;
 import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitCompletionRepository.GoalCompletionCount;
 import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,19 +36,20 @@ public class GoalService {
     private final HabitCompletionRepository habitCompletionRepository;
     private final UserRepository userRepository;
     private final HabitService habitService;
+    private final ChangeLogService changeLogService;
 
-    public GoalService(GoalRepository goalRepository, HabitRepository habitRepository, HabitCompletionRepository habitCompletionRepository, UserRepository userRepository, HabitService habitService) {
+    public GoalService(GoalRepository goalRepository, HabitRepository habitRepository, HabitCompletionRepository habitCompletionRepository, UserRepository userRepository, HabitService habitService, ChangeLogService changeLogService) {
         this.goalRepository = goalRepository;
         this.habitRepository = habitRepository;
         this.habitCompletionRepository = habitCompletionRepository;
         this.userRepository = userRepository;
         this.habitService = habitService;
+        this.changeLogService = changeLogService;
     }
 
     @Transactional
-    public GoalResponse createGoal(String email, GoalRequest request) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public GoalResponse createGoal(Long userId, GoalRequest request) {
+        User user = userRepository.getReferenceById(userId);
 
         Goal goal = Goal.builder()
                 .user(user)
@@ -70,48 +76,51 @@ public class GoalService {
                         .build())
                 .collect(Collectors.toList());
             habitRepository.saveAll(habits);
-            // Re-fetch to include habits in response or manually set them
-            // Since we return mapToResponse(savedGoal), and savedGoal.getHabits() is null/empty because we didn't add to the list
-            // Let's refetch
-            savedGoal = goalRepository.findById(savedGoal.getId()).orElse(savedGoal);
+            changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT,
+                    habits.stream().map(Habit::getId).collect(Collectors.toList()));
+            // Habit owns the relationship; keep the in-memory side in step for the response
+            savedGoal.getHabits().addAll(habits);
         }
 
+        changeLogService.record(userId, EntityType.GOAL, Operation.UPSERT, savedGoal.getId());
         return mapToResponse(savedGoal);
     }
 
+    /**
+     * The user's goals among {@code goalIds}; ids that are unknown or belong to someone else are skipped.
+     */
     @Transactional(readOnly = true)
-    public List<GoalResponse> getUserGoals(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public List<GoalResponse> getGoals(Long userId, Collection<Long> goalIds) {
+        return mapToResponses(goalRepository.findWithHabitsByUserIdAndIdIn(userId, goalIds));
+    }
 
-        return goalRepository.findByUserId(user.getId()).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<GoalResponse> getGoals(Long userId) {
+        return mapToResponses(goalRepository.findWithHabitsByUserId(userId));
     }
 
     @Transactional(readOnly = true)
-    public GoalResponse getGoal(Long goalId, String email) {
-        Goal goal = goalRepository.findById(goalId)
+    public GoalResponse getGoal(Long goalId, Long userId) {
+        Goal goal = goalRepository.findWithHabitsById(goalId)
                 .orElseThrow(() -> new ResourceNotFoundException("Goal not found"));
         
-        if (!goal.getUser().getEmail().equals(email)) {
+        if (!goal.getUser().getId().equals(userId)) {
              throw new UnauthorizedException("You are not authorized to view this goal");
         }
         return mapToResponse(goal);
     }
 
     @Transactional
-    public GoalResponse addHabitsToGoal(Long goalId, List<HabitRequest> habitRequests, String email) {
-        Goal goal = goalRepository.findById(goalId)
+    public GoalResponse addHabitsToGoal(Long goalId, List<HabitRequest> habitRequests, Long userId) {
+        Goal goal = goalRepository.findWithHabitsById(goalId)
                 .orElseThrow(() -> new ResourceNotFoundException("Goal not found"));
 
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        if (!goal.getUser().getId().equals(user.getId())) {
+        if (!goal.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to modify this goal");
         }
 
+        User user = userRepository.getReferenceById(userId);
+
         List<Habit> habits = habitRequests.stream()
                 .map(request -> Habit.builder()
                         .user(user)
@@ -125,50 +134,80 @@ public class GoalService {
                 .collect(Collectors.toList());
 
         habitRepository.saveAll(habits);
-        
-        // Refresh goal to get updated habits list
-        // Since we saved habits separately and mappedBy is used, we might need to rely on the return value
-        // But let's just refetch or reconstruct
-        // The mappedBy="goal" in Goal entity means Goal doesn't own the relationship, Habit does.
-        // So saving Habits with Goal set is correct.
-        
-        // To return the updated goal with habits, we can just fetch the habits for this goal
-        // or rely on Hibernate session if we are in transaction.
-        // Since we just saved, let's just manually add to the response for efficiency
-        
-        // However, standard way is to return the updated entity.
-        // Let's refetch to be safe and consistent
-        
-        return getGoal(goalId, email);
+        changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT,
+                habits.stream().map(Habit::getId).collect(Collectors.toList()));
+        changeLogService.record(userId, EntityType.GOAL, Operation.UPSERT, goalId);
+
+        goal.getHabits().addAll(habits);
+        return mapToResponse(goal);
     }
 
     private GoalResponse mapToResponse(Goal goal) {
-        // We need to map habits too.
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        
-        List<HabitResponse> habitResponses = new ArrayList<>();
-        if (goal.getHabits() != null) {
-            habitResponses = goal.getHabits().stream()
-                    .map(habit -> {
-                        boolean completedToday = habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(
-                                habit.getId(), startOfDay, endOfDay);
-                        return HabitResponse.builder()
-                            .id(habit.getId())
-                            .name(habit.getName())
-                            .twoMinuteVersion(habit.getTwoMinuteVersion())
-                            .cueImplementationIntention(habit.getCueImplementationIntention())
-                            .cueHabitStack(habit.getCueHabitStack())
-                            .isActive(habit.isActive())
-                            .completedToday(completedToday)
-                            .scheduledToday(habitService.isScheduledForDate(habit, LocalDate.now()))
-                            .frequency(null) // frequency is handled at the habit level
-                            .createdAt(habit.getCreatedAt())
-                            .build();
-                    })
+        return mapToResponses(List.of(goal)).get(0);
+    }
+
+    /**
+     * Maps goals whose habits are already loaded. Today's status of every habit and the progress
+     * of every goal take one query each, however many goals and habits there are.
+     */
+    private List<GoalResponse> mapToResponses(List<Goal> goals) {
+        LocalDate today = LocalDate.now();
+        List<Long> habitIds = goals.stream()
+                .flatMap(goal -> goal.getHabits().stream())
+                .map(Habit::getId)
+                .collect(Collectors.toList());
+        if (habitIds.isEmpty()) {
+            return goals.stream()
+                    .map(goal -> toResponse(goal, Collections.emptyList(), 0, 0))
                     .collect(Collectors.toList());
         }
 
+        Set<Long> completedToday = new HashSet<>(habitCompletionRepository.findHabitIdsCompletedOn(habitIds, today));
+        Map<Long, Long> completionsByGoal = habitCompletionRepository.countCompletionsInGoalWindows(
+                        goals.stream().map(Goal::getId).collect(Collectors.toList()), today).stream()
+                .collect(Collectors.toMap(GoalCompletionCount::getGoalId, GoalCompletionCount::getCompletions));
+
+        return goals.stream()
+                .map(goal -> {
+                    List<HabitResponse> habitResponses = goal.getHabits().stream()
+                            .map(habit -> toHabitResponse(habit, completedToday.contains(habit.getId()), today))
+                            .collect(Collectors.toList());
+                    long scheduledDays = goal.getHabits().stream()
+                            .mapToLong(habit -> scheduledDays(goal, habit, today))
+                            .sum();
+                    return toResponse(goal, habitResponses,
+                            completionsByGoal.getOrDefault(goal.getId(), 0L), scheduledDays);
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Days the habit was due inside the goal's window: from the later of goal start and habit
+    // creation to the earlier of goal end and today
+    private static long scheduledDays(Goal goal, Habit habit, LocalDate today) {
+        LocalDate from = habit.getCreatedAt() != null ? habit.getCreatedAt().toLocalDate() : today;
+        if (goal.getStartDate() != null && goal.getStartDate().isAfter(from)) {
+            from = goal.getStartDate();
+        }
+        LocalDate to = goal.getEndDate() != null && goal.getEndDate().isBefore(today) ? goal.getEndDate() : today;
+        return HabitSchedule.countScheduledDays(HabitSchedule.weekdayMask(habit), from, to);
+    }
+
+    private HabitResponse toHabitResponse(Habit habit, boolean completedToday, LocalDate today) {
+        return HabitResponse.builder()
+                .id(habit.getId())
+                .name(habit.getName())
+                .twoMinuteVersion(habit.getTwoMinuteVersion())
+                .cueImplementationIntention(habit.getCueImplementationIntention())
+                .cueHabitStack(habit.getCueHabitStack())
+                .isActive(habit.isActive())
+                .completedToday(completedToday)
+                .scheduledToday(habitService.isScheduledForDate(habit, today))
+                .frequency(null) // frequency is handled at the habit level
+                .createdAt(habit.getCreatedAt())
+                .build();
+    }
+
+    private static GoalResponse toResponse(Goal goal, List<HabitResponse> habits, long completions, long scheduledDays) {
         return GoalResponse.builder()
                 .id(goal.getId())
                 .name(goal.getName())
@@ -176,7 +215,10 @@ public class GoalService {
                 .startDate(goal.getStartDate())
                 .endDate(goal.getEndDate())
                 .status(goal.getStatus())
-                .habits(habitResponses)
+                .habits(habits)
+                .completions((int) completions)
+                .scheduledDays((int) scheduledDays)
+                .completionRate(scheduledDays > 0 ? (double) completions / scheduledDays : 0)
                 .createdAt(goal.getCreatedAt())
                 .build();
     }
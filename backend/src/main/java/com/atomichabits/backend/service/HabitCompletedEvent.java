@@ -0,0 +1,11 @@
+package com.atomichabits.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published by {@link HabitService} when completions are recorded; only newly inserted ones are
+ * included. Listeners run once the recording transaction commits.
+ */
+public record HabitCompletedEvent(Long userId, List<LocalDateTime> completedAts) {
+}
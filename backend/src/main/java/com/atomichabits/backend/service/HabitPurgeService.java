@@ -0,0 +1,92 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Removes habits deleted in archive mode. Completions go in chunks, each in its own short
+ * transaction, so a habit with years of history never holds locks for long; the habit row,
+ * its index and streak state and the affected daily activity rows follow in a final transaction.
+ */
+@Service
+public class HabitPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HabitPurgeService.class);
+    private static final int HABITS_PER_RUN = 20;
+
+    private final HabitRepository habitRepository;
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final CompletionIndexService completionIndexService;
+    private final HabitStreakStateService streakStateService;
+    private final DailyActivityService dailyActivityService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.habits.purge-chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    public HabitPurgeService(HabitRepository habitRepository,
+                             HabitCompletionRepository habitCompletionRepository,
+                             CompletionIndexService completionIndexService,
+                             HabitStreakStateService streakStateService,
+                             DailyActivityService dailyActivityService,
+                             PlatformTransactionManager transactionManager) {
+        this.habitRepository = habitRepository;
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.completionIndexService = completionIndexService;
+        this.streakStateService = streakStateService;
+        this.dailyActivityService = dailyActivityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.habits.purge-delay-ms:60000}")
+    public void purgeArchivedHabits() {
+        List<Habit> archived = habitRepository.findByArchivedAtIsNotNull(
+                PageRequest.of(0, HABITS_PER_RUN, Sort.by("archivedAt"))).getContent();
+        for (Habit habit : archived) {
+            try {
+                purge(habit);
+            } catch (Exception e) {
+                // Left archived; the next run retries
+                logger.warn("Failed to purge archived habit {}: {}", habit.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return number of completions deleted
+     */
+    public long purge(Habit habit) {
+        Long habitId = habit.getId();
+        Long userId = habit.getUser().getId();
+        List<LocalDate> days = habitCompletionRepository.findCompletionDaysByHabitId(habitId);
+
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> habitCompletionRepository.deleteChunkByHabitId(habitId, chunkSize));
+            deleted += chunk;
+        } while (chunk >= chunkSize);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            completionIndexService.remove(habitId);
+            streakStateService.delete(habitId);
+            dailyActivityService.recomputeDays(userId, days);
+            habitRepository.deleteById(habitId);
+        });
+        logger.info("Purged archived habit {} and {} completions", habitId, deleted);
+        return deleted;
+    }
+}
@@ -0,0 +1,82 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Weekday schedule helpers shared by the habit, streak and notification code.
+ * A schedule is a 7-bit mask: bit 0 = Monday ... bit 6 = Sunday. The stored
+ * {@code habits.frequency_mask} uses 0 for "daily"; {@link #weekdayMask} expands
+ * that to {@link CompletionBitmap#EVERY_DAY}.
+ */
+public final class HabitSchedule {
+
+    /** Stored mask value for habits without explicit days. */
+    public static final int DAILY = 0;
+
+    private HabitSchedule() {
+    }
+
+    public static int weekdayMask(Habit habit) {
+        int mask = habit.getFrequencyMask() & CompletionBitmap.EVERY_DAY;
+        return mask == DAILY ? CompletionBitmap.EVERY_DAY : mask;
+    }
+
+    /**
+     * Stored mask for a list of day names (case-insensitive). null or empty means daily.
+     *
+     * @throws IllegalArgumentException if a name is not a day of the week
+     */
+    public static int fromDays(List<String> days) {
+        if (days == null || days.isEmpty()) return DAILY;
+        int mask = 0;
+        for (String day : days) {
+            mask |= bit(DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)));
+        }
+        return mask;
+    }
+
+    /**
+     * Day names for a stored mask, Monday first; null for daily habits.
+     */
+    public static List<String> toDays(int storedMask) {
+        int mask = storedMask & CompletionBitmap.EVERY_DAY;
+        if (mask == DAILY) return null;
+        List<String> days = new ArrayList<>(Integer.bitCount(mask));
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((mask & bit(day)) != 0) {
+                days.add(day.name());
+            }
+        }
+        return days;
+    }
+
+    public static boolean isScheduled(int weekdayMask, LocalDate date) {
+        return (weekdayMask & bit(date.getDayOfWeek())) != 0;
+    }
+
+    /**
+     * Count how many days between start and end (inclusive) are scheduled.
+     */
+    public static long countScheduledDays(int weekdayMask, LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) return 0;
+        int mask = weekdayMask & CompletionBitmap.EVERY_DAY;
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        int remainder = (int) (days % 7);
+
+        // Rotate the mask so bit 0 is the start day; the leftover days are then its low bits.
+        int shift = start.getDayOfWeek().getValue() - 1;
+        int rotated = ((mask >>> shift) | (mask << (7 - shift))) & CompletionBitmap.EVERY_DAY;
+        return (days / 7) * Integer.bitCount(mask) + Integer.bitCount(rotated & ((1 << remainder) - 1));
+    }
+
+    public static int bit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+}
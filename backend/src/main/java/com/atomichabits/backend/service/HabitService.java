@@ -1,28 +1,29 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.dto.CompletionBatchRequest;
+import com.atomichabits.backend.dto.CompletionBatchResponse;
 import com.atomichabits.backend.dto.HabitRequest;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.dto.HabitStatsResponse;
 import com.atomichabits.backend.exception.ResourceNotFoundException;
 import com.atomichabits.backend.exception.UnauthorizedException;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
 import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.HabitCompletion;
 import com.atomichabits.backend.model.User;
 import com.atomichabits.backend.repository.HabitCompletionRepository;
 import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,56 +32,45 @@ public class HabitService {
     private final HabitRepository habitRepository;
     private final HabitCompletionRepository habitCompletionRepository;
     private final UserRepository userRepository;
-    private final ObjectMapper objectMapper;
+    private final CompletionIndexService completionIndexService;
+    private final HabitStreakStateService streakStateService;
+    private final DailyActivityService dailyActivityService;
+    private final ChangeLogService changeLogService;
+    private final UserAggregateService userAggregateService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public HabitService(HabitRepository habitRepository, HabitCompletionRepository habitCompletionRepository,
-                        UserRepository userRepository, ObjectMapper objectMapper) {
+                        UserRepository userRepository,
+                        CompletionIndexService completionIndexService,
+                        HabitStreakStateService streakStateService,
+                        DailyActivityService dailyActivityService,
+                        ChangeLogService changeLogService,
+                        UserAggregateService userAggregateService,
+                        ApplicationEventPublisher eventPublisher) {
         this.habitRepository = habitRepository;
         this.habitCompletionRepository = habitCompletionRepository;
         this.userRepository = userRepository;
-        this.objectMapper = objectMapper;
-    }
-
-    // --- Frequency helpers ---
-
-    private String toFrequencyJson(List<String> frequency) {
-        if (frequency == null || frequency.isEmpty()) return null;
-        try {
-            // Normalize to uppercase
-            List<String> normalized = frequency.stream()
-                    .map(String::toUpperCase)
-                    .collect(Collectors.toList());
-            return objectMapper.writeValueAsString(normalized);
-        } catch (JsonProcessingException e) {
-            return null;
-        }
-    }
-
-    private List<String> fromFrequencyJson(String json) {
-        if (json == null || json.isBlank()) return null;
-        try {
-            return objectMapper.readValue(json, new TypeReference<List<String>>() {});
-        } catch (JsonProcessingException e) {
-            return null;
-        }
+        this.completionIndexService = completionIndexService;
+        this.streakStateService = streakStateService;
+        this.dailyActivityService = dailyActivityService;
+        this.changeLogService = changeLogService;
+        this.userAggregateService = userAggregateService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Check if a habit is scheduled for a given date based on its frequency.
-     * null/empty frequency = daily (always scheduled).
+     * A frequency mask of 0 = daily (always scheduled).
      */
     public boolean isScheduledForDate(Habit habit, LocalDate date) {
-        List<String> freq = fromFrequencyJson(habit.getFrequencyJson());
-        if (freq == null || freq.isEmpty()) return true; // daily
-        String dayName = date.getDayOfWeek().name(); // e.g. "MONDAY"
-        return freq.contains(dayName);
+        return HabitSchedule.isScheduled(HabitSchedule.weekdayMask(habit), date);
     }
 
     // --- CRUD ---
 
-    public HabitResponse createHabit(String email, HabitRequest request) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    @Transactional
+    public HabitResponse createHabit(Long userId, HabitRequest request) {
+        User user = userRepository.getReferenceById(userId);
 
         Habit habit = Habit.builder()
                 .user(user)
@@ -88,17 +78,18 @@ public class HabitService {
                 .twoMinuteVersion(request.getTwoMinuteVersion())
                 .cueImplementationIntention(request.getCueImplementationIntention())
                 .cueHabitStack(request.getCueHabitStack())
-                .frequencyJson(toFrequencyJson(request.getFrequency()))
+                .frequencyMask(HabitSchedule.fromDays(request.getFrequency()))
                 .isActive(true)
                 .build();
 
         Habit savedHabit = habitRepository.save(habit);
+        changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT, savedHabit.getId());
         return mapToResponse(savedHabit, false, 0);
     }
 
-    public List<HabitResponse> createHabits(String email, List<HabitRequest> requests) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    @Transactional
+    public List<HabitResponse> createHabits(Long userId, List<HabitRequest> requests) {
+        User user = userRepository.getReferenceById(userId);
 
         List<Habit> habits = requests.stream()
                 .map(request -> Habit.builder()
@@ -107,26 +98,27 @@ public class HabitService {
                         .twoMinuteVersion(request.getTwoMinuteVersion())
                         .cueImplementationIntention(request.getCueImplementationIntention())
                         .cueHabitStack(request.getCueHabitStack())
-                        .frequencyJson(toFrequencyJson(request.getFrequency()))
+                        .frequencyMask(HabitSchedule.fromDays(request.getFrequency()))
                         .isActive(true)
                         .build())
                 .collect(Collectors.toList());
 
         List<Habit> savedHabits = habitRepository.saveAll(habits);
+        changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT,
+                savedHabits.stream().map(Habit::getId).collect(Collectors.toList()));
         
         return savedHabits.stream()
                 .map(habit -> mapToResponse(habit, false, 0))
                 .collect(Collectors.toList());
     }
 
-    public HabitResponse updateHabit(Long habitId, String email, HabitRequest request) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
+    @Transactional
+    public HabitResponse updateHabit(Long habitId, Long userId, HabitRequest request) {
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to update this habit");
         }
 
@@ -134,130 +126,245 @@ public class HabitService {
         habit.setTwoMinuteVersion(request.getTwoMinuteVersion());
         habit.setCueImplementationIntention(request.getCueImplementationIntention());
         habit.setCueHabitStack(request.getCueHabitStack());
-        habit.setFrequencyJson(toFrequencyJson(request.getFrequency()));
+        habit.setFrequencyMask(HabitSchedule.fromDays(request.getFrequency()));
 
         Habit updatedHabit = habitRepository.save(habit);
-        
-        // Check completion status for response
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        boolean completedToday = habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(
-                habit.getId(), startOfDay, endOfDay);
-        
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitIdOrderByCompletedAtDesc(habit.getId());
-        int currentStreak = calculateCurrentStreak(completions, updatedHabit);
-        
-        return mapToResponse(updatedHabit, completedToday, currentStreak);
-    }
+        changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT, habitId);
 
-    public HabitResponse toggleHabitStatus(Long habitId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        // The schedule may have changed, so the stored streak figures are recomputed; under the index
+        // row lock, as completion writers do, so a concurrent completion's state is not overwritten
+        streakStateService.refresh(updatedHabit, completionIndexService.lockBitmap(updatedHabit));
+        return mapToResponse(updatedHabit, streakStateService.snapshot(updatedHabit));
+    }
 
+    @Transactional
+    public HabitResponse toggleHabitStatus(Long habitId, Long userId) {
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to update this habit");
         }
 
         habit.setActive(!habit.isActive());
         Habit savedHabit = habitRepository.save(habit);
-        
-        // Check completion status
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        boolean completedToday = habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(
-                habit.getId(), startOfDay, endOfDay);
-        
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitIdOrderByCompletedAtDesc(habit.getId());
-        int currentStreak = calculateCurrentStreak(completions, savedHabit);
-        
-        return mapToResponse(savedHabit, completedToday, currentStreak);
+        changeLogService.record(userId, EntityType.HABIT, Operation.UPSERT, habitId);
+        return mapToResponse(savedHabit, streakStateService.snapshot(savedHabit));
     }
 
     @Transactional
-    public void deleteHabit(Long habitId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
+    public void deleteHabit(Long habitId, Long userId) {
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to delete this habit");
         }
         
-        habitCompletionRepository.deleteAll(habitCompletionRepository.findByHabitUserId(user.getId())
-                .stream().filter(c -> c.getHabit().getId().equals(habitId)).collect(Collectors.toList()));
+        // One projection for the affected days and one DELETE, instead of loading every completion
+        List<LocalDate> days = habitCompletionRepository.findCompletionDaysByHabitId(habitId);
+        habitCompletionRepository.bulkDeleteByHabitId(habitId);
+        completionIndexService.remove(habitId);
+        streakStateService.delete(habitId);
+        dailyActivityService.recomputeDays(userId, days);
+        changeLogService.record(userId, EntityType.HABIT, Operation.DELETE, habitId);
+        recordGoalChange(userId, habit);
 
         habitRepository.delete(habit);
     }
 
-    public List<HabitResponse> getUserHabits(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+    /**
+     * Hides the habit right away and leaves its completions to {@link HabitPurgeService},
+     * which deletes them in chunks and then removes the habit.
+     */
+    @Transactional
+    public void archiveHabit(Long habitId, Long userId) {
+        Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
+                .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        // Fetch all completions for the user to avoid N+1 queries
-        List<HabitCompletion> allCompletions = habitCompletionRepository.findByHabitUserId(user.getId());
-        
-        // Group completions by habit ID
-        Map<Long, List<HabitCompletion>> completionsByHabit = allCompletions.stream()
-                .collect(Collectors.groupingBy(c -> c.getHabit().getId()));
-
-        return habitRepository.findByUserId(user.getId()).stream()
-                .map(habit -> {
-                    List<HabitCompletion> habitCompletions = completionsByHabit.getOrDefault(habit.getId(), Collections.emptyList());
-                    
-                    boolean completedToday = habitCompletions.stream()
-                            .anyMatch(c -> !c.getCompletedAt().isBefore(startOfDay) && !c.getCompletedAt().isAfter(endOfDay));
-                    
-                    int currentStreak = calculateCurrentStreak(habitCompletions, habit);
-                    
-                    return mapToResponse(habit, completedToday, currentStreak);
-                })
-                .collect(Collectors.toList());
+        if (!habit.getUser().getId().equals(userId)) {
+            throw new UnauthorizedException("You are not authorized to delete this habit");
+        }
+
+        recordGoalChange(userId, habit);
+        habit.setArchivedAt(LocalDateTime.now());
+        habit.setActive(false);
+        habit.setGoal(null);
+        habitRepository.save(habit);
+        changeLogService.record(userId, EntityType.HABIT, Operation.DELETE, habitId);
     }
 
-    public void completeHabit(Long habitId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    // The habit's goal loses it, so clients syncing deltas have to refetch the goal as well
+    private void recordGoalChange(Long userId, Habit habit) {
+        if (habit.getGoal() != null) {
+            changeLogService.record(userId, EntityType.GOAL, Operation.UPSERT, habit.getGoal().getId());
+        }
+    }
+
+    public List<HabitResponse> getUserHabits(Long userId) {
+        Optional<UserAggregate> aggregate = userAggregateService.find(userId);
+        if (aggregate.isPresent()) {
+            return aggregate.get().habits().stream()
+                    .map(entry -> mapToResponse(entry.habit(), entry.streak()))
+                    .collect(Collectors.toList());
+        }
 
+        return toResponses(habitRepository.findByUserIdAndArchivedAtIsNull(userId));
+    }
+
+    public List<HabitResponse> toResponses(List<Habit> habits) {
+        // One streak state row per habit instead of every completion row
+        Map<Long, StreakSnapshot> snapshots = streakStateService.snapshots(habits);
+
+        return habits.stream()
+                .map(habit -> mapToResponse(habit, snapshots.getOrDefault(habit.getId(), StreakSnapshot.NONE)))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional
+    public void completeHabit(Long habitId, Long userId) {
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
         
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to complete this habit");
         }
         
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        
-        if (habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(habitId, startOfDay, endOfDay)) {
+        // The unique (habit_id, completion_day) index makes double taps and parallel devices a no-op
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (!habitCompletionRepository.insertIfAbsent(habitId, completedAt)) {
              // Already completed today
              return;
         }
 
-        HabitCompletion completion = HabitCompletion.builder()
-                .habit(habit)
-                .completedAt(LocalDateTime.now())
-                .build();
-        
-        habitCompletionRepository.save(completion);
+        CompletionBitmap bitmap = completionIndexService.recordCompletion(habit, completedAt.toLocalDate());
+        streakStateService.refresh(habit, bitmap);
+        dailyActivityService.recordCompletions(userId, List.of(completedAt));
+        changeLogService.recordCompletions(userId, Operation.UPSERT, Map.of(habitId, List.of(completedAt.toLocalDate())));
+        eventPublisher.publishEvent(new HabitCompletedEvent(userId, List.of(completedAt)));
     }
 
+    /**
+     * Records completions queued by an offline client. Ownership is checked with one query,
+     * already-recorded days are found with one range query and the new rows are inserted as
+     * a JDBC batch. Each entry gets its own result instead of failing the whole batch.
+     */
     @Transactional
-    public void uncompleteHabit(Long habitId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public CompletionBatchResponse completeHabits(Long userId, List<CompletionBatchRequest.Entry> entries) {
+        Set<Long> requestedIds = entries.stream()
+                .map(CompletionBatchRequest.Entry::getHabitId)
+                .collect(Collectors.toSet());
+        Map<Long, Habit> habits = habitRepository.findByUserIdAndIdInAndArchivedAtIsNull(userId, requestedIds).stream()
+                .collect(Collectors.toMap(Habit::getId, Function.identity()));
+
+        LocalDate today = LocalDate.now();
+        Map<Long, Set<LocalDate>> recordedDays = findRecordedDays(habits, entries, today);
+
+        List<CompletionBatchResponse.Result> results = new ArrayList<>(entries.size());
+        List<HabitCompletion> newCompletions = new ArrayList<>();
+        Map<Long, List<LocalDate>> newDaysByHabit = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            CompletionBatchRequest.Entry entry = entries.get(i);
+            Habit habit = habits.get(entry.getHabitId());
+            CompletionBatchResponse.Status status;
+            if (habit == null) {
+                status = CompletionBatchResponse.Status.NOT_FOUND;
+            } else if (!isReplayable(habit, entry.getDate(), today)) {
+                status = CompletionBatchResponse.Status.INVALID_DATE;
+            } else if (!recordedDays.computeIfAbsent(habit.getId(), id -> new HashSet<>()).add(entry.getDate())) {
+                status = CompletionBatchResponse.Status.DUPLICATE;
+            } else {
+                status = CompletionBatchResponse.Status.CREATED;
+                newCompletions.add(HabitCompletion.builder()
+                        .habit(habit)
+                        .completedAt(completedAt(entry))
+                        .build());
+                newDaysByHabit.computeIfAbsent(habit.getId(), id -> new ArrayList<>()).add(entry.getDate());
+            }
+            results.add(CompletionBatchResponse.Result.builder()
+                    .index(i)
+                    .habitId(entry.getHabitId())
+                    .date(entry.getDate())
+                    .status(status)
+                    .build());
+        }
+
+        habitCompletionRepository.insertAll(newCompletions);
+        newDaysByHabit.forEach((habitId, days) -> {
+            Habit habit = habits.get(habitId);
+            streakStateService.refresh(habit, completionIndexService.recordCompletions(habit, days));
+        });
+        // Rows skipped by the conflict-ignoring insert are not known here, so the days are recomputed
+        dailyActivityService.recomputeDays(userId, newDaysByHabit.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet()));
+        changeLogService.recordCompletions(userId, Operation.UPSERT, newDaysByHabit);
+        if (!newCompletions.isEmpty()) {
+            eventPublisher.publishEvent(new HabitCompletedEvent(userId, newCompletions.stream()
+                    .map(HabitCompletion::getCompletedAt)
+                    .collect(Collectors.toList())));
+        }
+
+        int duplicates = (int) results.stream()
+                .filter(r -> r.getStatus() == CompletionBatchResponse.Status.DUPLICATE)
+                .count();
+        return CompletionBatchResponse.builder()
+                .created(newCompletions.size())
+                .duplicates(duplicates)
+                .rejected(entries.size() - newCompletions.size() - duplicates)
+                .results(results)
+                .build();
+    }
 
+    private Map<Long, Set<LocalDate>> findRecordedDays(Map<Long, Habit> habits, List<CompletionBatchRequest.Entry> entries,
+                                                      LocalDate today) {
+        Map<Long, Set<LocalDate>> recorded = new HashMap<>();
+        LocalDate from = null;
+        LocalDate to = null;
+        for (CompletionBatchRequest.Entry entry : entries) {
+            LocalDate date = entry.getDate();
+            Habit habit = habits.get(entry.getHabitId());
+            if (habit != null && isReplayable(habit, date, today)) {
+                from = from == null || date.isBefore(from) ? date : from;
+                to = to == null || date.isAfter(to) ? date : to;
+            }
+        }
+        if (from == null) {
+            return recorded;
+        }
+        habitCompletionRepository.findCompletionTimesByHabitIdsBetween(habits.keySet(),
+                        LocalDateTime.of(from, LocalTime.MIN), LocalDateTime.of(to, LocalTime.MAX))
+                .forEach(c -> recorded.computeIfAbsent(c.getHabitId(), id -> new HashSet<>())
+                        .add(c.getCompletedAt().toLocalDate()));
+        return recorded;
+    }
+
+    // Offline replays reach back to the day the habit was created; older days would rebase its bitmap
+    private static boolean isReplayable(Habit habit, LocalDate date, LocalDate today) {
+        LocalDate createdOn = habit.getCreatedAt() != null ? habit.getCreatedAt().toLocalDate() : today;
+        return !date.isAfter(today) && !date.isBefore(createdOn);
+    }
+
+    // Keep the client's time of day when it agrees with the date, otherwise use the start of that day
+    private static LocalDateTime completedAt(CompletionBatchRequest.Entry entry) {
+        LocalDateTime clientTimestamp = entry.getClientTimestamp();
+        if (clientTimestamp != null && clientTimestamp.toLocalDate().equals(entry.getDate())) {
+            return clientTimestamp;
+        }
+        return LocalDateTime.of(entry.getDate(), LocalTime.MIN);
+    }
+
+    @Transactional
+    public void uncompleteHabit(Long habitId, Long userId) {
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to uncomplete this habit");
         }
 
@@ -265,169 +372,53 @@ public class HabitService {
         LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
 
         habitCompletionRepository.deleteByHabitIdAndCompletedAtBetween(habitId, startOfDay, endOfDay);
+        CompletionBitmap bitmap = completionIndexService.removeCompletion(habit, startOfDay.toLocalDate());
+        streakStateService.refresh(habit, bitmap);
+        dailyActivityService.recomputeDays(userId, List.of(startOfDay.toLocalDate()));
+        changeLogService.recordCompletions(userId, Operation.DELETE, Map.of(habitId, List.of(startOfDay.toLocalDate())));
     }
 
-    public List<LocalDate> getAllCompletions(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        return habitCompletionRepository.findByHabitUserId(user.getId()).stream()
+    public List<LocalDate> getAllCompletions(Long userId) {
+        return habitCompletionRepository.findByHabitUserId(userId).stream()
                 .map(c -> c.getCompletedAt().toLocalDate())
                 .collect(Collectors.toList());
     }
 
-    public HabitStatsResponse getHabitStats(Long habitId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public HabitStatsResponse getHabitStats(Long habitId, Long userId) {
+        // Habits missing from the aggregate take the regular path, which reports why
+        Optional<StreakSnapshot> cached = userAggregateService.find(userId)
+                .flatMap(aggregate -> aggregate.findHabit(habitId))
+                .map(UserAggregate.HabitEntry::streak);
+        if (cached.isPresent()) {
+            return toStatsResponse(habitId, cached.get());
+        }
 
         Habit habit = habitRepository.findById(habitId)
+                .filter(h -> h.getArchivedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("Habit not found"));
 
-        if (!habit.getUser().getId().equals(user.getId())) {
+        if (!habit.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You are not authorized to view this habit");
         }
 
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitIdOrderByCompletedAtDesc(habitId);
-        
-        int currentStreak = calculateCurrentStreak(completions, habit);
-        int longestStreak = calculateLongestStreak(completions, habit);
-        int totalCompletions = completions.size();
-        
-        // Calculate completion rate considering frequency
-        long daysSinceCreation = ChronoUnit.DAYS.between(habit.getCreatedAt().toLocalDate(), LocalDate.now()) + 1;
-        long scheduledDays = countScheduledDays(habit, habit.getCreatedAt().toLocalDate(), LocalDate.now());
-        double completionRate = scheduledDays > 0 ? (double) totalCompletions / scheduledDays : 0;
+        return toStatsResponse(habitId, streakStateService.snapshot(habit));
+    }
+
+    private static HabitStatsResponse toStatsResponse(Long habitId, StreakSnapshot streak) {
+        long scheduledDays = streak.scheduledDays();
+        double completionRate = scheduledDays > 0 ? (double) streak.totalCompletions() / scheduledDays : 0;
 
         return HabitStatsResponse.builder()
                 .habitId(habitId)
-                .currentStreak(currentStreak)
-                .longestStreak(longestStreak)
-                .totalCompletions(totalCompletions)
+                .currentStreak(streak.currentStreak())
+                .longestStreak(streak.longestStreak())
+                .totalCompletions(streak.totalCompletions())
                 .completionRate(completionRate)
                 .build();
     }
 
-    /**
-     * Count how many days between start and end (inclusive) are scheduled for this habit.
-     */
-    private long countScheduledDays(Habit habit, LocalDate start, LocalDate end) {
-        List<String> freq = fromFrequencyJson(habit.getFrequencyJson());
-        if (freq == null || freq.isEmpty()) {
-            return ChronoUnit.DAYS.between(start, end) + 1;
-        }
-        Set<DayOfWeek> scheduledDays = freq.stream()
-                .map(DayOfWeek::valueOf)
-                .collect(Collectors.toSet());
-        long count = 0;
-        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
-            if (scheduledDays.contains(d.getDayOfWeek())) count++;
-        }
-        return count;
-    }
-
-    /**
-     * Calculate current streak, respecting frequency schedule.
-     * Only counts scheduled days; non-scheduled days are skipped.
-     */
-    public int calculateCurrentStreak(List<HabitCompletion> completions, Habit habit) {
-        if (completions.isEmpty()) return 0;
-        
-        Set<LocalDate> completedDates = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .collect(Collectors.toSet());
-        
-        LocalDate today = LocalDate.now();
-        LocalDate checkDate = today;
-        
-        // If today is scheduled but not completed, start from yesterday
-        if (isScheduledForDate(habit, today) && !completedDates.contains(today)) {
-            checkDate = today.minusDays(1);
-        }
-        
-        int streak = 0;
-        // Walk backwards, skipping non-scheduled days
-        while (true) {
-            if (isScheduledForDate(habit, checkDate)) {
-                if (completedDates.contains(checkDate)) {
-                    streak++;
-                } else {
-                    break;
-                }
-            }
-            // Don't go beyond habit creation
-            if (habit.getCreatedAt() != null && checkDate.isBefore(habit.getCreatedAt().toLocalDate())) {
-                break;
-            }
-            checkDate = checkDate.minusDays(1);
-            // Safety: don't go back more than 365 days
-            if (ChronoUnit.DAYS.between(checkDate, today) > 365) break;
-        }
-        return streak;
-    }
-
-    /**
-     * Overload for backward compatibility (daily habits).
-     */
-    public int calculateCurrentStreak(List<HabitCompletion> completions) {
-        if (completions.isEmpty()) return 0;
-        
-        List<LocalDate> dates = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .distinct()
-                .sorted(Comparator.reverseOrder())
-                .collect(Collectors.toList());
-        
-        if (dates.isEmpty()) return 0;
-
-        LocalDate today = LocalDate.now();
-        LocalDate yesterday = today.minusDays(1);
-        
-        LocalDate latest = dates.get(0);
-        if (!latest.equals(today) && !latest.equals(yesterday)) {
-            return 0;
-        }
-
-        int streak = 1;
-        LocalDate current = latest;
-        
-        for (int i = 1; i < dates.size(); i++) {
-            LocalDate next = dates.get(i);
-            if (next.equals(current.minusDays(1))) {
-                streak++;
-                current = next;
-            } else {
-                break;
-            }
-        }
-        return streak;
-    }
-
-    private int calculateLongestStreak(List<HabitCompletion> completions, Habit habit) {
-        if (completions.isEmpty()) return 0;
-
-        Set<LocalDate> completedDates = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .collect(Collectors.toSet());
-
-        if (completedDates.isEmpty()) return 0;
-
-        LocalDate start = completedDates.stream().min(Comparator.naturalOrder()).get();
-        LocalDate end = completedDates.stream().max(Comparator.naturalOrder()).get();
-
-        int maxStreak = 0;
-        int currentStreak = 0;
-
-        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
-            if (!isScheduledForDate(habit, d)) continue; // skip non-scheduled days
-            if (completedDates.contains(d)) {
-                currentStreak++;
-                maxStreak = Math.max(maxStreak, currentStreak);
-            } else {
-                currentStreak = 0;
-            }
-        }
-
-        return maxStreak;
+    private HabitResponse mapToResponse(Habit habit, StreakSnapshot streak) {
+        return mapToResponse(habit, streak.completedToday(), streak.currentStreak());
     }
 
     private HabitResponse mapToResponse(Habit habit, boolean completedToday, int currentStreak) {
@@ -441,7 +432,7 @@ public class HabitService {
                 .completedToday(completedToday)
                 .scheduledToday(isScheduledForDate(habit, LocalDate.now()))
                 .currentStreak(currentStreak)
-                .frequency(fromFrequencyJson(habit.getFrequencyJson()))
+                .frequency(HabitSchedule.toDays(habit.getFrequencyMask()))
                 .createdAt(habit.getCreatedAt())
                 .build();
     }
@@ -0,0 +1,216 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.HabitStreakState;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.HabitStreakStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code habit_streak_state} rows that back every streak read.
+ *
+ * <p>Writers call {@link #refresh} inside the completion transaction. Readers get a
+ * {@link StreakSnapshot} rolled forward from the row's {@code asOfDay} to today: the stored
+ * streak survives only if no scheduled day in between was missed.</p>
+ */
+@Service
+public class HabitStreakStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HabitStreakStateService.class);
+    private static final int REPAIR_PAGE_SIZE = 500;
+
+    private final HabitStreakStateRepository streakStateRepository;
+    private final HabitRepository habitRepository;
+    private final CompletionIndexService completionIndexService;
+
+    public HabitStreakStateService(HabitStreakStateRepository streakStateRepository,
+                                   HabitRepository habitRepository,
+                                   CompletionIndexService completionIndexService) {
+        this.streakStateRepository = streakStateRepository;
+        this.habitRepository = habitRepository;
+        this.completionIndexService = completionIndexService;
+    }
+
+    public StreakSnapshot snapshot(Habit habit) {
+        return snapshots(List.of(habit)).getOrDefault(habit.getId(), StreakSnapshot.NONE);
+    }
+
+    /**
+     * Snapshots keyed by habit id. Habits without a state row yet (never completed, or created
+     * before the table existed) are computed from the completion index without storing anything;
+     * {@link #refreshAll} fills in the rows at startup.
+     */
+    public Map<Long, StreakSnapshot> snapshots(Collection<Habit> habits) {
+        if (habits.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, HabitStreakState> states = streakStateRepository.findAllById(
+                        habits.stream().map(Habit::getId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(HabitStreakState::getHabitId, Function.identity()));
+
+        LocalDate today = LocalDate.now();
+        List<Habit> missing = habits.stream()
+                .filter(habit -> !states.containsKey(habit.getId()))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            Map<Long, CompletionBitmap> bitmaps = completionIndexService.getBitmaps(missing);
+            for (Habit habit : missing) {
+                states.put(habit.getId(), compute(habit, bitmaps.get(habit.getId()), today));
+            }
+        }
+
+        Map<Long, StreakSnapshot> snapshots = new HashMap<>();
+        states.forEach((habitId, state) -> snapshots.put(habitId, project(state, today)));
+        return snapshots;
+    }
+
+    /**
+     * Recomputes and stores the state from the habit's current bitmap.
+     */
+    public HabitStreakState refresh(Habit habit, CompletionBitmap bitmap) {
+        return streakStateRepository.save(compute(habit, bitmap, LocalDate.now()));
+    }
+
+    /**
+     * Stores a state row for each habit, built from its current bitmap.
+     */
+    public void refreshAll(Collection<Habit> habits) {
+        Map<Long, CompletionBitmap> bitmaps = completionIndexService.getBitmaps(habits);
+        for (Habit habit : habits) {
+            refresh(habit, bitmaps.get(habit.getId()));
+        }
+    }
+
+    public void delete(Long habitId) {
+        streakStateRepository.deleteById(habitId);
+    }
+
+    /**
+     * Compares every stored state with one recomputed from raw completions.
+     *
+     * @return a description per inconsistent habit; empty when everything matches
+     */
+    public List<String> findInconsistencies() {
+        List<String> problems = new ArrayList<>();
+        forEachPage((habits, rawBitmaps, states) -> {
+            for (Habit habit : habits) {
+                HabitStreakState stored = states.get(habit.getId());
+                if (stored != null) {
+                    describeMismatch(habit, stored, rawBitmaps.get(habit.getId())).ifPresent(problems::add);
+                }
+            }
+        });
+        return problems;
+    }
+
+    /**
+     * Nightly repair: rebuilds the bitmap and state of every habit whose stored state
+     * no longer matches its completions.
+     */
+    @Scheduled(cron = "${app.streaks.repair-cron:0 30 3 * * ?}")
+    public void repairAll() {
+        logger.info("Starting streak state repair...");
+        int[] repaired = {0};
+        forEachPage((habits, rawBitmaps, states) -> {
+            for (Habit habit : habits) {
+                HabitStreakState stored = states.get(habit.getId());
+                CompletionBitmap raw = rawBitmaps.get(habit.getId());
+                Optional<String> mismatch = stored == null ? Optional.empty() : describeMismatch(habit, stored, raw);
+                if (mismatch.isPresent()) {
+                    logger.warn("Repairing streak state: {}", mismatch.get());
+                    rebuild(habit, raw);
+                    repaired[0]++;
+                }
+            }
+        });
+        logger.info("Streak state repair completed, {} habits rebuilt.", repaired[0]);
+    }
+
+    /**
+     * Rebuilds bitmap and state for one habit from {@code habit_completions}.
+     */
+    public HabitStreakState rebuild(Habit habit) {
+        return rebuild(habit, completionIndexService.buildFromCompletions(List.of(habit)).get(habit.getId()));
+    }
+
+    private HabitStreakState rebuild(Habit habit, CompletionBitmap raw) {
+        completionIndexService.replace(habit.getId(), raw);
+        return refresh(habit, raw);
+    }
+
+    private Optional<String> describeMismatch(Habit habit, HabitStreakState stored, CompletionBitmap raw) {
+        LocalDate today = LocalDate.now();
+        StreakSnapshot actual = project(stored, today);
+        StreakSnapshot expected = project(compute(habit, raw, today), today);
+        if (actual.equals(expected)) {
+            return Optional.empty();
+        }
+        return Optional.of(String.format("habit %d: stored %s, expected %s", habit.getId(), actual, expected));
+    }
+
+    private void forEachPage(PageVisitor visitor) {
+        int page = 0;
+        Page<Habit> habits;
+        do {
+            habits = habitRepository.findAll(PageRequest.of(page++, REPAIR_PAGE_SIZE, Sort.by("id")));
+            if (habits.isEmpty()) {
+                break;
+            }
+            List<Long> ids = habits.stream().map(Habit::getId).collect(Collectors.toList());
+            Map<Long, HabitStreakState> states = streakStateRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(HabitStreakState::getHabitId, Function.identity()));
+            visitor.visit(habits.getContent(), completionIndexService.buildFromCompletions(habits.getContent()), states);
+        } while (habits.hasNext());
+    }
+
+    static HabitStreakState compute(Habit habit, CompletionBitmap bitmap, LocalDate asOf) {
+        int mask = HabitSchedule.weekdayMask(habit);
+        LocalDate createdOn = habit.getCreatedAt() != null ? habit.getCreatedAt().toLocalDate() : asOf;
+        return HabitStreakState.builder()
+                .habitId(habit.getId())
+                .currentStreak(bitmap.currentStreak(asOf, mask))
+                .longestStreak(bitmap.longestStreak(mask))
+                .lastCompletedDay(bitmap.lastDay())
+                .totalCompletions(bitmap.cardinality())
+                .scheduledDayCount(HabitSchedule.countScheduledDays(mask, createdOn, asOf))
+                .weekdayMask(mask)
+                .asOfDay(asOf)
+                .build();
+    }
+
+    static StreakSnapshot project(HabitStreakState state, LocalDate today) {
+        LocalDate asOf = state.getAsOfDay();
+        LocalDate lastCompleted = state.getLastCompletedDay();
+        int currentStreak = state.getCurrentStreak();
+        long scheduledDays = state.getScheduledDayCount();
+
+        if (today.isAfter(asOf)) {
+            // Nothing was completed after asOfDay, so any scheduled day left open since then
+            // (asOfDay itself included, unless it was completed) ends the streak.
+            LocalDate firstOpenDay = asOf.equals(lastCompleted) ? asOf.plusDays(1) : asOf;
+            if (HabitSchedule.countScheduledDays(state.getWeekdayMask(), firstOpenDay, today.minusDays(1)) > 0) {
+                currentStreak = 0;
+            }
+            scheduledDays += HabitSchedule.countScheduledDays(state.getWeekdayMask(), asOf.plusDays(1), today);
+        }
+
+        return new StreakSnapshot(currentStreak, state.getLongestStreak(), state.getTotalCompletions(),
+                today.equals(lastCompleted), scheduledDays, lastCompleted);
+    }
+
+    @FunctionalInterface
+    private interface PageVisitor {
+        void visit(List<Habit> habits, Map<Long, CompletionBitmap> rawBitmaps, Map<Long, HabitStreakState> states);
+    }
+}
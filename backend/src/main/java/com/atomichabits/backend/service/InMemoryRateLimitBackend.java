@@ -0,0 +1,89 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.RateLimitProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Buckets in this instance's memory, spread over independently locked stripes by key. Each stripe
+ * holds at most its share of {@code app.rate-limit.max-keys} and drops the least recently used
+ * bucket beyond that, which only ever hands that key a full bucket again.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "backend", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitBackend implements RateLimitBackend {
+
+    private final Stripe[] stripes;
+
+    public InMemoryRateLimitBackend(RateLimitProperties properties) {
+        int count = Math.max(1, properties.getStripes());
+        int maxKeysPerStripe = Math.max(1, properties.getMaxKeys() / count);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(maxKeysPerStripe);
+        }
+    }
+
+    @Override
+    public boolean tryConsume(String key, int capacity, double tokensPerMs, long nowMs) {
+        Stripe stripe = stripes[Math.floorMod(spread(key.hashCode()), stripes.length)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, nowMs);
+                stripe.put(key, bucket);
+            } else {
+                long elapsed = Math.max(0, nowMs - bucket.updatedAt);
+                bucket.tokens = Math.min(capacity, bucket.tokens + elapsed * tokensPerMs);
+                bucket.updatedAt = nowMs;
+            }
+            if (bucket.tokens < 1) {
+                return false;
+            }
+            bucket.tokens -= 1;
+            return true;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    // Keys differ mostly in their last characters, so mix the high bits in
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maxKeys;
+
+        Stripe(int maxKeys) {
+            super(16, 0.75f, true);
+            this.maxKeys = maxKeys;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxKeys;
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
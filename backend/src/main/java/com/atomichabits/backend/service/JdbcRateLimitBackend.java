@@ -0,0 +1,86 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.RateLimitProperties;
+import com.atomichabits.backend.repository.ConflictIgnoringInserts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Buckets in the {@code rate_limit_bucket} table, so every backend instance draws from the same
+ * bucket. Taking a token is one conditional UPDATE that refills and decrements under the row lock;
+ * a bucket seen for the first time is inserted with one token already taken.
+ *
+ * <p>If the database cannot be reached, requests are let through rather than failing with it.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "backend", havingValue = "jdbc")
+public class JdbcRateLimitBackend implements RateLimitBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcRateLimitBackend.class);
+
+    private static final String REFILLED = "least(?, tokens + greatest(0, ? - updated_at) * ?)";
+    private static final String TAKE_SQL = "update rate_limit_bucket set tokens = " + REFILLED + " - 1, updated_at = ?"
+            + " where bucket_key = ? and " + REFILLED + " >= 1";
+    private static final String INSERT_SQL = "insert into rate_limit_bucket (bucket_key, tokens, updated_at) values (?, ?, ?)";
+    private static final String PRUNE_SQL = "delete from rate_limit_bucket where updated_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConflictIgnoringInserts inserts;
+    private final long idleTtlMs;
+
+    public JdbcRateLimitBackend(JdbcTemplate jdbcTemplate, ConflictIgnoringInserts inserts, RateLimitProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inserts = inserts;
+        this.idleTtlMs = properties.getIdleTtlMs();
+    }
+
+    @Override
+    public boolean tryConsume(String key, int capacity, double tokensPerMs, long nowMs) {
+        try {
+            if (take(key, capacity, tokensPerMs, nowMs)) {
+                return true;
+            }
+            if (inserts.insert(INSERT_SQL, "bucket_key", ps -> {
+                ps.setString(1, key);
+                ps.setDouble(2, capacity - 1);
+                ps.setLong(3, nowMs);
+            })) {
+                return true;
+            }
+            // Either the bucket is empty or another instance inserted it first
+            return take(key, capacity, tokensPerMs, nowMs);
+        } catch (DataAccessException e) {
+            logger.warn("Rate limit check for {} failed, letting the request through: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    private boolean take(String key, int capacity, double tokensPerMs, long nowMs) {
+        return jdbcTemplate.update(TAKE_SQL, ps -> {
+            ps.setInt(1, capacity);
+            ps.setLong(2, nowMs);
+            ps.setDouble(3, tokensPerMs);
+            ps.setLong(4, nowMs);
+            ps.setString(5, key);
+            ps.setInt(6, capacity);
+            ps.setLong(7, nowMs);
+            ps.setDouble(8, tokensPerMs);
+        }) > 0;
+    }
+
+    /**
+     * Buckets idle longer than it takes them to refill are full again, so dropping them changes nothing.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.prune-delay-ms:600000}")
+    public void prune() {
+        int removed = jdbcTemplate.update(PRUNE_SQL, System.currentTimeMillis() - idleTtlMs);
+        if (removed > 0) {
+            logger.debug("Pruned {} idle rate limit buckets", removed);
+        }
+    }
+}
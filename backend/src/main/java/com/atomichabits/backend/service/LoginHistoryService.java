@@ -0,0 +1,186 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.DeviceMetadata;
+import com.atomichabits.backend.repository.LoginHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records login attempts off the request path and answers the account lockout check from memory.
+ *
+ * <p>Attempts are queued and written by a background thread in JDBC batches, every
+ * {@code app.login-history.flush-interval-ms} or as soon as a batch is full; user agent parsing
+ * and location lookup happen there too. Shutdown writes whatever is still queued. If the queue is
+ * full, or a batch fails to write, attempts are dropped from the history but still count towards
+ * the lockout; {@code auth.login.history.dropped} counts them.</p>
+ *
+ * <p>Failed attempts of the last {@link #LOCKOUT_WINDOW_MINUTES} minutes are kept per user. A user
+ * this instance has not seen yet is loaded from {@code login_history} once, so lockouts survive
+ * restarts and apply to attempts made on other instances before the first one here.</p>
+ */
+@Service
+public class LoginHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginHistoryService.class);
+
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+    static final int MAX_FAILED_ATTEMPTS = 5;
+    static final long LOCKOUT_WINDOW_MINUTES = 15;
+
+    private static final String INSERT_SQL = "insert into login_history (user_id, ip_address, device_info, browser, "
+            + "operating_system, device_type, location, status, login_time) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final LoginHistoryRepository loginHistoryRepository;
+    private final DeviceService deviceService;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final BlockingQueue<LoginAttempt> queue;
+    private final ScheduledExecutorService writer;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Counter dropped;
+    private final Map<Long, Deque<LocalDateTime>> recentFailures = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Deque<LocalDateTime>> eldest) {
+            return size() > maxTrackedUsers;
+        }
+    });
+
+    @Value("${app.login-history.max-tracked-users:10000}")
+    private int maxTrackedUsers = 10000;
+
+    public LoginHistoryService(LoginHistoryRepository loginHistoryRepository,
+                               DeviceService deviceService,
+                               JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.login-history.batch-size:200}") int batchSize,
+                               @Value("${app.login-history.queue-capacity:10000}") int queueCapacity,
+                               @Value("${app.login-history.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.loginHistoryRepository = loginHistoryRepository;
+        this.deviceService = deviceService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.dropped = meterRegistry.counter("auth.login.history.dropped");
+        meterRegistry.gauge("auth.login.history.queued", queue, BlockingQueue::size);
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-history-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(Long userId, String ipAddress, String userAgent, String status) {
+        LocalDateTime now = LocalDateTime.now();
+        if (FAILED.equals(status)) {
+            Deque<LocalDateTime> failures = failuresOf(userId, now);
+            synchronized (failures) {
+                failures.addLast(now);
+            }
+        }
+        if (!queue.offer(new LoginAttempt(userId, ipAddress, userAgent, status, now))) {
+            dropped.increment();
+            logger.warn("Login history queue is full, dropping a {} attempt of user {}", status, userId);
+            return;
+        }
+        if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    public boolean isLockedOut(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        Deque<LocalDateTime> failures = failuresOf(userId, now);
+        synchronized (failures) {
+            LocalDateTime windowStart = now.minusMinutes(LOCKOUT_WINDOW_MINUTES);
+            while (!failures.isEmpty() && !failures.peekFirst().isAfter(windowStart)) {
+                failures.pollFirst();
+            }
+            return failures.size() >= MAX_FAILED_ATTEMPTS;
+        }
+    }
+
+    private Deque<LocalDateTime> failuresOf(Long userId, LocalDateTime now) {
+        Deque<LocalDateTime> failures = recentFailures.get(userId);
+        if (failures != null) {
+            return failures;
+        }
+        List<LocalDateTime> persisted = loginHistoryRepository.findLoginTimesByUserIdAndStatusAfter(
+                userId, FAILED, now.minusMinutes(LOCKOUT_WINDOW_MINUTES));
+        Deque<LocalDateTime> loaded = new ArrayDeque<>();
+        persisted.stream().sorted().forEach(loaded::addLast);
+        // Another request for the same user may have loaded it meanwhile; keep whichever came first
+        Deque<LocalDateTime> existing = recentFailures.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Writes everything queued so far.
+     */
+    public synchronized void flush() {
+        List<LoginAttempt> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // The rest stays queued for the next flush
+                dropped.increment(batch.size());
+                throw e;
+            }
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write login history: {}", e.getMessage());
+        }
+    }
+
+    private void write(List<LoginAttempt> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, attempt) -> {
+            DeviceMetadata metadata = deviceService.parseUserAgent(attempt.userAgent());
+            ps.setLong(1, attempt.userId());
+            ps.setString(2, attempt.ipAddress());
+            ps.setString(3, attempt.userAgent());
+            ps.setString(4, metadata.getBrowser());
+            ps.setString(5, metadata.getOperatingSystem());
+            ps.setString(6, metadata.getDeviceType());
+            ps.setString(7, deviceService.getLocationFromIp(attempt.ipAddress()));
+            ps.setString(8, attempt.status());
+            ps.setTimestamp(9, Timestamp.valueOf(attempt.loginTime()));
+        });
+    }
+
+    private record LoginAttempt(Long userId, String ipAddress, String userAgent, String status, LocalDateTime loginTime) {
+    }
+}
@@ -0,0 +1,206 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.MemoryExtractionTask;
+import com.atomichabits.backend.repository.MemoryExtractionTaskRepository;
+import io.agentscope.core.message.Msg;
+import io.agentscope.core.message.MsgRole;
+import io.agentscope.core.message.TextBlock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs long-term memory extraction after the reply has been sent instead of before.
+ *
+ * <p>Each user message is stored in {@code memory_extraction_task}, so nothing is lost on a
+ * restart. A user's messages are handed to {@link MemoryService#ingestConversationSignals} once the
+ * user has been quiet for {@code coach.memory.extraction.debounce-ms}, or has waited
+ * {@code max-wait-ms} while still chatting, in groups of as many as one extraction reads, so a
+ * burst of turns costs a call per group rather than one per message. At most {@code max-in-flight} users are processed at a time, each by one
+ * worker; a failed run is retried after {@code retry-delay-ms}, doubling with each attempt, until
+ * {@code max-attempts}, so an outage of the model has to outlast the backoff before messages are dropped.</p>
+ *
+ * <p>Metrics: {@code memory.extraction.queued} (stored messages as of the last poll),
+ * {@code memory.extraction.active}, {@code memory.extraction.lag} (oldest message's wait when its
+ * run starts), {@code memory.extraction.runs{result=success|failed}} and
+ * {@code memory.extraction.messages}.</p>
+ */
+@Service
+public class MemoryExtractionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryExtractionQueue.class);
+
+    private final MemoryExtractionTaskRepository taskRepository;
+    private final MemoryService memoryService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong queued = new AtomicLong();
+    private final Timer lag;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter messages;
+
+    @Value("${coach.memory.extraction.debounce-ms:30000}")
+    private long debounceMs = 30000;
+
+    @Value("${coach.memory.extraction.max-wait-ms:120000}")
+    private long maxWaitMs = 120000;
+
+    @Value("${coach.memory.extraction.max-in-flight:32}")
+    private int maxInFlight = 32;
+
+    @Value("${coach.memory.extraction.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${coach.memory.extraction.retry-delay-ms:60000}")
+    private long retryDelayMs = 60000;
+
+    public MemoryExtractionQueue(MemoryExtractionTaskRepository taskRepository,
+                                 MemoryService memoryService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${coach.memory.extraction.worker-threads:2}") int workerThreads) {
+        this.taskRepository = taskRepository;
+        this.memoryService = memoryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int threads = Math.max(1, workerThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "memory-extraction-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lag = meterRegistry.timer("memory.extraction.lag");
+        this.succeeded = meterRegistry.counter("memory.extraction.runs", "result", "success");
+        this.failed = meterRegistry.counter("memory.extraction.runs", "result", "failed");
+        this.messages = meterRegistry.counter("memory.extraction.messages");
+        meterRegistry.gauge("memory.extraction.queued", queued);
+        meterRegistry.gauge("memory.extraction.active", inFlight, Set::size);
+    }
+
+    /**
+     * Stores {@code userMessage} for extraction; returns as soon as it is saved.
+     */
+    public void submit(Long userId, String userMessage) {
+        if (userId == null || !StringUtils.hasText(userMessage)) {
+            return;
+        }
+        taskRepository.save(MemoryExtractionTask.builder()
+                .userId(userId)
+                .message(userMessage.trim())
+                .createdAt(LocalDateTime.now())
+                .build());
+        queued.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${coach.memory.extraction.poll-delay-ms:2000}")
+    public void dispatchReady() {
+        queued.set(taskRepository.count());
+        int free = maxInFlight - inFlight.size();
+        if (queued.get() == 0 || free <= 0) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ready = taskRepository.findReadyUserIds(
+                now.minus(Duration.ofMillis(debounceMs)), now.minus(Duration.ofMillis(maxWaitMs)), now,
+                PageRequest.of(0, free));
+        for (Long userId : ready) {
+            // One run per user at a time; messages arriving meanwhile wait for the next poll
+            if (inFlight.add(userId)) {
+                workers.execute(() -> {
+                    try {
+                        process(userId);
+                    } finally {
+                        inFlight.remove(userId);
+                    }
+                });
+            }
+        }
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        taskRepository.deleteByUserIdInBulk(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        // Anything unfinished is still stored and picked up after the restart
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    void process(Long userId) {
+        List<MemoryExtractionTask> tasks = taskRepository.findByUserIdOrderByIdAsc(userId);
+        if (tasks.isEmpty()) {
+            return;
+        }
+        lag.record(Duration.between(tasks.get(0).getCreatedAt(), LocalDateTime.now()));
+
+        // Extraction reads a turn's worth of messages, so a backlog goes through a turn's worth at a time
+        int window = MemoryService.SIGNAL_WINDOW_MESSAGES;
+        for (int from = 0; from < tasks.size(); from += window) {
+            List<MemoryExtractionTask> chunk = tasks.subList(from, Math.min(tasks.size(), from + window));
+            try {
+                memoryService.ingestConversationSignals(userId, chunk.stream()
+                        .map(task -> Msg.builder()
+                                .role(MsgRole.USER)
+                                .content(TextBlock.builder().text(task.getMessage()).build())
+                                .build())
+                        .toList());
+            } catch (Exception e) {
+                failed.increment();
+                retryLater(tasks.subList(from, tasks.size()), e);
+                return;
+            }
+            // Only what was read; messages stored since then stay for the next run
+            taskRepository.deleteAllByIdInBatch(chunk.stream().map(MemoryExtractionTask::getId).toList());
+            messages.increment(chunk.size());
+        }
+        succeeded.increment();
+    }
+
+    private void retryLater(List<MemoryExtractionTask> tasks, Exception e) {
+        List<Long> ids = tasks.stream().map(MemoryExtractionTask::getId).toList();
+        List<Long> exhausted = tasks.stream()
+                .filter(task -> task.getAttempts() + 1 >= maxAttempts)
+                .map(MemoryExtractionTask::getId)
+                .toList();
+        // The failed group's first message has been tried the most; its count sets the wait
+        int attempt = Math.min(tasks.get(0).getAttempts(), 16);
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plus(Duration.ofMillis(retryDelayMs << attempt));
+        logger.warn("Memory extraction failed ({} messages, {} given up, retry at {}): {}",
+                tasks.size(), exhausted.size(), nextAttemptAt, e.getMessage());
+        transactionTemplate.executeWithoutResult(status -> {
+            taskRepository.incrementAttempts(ids, nextAttemptAt);
+            if (!exhausted.isEmpty()) {
+                taskRepository.deleteAllByIdInBatch(exhausted);
+            }
+        });
+    }
+}
@@ -23,7 +23,6 @@ import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,6 +33,8 @@ import java.util.stream.Collectors;
 public class MemoryService {
     private static final Pattern JSON_BLOCK_PATTERN = Pattern.compile("```(?:json)?\\s*([\\s\\S]*?)\\s*```", Pattern.CASE_INSENSITIVE);
     private static final int MAX_SAVED_PER_TURN = 3;
+    // User messages read per extraction, newest last
+    static final int SIGNAL_WINDOW_MESSAGES = 3;
 
     private static final Set<String> MEMORY_QUERY_STOPWORDS = Set.of(
             "the", "and", "for", "with", "that", "this", "have", "just",
@@ -61,6 +62,7 @@ public class MemoryService {
     private final ChatMessageRepository chatMessageRepository;
     private final MoodService moodService;
     private final HabitCompletionRepository habitCompletionRepository;
+    private final DailyActivityService dailyActivityService;
     private final AgentScopeClient agentScopeClient;
     private final CoachPromptProperties promptProperties;
 
@@ -69,12 +71,13 @@ public class MemoryService {
 
     private final ObjectMapper objectMapper;
 
-    public MemoryService(CoachMemoryRepository memoryRepository, UserRepository userRepository, ChatMessageRepository chatMessageRepository, MoodService moodService, HabitCompletionRepository habitCompletionRepository, AgentScopeClient agentScopeClient, CoachPromptProperties promptProperties) {
+    public MemoryService(CoachMemoryRepository memoryRepository, UserRepository userRepository, ChatMessageRepository chatMessageRepository, MoodService moodService, HabitCompletionRepository habitCompletionRepository, DailyActivityService dailyActivityService, AgentScopeClient agentScopeClient, CoachPromptProperties promptProperties) {
         this.memoryRepository = memoryRepository;
         this.userRepository = userRepository;
         this.chatMessageRepository = chatMessageRepository;
         this.moodService = moodService;
         this.habitCompletionRepository = habitCompletionRepository;
+        this.dailyActivityService = dailyActivityService;
         this.agentScopeClient = agentScopeClient;
         this.promptProperties = promptProperties;
         this.objectMapper = new ObjectMapper();
@@ -110,21 +113,26 @@ public class MemoryService {
         // 1. Chats
         List<ChatMessage> chats = chatMessageRepository.findByUserIdAndTimestampBetweenOrderByTimestampAsc(user.getId(), start, end);
 
-        // 2. Moods
-        // Filter moods for that day
-        List<MoodLog> moods = moodService.getMoodsSince(user.getId(), start).stream()
-                .filter(m -> m.getCreatedAt().isBefore(end))
-                .toList();
-
-        // 3. Habits
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitUserIdAndCompletedAtBetween(user.getId(), start, end);
+        // 2. Habits and moods: the daily rollup says whether there is anything to load
+        UserDailyActivity activity = dailyActivityService.getDay(user.getId(), date).orElse(null);
+        boolean hasCompletions = activity != null && activity.getCompletionCount() > 0;
+        boolean hasMoods = activity != null && !activity.getMoodCounts().isEmpty();
 
         // If no activity, skip
-        if (chats.isEmpty() && moods.isEmpty() && completions.isEmpty()) {
+        if (chats.isEmpty() && !hasCompletions && !hasMoods) {
             return;
         }
 
-        String context = buildContextForSummary(chats, moods, completions);
+        List<String> habitNames = hasCompletions
+                ? habitCompletionRepository.findHabitNamesCompletedOn(user.getId(), date)
+                : Collections.emptyList();
+        List<MoodLog> moods = hasMoods
+                ? moodService.getMoodsBetween(user.getId(), start, end).stream()
+                        .sorted(Comparator.comparing(MoodLog::getCreatedAt))
+                        .toList()
+                : Collections.emptyList();
+
+        String context = buildContextForSummary(activity, chats, moods, habitNames);
 
         String prompt = "Please create a concise daily summary (max 50 words) for the user's activity on " + date + ". " +
                         "Include key achievements (habits completed), mood patterns, and any important topics discussed in chat. " +
@@ -147,13 +155,16 @@ public class MemoryService {
         }
     }
 
-    private String buildContextForSummary(List<ChatMessage> chats, List<MoodLog> moods, List<HabitCompletion> completions) {
+    private String buildContextForSummary(UserDailyActivity activity, List<ChatMessage> chats, List<MoodLog> moods,
+                                          List<String> habitNames) {
         StringBuilder sb = new StringBuilder();
 
-        if (!completions.isEmpty()) {
-            sb.append("Habits Completed:\n");
-            for (HabitCompletion hc : completions) {
-                sb.append("- ").append(hc.getHabit().getName()).append("\n");
+        if (!habitNames.isEmpty()) {
+            sb.append("Habits Completed (").append(activity.getCompletionCount()).append(", first at ")
+                    .append(activity.getFirstCompletionAt().toLocalTime().withNano(0)).append(", last at ")
+                    .append(activity.getLastCompletionAt().toLocalTime().withNano(0)).append("):\n");
+            for (String name : habitNames) {
+                sb.append("- ").append(name).append("\n");
             }
         }
 
@@ -191,28 +202,37 @@ public class MemoryService {
         if (!StringUtils.hasText(systemPrompt)) {
             systemPrompt = "Extract durable user profile memory for habit coaching. Return strict JSON only.";
         }
-        return agentScopeClient.call(prompt, systemPrompt);
+        if (!agentScopeClient.isAvailable()) {
+            // No model configured: the keyword heuristics are all there is
+            return "";
+        }
+        // A failed call throws, so a queued extraction is retried rather than done without the model
+        return agentScopeClient.tryCall(prompt, systemPrompt)
+                .orElseThrow(() -> new IllegalStateException("Signal extraction call failed"));
     }
 
     @Transactional(readOnly = true)
-    public List<CoachMemory> getRecentMemories(String email) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) return Collections.emptyList();
-
+    public List<CoachMemory> getRecentMemories(Long userId) {
         // Return recent non-expired memories.
-        return memoryRepository.findTop30ByUserIdOrderByCreatedAtDesc(user.getId()).stream()
+        return memoryRepository.findTop30ByUserIdOrderByCreatedAtDesc(userId).stream()
                 .filter(this::isActiveMemory)
                 .toList();
     }
 
     @Transactional
-    public boolean saveUserMemory(String email, CoachMemory.MemoryType type, String content) {
-        if (!StringUtils.hasText(email) || type == null || !StringUtils.hasText(content)) {
+    public boolean saveUserMemory(Long userId, CoachMemory.MemoryType type, String content) {
+        if (userId == null) {
             return false;
         }
+        return userRepository.findById(userId)
+                .map(user -> saveUserMemory(user, type, content))
+                .orElse(false);
+    }
 
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (userOpt.isEmpty()) return false;
+    private boolean saveUserMemory(User user, CoachMemory.MemoryType type, String content) {
+        if (type == null || !StringUtils.hasText(content)) {
+            return false;
+        }
 
         String normalizedCandidate = normalizeForDedup(content);
         if (normalizedCandidate.length() < 8) {
@@ -220,7 +240,7 @@ public class MemoryService {
         }
 
         List<CoachMemory> recentSameType = memoryRepository
-                .findTop20ByUserIdAndTypeOrderByCreatedAtDesc(userOpt.get().getId(), type);
+                .findTop20ByUserIdAndTypeOrderByCreatedAtDesc(user.getId(), type);
 
         boolean duplicate = recentSameType.stream()
                 .filter(this::isActiveMemory)
@@ -237,7 +257,7 @@ public class MemoryService {
         LocalDate expiresAt = calculateExpiryDate(type, importanceScore);
 
         CoachMemory memory = CoachMemory.builder()
-                .user(userOpt.get())
+                .user(user)
                 .type(type)
                 .content(content.trim())
                 // Keep timeline display consistent for all memory types.
@@ -251,18 +271,13 @@ public class MemoryService {
     }
 
     @Transactional(readOnly = true)
-    public String getMemoryContext(String email, int factLimit, int insightLimit, int summaryLimit) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return "No saved long-term memory found for this user.";
-        }
-
+    public String getMemoryContext(Long userId, int factLimit, int insightLimit, int summaryLimit) {
         int safeFactLimit = Math.max(1, Math.min(factLimit, 10));
         int safeInsightLimit = Math.max(1, Math.min(insightLimit, 10));
         int safeSummaryLimit = Math.max(1, Math.min(summaryLimit, 10));
 
         List<CoachMemory> facts = memoryRepository
-                .findTop10ByUserIdAndTypeOrderByCreatedAtDesc(user.getId(), CoachMemory.MemoryType.LONG_TERM_FACT)
+                .findTop10ByUserIdAndTypeOrderByCreatedAtDesc(userId, CoachMemory.MemoryType.LONG_TERM_FACT)
                 .stream()
                 .filter(this::isActiveMemory)
                 .sorted(memoryPriorityComparator())
@@ -270,7 +285,7 @@ public class MemoryService {
                 .toList();
 
         List<CoachMemory> insights = memoryRepository
-                .findTop10ByUserIdAndTypeOrderByCreatedAtDesc(user.getId(), CoachMemory.MemoryType.USER_INSIGHT)
+                .findTop10ByUserIdAndTypeOrderByCreatedAtDesc(userId, CoachMemory.MemoryType.USER_INSIGHT)
                 .stream()
                 .filter(this::isActiveMemory)
                 .sorted(memoryPriorityComparator())
@@ -278,7 +293,7 @@ public class MemoryService {
                 .toList();
 
         List<CoachMemory> summaries = memoryRepository
-                .findTop10ByUserIdAndTypeOrderByReferenceDateDesc(user.getId(), CoachMemory.MemoryType.DAILY_SUMMARY)
+                .findTop10ByUserIdAndTypeOrderByReferenceDateDesc(userId, CoachMemory.MemoryType.DAILY_SUMMARY)
                 .stream()
                 .filter(this::isActiveMemory)
                 .limit(safeSummaryLimit)
@@ -325,13 +340,8 @@ public class MemoryService {
     }
 
     @Transactional(readOnly = true)
-    public String getRelevantMemoryContext(String email, String query, int limit) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return "No saved long-term memory found for this user.";
-        }
-
-        List<CoachMemory> activeMemories = memoryRepository.findTop30ByUserIdOrderByCreatedAtDesc(user.getId()).stream()
+    public String getRelevantMemoryContext(Long userId, String query, int limit) {
+        List<CoachMemory> activeMemories = memoryRepository.findTop30ByUserIdOrderByCreatedAtDesc(userId).stream()
                 .filter(this::isActiveMemory)
                 .toList();
 
@@ -379,8 +389,8 @@ public class MemoryService {
     }
 
     @Transactional
-    public int ingestConversationSignals(String email, List<Msg> messages) {
-        if (!StringUtils.hasText(email) || messages == null || messages.isEmpty()) {
+    public int ingestConversationSignals(Long userId, List<Msg> messages) {
+        if (userId == null || messages == null || messages.isEmpty()) {
             return 0;
         }
 
@@ -411,7 +421,7 @@ public class MemoryService {
                 continue;
             }
 
-            if (saveUserMemory(email, candidate.type(), candidate.content())) {
+            if (saveUserMemory(userId, candidate.type(), candidate.content())) {
                 saved++;
             }
             if (saved >= MAX_SAVED_PER_TURN) {
@@ -614,7 +624,7 @@ public class MemoryService {
 
     private List<String> extractRecentUserMessages(List<Msg> messages) {
         List<String> collected = new ArrayList<>();
-        for (int i = messages.size() - 1; i >= 0 && collected.size() < 3; i--) {
+        for (int i = messages.size() - 1; i >= 0 && collected.size() < SIGNAL_WINDOW_MESSAGES; i--) {
             Msg msg = messages.get(i);
             if (msg == null || msg.getRole() != MsgRole.USER) {
                 continue;
@@ -1,16 +1,16 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
 import com.atomichabits.backend.model.MoodLog;
-import com.atomichabits.backend.model.User;
 import com.atomichabits.backend.repository.MoodRepository;
-import com.atomichabits.backend.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -18,94 +18,88 @@ import org.springframework.data.domain.Pageable;
 @Service
 public class MoodService {
     private final MoodRepository moodRepository;
-    private final UserRepository userRepository;
+    private final DailyActivityService dailyActivityService;
+    private final ChangeLogService changeLogService;
 
-    public MoodService(MoodRepository moodRepository, UserRepository userRepository) {
+    public MoodService(MoodRepository moodRepository, DailyActivityService dailyActivityService,
+                       ChangeLogService changeLogService) {
         this.moodRepository = moodRepository;
-        this.userRepository = userRepository;
+        this.dailyActivityService = dailyActivityService;
+        this.changeLogService = changeLogService;
     }
 
-    public MoodLog logMood(String email, String moodType, String note) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
+    @Transactional
+    public MoodLog logMood(Long userId, String moodType, String note) {
         MoodLog log = MoodLog.builder()
-                .userId(user.getId())
+                .userId(userId)
                 .moodType(moodType)
                 .note(note)
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        return moodRepository.save(log);
-    }
-
-    public Page<MoodLog> getMoodHistory(String email, Pageable pageable) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return moodRepository.findByUserIdOrderByCreatedAtDesc(user.getId(), pageable);
+        MoodLog saved = moodRepository.save(log);
+        dailyActivityService.recordMood(userId, saved.getMoodType(), saved.getCreatedAt());
+        changeLogService.record(userId, EntityType.MOOD, Operation.UPSERT, saved.getId());
+        return saved;
     }
 
-    public List<MoodLog> getRecentMoods(String email, int hours) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return getMoodsSince(user.getId(), LocalDateTime.now().minusHours(hours));
+    public Page<MoodLog> getMoodHistory(Long userId, Pageable pageable) {
+        return moodRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
 
-    public List<MoodLog> getMoodsSince(String email, LocalDateTime since) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return getMoodsSince(user.getId(), since);
+    public List<MoodLog> getRecentMoods(Long userId, int hours) {
+        return getMoodsSince(userId, LocalDateTime.now().minusHours(hours));
     }
 
     public List<MoodLog> getRecentMoods(Long userId) {
-        return getMoodsSince(userId, LocalDateTime.now().minusHours(24));
+        return getRecentMoods(userId, 24);
     }
 
     public List<MoodLog> getMoodsSince(Long userId, LocalDateTime since) {
         return moodRepository.findByUserIdAndCreatedAtAfterOrderByCreatedAtDesc(userId, since);
     }
+
+    public List<MoodLog> getMoodsBetween(Long userId, LocalDateTime start, LocalDateTime end) {
+        return moodRepository.findByUserIdAndCreatedAtBetween(userId, start, end);
+    }
     
-    public List<MoodLog> getGratitudeLogs(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return moodRepository.findByUserIdAndMoodTypeOrderByCreatedAtDesc(user.getId(), "GRATITUDE");
+    public List<MoodLog> getGratitudeLogs(Long userId) {
+        return moodRepository.findByUserIdAndMoodTypeOrderByCreatedAtDesc(userId, "GRATITUDE");
     }
 
-    public MoodLog getTodayGratitude(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public MoodLog getTodayGratitude(Long userId) {
         LocalDateTime start = LocalDate.now().atStartOfDay();
         LocalDateTime end = LocalDate.now().atTime(LocalTime.MAX);
         return moodRepository.findTopByUserIdAndMoodTypeAndCreatedAtBetweenOrderByCreatedAtDesc(
-                user.getId(), "GRATITUDE", start, end).orElse(null);
+                userId, "GRATITUDE", start, end).orElse(null);
     }
 
-    public MoodLog updateMood(Long id, String note, String email) {
+    @Transactional
+    public MoodLog updateMood(Long id, String note, Long userId) {
         MoodLog log = moodRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Mood log not found"));
-        
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
                 
-        if (!log.getUserId().equals(user.getId())) {
+        if (!log.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized");
         }
         
         log.setNote(note);
-        return moodRepository.save(log);
+        MoodLog saved = moodRepository.save(log);
+        changeLogService.record(userId, EntityType.MOOD, Operation.UPSERT, id);
+        return saved;
     }
     
-    public void deleteMood(Long id, String email) {
+    @Transactional
+    public void deleteMood(Long id, Long userId) {
         MoodLog log = moodRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Mood log not found"));
-        
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
                 
-        if (!log.getUserId().equals(user.getId())) {
+        if (!log.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized");
         }
         
         moodRepository.delete(log);
+        dailyActivityService.removeMood(userId, log.getMoodType(), log.getCreatedAt());
+        changeLogService.record(userId, EntityType.MOOD, Operation.DELETE, id);
     }
 }
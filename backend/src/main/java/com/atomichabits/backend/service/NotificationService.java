@@ -2,7 +2,6 @@ package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.User;
-import com.atomichabits.backend.repository.HabitCompletionRepository;
 import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
 import org.slf4j.Logger;
@@ -29,36 +28,33 @@ public class NotificationService {
 
     private final UserRepository userRepository;
     private final HabitRepository habitRepository;
-    private final HabitCompletionRepository habitCompletionRepository;
-    private final HabitService habitService;
+    private final HabitStreakStateService streakStateService;
     private final CoachService coachService;
 
-    private final Map<String, SseEmitter> emitters = new ConcurrentHashMap<>();
-    private final Map<String, Queue<String>> pendingNotifications = new ConcurrentHashMap<>();
-    private final Map<String, LocalDateTime> lastCoachNudgeAt = new ConcurrentHashMap<>();
+    private final Map<Long, SseEmitter> emitters = new ConcurrentHashMap<>();
+    private final Map<Long, Queue<String>> pendingNotifications = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> lastCoachNudgeAt = new ConcurrentHashMap<>();
 
     public NotificationService(UserRepository userRepository,
                                HabitRepository habitRepository,
-                               HabitCompletionRepository habitCompletionRepository,
-                               HabitService habitService,
+                               HabitStreakStateService streakStateService,
                                CoachService coachService) {
         this.userRepository = userRepository;
         this.habitRepository = habitRepository;
-        this.habitCompletionRepository = habitCompletionRepository;
-        this.habitService = habitService;
+        this.streakStateService = streakStateService;
         this.coachService = coachService;
     }
 
-    public SseEmitter subscribe(String email) {
+    public SseEmitter subscribe(Long userId) {
         SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
-        emitters.put(email, emitter);
+        emitters.put(userId, emitter);
 
-        emitter.onCompletion(() -> emitters.remove(email));
-        emitter.onTimeout(() -> emitters.remove(email));
-        emitter.onError((e) -> emitters.remove(email));
+        emitter.onCompletion(() -> emitters.remove(userId));
+        emitter.onTimeout(() -> emitters.remove(userId));
+        emitter.onError((e) -> emitters.remove(userId));
 
-        flushPendingNotifications(email, emitter);
-        CompletableFuture.runAsync(() -> sendProactiveCoachCheckIn(email));
+        flushPendingNotifications(userId, emitter);
+        CompletableFuture.runAsync(() -> sendProactiveCoachCheckIn(userId));
 
         return emitter;
     }
@@ -67,14 +63,14 @@ public class NotificationService {
      * Send a notification to a user.
      * Logs the message and sends via SSE if connected, otherwise queues it.
      */
-    public boolean sendNotification(String email, String message) {
-        logger.info("NOTIFICATION to [{}]: {}", email, message);
+    public boolean sendNotification(Long userId, String message) {
+        logger.info("NOTIFICATION to [{}]: {}", userId, message);
 
-        if (sendToActiveEmitter(email, message)) {
+        if (sendToActiveEmitter(userId, message)) {
             return true;
         }
 
-        queueNotification(email, message);
+        queueNotification(userId, message);
         return false;
     }
 
@@ -113,19 +109,19 @@ public class NotificationService {
 
     // Package-private for testing
     boolean checkAndNotifyUser(User user, boolean applyCooldown) {
-        String email = user.getEmail();
-        if (applyCooldown && shouldSkipCoachNudge(email)) {
+        Long userId = user.getId();
+        if (applyCooldown && shouldSkipCoachNudge(userId)) {
             return false;
         }
 
-        List<Habit> activeHabits = habitRepository.findByUserIdAndIsActiveTrue(user.getId());
+        // Only habits due today; the schedule filter runs in SQL
+        List<Habit> activeHabits = habitRepository.findActiveScheduledOn(userId,
+                HabitSchedule.bit(LocalDate.now().getDayOfWeek()));
         if (activeHabits.isEmpty()) {
             return false;
         }
 
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.plusDays(1).atStartOfDay();
+        Map<Long, StreakSnapshot> streaks = streakStateService.snapshots(activeHabits);
 
         long completedTodayCount = 0;
         int maxStreakAtRisk = 0;
@@ -133,23 +129,17 @@ public class NotificationService {
         String firstUncompletedHabitName = "";
 
         for (Habit habit : activeHabits) {
-            boolean completed = habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(
-                    habit.getId(), startOfDay, endOfDay);
+            StreakSnapshot streak = streaks.getOrDefault(habit.getId(), StreakSnapshot.NONE);
 
-            if (completed) {
+            if (streak.completedToday()) {
                 completedTodayCount++;
             } else {
                 if (firstUncompletedHabitName.isEmpty()) {
                     firstUncompletedHabitName = habit.getName();
                 }
 
-                // Check streak for this uncompleted habit
-                List<com.atomichabits.backend.model.HabitCompletion> completions =
-                        habitCompletionRepository.findByHabitIdOrderByCompletedAtDesc(habit.getId());
-                int streak = habitService.calculateCurrentStreak(completions);
-
-                if (streak > maxStreakAtRisk) {
-                    maxStreakAtRisk = streak;
+                if (streak.currentStreak() > maxStreakAtRisk) {
+                    maxStreakAtRisk = streak.currentStreak();
                     riskHabitName = habit.getName();
                 }
             }
@@ -168,7 +158,7 @@ public class NotificationService {
 
         try {
             // Try AI generation
-            message = coachService.generateReminder(email, riskHabitName, maxStreakAtRisk);
+            message = coachService.generateReminder(userId, riskHabitName, maxStreakAtRisk);
 
             // Basic validation of AI response
             if (message == null || message.contains("unable to connect") || message.length() > 200) {
@@ -188,26 +178,26 @@ public class NotificationService {
             }
         }
 
-        boolean delivered = sendNotification(email, message);
+        boolean delivered = sendNotification(userId, message);
 
         if (applyCooldown) {
-            lastCoachNudgeAt.put(email, LocalDateTime.now());
+            lastCoachNudgeAt.put(userId, LocalDateTime.now());
         }
 
         return delivered;
     }
 
-    private void sendProactiveCoachCheckIn(String email) {
-        userRepository.findByEmail(email).ifPresent(user -> checkAndNotifyUser(user, true));
+    private void sendProactiveCoachCheckIn(Long userId) {
+        userRepository.findById(userId).ifPresent(user -> checkAndNotifyUser(user, true));
     }
 
-    private boolean shouldSkipCoachNudge(String email) {
-        Queue<String> queue = pendingNotifications.get(email);
+    private boolean shouldSkipCoachNudge(Long userId) {
+        Queue<String> queue = pendingNotifications.get(userId);
         if (queue != null && !queue.isEmpty()) {
             return true;
         }
 
-        LocalDateTime lastNudge = lastCoachNudgeAt.get(email);
+        LocalDateTime lastNudge = lastCoachNudgeAt.get(userId);
         if (lastNudge == null) {
             return false;
         }
@@ -215,8 +205,8 @@ public class NotificationService {
         return lastNudge.isAfter(LocalDateTime.now().minusHours(COACH_NUDGE_COOLDOWN_HOURS));
     }
 
-    private boolean sendToActiveEmitter(String email, String message) {
-        SseEmitter emitter = emitters.get(email);
+    private boolean sendToActiveEmitter(Long userId, String message) {
+        SseEmitter emitter = emitters.get(userId);
         if (emitter == null) {
             return false;
         }
@@ -225,17 +215,17 @@ public class NotificationService {
             emitter.send(SseEmitter.event().name("notification").data(message));
             return true;
         } catch (IOException e) {
-            emitters.remove(email);
+            emitters.remove(userId);
             return false;
         }
     }
 
-    private void queueNotification(String email, String message) {
-        pendingNotifications.computeIfAbsent(email, key -> new ConcurrentLinkedQueue<>()).offer(message);
+    private void queueNotification(Long userId, String message) {
+        pendingNotifications.computeIfAbsent(userId, key -> new ConcurrentLinkedQueue<>()).offer(message);
     }
 
-    private void flushPendingNotifications(String email, SseEmitter emitter) {
-        Queue<String> queue = pendingNotifications.get(email);
+    private void flushPendingNotifications(Long userId, SseEmitter emitter) {
+        Queue<String> queue = pendingNotifications.get(userId);
         if (queue == null || queue.isEmpty()) {
             return;
         }
@@ -246,12 +236,12 @@ public class NotificationService {
                 emitter.send(SseEmitter.event().name("notification").data(message));
             } catch (IOException e) {
                 queue.offer(message);
-                emitters.remove(email);
-                logger.warn("Failed to flush pending notifications for [{}], will retry next subscribe.", email);
+                emitters.remove(userId);
+                logger.warn("Failed to flush pending notifications for [{}], will retry next subscribe.", userId);
                 return;
             }
         }
 
-        pendingNotifications.remove(email, queue);
+        pendingNotifications.remove(userId, queue);
     }
 }
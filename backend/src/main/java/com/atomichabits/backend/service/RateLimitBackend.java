@@ -0,0 +1,17 @@
+package com.atomichabits.backend.service;
+
+/**
+ * Storage for token buckets. A bucket that has never been used, or has been forgotten, is full.
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Refills the bucket for the time passed since it was last touched, capped at {@code capacity},
+     * and takes one token from it.
+     *
+     * @param tokensPerMs refill rate
+     * @param nowMs       current time in epoch milliseconds
+     * @return true if a token was available
+     */
+    boolean tryConsume(String key, int capacity, double tokensPerMs, long nowMs);
+}
@@ -1,67 +1,56 @@
 package com.atomichabits.backend.service;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.atomichabits.backend.config.RateLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+/**
+ * Token-bucket rate limiting. Each namespace ({@code auth} for login and registration per IP,
+ * {@code coach} and {@code habits} for those endpoint groups per user) has its own capacity and
+ * refill rate under {@code app.rate-limit.limits}; buckets are kept by the configured
+ * {@link RateLimitBackend}.
+ */
 @Service
 public class RateLimiterService {
 
-    private final Map<String, RequestWindow> requestCounts = new ConcurrentHashMap<>();
-    private final Map<String, Instant> blockList = new ConcurrentHashMap<>();
-
-    @Value("${app.rate-limit.max-requests:10}")
-    private int maxRequestsPerMinute;
+    public static final String AUTH = "auth";
 
-    @Value("${app.rate-limit.block-duration-ms:900000}") // 15 minutes default
-    private long blockDurationMs;
-
-    public boolean isBlocked(String ipAddress) {
-        Instant blockEndTime = blockList.get(ipAddress);
-        if (blockEndTime != null) {
-            if (Instant.now().isBefore(blockEndTime)) {
-                return true;
-            } else {
-                blockList.remove(ipAddress);
-                return false;
-            }
-        }
-        return false;
-    }
+    private final RateLimitBackend backend;
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
 
-    public void recordRequest(String ipAddress) {
-        requestCounts.compute(ipAddress, (key, window) -> {
-            long now = System.currentTimeMillis();
-            if (window == null || now - window.startTime > 60000) {
-                return new RequestWindow(now, 1);
-            } else {
-                window.count++;
-                if (window.count > maxRequestsPerMinute) {
-                    blockList.put(ipAddress, Instant.now().plusMillis(blockDurationMs));
-                }
-                return window;
-            }
-        });
+    public RateLimiterService(RateLimitBackend backend, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.backend = backend;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
     }
 
-    @Scheduled(fixedRate = 60000)
-    public void cleanup() {
-        long now = System.currentTimeMillis();
-        requestCounts.entrySet().removeIf(entry -> now - entry.getValue().startTime > 60000);
-        blockList.entrySet().removeIf(entry -> Instant.now().isAfter(entry.getValue()));
+    /**
+     * Takes one request's worth from the bucket of {@code key} in {@code namespace}.
+     *
+     * @return false if the caller is over the limit
+     */
+    public boolean tryAcquire(String namespace, String key) {
+        RateLimitProperties.Limit limit = properties.getLimits().get(namespace);
+        if (limit == null || limit.getCapacity() <= 0) {
+            return true;
+        }
+        boolean acquired = backend.tryConsume(namespace + ":" + key, limit.getCapacity(),
+                limit.getRefillPerMinute() / 60_000d, System.currentTimeMillis());
+        if (!acquired) {
+            meterRegistry.counter("rate.limit.rejected", "namespace", namespace).increment();
+        }
+        return acquired;
     }
 
-    private static class RequestWindow {
-        long startTime;
-        int count;
-
-        RequestWindow(long startTime, int count) {
-            this.startTime = startTime;
-            this.count = count;
+    /**
+     * Seconds until an empty bucket in {@code namespace} has a token again.
+     */
+    public long retryAfterSeconds(String namespace) {
+        RateLimitProperties.Limit limit = properties.getLimits().get(namespace);
+        if (limit == null || limit.getRefillPerMinute() <= 0) {
+            return 60;
         }
+        return Math.max(1, (long) Math.ceil(60 / limit.getRefillPerMinute()));
     }
 }
@@ -0,0 +1,16 @@
+package com.atomichabits.backend.service;
+
+import java.time.LocalDate;
+
+/**
+ * Streak figures for one habit as seen on a given day.
+ */
+public record StreakSnapshot(int currentStreak,
+                             int longestStreak,
+                             int totalCompletions,
+                             boolean completedToday,
+                             long scheduledDays,
+                             LocalDate lastCompletedDay) {
+
+    public static final StreakSnapshot NONE = new StreakSnapshot(0, 0, 0, false, 0, null);
+}
@@ -0,0 +1,161 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.SyncResponse;
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.MoodLog;
+import com.atomichabits.backend.repository.ChangeLogRepository;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.MoodRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of delta sync. A token is the user's change version: a delta covers the
+ * change log entries after it, collapsed to the last operation per entity, and loads only
+ * the entities those entries name. Clients without a usable token get the full state.
+ */
+@Service
+public class SyncService {
+
+    private final ChangeLogService changeLogService;
+    private final ChangeLogRepository changeLogRepository;
+    private final HabitRepository habitRepository;
+    private final HabitCompletionRepository habitCompletionRepository;
+    private final MoodRepository moodRepository;
+    private final HabitService habitService;
+    private final GoalService goalService;
+
+    public SyncService(ChangeLogService changeLogService,
+                       ChangeLogRepository changeLogRepository, HabitRepository habitRepository,
+                       HabitCompletionRepository habitCompletionRepository, MoodRepository moodRepository,
+                       HabitService habitService, GoalService goalService) {
+        this.changeLogService = changeLogService;
+        this.changeLogRepository = changeLogRepository;
+        this.habitRepository = habitRepository;
+        this.habitCompletionRepository = habitCompletionRepository;
+        this.moodRepository = moodRepository;
+        this.habitService = habitService;
+        this.goalService = goalService;
+    }
+
+    @Transactional(readOnly = true)
+    public SyncResponse sync(Long userId, Long since) {
+        // Read first: every change up to this version has committed
+        long version = changeLogService.currentVersion(userId);
+        if (since == null || since > version || !isRetained(userId, since, version)) {
+            return fullSync(userId, version);
+        }
+        return deltaSync(userId, since, version);
+    }
+
+    // Versions are contiguous, so the delta is complete only if the entry right after the token still exists
+    private boolean isRetained(Long userId, long since, long version) {
+        if (since == version) {
+            return true;
+        }
+        Long oldest = changeLogRepository.findOldestVersion(userId);
+        return oldest != null && oldest <= since + 1;
+    }
+
+    private SyncResponse fullSync(Long userId, long version) {
+        List<Habit> habits = habitRepository.findByUserIdAndArchivedAtIsNull(userId);
+        List<Long> habitIds = habits.stream().map(Habit::getId).collect(Collectors.toList());
+        List<SyncResponse.CompletionChange> completions = habitIds.isEmpty()
+                ? Collections.emptyList()
+                : habitCompletionRepository.findCompletionTimesByHabitIds(habitIds).stream()
+                        .map(c -> completion(c.getHabitId(), c.getCompletedAt().toLocalDate(), true))
+                        .collect(Collectors.toList());
+
+        return SyncResponse.builder()
+                .token(version)
+                .full(true)
+                .habits(habitService.toResponses(habits))
+                .deletedHabitIds(Collections.emptyList())
+                .completions(completions)
+                .moods(moodRepository.findByUserId(userId))
+                .deletedMoodIds(Collections.emptyList())
+                .goals(goalService.getGoals(userId))
+                .build();
+    }
+
+    private SyncResponse deltaSync(Long userId, long since, long version) {
+        // Last operation wins per entity
+        Map<EntityType, Map<Long, Operation>> latest = new EnumMap<>(EntityType.class);
+        Map<Long, Map<LocalDate, Operation>> completionOps = new LinkedHashMap<>();
+        List<ChangeLogEntry> changes = since == version
+                ? Collections.emptyList()
+                : changeLogRepository.findChanges(userId, since, version);
+        for (ChangeLogEntry change : changes) {
+            if (change.getEntityType() == EntityType.COMPLETION) {
+                completionOps.computeIfAbsent(change.getEntityId(), id -> new LinkedHashMap<>())
+                        .put(change.getEntityDay(), change.getOperation());
+            } else {
+                latest.computeIfAbsent(change.getEntityType(), t -> new LinkedHashMap<>())
+                        .put(change.getEntityId(), change.getOperation());
+            }
+        }
+
+        Map<Long, Operation> habitOps = latest.getOrDefault(EntityType.HABIT, Collections.emptyMap());
+        List<Habit> habits = habitRepository.findAllById(upserted(habitOps)).stream()
+                .filter(h -> h.getUser().getId().equals(userId) && h.getArchivedAt() == null)
+                .collect(Collectors.toList());
+        Set<Long> deletedHabitIds = removed(habitOps, habits.stream().map(Habit::getId).collect(Collectors.toSet()));
+
+        List<SyncResponse.CompletionChange> completions = new ArrayList<>();
+        completionOps.forEach((habitId, days) -> {
+            if (!deletedHabitIds.contains(habitId)) {
+                days.forEach((day, op) -> completions.add(completion(habitId, day, op == Operation.UPSERT)));
+            }
+        });
+
+        Map<Long, Operation> moodOps = latest.getOrDefault(EntityType.MOOD, Collections.emptyMap());
+        List<Long> upsertedMoods = upserted(moodOps);
+        List<MoodLog> moods = upsertedMoods.isEmpty()
+                ? Collections.emptyList()
+                : moodRepository.findByUserIdAndIdIn(userId, upsertedMoods);
+        Set<Long> deletedMoodIds = removed(moodOps, moods.stream().map(MoodLog::getId).collect(Collectors.toSet()));
+
+        List<Long> goalIds = upserted(latest.getOrDefault(EntityType.GOAL, Collections.emptyMap()));
+
+        return SyncResponse.builder()
+                .token(version)
+                .full(false)
+                .habits(habits.isEmpty() ? Collections.emptyList() : habitService.toResponses(habits))
+                .deletedHabitIds(new ArrayList<>(deletedHabitIds))
+                .completions(completions)
+                .moods(moods)
+                .deletedMoodIds(new ArrayList<>(deletedMoodIds))
+                .goals(goalIds.isEmpty() ? Collections.emptyList() : goalService.getGoals(userId, goalIds))
+                .build();
+    }
+
+    private static List<Long> upserted(Map<Long, Operation> ops) {
+        return ops.entrySet().stream()
+                .filter(e -> e.getValue() == Operation.UPSERT)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    // Deleted entities plus upserted ones that are gone or hidden by now
+    private static Set<Long> removed(Map<Long, Operation> ops, Set<Long> loaded) {
+        return ops.keySet().stream()
+                .filter(id -> !loaded.contains(id))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static SyncResponse.CompletionChange completion(Long habitId, LocalDate date, boolean completed) {
+        return SyncResponse.CompletionChange.builder()
+                .habitId(habitId)
+                .date(date)
+                .completed(completed)
+                .build();
+    }
+}
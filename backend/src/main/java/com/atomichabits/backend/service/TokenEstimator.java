@@ -0,0 +1,54 @@
+package com.atomichabits.backend.service;
+
+/**
+ * Cheap local estimate of how many tokens a text costs the model, without loading a tokenizer.
+ *
+ * <p>Runs of letters and digits count a token per four characters, CJK ideographs and kana a
+ * token each, and every other non-space character a token of its own. That errs slightly high
+ * for English prose, which is the safe side when staying under a budget.</p>
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            if (isCjk(codePoint)) {
+                tokens += runTokens(run) + 1;
+                run = 0;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                run++;
+            } else {
+                tokens += runTokens(run);
+                run = 0;
+                if (!Character.isWhitespace(codePoint)) {
+                    tokens++;
+                }
+            }
+        }
+        return tokens + runTokens(run);
+    }
+
+    private static int runTokens(int run) {
+        return (run + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
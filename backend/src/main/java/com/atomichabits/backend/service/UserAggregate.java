@@ -0,0 +1,142 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Badge;
+import com.atomichabits.backend.model.Habit;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable in-memory view of one user's dashboard state at a given change version: habit
+ * metadata with a completion bitmap and streak per habit, earned badges and the overall figures
+ * derived from them. {@link UserAggregateService} replaces it as a whole on every change.
+ *
+ * <p>Habits and badges are detached copies holding only plain columns, so nothing here can
+ * trigger lazy loading.</p>
+ */
+public record UserAggregate(Long userId,
+                            long version,
+                            LocalDate day,
+                            List<HabitEntry> habits,
+                            List<Badge> badges,
+                            Set<String> badgeNames,
+                            int totalCompletions,
+                            int currentStreak,
+                            int longestStreak) {
+
+    public record HabitEntry(Habit habit, CompletionBitmap bitmap, StreakSnapshot streak) {
+    }
+
+    static UserAggregate of(Long userId, long version, LocalDate day,
+                            Collection<Habit> habits, Map<Long, CompletionBitmap> bitmaps, List<Badge> badges) {
+        List<HabitEntry> entries = habits.stream()
+                .sorted(Comparator.comparing(Habit::getId))
+                .map(habit -> entry(copyOf(habit), bitmaps.getOrDefault(habit.getId(), CompletionBitmap.empty(day)), day))
+                .collect(Collectors.toList());
+        return of(userId, version, day, entries, badges.stream().map(UserAggregate::copyOf).collect(Collectors.toList()));
+    }
+
+    private static UserAggregate of(Long userId, long version, LocalDate day, List<HabitEntry> habits, List<Badge> badges) {
+        Map<Long, CompletionBitmap> bitmaps = new HashMap<>();
+        habits.forEach(entry -> bitmaps.put(entry.habit().getId(), entry.bitmap()));
+        CompletionBitmap anyHabit = CompletionBitmap.union(bitmaps.values(), day);
+        return new UserAggregate(userId, version, day,
+                List.copyOf(habits),
+                List.copyOf(badges),
+                badges.stream().map(Badge::getName).collect(Collectors.toUnmodifiableSet()),
+                bitmaps.values().stream().mapToInt(CompletionBitmap::cardinality).sum(),
+                anyHabit.currentStreak(day, CompletionBitmap.EVERY_DAY),
+                anyHabit.longestStreak(CompletionBitmap.EVERY_DAY));
+    }
+
+    public int identityScore() {
+        // 10 points per completion + 50 points per day of current streak
+        return (totalCompletions * 10) + (currentStreak * 50);
+    }
+
+    /**
+     * The same state seen on another day; streaks and "completed today" depend on it.
+     */
+    public UserAggregate onDay(LocalDate today) {
+        if (today.equals(day)) {
+            return this;
+        }
+        return of(userId, version, today, habits.stream()
+                .map(entry -> entry(entry.habit(), entry.bitmap(), today))
+                .collect(Collectors.toList()), badges);
+    }
+
+    UserAggregate withCompletion(long newVersion, Long habitId, LocalDate completionDay, boolean completed) {
+        return of(userId, newVersion, day, habits.stream()
+                .map(entry -> {
+                    if (!entry.habit().getId().equals(habitId)) {
+                        return entry;
+                    }
+                    CompletionBitmap bitmap = entry.bitmap().copy();
+                    if (completed) {
+                        bitmap.set(completionDay);
+                    } else {
+                        bitmap.clear(completionDay);
+                    }
+                    return entry(entry.habit(), bitmap, day);
+                })
+                .collect(Collectors.toList()), badges);
+    }
+
+    /**
+     * Replaces or adds the habit, or drops it when {@code habit} is null (deleted or archived).
+     */
+    UserAggregate withHabit(long newVersion, Long habitId, Habit habit, CompletionBitmap bitmap) {
+        List<HabitEntry> entries = habits.stream()
+                .filter(entry -> !entry.habit().getId().equals(habitId))
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (habit != null) {
+            entries.add(entry(copyOf(habit), bitmap, day));
+            entries.sort(Comparator.comparing(entry -> entry.habit().getId()));
+        }
+        return of(userId, newVersion, day, entries, badges);
+    }
+
+    UserAggregate withBadges(long newVersion, List<Badge> newBadges) {
+        return of(userId, newVersion, day, habits,
+                newBadges.stream().map(UserAggregate::copyOf).collect(Collectors.toList()));
+    }
+
+    UserAggregate withVersion(long newVersion) {
+        return new UserAggregate(userId, newVersion, day, habits, badges, badgeNames,
+                totalCompletions, currentStreak, longestStreak);
+    }
+
+    Optional<HabitEntry> findHabit(Long habitId) {
+        return habits.stream().filter(entry -> entry.habit().getId().equals(habitId)).findFirst();
+    }
+
+    private static HabitEntry entry(Habit habit, CompletionBitmap bitmap, LocalDate day) {
+        return new HabitEntry(habit, bitmap,
+                HabitStreakStateService.project(HabitStreakStateService.compute(habit, bitmap, day), day));
+    }
+
+    private static Habit copyOf(Habit habit) {
+        return Habit.builder()
+                .id(habit.getId())
+                .name(habit.getName())
+                .twoMinuteVersion(habit.getTwoMinuteVersion())
+                .cueImplementationIntention(habit.getCueImplementationIntention())
+                .cueHabitStack(habit.getCueHabitStack())
+                .isActive(habit.isActive())
+                .frequencyMask(habit.getFrequencyMask())
+                .createdAt(habit.getCreatedAt())
+                .build();
+    }
+
+    private static Badge copyOf(Badge badge) {
+        return Badge.builder()
+                .id(badge.getId())
+                .name(badge.getName())
+                .description(badge.getDescription())
+                .icon(badge.getIcon())
+                .earnedAt(badge.getEarnedAt())
+                .build();
+    }
+}
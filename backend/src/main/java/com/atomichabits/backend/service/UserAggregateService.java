@@ -0,0 +1,315 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.repository.BadgeRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.UserSyncStateRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in ({@code app.aggregates.enabled}) in-memory store of one {@link UserAggregate} per user.
+ *
+ * <p>Every user has a cell with a lock-free mailbox. Changes committed through
+ * {@link ChangeLogService} and catch-up requests from readers are queued there and applied by
+ * whichever writer thread holds the cell's drain flag, so each aggregate has exactly one writer
+ * at a time and changes are applied in version order. Readers take the published snapshot when
+ * it is at the user's current version; otherwise they ask the writer to catch up, which rebuilds
+ * from the database when the cell is new or changes went missing, and wait briefly. On timeout
+ * the caller falls back to its regular queries.</p>
+ *
+ * <p>At most {@code app.aggregates.max-users} users are kept, and users idle for
+ * {@code app.aggregates.idle-minutes} are dropped.</p>
+ */
+@Service
+public class UserAggregateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAggregateService.class);
+    // Out-of-order versions held back before giving up and rebuilding
+    private static final int MAX_PENDING = 64;
+
+    private final UserVersionService userVersionService;
+    private final UserSyncStateRepository syncStateRepository;
+    private final HabitRepository habitRepository;
+    private final BadgeRepository badgeRepository;
+    private final CompletionIndexService completionIndexService;
+    private final ConcurrentMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final ExecutorService writers;
+
+    @Value("${app.aggregates.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.aggregates.max-users:5000}")
+    private int maxUsers = 5000;
+
+    @Value("${app.aggregates.idle-minutes:30}")
+    private long idleMinutes = 30;
+
+    @Value("${app.aggregates.read-timeout-ms:500}")
+    private long readTimeoutMs = 500;
+
+    public UserAggregateService(UserVersionService userVersionService,
+                                UserSyncStateRepository syncStateRepository,
+                                HabitRepository habitRepository,
+                                BadgeRepository badgeRepository,
+                                CompletionIndexService completionIndexService,
+                                @Value("${app.aggregates.writer-threads:2}") int writerThreads) {
+        this.userVersionService = userVersionService;
+        this.syncStateRepository = syncStateRepository;
+        this.habitRepository = habitRepository;
+        this.badgeRepository = badgeRepository;
+        this.completionIndexService = completionIndexService;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-aggregate-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Optional<UserAggregate> find(String email) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return userVersionService.findUserId(email).flatMap(this::find);
+    }
+
+    /**
+     * The user's aggregate at their current version, seen on today's date; empty when disabled
+     * or when the writer did not catch up in time.
+     */
+    public Optional<UserAggregate> find(Long userId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long version = userVersionService.currentVersion(userId);
+        Cell cell = cell(userId);
+        cell.lastAccess = System.nanoTime();
+
+        UserAggregate snapshot = cell.snapshot;
+        if (snapshot == null || snapshot.version() < version) {
+            CompletableFuture<UserAggregate> caughtUp = new CompletableFuture<>();
+            post(cell, new CatchUp(version, caughtUp));
+            try {
+                snapshot = caughtUp.get(readTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return Optional.empty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            } catch (ExecutionException e) {
+                logger.warn("Failed to load aggregate for user {}: {}", userId, e.getCause().getMessage());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(snapshot.onDay(LocalDate.now()));
+    }
+
+    /**
+     * Hands the entries of one version to the user's writer once the current transaction commits.
+     */
+    public void publishAfterCommit(Long userId, long version, List<ChangeLogEntry> entries) {
+        if (!enabled) {
+            return;
+        }
+        Runnable publish = () -> {
+            // Users without a cell are rebuilt from the database when next read
+            Cell cell = cells.get(userId);
+            if (cell != null) {
+                post(cell, new Changes(version, entries));
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish.run();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.aggregates.sweep-delay-ms:60000}")
+    public void evictIdle() {
+        if (!enabled) {
+            return;
+        }
+        long cutoff = System.nanoTime() - TimeUnit.MINUTES.toNanos(idleMinutes);
+        cells.values().removeIf(cell -> cell.lastAccess - cutoff < 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    int size() {
+        return cells.size();
+    }
+
+    private Cell cell(Long userId) {
+        Cell cell = cells.get(userId);
+        if (cell != null) {
+            return cell;
+        }
+        cell = cells.computeIfAbsent(userId, Cell::new);
+        if (cells.size() > maxUsers) {
+            evictLeastRecentlyUsed(userId);
+        }
+        return cell;
+    }
+
+    // A linear scan, but only when a new user pushes the store over its limit
+    private void evictLeastRecentlyUsed(Long keep) {
+        cells.values().stream()
+                .filter(cell -> !cell.userId.equals(keep))
+                .min(Comparator.comparingLong(cell -> cell.lastAccess))
+                .ifPresent(cell -> cells.remove(cell.userId, cell));
+    }
+
+    private void post(Cell cell, Message message) {
+        cell.mailbox.offer(message);
+        if (cell.draining.compareAndSet(false, true)) {
+            writers.execute(() -> drain(cell));
+        }
+    }
+
+    private void drain(Cell cell) {
+        do {
+            Message message;
+            while ((message = cell.mailbox.poll()) != null) {
+                try {
+                    apply(cell, message);
+                } catch (RuntimeException e) {
+                    logger.warn("Dropping aggregate for user {}: {}", cell.userId, e.getMessage());
+                    cell.snapshot = null;
+                    cell.pending.clear();
+                    if (message instanceof CatchUp catchUp) {
+                        catchUp.result().completeExceptionally(e);
+                    }
+                }
+            }
+            cell.draining.set(false);
+        } while (!cell.mailbox.isEmpty() && cell.draining.compareAndSet(false, true));
+    }
+
+    private void apply(Cell cell, Message message) {
+        if (message instanceof Changes changes) {
+            if (cell.snapshot == null || changes.version() <= cell.snapshot.version()) {
+                return;
+            }
+            cell.pending.put(changes.version(), changes.entries());
+            UserAggregate caughtUp = applyPending(cell, cell.snapshot);
+            cell.snapshot = cell.pending.size() > MAX_PENDING ? rebuild(cell) : caughtUp;
+        } else if (message instanceof CatchUp catchUp) {
+            UserAggregate snapshot = cell.snapshot;
+            if (snapshot == null || snapshot.version() < catchUp.version()) {
+                snapshot = rebuild(cell);
+            }
+            cell.snapshot = snapshot;
+            catchUp.result().complete(snapshot);
+        }
+    }
+
+    private UserAggregate rebuild(Cell cell) {
+        UserAggregate loaded = load(cell.userId);
+        cell.pending.headMap(loaded.version(), true).clear();
+        return applyPending(cell, loaded);
+    }
+
+    private UserAggregate applyPending(Cell cell, UserAggregate snapshot) {
+        List<ChangeLogEntry> next;
+        while ((next = cell.pending.remove(snapshot.version() + 1)) != null) {
+            snapshot = applyChanges(snapshot, snapshot.version() + 1, next);
+        }
+        return snapshot;
+    }
+
+    private UserAggregate load(Long userId) {
+        // Version first: anything committed after this read is applied on top again, which is idempotent
+        Long version = syncStateRepository.findVersion(userId);
+        List<Habit> habits = habitRepository.findByUserIdAndArchivedAtIsNull(userId);
+        // From the raw table, so completions of uncommitted transactions are never included
+        Map<Long, CompletionBitmap> bitmaps = habits.isEmpty()
+                ? Collections.emptyMap()
+                : completionIndexService.buildFromCompletions(habits);
+        return UserAggregate.of(userId, version != null ? version : 0L, LocalDate.now(),
+                habits, bitmaps, badgeRepository.findByUserId(userId));
+    }
+
+    private UserAggregate applyChanges(UserAggregate snapshot, long version, List<ChangeLogEntry> entries) {
+        UserAggregate next = snapshot;
+        Map<EntityType, List<ChangeLogEntry>> byType = entries.stream()
+                .collect(Collectors.groupingBy(ChangeLogEntry::getEntityType, () -> new EnumMap<>(EntityType.class), Collectors.toList()));
+
+        List<ChangeLogEntry> habitChanges = byType.getOrDefault(EntityType.HABIT, Collections.emptyList());
+        if (!habitChanges.isEmpty()) {
+            Map<Long, Habit> reloaded = habitRepository.findAllById(habitChanges.stream()
+                            .filter(e -> e.getOperation() == Operation.UPSERT)
+                            .map(ChangeLogEntry::getEntityId)
+                            .collect(Collectors.toList())).stream()
+                    .filter(habit -> habit.getArchivedAt() == null)
+                    .collect(Collectors.toMap(Habit::getId, Function.identity()));
+            for (ChangeLogEntry change : habitChanges) {
+                Habit habit = reloaded.get(change.getEntityId());
+                next = next.withHabit(version, change.getEntityId(), habit, habit == null ? null : bitmapFor(next, habit));
+            }
+        }
+        for (ChangeLogEntry change : byType.getOrDefault(EntityType.COMPLETION, Collections.emptyList())) {
+            next = next.withCompletion(version, change.getEntityId(), change.getEntityDay(),
+                    change.getOperation() == Operation.UPSERT);
+        }
+        if (byType.containsKey(EntityType.BADGE)) {
+            next = next.withBadges(version, badgeRepository.findByUserId(snapshot.userId()));
+        }
+        return next.withVersion(version);
+    }
+
+    private CompletionBitmap bitmapFor(UserAggregate snapshot, Habit habit) {
+        return snapshot.findHabit(habit.getId())
+                .map(UserAggregate.HabitEntry::bitmap)
+                .orElseGet(() -> completionIndexService.buildFromCompletions(List.of(habit)).get(habit.getId()));
+    }
+
+    private interface Message {
+    }
+
+    private record Changes(long version, List<ChangeLogEntry> entries) implements Message {
+    }
+
+    private record CatchUp(long version, CompletableFuture<UserAggregate> result) implements Message {
+    }
+
+    private static final class Cell {
+        final Long userId;
+        final Queue<Message> mailbox = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        // Only touched by the thread holding the drain flag
+        final NavigableMap<Long, List<ChangeLogEntry>> pending = new TreeMap<>();
+        volatile UserAggregate snapshot;
+        volatile long lastAccess = System.nanoTime();
+
+        Cell(Long userId) {
+            this.userId = userId;
+        }
+    }
+}
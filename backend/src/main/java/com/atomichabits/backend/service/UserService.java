@@ -1,15 +1,16 @@
 package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.dto.*;
-import com.atomichabits.backend.model.HabitCompletion;
+import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.model.UserDailyActivity;
 import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
-import com.atomichabits.backend.repository.MoodRepository;
-import com.atomichabits.backend.model.MoodLog;
 import com.atomichabits.backend.dto.MoodInsightDTO;
 import com.atomichabits.backend.exception.ResourceNotFoundException;
 import com.atomichabits.backend.exception.UnauthorizedException;
+import com.atomichabits.backend.security.JwtTokenProvider;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,23 +25,43 @@ public class UserService {
     private final UserRepository userRepository;
     private final HabitCompletionRepository habitCompletionRepository;
     private final GamificationService gamificationService;
-    private final MoodRepository moodRepository;
+    private final DailyActivityService dailyActivityService;
     private final PasswordEncoder passwordEncoder;
     private final RefreshTokenService refreshTokenService;
+    private final HabitRepository habitRepository;
+    private final CompletionIndexService completionIndexService;
+    private final ChangeLogService changeLogService;
+    private final UserVersionService userVersionService;
+    private final UserAggregateService userAggregateService;
+    private final JwtTokenProvider tokenProvider;
+    private final MemoryExtractionQueue memoryExtractionQueue;
+    private final ChatSummaryService chatSummaryService;
 
     public UserService(UserRepository userRepository, HabitCompletionRepository habitCompletionRepository,
-                       GamificationService gamificationService, MoodRepository moodRepository,
-                       PasswordEncoder passwordEncoder, RefreshTokenService refreshTokenService) {
+                       GamificationService gamificationService, DailyActivityService dailyActivityService,
+                       PasswordEncoder passwordEncoder, RefreshTokenService refreshTokenService,
+                       HabitRepository habitRepository, CompletionIndexService completionIndexService,
+                       ChangeLogService changeLogService, UserVersionService userVersionService,
+                       UserAggregateService userAggregateService, JwtTokenProvider tokenProvider,
+                       MemoryExtractionQueue memoryExtractionQueue, ChatSummaryService chatSummaryService) {
         this.userRepository = userRepository;
         this.habitCompletionRepository = habitCompletionRepository;
         this.gamificationService = gamificationService;
-        this.moodRepository = moodRepository;
+        this.dailyActivityService = dailyActivityService;
         this.passwordEncoder = passwordEncoder;
         this.refreshTokenService = refreshTokenService;
+        this.habitRepository = habitRepository;
+        this.completionIndexService = completionIndexService;
+        this.changeLogService = changeLogService;
+        this.userVersionService = userVersionService;
+        this.userAggregateService = userAggregateService;
+        this.tokenProvider = tokenProvider;
+        this.memoryExtractionQueue = memoryExtractionQueue;
+        this.chatSummaryService = chatSummaryService;
     }
 
-    public void changePassword(String email, String currentPassword, String newPassword) {
-        User user = userRepository.findByEmail(email)
+    public void changePassword(Long userId, String currentPassword, String newPassword) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
         if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
@@ -55,21 +76,32 @@ public class UserService {
     }
 
     @Transactional
-    public void deleteAccount(String email, String password) {
-        User user = userRepository.findByEmail(email)
+    public void deleteAccount(Long userId, String password) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
         if (!passwordEncoder.matches(password, user.getPassword())) {
             throw new UnauthorizedException("Password is incorrect");
         }
 
+        dailyActivityService.deleteForUser(user.getId());
+        changeLogService.deleteForUser(user.getId());
+        memoryExtractionQueue.deleteForUser(user.getId());
+        chatSummaryService.deleteForUser(user.getId());
         userRepository.delete(user);
+        // The email may be registered again, by a new user id
+        userVersionService.evict(user.getEmail());
     }
 
-    public UserProfileResponse updateProfile(String email, String identityStatement, String newEmail) {
-        User user = userRepository.findByEmail(email)
+    /**
+     * A changed email comes back with a new access token, as the caller's token still names the
+     * old one; the id in it stays valid, so requests keep working until the client swaps tokens.
+     */
+    public UserProfileResponse updateProfile(Long userId, String identityStatement, String newEmail) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
+        String email = user.getEmail();
         if (identityStatement != null) {
             user.setIdentityStatement(identityStatement);
         }
@@ -81,42 +113,40 @@ public class UserService {
         }
 
         User savedUser = userRepository.save(user);
+        userVersionService.evict(email);
         return UserProfileResponse.builder()
                 .id(savedUser.getId())
                 .email(savedUser.getEmail())
                 .identityStatement(savedUser.getIdentityStatement())
                 .createdAt(savedUser.getCreatedAt())
+                .accessToken(savedUser.getEmail().equals(email) ? null : tokenProvider.generateToken(savedUser))
                 .build();
     }
 
-    public AdvancedUserStatsResponse getAdvancedStats(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitUserId(user.getId());
+    public AdvancedUserStatsResponse getAdvancedStats(Long userId) {
+        // One rollup row per active day in the window, one aggregate row per habit overall
+        LocalDate today = LocalDate.now();
+        LocalDate thirtyDaysAgo = today.minusDays(30);
+        List<UserDailyActivity> days = dailyActivityService.getRange(userId, thirtyDaysAgo, today);
 
         // 1. Daily Completions (Last 30 Days)
-        LocalDate thirtyDaysAgo = LocalDate.now().minusDays(30);
-        Map<LocalDate, Long> dailyCounts = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .filter(d -> !d.isBefore(thirtyDaysAgo))
-                .collect(Collectors.groupingBy(d -> d, Collectors.counting()));
-
-        List<DailyCompletionDTO> last30Days = dailyCounts.entrySet().stream()
-                .map(e -> new DailyCompletionDTO(e.getKey(), e.getValue().intValue()))
-                .sorted(Comparator.comparing(DailyCompletionDTO::getDate))
+        List<DailyCompletionDTO> last30Days = days.stream()
+                .filter(d -> d.getCompletionCount() > 0)
+                .map(d -> new DailyCompletionDTO(d.getActivityDay(), d.getCompletionCount()))
                 .toList();
 
         // 2. Completions by Habit
-        Map<String, Integer> byHabit = completions.stream()
-                .collect(Collectors.groupingBy(c -> c.getHabit().getName(), Collectors.summingInt(c -> 1)));
+        Map<String, Integer> byHabit = new HashMap<>();
+        for (HabitCompletionRepository.HabitNameCount row : habitCompletionRepository.countByHabitName(userId)) {
+            byHabit.merge(row.getHabitName(), (int) row.getCount(), Integer::sum);
+        }
 
         // 3. Overall Completion Rate (Days with at least one completion / 30)
-        long activeDays = dailyCounts.size();
+        long activeDays = last30Days.size();
         double completionRate = (double) activeDays / 30.0;
-        
+
         // 4. Mood Insights
-        List<MoodInsightDTO> moodInsights = calculateMoodInsights(user.getId(), completions, thirtyDaysAgo);
+        List<MoodInsightDTO> moodInsights = calculateMoodInsights(userId, days, thirtyDaysAgo);
 
         return AdvancedUserStatsResponse.builder()
                 .last30Days(last30Days)
@@ -125,68 +155,70 @@ public class UserService {
                 .moodInsights(moodInsights)
                 .build();
     }
-    
-    private List<MoodInsightDTO> calculateMoodInsights(Long userId, List<HabitCompletion> completions, LocalDate since) {
-        // Get mood logs for the period
-        List<MoodLog> moodLogs = moodRepository.findByUserIdAndCreatedAtBetween(
-                userId, since.atStartOfDay(), java.time.LocalDateTime.now());
-        
-        if (moodLogs.isEmpty()) return Collections.emptyList();
-        
-        // Group mood logs by type
-        Map<String, List<MoodLog>> logsByMood = moodLogs.stream()
-                .collect(Collectors.groupingBy(MoodLog::getMoodType));
-        
+
+    /**
+     * Mood days, log counts and completion averages come from the rollup; the per-habit counts
+     * behind the top habits are only queried when a mood was logged.
+     */
+    private List<MoodInsightDTO> calculateMoodInsights(Long userId, List<UserDailyActivity> days, LocalDate since) {
+        Map<String, Integer> logCounts = new HashMap<>();
+        Map<String, List<UserDailyActivity>> moodDays = new HashMap<>();
+        for (UserDailyActivity day : days) {
+            day.getMoodCounts().forEach((mood, count) -> {
+                logCounts.merge(mood, count, Integer::sum);
+                moodDays.computeIfAbsent(mood, m -> new ArrayList<>()).add(day);
+            });
+        }
+
+        if (moodDays.isEmpty()) return Collections.emptyList();
+
+        Map<LocalDate, Map<String, Integer>> countsByDay = new HashMap<>();
+        for (HabitCompletionRepository.DailyHabitCount row
+                : habitCompletionRepository.countByDayAndHabitNameSince(userId, since)) {
+            countsByDay.computeIfAbsent(row.getDay(), d -> new HashMap<>())
+                    .merge(row.getHabitName(), (int) row.getCount(), Integer::sum);
+        }
+
         List<MoodInsightDTO> insights = new ArrayList<>();
-        
-        for (Map.Entry<String, List<MoodLog>> entry : logsByMood.entrySet()) {
-            String mood = entry.getKey();
-            List<MoodLog> logs = entry.getValue();
-            Set<LocalDate> moodDays = logs.stream()
-                    .map(l -> l.getCreatedAt().toLocalDate())
-                    .collect(Collectors.toSet());
-            
+
+        for (Map.Entry<String, List<UserDailyActivity>> entry : moodDays.entrySet()) {
             // Calculate avg completions on these days
             double totalCompletionsOnMoodDays = 0;
             Map<String, Integer> habitCounts = new HashMap<>();
-            
-            for (LocalDate day : moodDays) {
-                List<HabitCompletion> daysCompletions = completions.stream()
-                        .filter(c -> c.getCompletedAt().toLocalDate().equals(day))
-                        .toList();
-                
-                totalCompletionsOnMoodDays += daysCompletions.size();
-                
-                for (HabitCompletion c : daysCompletions) {
-                    habitCounts.merge(c.getHabit().getName(), 1, Integer::sum);
-                }
+
+            for (UserDailyActivity day : entry.getValue()) {
+                totalCompletionsOnMoodDays += day.getCompletionCount();
+                countsByDay.getOrDefault(day.getActivityDay(), Collections.emptyMap())
+                        .forEach((habitName, count) -> habitCounts.merge(habitName, count, Integer::sum));
             }
-            
-            double avg = moodDays.isEmpty() ? 0 : totalCompletionsOnMoodDays / moodDays.size();
-            
+
+            double avg = totalCompletionsOnMoodDays / entry.getValue().size();
+
             List<String> topHabits = habitCounts.entrySet().stream()
                     .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
                     .limit(3)
                     .map(Map.Entry::getKey)
                     .toList();
-            
+
             insights.add(MoodInsightDTO.builder()
-                    .mood(mood)
-                    .logCount(logs.size())
+                    .mood(entry.getKey())
+                    .logCount(logCounts.get(entry.getKey()))
                     .avgCompletions(avg)
                     .topHabits(topHabits)
                     .build());
         }
 
         insights.sort(Comparator.comparingInt(MoodInsightDTO::getLogCount).reversed());
-        
+
         return insights;
     }
 
-    public UserProfileResponse getUserProfile(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
+    public UserProfileResponse getUserProfile(Long userId) {
+        return toProfileResponse(userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found")));
+    }
+
+    private static UserProfileResponse toProfileResponse(User user) {
         return UserProfileResponse.builder()
                 .id(user.getId())
                 .email(user.getEmail())
@@ -195,39 +227,28 @@ public class UserService {
                 .build();
     }
 
-    public UserProfileResponse updateIdentity(String email, String identityStatement) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        user.setIdentityStatement(identityStatement);
-        User savedUser = userRepository.save(user);
-        
-        return UserProfileResponse.builder()
-                .id(savedUser.getId())
-                .email(savedUser.getEmail())
-                .identityStatement(savedUser.getIdentityStatement())
-                .createdAt(savedUser.getCreatedAt())
-                .build();
-    }
+    public UserStatsResponse getUserStats(Long userId) {
+        Optional<UserAggregate> aggregate = userAggregateService.find(userId);
+        if (aggregate.isPresent()) {
+            return getUserStats(aggregate.get());
+        }
 
-    public UserStatsResponse getUserStats(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        List<HabitCompletion> completions = habitCompletionRepository.findByHabitUserId(user.getId());
-        
-        int totalCompletions = completions.size();
-        int currentStreak = calculateCurrentStreak(completions);
-        int longestStreak = calculateLongestStreak(completions);
+        List<Habit> habits = habitRepository.findByUserIdAndArchivedAtIsNull(userId);
+        Collection<CompletionBitmap> bitmaps = completionIndexService.getBitmaps(habits).values();
+
+        // A day counts towards the overall streak if any habit was completed on it
+        LocalDate today = LocalDate.now();
+        CompletionBitmap anyHabit = CompletionBitmap.union(bitmaps, today);
+
+        int totalCompletions = bitmaps.stream().mapToInt(CompletionBitmap::cardinality).sum();
+        int currentStreak = anyHabit.currentStreak(today, CompletionBitmap.EVERY_DAY);
+        int longestStreak = anyHabit.longestStreak(CompletionBitmap.EVERY_DAY);
         
         // Identity Score: 10 points per completion + 50 points per day of current streak
         int identityScore = (totalCompletions * 10) + (currentStreak * 50);
 
-        // Check and award badges
-        gamificationService.checkAndAwardBadges(user, currentStreak, totalCompletions, completions);
-
-        // Fetch badges for response
-        List<BadgeResponse> badgeResponses = gamificationService.getLocalizedUserBadges(user.getId());
+        // Badges are awarded by BadgeEngine when habits are completed
+        List<BadgeResponse> badgeResponses = gamificationService.getLocalizedUserBadges(userId);
 
         return UserStatsResponse.builder()
                 .identityScore(identityScore)
@@ -238,63 +259,21 @@ public class UserService {
                 .build();
     }
 
-    private int calculateCurrentStreak(List<HabitCompletion> completions) {
-        if (completions.isEmpty()) return 0;
-
-        List<LocalDate> dates = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .distinct()
-                .sorted(Comparator.reverseOrder())
-                .toList();
-
-        if (dates.isEmpty()) return 0;
-
-        LocalDate today = LocalDate.now();
-        LocalDate lastCompletionDate = dates.get(0);
-
-        if (!lastCompletionDate.equals(today) && !lastCompletionDate.equals(today.minusDays(1))) {
-            return 0;
-        }
-
-        int streak = 0;
-        LocalDate checkDate = lastCompletionDate;
-        
-        for (LocalDate date : dates) {
-            if (date.equals(checkDate)) {
-                streak++;
-                checkDate = checkDate.minusDays(1);
-            } else {
-                break;
-            }
-        }
-        return streak;
+    private UserStatsResponse getUserStats(UserAggregate aggregate) {
+        return UserStatsResponse.builder()
+                .identityScore(aggregate.identityScore())
+                .currentStreak(aggregate.currentStreak())
+                .longestStreak(aggregate.longestStreak())
+                .totalHabitsCompleted(aggregate.totalCompletions())
+                .badges(gamificationService.getLocalizedBadges(aggregate.badges()))
+                .build();
     }
 
-    private int calculateLongestStreak(List<HabitCompletion> completions) {
-        if (completions.isEmpty()) return 0;
-
-        List<LocalDate> dates = completions.stream()
-                .map(c -> c.getCompletedAt().toLocalDate())
-                .distinct()
-                .sorted()
-                .toList();
-
-        int maxStreak = 0;
-        int currentStreak = 0;
-        LocalDate previousDate = null;
-
-        for (LocalDate date : dates) {
-            if (previousDate == null) {
-                currentStreak = 1;
-            } else if (date.equals(previousDate.plusDays(1))) {
-                currentStreak++;
-            } else {
-                maxStreak = Math.max(maxStreak, currentStreak);
-                currentStreak = 1;
-            }
-            previousDate = date;
+    public List<BadgeResponse> getUserBadges(Long userId) {
+        Optional<UserAggregate> aggregate = userAggregateService.find(userId);
+        if (aggregate.isPresent()) {
+            return gamificationService.getLocalizedBadges(aggregate.get().badges());
         }
-        
-        return Math.max(maxStreak, currentStreak);
+        return gamificationService.getLocalizedUserBadges(userId);
     }
 }
@@ -0,0 +1,114 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.repository.UserSyncStateRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves the per-user change version kept in {@code user_sync_state} from memory, so conditional
+ * GETs can be answered without a database round trip. {@link ChangeLogService} publishes every
+ * bumped version here once the writing transaction commits; a user is loaded from the database
+ * only on first use.
+ *
+ * <p>The cache is local to this instance and does not see writes made through another one, so
+ * conditional GETs should be switched off ({@code app.etag.enabled=false}) when scaling out.</p>
+ */
+@Service
+public class UserVersionService {
+
+    private final UserRepository userRepository;
+    private final UserSyncStateRepository syncStateRepository;
+    private final Map<String, Long> userIds = lruMap();
+    private final Map<Long, Long> versions = lruMap();
+
+    @Value("${app.etag.max-users:10000}")
+    private int maxUsers = 10000;
+
+    public UserVersionService(UserRepository userRepository, UserSyncStateRepository syncStateRepository) {
+        this.userRepository = userRepository;
+        this.syncStateRepository = syncStateRepository;
+    }
+
+    /**
+     * Opaque tag that changes whenever the user's data does, or null if there is no such user.
+     */
+    public String versionTag(String email) {
+        return findUserId(email)
+                .map(this::versionTag)
+                .orElse(null);
+    }
+
+    public String versionTag(Long userId) {
+        return userId + "-" + currentVersion(userId);
+    }
+
+    public Optional<Long> findUserId(String email) {
+        Long userId = userIds.get(email);
+        if (userId != null) {
+            return Optional.of(userId);
+        }
+        Optional<Long> loaded = userRepository.findByEmail(email).map(User::getId);
+        loaded.ifPresent(id -> userIds.put(email, id));
+        return loaded;
+    }
+
+    public long currentVersion(Long userId) {
+        Long version = versions.get(userId);
+        if (version != null) {
+            return version;
+        }
+        Long stored = syncStateRepository.findVersion(userId);
+        // A writer may have published a newer version while we were reading
+        return versions.merge(userId, stored != null ? stored : 0L, Math::max);
+    }
+
+    /**
+     * Publishes a version bumped by the current transaction once it commits.
+     */
+    public void advanceAfterCommit(Long userId, long version) {
+        afterCommit(() -> versions.merge(userId, version, Math::max));
+    }
+
+    /**
+     * Forgets the email after an email change or account deletion, once the current transaction commits.
+     */
+    public void evict(String email) {
+        afterCommit(() -> {
+            Long userId = userIds.remove(email);
+            if (userId != null) {
+                versions.remove(userId);
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private <K> Map<K, Long> lruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Long> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.atomichabits.backend.benchmark;
+
+import com.atomichabits.backend.security.AuthenticatedUser;
+import com.atomichabits.backend.security.JwtTokenProvider;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.Key;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request token checks the JWT filter used to run (a fresh key and parser for
+ * validation, then again for reading the subject) with {@link JwtTokenProvider#parseToken}
+ * with the verified-token cache off and on.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.atomichabits.backend.benchmark.JwtVerificationBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtTokenProvider uncached;
+    private JwtTokenProvider cached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncached = new JwtTokenProvider(SECRET, 900_000, 0, new SimpleMeterRegistry());
+        cached = new JwtTokenProvider(SECRET, 900_000, 10_000, new SimpleMeterRegistry());
+        token = cached.generateToken(new AuthenticatedUser(42L, "bench@example.com", List.of("ROLE_USER")));
+    }
+
+    @Benchmark
+    public String legacyValidateThenRead() {
+        Jwts.parserBuilder().setSigningKey(legacyKey()).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(legacyKey()).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Optional<AuthenticatedUser> parseUncached() {
+        return uncached.parseToken(token);
+    }
+
+    @Benchmark
+    public Optional<AuthenticatedUser> parseCached() {
+        return cached.parseToken(token);
+    }
+
+    // --- Previous implementation, kept here as the baseline ---
+
+    private static Key legacyKey() {
+        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,126 @@
+package com.atomichabits.backend.benchmark;
+
+import com.atomichabits.backend.service.CompletionBitmap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the list-based streak calculations that HabitService used to run on every
+ * request with the word-level scans in {@link CompletionBitmap}.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.atomichabits.backend.benchmark.StreakBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreakBenchmark {
+
+    private static final Set<DayOfWeek> WEEKDAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+    private static final int WEEKDAY_MASK = 0x1F;
+
+    @Param({"30", "365", "1825"})
+    public int historyDays;
+
+    private LocalDate today;
+    private LocalDate createdAt;
+    private List<LocalDate> completionDates;
+    private CompletionBitmap bitmap;
+
+    @Setup
+    public void setUp() {
+        today = LocalDate.now();
+        createdAt = today.minusDays(historyDays);
+        Random random = new Random(42);
+        completionDates = new ArrayList<>();
+        for (LocalDate d = createdAt; !d.isAfter(today); d = d.plusDays(1)) {
+            if (random.nextInt(10) < 9) {
+                completionDates.add(d);
+            }
+        }
+        Collections.reverse(completionDates);
+        bitmap = CompletionBitmap.of(createdAt, completionDates);
+    }
+
+    @Benchmark
+    public int listCurrentStreak() {
+        return legacyCurrentStreak(completionDates, createdAt, today);
+    }
+
+    @Benchmark
+    public int bitmapCurrentStreak() {
+        return bitmap.currentStreak(today, WEEKDAY_MASK);
+    }
+
+    @Benchmark
+    public int listLongestStreak() {
+        return legacyLongestStreak(completionDates);
+    }
+
+    @Benchmark
+    public int bitmapLongestStreak() {
+        return bitmap.longestStreak(WEEKDAY_MASK);
+    }
+
+    // --- Previous implementation, kept here as the baseline ---
+
+    private static int legacyCurrentStreak(List<LocalDate> completions, LocalDate createdAt, LocalDate today) {
+        if (completions.isEmpty()) return 0;
+        Set<LocalDate> completedDates = new HashSet<>(completions);
+        LocalDate checkDate = today;
+        if (WEEKDAYS.contains(today.getDayOfWeek()) && !completedDates.contains(today)) {
+            checkDate = today.minusDays(1);
+        }
+        int streak = 0;
+        while (true) {
+            if (WEEKDAYS.contains(checkDate.getDayOfWeek())) {
+                if (completedDates.contains(checkDate)) {
+                    streak++;
+                } else {
+                    break;
+                }
+            }
+            if (checkDate.isBefore(createdAt)) break;
+            checkDate = checkDate.minusDays(1);
+            if (java.time.temporal.ChronoUnit.DAYS.between(checkDate, today) > 365) break;
+        }
+        return streak;
+    }
+
+    private static int legacyLongestStreak(List<LocalDate> completions) {
+        if (completions.isEmpty()) return 0;
+        Set<LocalDate> completedDates = new HashSet<>(completions);
+        LocalDate start = completedDates.stream().min(Comparator.naturalOrder()).get();
+        LocalDate end = completedDates.stream().max(Comparator.naturalOrder()).get();
+        int maxStreak = 0;
+        int currentStreak = 0;
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            if (!WEEKDAYS.contains(d.getDayOfWeek())) continue;
+            if (completedDates.contains(d)) {
+                currentStreak++;
+                maxStreak = Math.max(maxStreak, currentStreak);
+            } else {
+                currentStreak = 0;
+            }
+        }
+        return maxStreak;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StreakBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
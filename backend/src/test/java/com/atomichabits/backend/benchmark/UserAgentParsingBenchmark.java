@@ -0,0 +1,113 @@
+package com.atomichabits.backend.benchmark;
+
+import com.atomichabits.backend.dto.DeviceMetadata;
+import com.atomichabits.backend.service.DeviceService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a corpus of real-world user agents with the previous {@code contains} chain, with
+ * {@link DeviceService} with its cache off (every call goes through the compiled matcher), and with
+ * the cache on.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.atomichabits.backend.benchmark.UserAgentParsingBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserAgentParsingBenchmark {
+
+    private static final String[] CORPUS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 Edg/120.0.2210.91",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 OPR/106.0.0.0",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:121.0) Gecko/20100101 Firefox/121.0",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Safari/605.1.15",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0",
+            "Mozilla/5.0 (X11; CrOS x86_64 14541.0.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (iPad; CPU OS 17_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) CriOS/120.0.6099.119 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.6099.144 Mobile Safari/537.36",
+            "Mozilla/5.0 (Linux; Android 13; SM-S911B) AppleWebKit/537.36 (KHTML, like Gecko) SamsungBrowser/23.0 Chrome/115.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (Linux; Android 13; SM-X700) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Windows NT 6.1; WOW64; Trident/7.0; rv:11.0) like Gecko",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "okhttp/4.12.0"
+    };
+
+    private DeviceService uncached;
+    private DeviceService cached;
+
+    @Setup
+    public void setUp() {
+        uncached = new DeviceService();
+        ReflectionTestUtils.setField(uncached, "maxCachedAgents", 0);
+        cached = new DeviceService();
+    }
+
+    @Benchmark
+    public void legacyContainsChain(Blackhole blackhole) {
+        for (String userAgent : CORPUS) {
+            blackhole.consume(legacyParse(userAgent));
+        }
+    }
+
+    @Benchmark
+    public void compiledMatcher(Blackhole blackhole) {
+        for (String userAgent : CORPUS) {
+            blackhole.consume(uncached.parseUserAgent(userAgent));
+        }
+    }
+
+    @Benchmark
+    public void cachedLookup(Blackhole blackhole) {
+        for (String userAgent : CORPUS) {
+            blackhole.consume(cached.parseUserAgent(userAgent));
+        }
+    }
+
+    // --- Previous implementation, kept here as the baseline ---
+
+    private static DeviceMetadata legacyParse(String userAgent) {
+        String browser = "Unknown";
+        String os = "Unknown";
+        String deviceType = "Desktop";
+
+        if (userAgent.contains("Windows")) os = "Windows";
+        else if (userAgent.contains("Mac OS")) os = "macOS";
+        else if (userAgent.contains("Linux")) os = "Linux";
+        else if (userAgent.contains("Android")) { os = "Android"; deviceType = "Mobile"; }
+        else if (userAgent.contains("iPhone") || userAgent.contains("iPad")) { os = "iOS"; deviceType = "Mobile"; }
+
+        if (userAgent.contains("Edg")) browser = "Edge";
+        else if (userAgent.contains("Chrome") && !userAgent.contains("Edg")) browser = "Chrome";
+        else if (userAgent.contains("Firefox")) browser = "Firefox";
+        else if (userAgent.contains("Safari") && !userAgent.contains("Chrome")) browser = "Safari";
+        else if (userAgent.contains("Trident")) browser = "Internet Explorer";
+
+        return DeviceMetadata.builder()
+                .browser(browser)
+                .operatingSystem(os)
+                .deviceType(deviceType)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(UserAgentParsingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
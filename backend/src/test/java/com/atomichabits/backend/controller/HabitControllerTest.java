@@ -1,20 +1,26 @@
 package com.atomichabits.backend.controller;
 
+import com.atomichabits.backend.dto.CompletionBatchResponse;
 import com.atomichabits.backend.dto.HabitRequest;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.repository.GoalRepository;
 import com.atomichabits.backend.repository.HabitCompletionRepository;
 import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.security.AuthenticatedUser;
 import com.atomichabits.backend.security.CustomUserDetailsService;
 import com.atomichabits.backend.security.JwtAuthenticationFilter;
 import com.atomichabits.backend.security.JwtTokenProvider;
 import com.atomichabits.backend.service.HabitService;
+import com.atomichabits.backend.service.UserVersionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -24,19 +30,32 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -51,6 +70,9 @@ class HabitControllerTest {
     @MockBean
     private HabitService habitService;
 
+    @MockBean
+    private UserVersionService userVersionService;
+
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
@@ -72,8 +94,16 @@ class HabitControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @TestConfiguration
     static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
         @Bean
         public JwtAuthenticationFilter jwtAuthenticationFilter() {
             return new JwtAuthenticationFilter(null, null) {
@@ -85,6 +115,12 @@ class HabitControllerTest {
         }
     }
 
+    @BeforeEach
+    void setUp() {
+        // Mock users carry no id, so the id is looked up by name
+        given(userVersionService.findUserId("test@example.com")).willReturn(Optional.of(1L));
+    }
+
     @Test
     @WithMockUser(username = "test@example.com")
     void createHabit_Success() throws Exception {
@@ -99,7 +135,7 @@ class HabitControllerTest {
                 .isActive(true)
                 .build();
 
-        given(habitService.createHabit(eq("test@example.com"), any(HabitRequest.class)))
+        given(habitService.createHabit(eq(1L), any(HabitRequest.class)))
                 .willReturn(response);
 
         mockMvc.perform(post("/api/habits")
@@ -120,7 +156,7 @@ class HabitControllerTest {
                 .isActive(true)
                 .build();
 
-        given(habitService.getUserHabits("test@example.com"))
+        given(habitService.getUserHabits(1L))
                 .willReturn(Arrays.asList(response));
 
         mockMvc.perform(get("/api/habits"))
@@ -129,10 +165,90 @@ class HabitControllerTest {
                 .andExpect(jsonPath("$[0].name").value("New Habit"));
     }
 
+    @Test
+    void getHabits_TokenPrincipalUsesIdFromClaims() throws Exception {
+        AuthenticatedUser principal = new AuthenticatedUser(7L, "token@example.com", List.of("ROLE_USER"));
+        given(userVersionService.versionTag(7L)).willReturn("7-3");
+        given(habitService.getUserHabits(7L)).willReturn(List.of());
+
+        mockMvc.perform(get("/api/habits")
+                        .with(authentication(new UsernamePasswordAuthenticationToken(principal, null, principal.authorities()))))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+
+        verify(userVersionService, never()).findUserId(any());
+        verify(userVersionService, never()).versionTag(any(String.class));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getHabits_MatchingETagReturnsNotModified() throws Exception {
+        given(userVersionService.versionTag("test@example.com")).willReturn("1-5");
+        given(habitService.getUserHabits(1L)).willReturn(List.of());
+
+        String etag = mockMvc.perform(get("/api/habits"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/habits").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        verify(habitService, times(1)).getUserHabits(1L);
+        assertEquals(1.0, meterRegistry.counter("http.conditional.get",
+                "endpoint", "/api/habits", "result", "not_modified").count());
+    }
+
     @Test
     @WithMockUser(username = "test@example.com")
     void completeHabit_Success() throws Exception {
         mockMvc.perform(post("/api/habits/1/complete").with(csrf()))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void deleteHabit_ArchiveMode() throws Exception {
+        mockMvc.perform(delete("/api/habits/1").param("archive", "true").with(csrf()))
+                .andExpect(status().isOk());
+
+        verify(habitService).archiveHabit(1L, 1L);
+        verify(habitService, never()).deleteHabit(any(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void completeHabitsBatch_Success() throws Exception {
+        LocalDate today = LocalDate.now();
+        CompletionBatchResponse response = CompletionBatchResponse.builder()
+                .created(1)
+                .results(List.of(CompletionBatchResponse.Result.builder()
+                        .index(0)
+                        .habitId(1L)
+                        .date(today)
+                        .status(CompletionBatchResponse.Status.CREATED)
+                        .build()))
+                .build();
+
+        given(habitService.completeHabits(eq(1L), anyList())).willReturn(response);
+
+        mockMvc.perform(post("/api/habits/completions/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("completions", List.of(
+                        Map.of("habitId", 1, "date", today.toString(), "clientTimestamp", today.atTime(7, 30).toString()))))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void completeHabitsBatch_EmptyBatchRejected() throws Exception {
+        mockMvc.perform(post("/api/habits/completions/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"completions\": []}"))
+                .andExpect(status().isBadRequest());
+    }
 }
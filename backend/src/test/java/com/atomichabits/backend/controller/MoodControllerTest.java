@@ -9,10 +9,14 @@ import com.atomichabits.backend.security.CustomUserDetailsService;
 import com.atomichabits.backend.security.JwtAuthenticationFilter;
 import com.atomichabits.backend.security.JwtTokenProvider;
 import com.atomichabits.backend.service.MoodService;
+import com.atomichabits.backend.service.UserVersionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -28,6 +32,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
@@ -46,6 +51,9 @@ class MoodControllerTest {
     @MockBean
     private MoodService moodService;
 
+    @MockBean
+    private UserVersionService userVersionService;
+
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
@@ -65,6 +73,11 @@ class MoodControllerTest {
 
     @TestConfiguration
     static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
         @Bean
         public JwtAuthenticationFilter jwtAuthenticationFilter() {
             return new JwtAuthenticationFilter(null, null) {
@@ -76,11 +89,17 @@ class MoodControllerTest {
         }
     }
 
+    @BeforeEach
+    void setUp() {
+        // Mock users carry no id, so the id is looked up by name
+        given(userVersionService.findUserId("test@example.com")).willReturn(Optional.of(1L));
+    }
+
     @Test
     @WithMockUser(username = "test@example.com")
     void getRecentMoods_DefaultHours_Success() throws Exception {
         MoodLog log = MoodLog.builder().id(1L).moodType("HAPPY").build();
-        given(moodService.getRecentMoods(eq("test@example.com"), eq(24)))
+        given(moodService.getRecentMoods(eq(1L), eq(24)))
                 .willReturn(Collections.singletonList(log));
 
         mockMvc.perform(get("/api/moods/recent"))
@@ -102,7 +121,7 @@ class MoodControllerTest {
     void getMoodsSince_Success() throws Exception {
         MoodLog log = MoodLog.builder().id(1L).moodType("OVERWHELMED").build();
         LocalDateTime since = LocalDateTime.parse("2026-02-16T10:15:30");
-        given(moodService.getMoodsSince(eq("test@example.com"), eq(since)))
+        given(moodService.getMoodsSince(eq(1L), eq(since)))
                 .willReturn(Collections.singletonList(log));
 
         mockMvc.perform(get("/api/moods/since").param("since", "2026-02-16T10:15:30"))
@@ -1,5 +1,6 @@
 package com.atomichabits.backend.integration;
 
+import com.atomichabits.backend.service.HabitStreakStateService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,7 @@ import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
@@ -24,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -43,6 +46,9 @@ class ApiFlowIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private HabitStreakStateService streakStateService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Test
@@ -148,6 +154,9 @@ class ApiFlowIntegrationTest {
         assertTrue(habitsResp.getStatusCode().is2xxSuccessful());
         assertNotNull(habitsResp.getBody());
         assertTrue(habitsResp.getBody().contains("Morning Walk"));
+        String habitsEtag = habitsResp.getHeaders().getETag();
+        assertNotNull(habitsEtag);
+        assertEquals(HttpStatus.NOT_MODIFIED, conditionalGet("/api/habits", token, habitsEtag).getStatusCode());
 
         ResponseEntity<String> updateHabitResp = request(
                 HttpMethod.PUT,
@@ -163,6 +172,7 @@ class ApiFlowIntegrationTest {
         assertTrue(updateHabitResp.getStatusCode().is2xxSuccessful());
         assertNotNull(updateHabitResp.getBody());
         assertTrue(updateHabitResp.getBody().contains("Morning Walk Updated"));
+        assertEquals(HttpStatus.OK, conditionalGet("/api/habits", token, habitsEtag).getStatusCode());
 
         assertTrue(patchWithoutBody("/api/habits/" + habitId + "/status", token).is2xxSuccessful());
         assertTrue(patchWithoutBody("/api/habits/" + habitId + "/status", token).is2xxSuccessful());
@@ -178,8 +188,27 @@ class ApiFlowIntegrationTest {
         assertTrue(habitStatsResp.getStatusCode().is2xxSuccessful());
         assertNotNull(habitStatsResp.getBody());
         assertTrue(habitStatsResp.getBody().contains("currentStreak"));
+        assertEquals(1, json(habitStatsResp).path("totalCompletions").asInt());
+        assertTrue(streakStateService.findInconsistencies().isEmpty());
 
         assertTrue(request(HttpMethod.DELETE, "/api/habits/" + habitId + "/complete", token, null).getStatusCode().is2xxSuccessful());
+        assertTrue(streakStateService.findInconsistencies().isEmpty());
+
+        ResponseEntity<String> batchCompleteResp = request(
+                HttpMethod.POST,
+                "/api/habits/completions/batch",
+                token,
+                Map.of("completions", List.of(
+                        Map.of("habitId", habitId, "date", LocalDate.now().toString()),
+                        Map.of("habitId", habitId, "date", LocalDate.now().minusDays(1).toString()),
+                        Map.of("habitId", habitId, "date", LocalDate.now().toString())
+                ))
+        );
+        assertTrue(batchCompleteResp.getStatusCode().is2xxSuccessful());
+        assertEquals(2, json(batchCompleteResp).path("created").asInt());
+        assertEquals(1, json(batchCompleteResp).path("duplicates").asInt());
+        assertEquals(2, json(request(HttpMethod.GET, "/api/habits/" + habitId + "/stats", token, null)).path("totalCompletions").asInt());
+        assertTrue(streakStateService.findInconsistencies().isEmpty());
 
         ResponseEntity<String> batchHabitResp = request(
                 HttpMethod.POST,
@@ -281,8 +310,20 @@ class ApiFlowIntegrationTest {
         assertNotNull(updateMoodResp.getBody());
         assertTrue(updateMoodResp.getBody().contains("focused"));
 
+        ResponseEntity<String> fullSyncResp = request(HttpMethod.GET, "/api/sync", token, null);
+        assertTrue(fullSyncResp.getStatusCode().is2xxSuccessful());
+        assertTrue(json(fullSyncResp).path("full").asBoolean());
+        long syncToken = json(fullSyncResp).path("token").asLong();
+        assertTrue(syncToken > 0);
+
         assertTrue(request(HttpMethod.DELETE, "/api/moods/" + overwhelmedId, token, null).getStatusCode().is2xxSuccessful());
 
+        ResponseEntity<String> deltaSyncResp = request(HttpMethod.GET, "/api/sync?since=" + syncToken, token, null);
+        assertTrue(deltaSyncResp.getStatusCode().is2xxSuccessful());
+        assertFalse(json(deltaSyncResp).path("full").asBoolean());
+        assertEquals(overwhelmedId, json(deltaSyncResp).path("deletedMoodIds").path(0).asLong());
+        assertEquals(0, json(deltaSyncResp).path("habits").size());
+
         assertTrue(request(HttpMethod.GET, "/api/coach/greeting", token, null).getStatusCode().is2xxSuccessful());
 
         ResponseEntity<String> chatResp = request(
@@ -325,6 +366,13 @@ class ApiFlowIntegrationTest {
         return "http://localhost:" + port + path;
     }
 
+    private ResponseEntity<String> conditionalGet(String path, String token, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setIfNoneMatch(etag);
+        return restTemplate.exchange(url(path), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
     private JsonNode json(ResponseEntity<String> response) throws Exception {
         return objectMapper.readTree(response.getBody());
     }
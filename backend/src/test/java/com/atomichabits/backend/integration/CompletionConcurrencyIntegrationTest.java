@@ -0,0 +1,102 @@
+package com.atomichabits.backend.integration;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import com.atomichabits.backend.service.DailyActivityService;
+import com.atomichabits.backend.service.HabitService;
+import com.atomichabits.backend.service.HabitStreakStateService;
+import com.atomichabits.backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "coach.memory.llm-extraction-enabled=false"
+})
+@ActiveProfiles("test")
+class CompletionConcurrencyIntegrationTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_THREAD = 5;
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private HabitStreakStateService streakStateService;
+
+    @Autowired
+    private DailyActivityService dailyActivityService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private HabitCompletionRepository habitCompletionRepository;
+
+    @Test
+    void concurrentCompletesStoreExactlyOneRow() throws Exception {
+        String email = "concurrent+" + UUID.randomUUID() + "@example.com";
+        User user = userRepository.save(User.builder()
+                .email(email)
+                .password("not-used")
+                .build());
+        Habit habit = habitRepository.save(Habit.builder()
+                .user(user)
+                .name("Double tap")
+                .isActive(true)
+                .build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                        habitService.completeHabit(habit.getId(), user.getId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                // Rethrows any failure from the worker
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, habitCompletionRepository.findByHabitId(habit.getId()).size());
+        assertEquals(1, habitService.getHabitStats(habit.getId(), user.getId()).getTotalCompletions());
+        assertEquals(1, habitService.getHabitStats(habit.getId(), user.getId()).getCurrentStreak());
+        assertEquals(1, userService.getUserStats(user.getId()).getTotalHabitsCompleted());
+        assertTrue(streakStateService.findInconsistencies().isEmpty());
+        assertEquals(1, dailyActivityService.getDay(user.getId(), LocalDate.now()).orElseThrow().getCompletionCount());
+    }
+}
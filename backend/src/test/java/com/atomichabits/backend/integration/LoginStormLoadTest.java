@@ -0,0 +1,150 @@
+package com.atomichabits.backend.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers the login endpoint with an expensive BCrypt cost and a single hashing thread while
+ * measuring GET /api/habits. Hashing is bounded, so the habit reads keep their tail latency and
+ * the surplus logins are turned away with a 503.
+ *
+ * <p>Takes several seconds, so the build skips it; run it with {@code mvn test -Pload -Dgroups=load}.</p>
+ */
+@Tag("load")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "coach.memory.llm-extraction-enabled=false",
+                "spring.jpa.show-sql=false",
+                "app.rate-limit.max-requests=1000000",
+                "app.rate-limit.limits.habits.capacity=0",
+                "app.etag.enabled=false",
+                "app.auth.password-hashing.strength=12",
+                "app.auth.password-hashing.threads=1",
+                "app.auth.password-hashing.queue-capacity=4",
+                "app.auth.password-hashing.wait-timeout-ms=2000"
+        }
+)
+@ActiveProfiles("test")
+class LoginStormLoadTest {
+
+    private static final int STORM_THREADS = 32;
+    private static final int SAMPLES = 200;
+
+    @LocalServerPort
+    private int port;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void habitReadsKeepTheirP99DuringLoginStorm() throws Exception {
+        String email = "storm+" + UUID.randomUUID() + "@example.com";
+        String password = "StrongPass1!";
+        int registered = post("/api/auth/register", null, Map.of("email", email, "password", password)).statusCode();
+        assertTrue(registered >= 200 && registered < 300);
+        HttpResponse<String> login = post("/api/auth/login", null, Map.of("email", email, "password", password));
+        assertEquals(200, login.statusCode());
+        String token = objectMapper.readTree(login.body()).path("accessToken").asText();
+        for (int i = 0; i < 5; i++) {
+            post("/api/habits", token, Map.of("name", "Habit " + i, "twoMinuteVersion", "Two minutes"));
+        }
+
+        measureHabitReads(token, 50);
+        long baselineP99 = p99(measureHabitReads(token, SAMPLES));
+
+        AtomicBoolean storming = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService storm = Executors.newFixedThreadPool(STORM_THREADS);
+        for (int i = 0; i < STORM_THREADS; i++) {
+            storm.submit(() -> {
+                while (storming.get()) {
+                    int status = post("/api/auth/login", null, Map.of("email", email, "password", password)).statusCode();
+                    if (status == 200) {
+                        succeeded.incrementAndGet();
+                    } else if (status == 503) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        long stormP99;
+        try {
+            // Let the hashing queue fill up first
+            Thread.sleep(500);
+            stormP99 = p99(measureHabitReads(token, SAMPLES));
+        } finally {
+            storming.set(false);
+            storm.shutdown();
+            storm.awaitTermination(30, TimeUnit.SECONDS);
+        }
+
+        assertTrue(rejected.get() > 0, "expected the saturated hashing pool to reject logins");
+        assertTrue(succeeded.get() > 0, "expected some logins to get through");
+        long allowedMs = Math.max(baselineP99 * 4, 200);
+        assertTrue(stormP99 <= allowedMs, "habit p99 during the storm was " + stormP99
+                + " ms against a baseline of " + baselineP99 + " ms");
+    }
+
+    private List<Long> measureHabitReads(String token, int samples) throws Exception {
+        List<Long> latencies = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(url("/api/habits"))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            assertEquals(200, response.statusCode());
+        }
+        return latencies;
+    }
+
+    private static long p99(List<Long> latencies) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    }
+
+    private HttpResponse<String> post(String path, String token, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(url(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI url(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,81 @@
+package com.atomichabits.backend.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private MeterRegistry meterRegistry;
+    private JwtTokenProvider tokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenProvider = new JwtTokenProvider(SECRET, 900_000, 100, meterRegistry);
+    }
+
+    @Test
+    void parseToken_ReadsIdAndRolesFromClaims() {
+        String token = tokenProvider.generateToken(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_USER")));
+
+        AuthenticatedUser user = tokenProvider.parseToken(token).orElseThrow();
+
+        assertEquals(7L, user.id());
+        assertEquals("test@example.com", user.getName());
+        assertEquals(List.of("ROLE_USER"), user.roles());
+    }
+
+    @Test
+    void parseToken_RepeatedTokenIsVerifiedOnce() {
+        String token = tokenProvider.generateToken(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_USER")));
+
+        tokenProvider.parseToken(token);
+        tokenProvider.parseToken(token);
+        tokenProvider.parseToken(token);
+
+        assertEquals(1, meterRegistry.timer(JwtTokenProvider.METRIC + ".time").count());
+        assertEquals(2.0, meterRegistry.counter(JwtTokenProvider.METRIC + ".cache", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter(JwtTokenProvider.METRIC + ".cache", "result", "miss").count());
+    }
+
+    @Test
+    void parseToken_TamperedTokenRejectedAndNotCached() {
+        String token = tokenProvider.generateToken(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_USER")));
+        int signature = token.lastIndexOf('.') + 1;
+        String tampered = token.substring(0, signature) + (token.charAt(signature) == 'A' ? 'B' : 'A')
+                + token.substring(signature + 1);
+
+        assertTrue(tokenProvider.parseToken(tampered).isEmpty());
+        assertTrue(tokenProvider.parseToken(tampered).isEmpty());
+        assertEquals(2, meterRegistry.timer(JwtTokenProvider.METRIC + ".time").count());
+    }
+
+    @Test
+    void parseToken_TokenWithoutIdHasNullId() {
+        String legacy = Jwts.builder()
+                .setSubject("test@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)), SignatureAlgorithm.HS256)
+                .compact();
+
+        Optional<AuthenticatedUser> user = tokenProvider.parseToken(legacy);
+
+        assertTrue(user.isPresent());
+        assertNull(user.get().id());
+        assertTrue(user.get().roles().isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Badge;
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.model.UserDailyActivity;
+import com.atomichabits.backend.repository.BadgeRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BadgeEngineTest {
+
+    @Mock
+    private BadgeRepository badgeRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private CompletionIndexService completionIndexService;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private ChangeLogService changeLogService;
+
+    @Mock
+    private GamificationService gamificationService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BadgeEngine badgeEngine;
+
+    // 2024-01-06 is a Saturday
+    private final LocalDate saturday = LocalDate.of(2024, 1, 6);
+
+    @BeforeEach
+    void setUp() {
+        badgeEngine = new BadgeEngine(badgeRepository, userRepository, habitRepository, completionIndexService,
+                dailyActivityService, changeLogService, gamificationService, transactionManager, 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        badgeEngine.shutdown();
+    }
+
+    @Test
+    void award_NewCompletion_ChecksOnlyTheTimeRulesItMatches() {
+        LocalDateTime earlyWeekday = saturday.plusDays(2).atTime(6, 30);
+        when(badgeRepository.findByUserId(1L)).thenReturn(List.of(
+                badge(BadgeRule.COUNT_1), badge(BadgeRule.STREAK_3)));
+        when(userRepository.getReferenceById(1L)).thenReturn(User.builder().id(1L).build());
+
+        List<BadgeRule> awarded = badgeEngine.award(1L, affectedBy(earlyWeekday), List.of(earlyWeekday));
+
+        assertEquals(List.of(BadgeRule.EARLY_BIRD), awarded);
+        verify(badgeRepository).saveAll(argThat(badges -> badges.iterator().next().getName().equals("badge.time.early.title")));
+        verify(changeLogService).record(eq(1L), eq(ChangeLogEntry.EntityType.BADGE), eq(ChangeLogEntry.Operation.UPSERT), anyCollection());
+        verify(gamificationService).evictUserBadges(1L);
+        // Not a weekend completion, so the daily rollup is never read
+        verify(dailyActivityService, never()).getCompletionDays(any());
+    }
+
+    @Test
+    void award_EverythingEarned_NoQueriesBeyondTheCachedMask() {
+        LocalDateTime lateSaturday = saturday.atTime(23, 0);
+        when(badgeRepository.findByUserId(1L)).thenReturn(EnumSet.allOf(BadgeRule.class).stream()
+                .map(this::badge)
+                .toList());
+
+        badgeEngine.award(1L, affectedBy(lateSaturday), List.of(lateSaturday));
+        badgeEngine.award(1L, affectedBy(lateSaturday), List.of(lateSaturday));
+
+        verify(badgeRepository, times(1)).findByUserId(1L);
+        verifyNoInteractions(transactionManager, habitRepository, dailyActivityService, changeLogService);
+    }
+
+    @Test
+    void award_FullHistory_UsesDailyFirstAndLastTimes() {
+        when(dailyActivityService.getCompletionDays(1L)).thenReturn(List.of(
+                day(saturday, saturday.atTime(6, 30), saturday.atTime(12, 0)),
+                day(saturday.plusDays(1), saturday.plusDays(1).atTime(9, 0), saturday.plusDays(1).atTime(23, 15))));
+        when(userRepository.getReferenceById(1L)).thenReturn(User.builder().id(1L).build());
+
+        List<BadgeRule> awarded = badgeEngine.award(1L,
+                EnumSet.of(BadgeRule.EARLY_BIRD, BadgeRule.NIGHT_OWL, BadgeRule.WEEKEND_WARRIOR), null);
+
+        assertEquals(List.of(BadgeRule.EARLY_BIRD, BadgeRule.NIGHT_OWL, BadgeRule.WEEKEND_WARRIOR), awarded);
+        verify(dailyActivityService, times(1)).getCompletionDays(1L);
+        verify(habitRepository, never()).findByUserIdAndArchivedAtIsNull(any());
+    }
+
+    private EnumSet<BadgeRule> affectedBy(LocalDateTime completedAt) {
+        EnumSet<BadgeRule> rules = EnumSet.noneOf(BadgeRule.class);
+        for (BadgeRule rule : BadgeRule.values()) {
+            if (rule.isAffectedBy(completedAt)) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    private Badge badge(BadgeRule rule) {
+        return Badge.builder()
+                .name(rule.getName())
+                .description(rule.getDescription())
+                .icon(rule.getIcon())
+                .build();
+    }
+
+    private UserDailyActivity day(LocalDate date, LocalDateTime first, LocalDateTime last) {
+        return UserDailyActivity.builder()
+                .userId(1L)
+                .activityDay(date)
+                .completionCount(2)
+                .distinctHabitCount(2)
+                .firstCompletionAt(first)
+                .lastCompletionAt(last)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.atomichabits.backend.service;
+
+import io.agentscope.core.tool.Tool;
+import io.agentscope.core.tool.ToolParam;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatModelPoolTest {
+
+    private static final String BASE_URL = "https://llm.example.com/v1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatModelPool pool = new ChatModelPool(meterRegistry, 2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void model_IsBuiltOncePerBaseUrlModelAndStreamingMode() {
+        ReflectionTestUtils.setField(pool, "apiKey", "test-key");
+
+        var first = pool.model(BASE_URL, "model-a");
+        assertSame(first, pool.model(BASE_URL, "model-a"));
+        assertNotSame(first, pool.model(BASE_URL, "model-a", false));
+        assertNotSame(first, pool.model(BASE_URL, "model-b"));
+
+        assertEquals(3, meterRegistry.counter("llm.model.lookups", "result", "created").count());
+        assertEquals(1, meterRegistry.counter("llm.model.lookups", "result", "reused").count());
+        assertEquals(3, meterRegistry.get("llm.models").gauge().value());
+    }
+
+    @Test
+    void toolkit_IsSharedPerToolSet() {
+        EchoTools tools = new EchoTools();
+        ClockTools otherTools = new ClockTools();
+
+        assertNull(pool.toolkit());
+        assertSame(pool.toolkit(tools), pool.toolkit(tools));
+        assertNotSame(pool.toolkit(tools), pool.toolkit(tools, otherTools));
+    }
+
+    static class EchoTools {
+        @Tool(name = "echo", description = "Returns the text it was given.")
+        public String echo(@ToolParam(name = "text", description = "Text to return.") String text) {
+            return text;
+        }
+    }
+
+    static class ClockTools {
+        @Tool(name = "now", description = "Returns the current time.")
+        public String now() {
+            return java.time.LocalTime.now().toString();
+        }
+    }
+}
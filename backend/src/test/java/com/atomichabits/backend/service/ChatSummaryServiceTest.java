@@ -0,0 +1,115 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.CoachPromptBudgetProperties;
+import com.atomichabits.backend.config.CoachPromptProperties;
+import com.atomichabits.backend.model.ChatMessage;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.repository.ChatMessageRepository;
+import com.atomichabits.backend.repository.ChatSummaryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatSummaryServiceTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private ChatSummaryRepository summaryRepository;
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private AgentScopeClient agentScopeClient;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ChatSummaryService service;
+
+    @BeforeEach
+    void setUp() {
+        CoachPromptBudgetProperties budget = new CoachPromptBudgetProperties();
+        budget.setRecentMessages(4);
+        budget.setSummaryBatchMessages(2);
+        service = new ChatSummaryService(summaryRepository, chatMessageRepository, agentScopeClient,
+                new CoachPromptProperties(), budget, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void refresh_FoldsMessagesOutsideTheRecentWindowIntoTheSummary() {
+        when(summaryRepository.findById(USER_ID)).thenReturn(Optional.of(
+                ChatSummary.builder().userId(USER_ID).content("Wants to read nightly.").coveredThroughMessageId(10L).build()));
+        when(chatMessageRepository.countByUserIdAndIdGreaterThan(USER_ID, 10L)).thenReturn(7L);
+        when(chatMessageRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(10L), any(Pageable.class)))
+                .thenReturn(List.of(message(11L, "user", "I keep falling asleep"), message(12L, "ai", "Try reading earlier"),
+                        message(13L, "user", "Right after dinner then")));
+        when(agentScopeClient.tryCall(anyString(), anyString()))
+                .thenReturn(Optional.of(" Wants to read nightly; now reads after dinner. "));
+
+        service.refresh(USER_ID);
+
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(chatMessageRepository).findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(10L), page.capture());
+        assertEquals(3, page.getValue().getPageSize());
+
+        ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+        verify(agentScopeClient).tryCall(prompt.capture(), anyString());
+        assertTrue(prompt.getValue().startsWith("Previous summary:\nWants to read nightly."));
+        assertTrue(prompt.getValue().contains("USER: Right after dinner then"));
+
+        ArgumentCaptor<ChatSummary> saved = ArgumentCaptor.forClass(ChatSummary.class);
+        verify(summaryRepository).save(saved.capture());
+        assertEquals("Wants to read nightly; now reads after dinner.", saved.getValue().getContent());
+        assertEquals(13L, saved.getValue().getCoveredThroughMessageId());
+        assertEquals(1, meterRegistry.counter("coach.summary.runs", "result", "success").count());
+    }
+
+    @Test
+    void refresh_WaitsUntilABatchHasFallenOutOfTheWindow() {
+        when(summaryRepository.findById(USER_ID)).thenReturn(Optional.empty());
+        when(chatMessageRepository.countByUserIdAndIdGreaterThan(USER_ID, 0L)).thenReturn(5L);
+
+        service.refresh(USER_ID);
+
+        verifyNoInteractions(agentScopeClient);
+        verify(summaryRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_ModelUnavailable_KeepsTheOldSummary() {
+        when(summaryRepository.findById(USER_ID)).thenReturn(Optional.empty());
+        when(chatMessageRepository.countByUserIdAndIdGreaterThan(USER_ID, 0L)).thenReturn(6L);
+        when(chatMessageRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(message(1L, "user", "Hi"), message(2L, "ai", "Hello")));
+        when(agentScopeClient.tryCall(anyString(), anyString())).thenReturn(Optional.empty());
+
+        service.refresh(USER_ID);
+
+        verify(summaryRepository, never()).save(any());
+        assertEquals(1, meterRegistry.counter("coach.summary.runs", "result", "failed").count());
+    }
+
+    private static ChatMessage message(Long id, String role, String content) {
+        return ChatMessage.builder().id(id).role(role).content(content).build();
+    }
+}
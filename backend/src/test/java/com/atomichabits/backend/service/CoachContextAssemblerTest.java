@@ -0,0 +1,123 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.dto.UserProfileResponse;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.model.MoodLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CoachContextAssemblerTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private HabitService habitService;
+
+    @Mock
+    private MoodService moodService;
+
+    @Mock
+    private MemoryService memoryService;
+
+    @Mock
+    private ChatSummaryService chatSummaryService;
+
+    private CoachContextAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        assembler = new CoachContextAssembler(userService, habitService, moodService,
+                memoryService, chatSummaryService, new SimpleMeterRegistry(), 4);
+        when(userService.getUserProfile(USER_ID)).thenReturn(
+                UserProfileResponse.builder().id(USER_ID).identityStatement("I am a reader").build());
+        when(habitService.getUserHabits(USER_ID)).thenReturn(List.of(
+                HabitResponse.builder().name("Read").completedToday(false).build()));
+        when(moodService.getRecentMoods(USER_ID)).thenReturn(List.of(MoodLog.builder().moodType("TIRED").build()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        assembler.shutdown();
+    }
+
+    @Test
+    void open_FetchesEachSourceOnceAndSharesTheSnapshotForTheTurn() {
+        when(memoryService.getRelevantMemoryContext(USER_ID, "I skipped reading", 8))
+                .thenReturn("LONG-TERM USER MEMORY (retrieved for current turn):\n- Reads at night (P3)");
+        when(chatSummaryService.find(USER_ID)).thenReturn(Optional.of(
+                ChatSummary.builder().userId(USER_ID).content("Wants to read daily.").coveredThroughMessageId(40L).build()));
+
+        CoachContextSnapshot snapshot = assembler.open(USER_ID, "I skipped reading");
+
+        // The status tool and the cold-start check read the same snapshot
+        assertSame(snapshot, assembler.currentOrLoad(USER_ID));
+        assertFalse(snapshot.isColdStart());
+        assertTrue(snapshot.hasMemory());
+        assertEquals("TIRED", snapshot.moods().get(0).getMoodType());
+        assertEquals(40L, snapshot.conversationSummary().getCoveredThroughMessageId());
+
+        // One round trip per source for the whole turn
+        verify(userService, times(1)).getUserProfile(USER_ID);
+        verify(habitService, times(1)).getUserHabits(USER_ID);
+        verify(moodService, times(1)).getRecentMoods(USER_ID);
+        verify(memoryService, times(1)).getRelevantMemoryContext(USER_ID, "I skipped reading", 8);
+        verify(chatSummaryService, times(1)).find(USER_ID);
+        verifyNoMoreInteractions(userService, habitService, moodService, memoryService, chatSummaryService);
+
+        assembler.invalidate(USER_ID);
+        assertTrue(assembler.current(USER_ID).isEmpty());
+    }
+
+    @Test
+    void currentOrLoad_WithoutOpenTurn_LoadsStatusWithoutMemory() {
+        CoachContextSnapshot snapshot = assembler.currentOrLoad(USER_ID);
+
+        assertEquals("", snapshot.memoryContext());
+        verifyNoInteractions(memoryService, chatSummaryService);
+        assertTrue(assembler.current(USER_ID).isEmpty());
+    }
+
+    @Test
+    void open_MemoryFailure_StillReturnsTheRestOfTheSnapshot() {
+        when(memoryService.getRelevantMemoryContext(eq(USER_ID), any(), anyInt()))
+                .thenThrow(new IllegalStateException("memory store down"));
+        when(chatSummaryService.find(USER_ID)).thenReturn(Optional.empty());
+
+        CoachContextSnapshot snapshot = assembler.open(USER_ID, "Hello");
+
+        assertFalse(snapshot.hasMemory());
+        assertEquals(1, snapshot.habits().size());
+    }
+
+    @Test
+    void evictExpired_DropsTurnsThatNeverEnded() {
+        when(memoryService.getRelevantMemoryContext(eq(USER_ID), any(), anyInt())).thenReturn("");
+        when(chatSummaryService.find(USER_ID)).thenReturn(Optional.empty());
+        assembler.open(USER_ID, "Hello");
+
+        assembler.evictExpired();
+        assertEquals(1, assembler.openTurnCount());
+
+        ReflectionTestUtils.setField(assembler, "maxAgeMs", 0L);
+        assembler.evictExpired();
+        assertEquals(0, assembler.openTurnCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.CoachPromptBudgetProperties;
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.dto.UserProfileResponse;
+import com.atomichabits.backend.model.ChatMessage;
+import com.atomichabits.backend.model.ChatSummary;
+import com.atomichabits.backend.model.MoodLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoachPromptBuilderTest {
+
+    private static final String SYSTEM_PROMPT = "You are a habit coach.";
+    private static final String MEMORY = """
+            LONG-TERM USER MEMORY (retrieved for current turn):
+            Most relevant profile signals:
+            - Reads best right after dinner (P4)
+            - Works night shifts on weekends (P3)""";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CoachPromptBudgetProperties budget = new CoachPromptBudgetProperties();
+
+    @Test
+    void estimate_CountsWordPiecesPunctuationAndIdeographs() {
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(1, TokenEstimator.estimate("read"));
+        // "habits" is two pieces of up to four characters, the period one more
+        assertEquals(3, TokenEstimator.estimate("habits."));
+        assertEquals(4, TokenEstimator.estimate("每天读书"));
+    }
+
+    @Test
+    void chatPrompt_WithinBudget_KeepsEverySection() {
+        CoachPromptBuilder builder = new CoachPromptBuilder(budget, meterRegistry);
+
+        String prompt = builder.chatPrompt(snapshot(null), newestFirst(4), SYSTEM_PROMPT, "I skipped reading");
+
+        assertTrue(prompt.contains("Identity: I am a reader"));
+        assertTrue(prompt.contains("Uncompleted Habits Today: Read"));
+        assertTrue(prompt.contains("[TIRED]"));
+        assertTrue(prompt.contains("Works night shifts on weekends"));
+        // Oldest first, as the conversation happened
+        assertTrue(prompt.indexOf("message 1") < prompt.indexOf("message 4"));
+        assertTrue(prompt.endsWith("User Message: I skipped reading"));
+        assertEquals(1, meterRegistry.get("coach.prompt.tokens").summary().count());
+        assertEquals(0, meterRegistry.counter("coach.prompt.trimmed").count());
+    }
+
+    @Test
+    void chatPrompt_OverBudget_DropsOldestMessagesBeforeStatusAndMemory() {
+        budget.setMaxTokens(260);
+        CoachPromptBuilder builder = new CoachPromptBuilder(budget, meterRegistry);
+
+        String prompt = builder.chatPrompt(snapshot(null), newestFirst(20), SYSTEM_PROMPT, "I skipped reading");
+
+        assertTrue(prompt.contains("Identity: I am a reader"));
+        assertTrue(prompt.contains("Uncompleted Habits Today: Read"));
+        assertTrue(prompt.contains("Reads best right after dinner"));
+        assertTrue(prompt.contains("message 20"));
+        assertFalse(prompt.contains("message 1:"));
+        assertTrue(TokenEstimator.estimate(SYSTEM_PROMPT) + TokenEstimator.estimate(prompt) <= 260);
+        assertEquals(1, meterRegistry.counter("coach.prompt.trimmed").count());
+    }
+
+    @Test
+    void chatPrompt_WithSummary_QuotesOnlyMessagesAfterIt() {
+        CoachPromptBuilder builder = new CoachPromptBuilder(budget, meterRegistry);
+        ChatSummary summary = ChatSummary.builder()
+                .userId(1L)
+                .content("The user wants to read 10 pages a night but keeps falling asleep.")
+                .coveredThroughMessageId(2L)
+                .build();
+
+        String prompt = builder.chatPrompt(snapshot(summary), newestFirst(4), SYSTEM_PROMPT, "Any tips?");
+
+        assertTrue(prompt.contains("EARLIER CONVERSATION (summary):\nThe user wants to read 10 pages"));
+        assertTrue(prompt.contains("message 3"));
+        assertFalse(prompt.contains("message 2:"));
+        assertTrue(prompt.indexOf("EARLIER CONVERSATION") < prompt.indexOf("RECENT CONVERSATION HISTORY"));
+    }
+
+    @Test
+    void recentMessages_CoversMessagesWaitingToBeSummarized() {
+        budget.setRecentMessages(20);
+        budget.setSummaryBatchMessages(10);
+        CoachPromptBuilder builder = new CoachPromptBuilder(budget, meterRegistry);
+        ChatSummary summary = ChatSummary.builder().userId(1L).content("Earlier talk.").coveredThroughMessageId(1L).build();
+
+        // 29 messages after the summary: not enough yet for another fold, so all of them are quoted
+        List<ChatMessage> loaded = newestFirst(30).subList(0, builder.recentMessages());
+        String prompt = builder.chatPrompt(snapshot(summary), loaded, SYSTEM_PROMPT, "Any tips?");
+
+        assertTrue(prompt.contains("message 2:"));
+        assertFalse(prompt.contains("message 1:"));
+    }
+
+    private static CoachContextSnapshot snapshot(ChatSummary summary) {
+        return new CoachContextSnapshot(1L,
+                UserProfileResponse.builder().id(1L).identityStatement("I am a reader").build(),
+                List.of(HabitResponse.builder().name("Read").completedToday(false).build()),
+                List.of(MoodLog.builder().moodType("TIRED").build()),
+                MEMORY,
+                summary);
+    }
+
+    private static List<ChatMessage> newestFirst(int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (long id = count; id >= 1; id--) {
+            messages.add(ChatMessage.builder()
+                    .id(id)
+                    .role(id % 2 == 1 ? "user" : "ai")
+                    .content("message " + id + ": I read a little before bed but it is hard to keep going every night")
+                    .build());
+        }
+        return messages;
+    }
+}
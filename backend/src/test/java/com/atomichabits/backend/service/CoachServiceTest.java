@@ -1,30 +1,38 @@
 package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.agent.CoachTools;
+import com.atomichabits.backend.config.CoachPromptBudgetProperties;
 import com.atomichabits.backend.config.CoachPromptProperties;
+import com.atomichabits.backend.dto.ChatStreamEvent;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.dto.UserProfileResponse;
 import com.atomichabits.backend.dto.UserStatsResponse;
+import com.atomichabits.backend.model.ChatMessage;
 import com.atomichabits.backend.model.MoodLog;
-import com.atomichabits.backend.model.User;
 import com.atomichabits.backend.repository.ChatMessageRepository;
 import com.atomichabits.backend.repository.UserRepository;
 import com.atomichabits.backend.repository.WeeklyReviewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -60,7 +68,19 @@ class CoachServiceTest {
     private AgentScopeClient agentScopeClient;
 
     @Mock
-    private MemoryService memoryService;
+    private MemoryExtractionQueue memoryExtractionQueue;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private CoachContextAssembler contextAssembler;
+
+    @Mock
+    private ChatSummaryService chatSummaryService;
+
+    @Spy
+    private CoachPromptBuilder promptBuilder = new CoachPromptBuilder(new CoachPromptBudgetProperties(), new SimpleMeterRegistry());
 
     @InjectMocks
     private CoachService coachService;
@@ -72,7 +92,6 @@ class CoachServiceTest {
     @Test
     void weeklyReview_Success() {
         // Arrange
-        String email = "test@example.com";
         Long userId = 1L;
 
         UserProfileResponse profile = UserProfileResponse.builder()
@@ -93,11 +112,10 @@ class CoachServiceTest {
                 MoodLog.builder().moodType("GRATITUDE").note("Grateful for coffee").build()
         );
 
-        when(userService.getUserProfile(email)).thenReturn(profile);
-        when(userService.getUserStats(email)).thenReturn(stats);
-        when(habitService.getUserHabits(email)).thenReturn(habits);
+        when(userService.getUserProfile(userId)).thenReturn(profile);
+        when(userService.getUserStats(userId)).thenReturn(stats);
+        when(habitService.getUserHabits(userId)).thenReturn(habits);
         when(moodService.getMoodsSince(eq(userId), any(LocalDateTime.class))).thenReturn(moods);
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(User.builder().id(userId).email(email).build()));
 
         when(promptProperties.getWeeklyReviewUser()).thenReturn("User Prompt");
         when(promptProperties.getWeeklyReviewSystem()).thenReturn("System Prompt");
@@ -113,16 +131,93 @@ class CoachServiceTest {
         
         // If we cannot easily mock the internal Agent, we might just catch the exception 
         // or accept that the return value is the fallback message.
-        String result = coachService.weeklyReview(email);
+        String result = coachService.weeklyReview(userId);
 
         // Assert
         assertNotNull(result);
         assertEquals("AI disabled (tests).", result);
         
         // Verify that we called the services to gather context
-        verify(userService).getUserProfile(email);
-        verify(userService).getUserStats(email);
-        verify(habitService).getUserHabits(email);
+        verify(userService).getUserProfile(userId);
+        verify(userService).getUserStats(userId);
+        verify(habitService).getUserHabits(userId);
         verify(moodService).getMoodsSince(eq(userId), any(LocalDateTime.class));
+        verify(dailyActivityService).getRange(eq(userId), any(LocalDate.class), any(LocalDate.class));
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void chat_ReadsTheWholeTurnFromOneSnapshot() {
+        CoachContextSnapshot snapshot = new CoachContextSnapshot(1L,
+                UserProfileResponse.builder().id(1L).identityStatement("I am a reader").build(),
+                List.of(HabitResponse.builder().name("Read").completedToday(false).build()),
+                List.of(MoodLog.builder().moodType("TIRED").build()),
+                "LONG-TERM USER MEMORY (retrieved for current turn):\n- Reads at night (P3)", null);
+        when(contextAssembler.open(1L, "Hello")).thenReturn(snapshot);
+        when(chatMessageRepository.findByUserIdOrderByTimestampDesc(eq(1L), any())).thenReturn(new ArrayList<>());
+        when(promptProperties.getRegularSystem()).thenReturn("System Prompt");
+        when(agentScopeClient.call(anyString(), anyString(), any())).thenReturn("Hi there");
+
+        coachService.chat(1L, "Hello");
+
+        ArgumentCaptor<String> userPrompt = ArgumentCaptor.forClass(String.class);
+        verify(agentScopeClient).call(userPrompt.capture(), eq("System Prompt"), any());
+        assertTrue(userPrompt.getValue().contains("Uncompleted Habits Today: Read"));
+        assertTrue(userPrompt.getValue().contains("Reads at night"));
+
+        // Per turn: the snapshot, the history page and the two saved messages; nothing else
+        verify(contextAssembler, times(1)).open(1L, "Hello");
+        verify(chatMessageRepository, times(1)).findByUserIdOrderByTimestampDesc(eq(1L), any());
+        verify(chatMessageRepository, times(2)).save(any(ChatMessage.class));
+        verify(userRepository, never()).findByEmail(any());
+        verifyNoInteractions(userService, habitService, moodService);
+        verify(contextAssembler).invalidate(1L);
+        verify(chatSummaryService).refreshAsync(1L);
+    }
+
+    @Test
+    void chatStream_SavesReplyOnlyWhenStreamCompletes() {
+        when(contextAssembler.open(eq(1L), any())).thenReturn(new CoachContextSnapshot(1L,
+                UserProfileResponse.builder().id(1L).build(), List.of(), List.of(), "", null));
+        when(chatMessageRepository.findByUserIdOrderByTimestampDesc(eq(1L), any())).thenReturn(new ArrayList<>());
+        when(promptProperties.getColdStartSystem()).thenReturn("System Prompt");
+        when(agentScopeClient.stream(anyString(), anyString(), any()))
+                .thenReturn(Flux.just(ChatStreamEvent.token("Hi "), ChatStreamEvent.tool("get_habits"), ChatStreamEvent.token("there")));
+
+        List<ChatStreamEvent> events = coachService.chatStream(1L, "Hello").collectList().block();
+
+        assertNotNull(events);
+        assertEquals(ChatStreamEvent.DONE, events.get(events.size() - 1).getType());
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(chatMessageRepository, times(2)).save(saved.capture());
+        assertEquals("Hi there", saved.getAllValues().get(1).getContent());
+        verify(memoryExtractionQueue).submit(1L, "Hello");
+
+        clearInvocations(chatMessageRepository, memoryExtractionQueue);
+        coachService.chatStream(1L, "Hello").take(1).blockLast();
+
+        // Only the user's message; the abandoned reply is not saved
+        verify(chatMessageRepository, times(1)).save(any(ChatMessage.class));
+        verifyNoInteractions(memoryExtractionQueue);
+        verify(contextAssembler, times(2)).invalidate(1L);
+    }
+
+    @Test
+    void chatStream_FailedStream_EndsWithTheErrorAndSavesNoReply() {
+        when(contextAssembler.open(eq(1L), any())).thenReturn(new CoachContextSnapshot(1L,
+                UserProfileResponse.builder().id(1L).build(), List.of(), List.of(), "", null));
+        when(chatMessageRepository.findByUserIdOrderByTimestampDesc(eq(1L), any())).thenReturn(new ArrayList<>());
+        when(promptProperties.getColdStartSystem()).thenReturn("System Prompt");
+        when(agentScopeClient.stream(anyString(), anyString(), any()))
+                .thenReturn(Flux.just(ChatStreamEvent.token("Hi "), ChatStreamEvent.error("Something went wrong")));
+
+        List<ChatStreamEvent> events = coachService.chatStream(1L, "Hello").collectList().block();
+
+        assertNotNull(events);
+        assertEquals(ChatStreamEvent.ERROR, events.get(events.size() - 1).getType());
+        // Only the user's message; the half reply and the error text are not saved
+        verify(chatMessageRepository, times(1)).save(any(ChatMessage.class));
+        verifyNoInteractions(memoryExtractionQueue, chatSummaryService);
+        verify(contextAssembler).invalidate(1L);
     }
 }
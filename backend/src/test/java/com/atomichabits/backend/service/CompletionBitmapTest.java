@@ -0,0 +1,125 @@
+package com.atomichabits.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionBitmapTest {
+
+    private static final int MON_WED_FRI = bit(DayOfWeek.MONDAY) | bit(DayOfWeek.WEDNESDAY) | bit(DayOfWeek.FRIDAY);
+
+    // 2024-01-01 is a Monday
+    private final LocalDate origin = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void currentStreak_Daily_CountsBackFromToday() {
+        LocalDate today = origin.plusDays(100);
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(today, today.minusDays(1), today.minusDays(2)));
+
+        assertEquals(3, bitmap.currentStreak(today, CompletionBitmap.EVERY_DAY));
+    }
+
+    @Test
+    void currentStreak_Daily_TodayStillOpen() {
+        LocalDate today = origin.plusDays(100);
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(today.minusDays(1), today.minusDays(2)));
+
+        assertEquals(2, bitmap.currentStreak(today, CompletionBitmap.EVERY_DAY));
+        assertEquals(0, bitmap.currentStreak(today.plusDays(1), CompletionBitmap.EVERY_DAY));
+    }
+
+    @Test
+    void currentStreak_SkipsUnscheduledDays() {
+        // Mon 2024-01-08, Wed 01-10, Fri 01-12; today is Sunday 01-14
+        LocalDate today = LocalDate.of(2024, 1, 14);
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(
+                LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 12)));
+
+        assertEquals(3, bitmap.currentStreak(today, MON_WED_FRI));
+        assertEquals(0, bitmap.currentStreak(today, CompletionBitmap.EVERY_DAY));
+    }
+
+    @Test
+    void currentStreak_SpansManyWords() {
+        List<LocalDate> days = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            days.add(origin.plusDays(i));
+        }
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, days);
+
+        assertEquals(300, bitmap.currentStreak(origin.plusDays(299), CompletionBitmap.EVERY_DAY));
+        assertEquals(300, bitmap.longestStreak(CompletionBitmap.EVERY_DAY));
+    }
+
+    @Test
+    void longestStreak_ResetsOnScheduledMiss() {
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(
+                origin, origin.plusDays(1), origin.plusDays(2),
+                origin.plusDays(10), origin.plusDays(11)));
+
+        assertEquals(3, bitmap.longestStreak(CompletionBitmap.EVERY_DAY));
+    }
+
+    @Test
+    void longestStreak_IgnoresCompletionsOnUnscheduledDays() {
+        // Mon, Tue (unscheduled), Wed, Fri, then a missed Monday
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(
+                origin, origin.plusDays(1), origin.plusDays(2), origin.plusDays(4), origin.plusDays(9)));
+
+        assertEquals(3, bitmap.longestStreak(MON_WED_FRI));
+        assertEquals(4, bitmap.scheduledCardinality(MON_WED_FRI));
+        assertEquals(5, bitmap.cardinality());
+    }
+
+    @Test
+    void set_BeforeOrigin_Rebases() {
+        CompletionBitmap bitmap = CompletionBitmap.empty(origin);
+        assertTrue(bitmap.set(origin.plusDays(70)));
+        assertTrue(bitmap.set(origin.minusDays(130)));
+        assertFalse(bitmap.set(origin.plusDays(70)));
+
+        assertTrue(bitmap.contains(origin.plusDays(70)));
+        assertTrue(bitmap.contains(origin.minusDays(130)));
+        assertEquals(origin.minusDays(130), bitmap.getOrigin());
+        assertEquals(2, bitmap.cardinality());
+
+        assertTrue(bitmap.clear(origin.plusDays(70)));
+        assertFalse(bitmap.contains(origin.plusDays(70)));
+        assertEquals(1, bitmap.cardinality());
+    }
+
+    @Test
+    void bytes_RoundTrip() {
+        CompletionBitmap bitmap = CompletionBitmap.of(origin, List.of(origin, origin.plusDays(63), origin.plusDays(64), origin.plusDays(500)));
+
+        CompletionBitmap restored = CompletionBitmap.fromBytes(bitmap.getOrigin(), bitmap.toBytes());
+
+        assertEquals(4, restored.cardinality());
+        assertTrue(restored.contains(origin.plusDays(63)));
+        assertTrue(restored.contains(origin.plusDays(64)));
+        assertTrue(restored.contains(origin.plusDays(500)));
+    }
+
+    @Test
+    void union_AlignsDifferentOrigins() {
+        CompletionBitmap first = CompletionBitmap.of(origin, List.of(origin.plusDays(1), origin.plusDays(2)));
+        CompletionBitmap second = CompletionBitmap.of(origin.minusDays(37), List.of(origin.minusDays(37), origin.plusDays(3)));
+
+        CompletionBitmap union = CompletionBitmap.union(List.of(first, second), origin);
+
+        assertTrue(union.contains(origin.minusDays(37)));
+        assertTrue(union.contains(origin.plusDays(1)));
+        assertTrue(union.contains(origin.plusDays(3)));
+        assertEquals(4, union.cardinality());
+        assertEquals(3, union.currentStreak(origin.plusDays(3), CompletionBitmap.EVERY_DAY));
+    }
+
+    private static int bit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+}
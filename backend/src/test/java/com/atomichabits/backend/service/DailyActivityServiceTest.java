@@ -0,0 +1,174 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.UserDailyActivity;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.MoodRepository;
+import com.atomichabits.backend.repository.UserDailyActivityRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DailyActivityServiceTest {
+
+    @Mock
+    private UserDailyActivityRepository activityRepository;
+
+    @Mock
+    private HabitCompletionRepository habitCompletionRepository;
+
+    @Mock
+    private MoodRepository moodRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private DailyActivityService dailyActivityService;
+
+    private final LocalDate day = LocalDate.of(2024, 3, 4);
+
+    @Test
+    void recordCompletions_AddsCountsAndWidensTimeRange() {
+        UserDailyActivity row = row(2, day.atTime(9, 0), day.atTime(12, 0));
+        when(activityRepository.findForUpdate(1L, day)).thenReturn(Optional.of(row));
+
+        dailyActivityService.recordCompletions(1L, List.of(day.atTime(7, 15), day.atTime(10, 0), day.atTime(21, 30)));
+
+        verify(userRepository).findForShare(1L);
+        verify(activityRepository).insertIfAbsent(1L, day);
+        assertEquals(5, row.getCompletionCount());
+        assertEquals(5, row.getDistinctHabitCount());
+        assertEquals(day.atTime(7, 15), row.getFirstCompletionAt());
+        assertEquals(day.atTime(21, 30), row.getLastCompletionAt());
+        verify(activityRepository).save(row);
+    }
+
+    @Test
+    void removeMood_DropsTypeWhenCountReachesZero() {
+        UserDailyActivity row = row(0, null, null);
+        row.getMoodCounts().put("HAPPY", 2);
+        row.getMoodCounts().put("TIRED", 1);
+        when(activityRepository.findForUpdate(1L, day)).thenReturn(Optional.of(row));
+
+        dailyActivityService.removeMood(1L, "HAPPY", day.atTime(8, 0));
+        dailyActivityService.removeMood(1L, "TIRED", day.atTime(9, 0));
+
+        assertEquals(Map.of("HAPPY", 1), row.getMoodCounts());
+    }
+
+    @Test
+    void recomputeDays_ReplacesRowsFromRawTables() {
+        LocalDate emptied = day.plusDays(1);
+        UserDailyActivity first = row(3, day.atTime(6, 0), day.atTime(6, 0));
+        UserDailyActivity second = row(1, emptied.atTime(8, 0), emptied.atTime(8, 0));
+        when(activityRepository.findForUpdate(1L, day)).thenReturn(Optional.of(first));
+        when(activityRepository.findForUpdate(1L, emptied)).thenReturn(Optional.of(second));
+        when(habitCompletionRepository.summarizeDays(1L, day, emptied))
+                .thenReturn(List.of(summary(day, 2, day.atTime(7, 0), day.atTime(19, 0))));
+        when(moodRepository.findMoodTimes(1L, day.atStartOfDay(), emptied.atTime(LocalTime.MAX)))
+                .thenReturn(List.of(moodTime("CALM", emptied.atTime(22, 0))));
+
+        dailyActivityService.recomputeDays(1L, List.of(emptied, day));
+
+        assertEquals(2, first.getCompletionCount());
+        assertEquals(day.atTime(7, 0), first.getFirstCompletionAt());
+        assertEquals(day.atTime(19, 0), first.getLastCompletionAt());
+        assertTrue(first.getMoodCounts().isEmpty());
+        assertEquals(0, second.getCompletionCount());
+        assertNull(second.getFirstCompletionAt());
+        assertEquals(Map.of("CALM", 1), second.getMoodCounts());
+    }
+
+    @Test
+    void rebuildUser_LocksOutWritersBeforeReadingRawTables() {
+        UserDailyActivity stale = row(1, day.atTime(6, 0), day.atTime(6, 0));
+        when(activityRepository.findByUserId(1L)).thenReturn(List.of(stale));
+        when(habitCompletionRepository.summarizeAllDays(1L))
+                .thenReturn(List.of(summary(day, 2, day.atTime(7, 0), day.atTime(19, 0))));
+        when(moodRepository.findAllMoodTimes(1L)).thenReturn(List.of(moodTime("CALM", day.atTime(22, 0))));
+
+        assertEquals(1, dailyActivityService.rebuildUser(1L));
+
+        InOrder inOrder = inOrder(userRepository, activityRepository, habitCompletionRepository);
+        inOrder.verify(userRepository).findForUpdate(1L);
+        inOrder.verify(activityRepository).deleteAll(List.of(stale));
+        inOrder.verify(habitCompletionRepository).summarizeAllDays(1L);
+        inOrder.verify(activityRepository).saveAll(anyList());
+        verify(userRepository).markActivityBackfilled(1L);
+        verify(userRepository, never()).findForShare(any());
+    }
+
+    private UserDailyActivity row(int completions, LocalDateTime first, LocalDateTime last) {
+        return UserDailyActivity.builder()
+                .userId(1L)
+                .activityDay(day)
+                .completionCount(completions)
+                .distinctHabitCount(completions)
+                .firstCompletionAt(first)
+                .lastCompletionAt(last)
+                .moodCounts(new HashMap<>())
+                .build();
+    }
+
+    private static HabitCompletionRepository.DaySummary summary(LocalDate day, long completions,
+                                                                LocalDateTime first, LocalDateTime last) {
+        return new HabitCompletionRepository.DaySummary() {
+            @Override
+            public LocalDate getDay() {
+                return day;
+            }
+
+            @Override
+            public long getCompletions() {
+                return completions;
+            }
+
+            @Override
+            public long getHabits() {
+                return completions;
+            }
+
+            @Override
+            public LocalDateTime getFirstAt() {
+                return first;
+            }
+
+            @Override
+            public LocalDateTime getLastAt() {
+                return last;
+            }
+        };
+    }
+
+    private static MoodRepository.MoodTime moodTime(String type, LocalDateTime at) {
+        return new MoodRepository.MoodTime() {
+            @Override
+            public String getMoodType() {
+                return type;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return at;
+            }
+        };
+    }
+}
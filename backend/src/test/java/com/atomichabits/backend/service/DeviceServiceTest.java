@@ -0,0 +1,66 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.DeviceMetadata;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceServiceTest {
+
+    private final DeviceService deviceService = new DeviceService();
+
+    @Test
+    void parseUserAgent_DesktopBrowsers() {
+        assertDevice("Chrome", "Windows 10", "Desktop",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+        assertDevice("Edge", "Windows 10", "Desktop",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 Edg/120.0.2210.91");
+        assertDevice("Opera", "Windows 10", "Desktop",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 OPR/106.0.0.0");
+        assertDevice("Safari", "macOS 10.15.7", "Desktop",
+                "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Safari/605.1.15");
+        assertDevice("Firefox", "Linux", "Desktop",
+                "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0");
+        assertDevice("Internet Explorer", "Windows 7", "Desktop",
+                "Mozilla/5.0 (Windows NT 6.1; WOW64; Trident/7.0; rv:11.0) like Gecko");
+        assertDevice("Chrome", "ChromeOS", "Desktop",
+                "Mozilla/5.0 (X11; CrOS x86_64 14541.0.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+    }
+
+    @Test
+    void parseUserAgent_MobileDevicesAreNotMistakenForTheirDesktopRelatives() {
+        assertDevice("Safari", "iOS 17.2", "Mobile",
+                "Mozilla/5.0 (iPhone; CPU iPhone OS 17_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Mobile/15E148 Safari/604.1");
+        assertDevice("Chrome", "iOS 17.2", "Tablet",
+                "Mozilla/5.0 (iPad; CPU OS 17_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) CriOS/120.0.6099.119 Mobile/15E148 Safari/604.1");
+        assertDevice("Chrome", "Android 14", "Mobile",
+                "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.6099.144 Mobile Safari/537.36");
+        assertDevice("Samsung Internet", "Android 13", "Mobile",
+                "Mozilla/5.0 (Linux; Android 13; SM-S911B) AppleWebKit/537.36 (KHTML, like Gecko) SamsungBrowser/23.0 Chrome/115.0.0.0 Mobile Safari/537.36");
+        assertDevice("Chrome", "Android 13", "Tablet",
+                "Mozilla/5.0 (Linux; Android 13; SM-X700) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+    }
+
+    @Test
+    void parseUserAgent_BotsAndUnknowns() {
+        assertDevice("Unknown", "Unknown", "Bot",
+                "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)");
+        assertDevice("Unknown", "Unknown", "Desktop", "curl/8.4.0");
+        assertDevice("Unknown", "Unknown", "Unknown", null);
+    }
+
+    @Test
+    void parseUserAgent_CachedResultsAreNotShared() {
+        String userAgent = "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0";
+        deviceService.parseUserAgent(userAgent).setBrowser("Changed");
+
+        assertEquals("Firefox", deviceService.parseUserAgent(userAgent).getBrowser());
+    }
+
+    private void assertDevice(String browser, String os, String deviceType, String userAgent) {
+        DeviceMetadata metadata = deviceService.parseUserAgent(userAgent);
+        assertEquals(browser, metadata.getBrowser(), userAgent);
+        assertEquals(os, metadata.getOperatingSystem(), userAgent);
+        assertEquals(deviceType, metadata.getDeviceType(), userAgent);
+    }
+}
@@ -7,7 +7,6 @@ import com.atomichabits.backend.repository.BadgeRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.MessageSource;
@@ -15,10 +14,13 @@ import org.springframework.context.MessageSource;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,7 +32,6 @@ class GamificationServiceTest {
     @Mock
     private MessageSource messageSource;
 
-    @InjectMocks
     private GamificationService gamificationService;
 
     private User user;
@@ -41,6 +42,7 @@ class GamificationServiceTest {
                 .id(1L)
                 .email("test@example.com")
                 .build();
+        gamificationService = new GamificationService(badgeRepository, messageSource, "i18n/messages");
     }
 
     @Test
@@ -56,10 +58,9 @@ class GamificationServiceTest {
         when(badgeRepository.findByUserId(1L)).thenReturn(Collections.singletonList(badge));
         
         // Mock translation
-        when(messageSource.getMessage(eq("badge.test.title"), any(), eq("badge.test.title"), any(Locale.class)))
-                .thenReturn("Test Badge Title");
-        when(messageSource.getMessage(eq("badge.test.desc"), any(), eq("badge.test.desc"), any(Locale.class)))
-                .thenReturn("Test Badge Description");
+        translate(Map.of(
+                "badge.test.title", "Test Badge Title",
+                "badge.test.desc", "Test Badge Description"));
 
         List<BadgeResponse> responses = gamificationService.getLocalizedUserBadges(1L);
 
@@ -69,4 +70,37 @@ class GamificationServiceTest {
         assertEquals("Test Badge Description", response.getDescription());
         assertEquals("star", response.getIcon());
     }
+
+    @Test
+    void getLocalizedUserBadges_SecondCallNeedsNoQueryOrMessageLookup() {
+        Badge badge = Badge.builder().id(1L).name(BadgeRule.COUNT_1.getName())
+                .description(BadgeRule.COUNT_1.getDescription()).icon("footprints").build();
+        when(badgeRepository.findByUserId(1L)).thenReturn(List.of(badge));
+        translate(Map.of(BadgeRule.COUNT_1.getName(), "First Step"));
+
+        gamificationService.getLocalizedUserBadges(1L);
+        List<BadgeResponse> responses = gamificationService.getLocalizedUserBadges(1L);
+
+        assertEquals("First Step", responses.get(0).getName());
+        verify(badgeRepository, times(1)).findByUserId(1L);
+        // Every rule's title and description, once
+        verify(messageSource, times(BadgeRule.values().length * 2)).getMessage(anyString(), any(), anyString(), any(Locale.class));
+    }
+
+    @Test
+    void evictUserBadges_ReloadsOnNextRead() {
+        when(badgeRepository.findByUserId(1L)).thenReturn(List.of());
+        translate(Map.of());
+
+        gamificationService.getLocalizedUserBadges(1L);
+        gamificationService.evictUserBadges(1L);
+        gamificationService.getLocalizedUserBadges(1L);
+
+        verify(badgeRepository, times(2)).findByUserId(1L);
+    }
+
+    private void translate(Map<String, String> translations) {
+        when(messageSource.getMessage(anyString(), any(), anyString(), any(Locale.class)))
+                .thenAnswer(invocation -> translations.getOrDefault(invocation.<String>getArgument(0), invocation.getArgument(2)));
+    }
 }
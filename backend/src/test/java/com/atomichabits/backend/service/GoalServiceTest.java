@@ -0,0 +1,140 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.GoalResponse;
+import com.atomichabits.backend.model.Goal;
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.GoalRepository;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GoalServiceTest {
+
+    @Mock
+    private GoalRepository goalRepository;
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private HabitCompletionRepository habitCompletionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private HabitService habitService;
+
+    @Mock
+    private ChangeLogService changeLogService;
+
+    @InjectMocks
+    private GoalService goalService;
+
+    private User user;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        user = User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .build();
+    }
+
+    @Test
+    void getGoals_ResolvesTodayAndProgressWithOneQueryEach() {
+        Goal run = goal(10L, today.minusDays(9), null, habit(1L), habit(2L));
+        Goal read = goal(20L, null, null, habit(3L));
+        when(goalRepository.findWithHabitsByUserId(1L)).thenReturn(List.of(run, read));
+        when(habitCompletionRepository.findHabitIdsCompletedOn(List.of(1L, 2L, 3L), today)).thenReturn(List.of(2L));
+        when(habitCompletionRepository.countCompletionsInGoalWindows(List.of(10L, 20L), today))
+                .thenReturn(List.of(goalCount(10L, 5)));
+
+        List<GoalResponse> responses = goalService.getGoals(1L);
+
+        assertEquals(2, responses.size());
+        GoalResponse runResponse = responses.get(0);
+        assertFalse(runResponse.getHabits().get(0).isCompletedToday());
+        assertTrue(runResponse.getHabits().get(1).isCompletedToday());
+        // Habits were created 30 days ago, so the window starts at the goal's start date
+        assertEquals(20, runResponse.getScheduledDays());
+        assertEquals(5, runResponse.getCompletions());
+        assertEquals(0.25, runResponse.getCompletionRate(), 0.0001);
+        assertEquals(0, responses.get(1).getCompletions());
+        assertEquals(31, responses.get(1).getScheduledDays());
+
+        verify(habitCompletionRepository, never()).existsByHabitIdAndCompletedAtBetween(anyLong(), any(), any());
+        verify(habitCompletionRepository, times(1)).findHabitIdsCompletedOn(any(), eq(today));
+    }
+
+    @Test
+    void getGoals_NoHabits_SkipsCompletionQueries() {
+        when(goalRepository.findWithHabitsByUserId(1L)).thenReturn(List.of(goal(10L, null, null)));
+
+        List<GoalResponse> responses = goalService.getGoals(1L);
+
+        assertEquals(1, responses.size());
+        assertTrue(responses.get(0).getHabits().isEmpty());
+        assertEquals(0, responses.get(0).getCompletionRate());
+        verifyNoInteractions(habitCompletionRepository);
+    }
+
+    private Goal goal(Long id, LocalDate start, LocalDate end, Habit... habits) {
+        Goal goal = Goal.builder()
+                .id(id)
+                .user(user)
+                .name("Goal " + id)
+                .startDate(start)
+                .endDate(end)
+                .habits(new ArrayList<>(List.of(habits)))
+                .build();
+        for (Habit habit : habits) {
+            habit.setGoal(goal);
+        }
+        return goal;
+    }
+
+    private Habit habit(Long id) {
+        return Habit.builder()
+                .id(id)
+                .user(user)
+                .name("Habit " + id)
+                .isActive(true)
+                .frequencyMask(HabitSchedule.DAILY)
+                .createdAt(today.minusDays(30).atStartOfDay())
+                .build();
+    }
+
+    private static HabitCompletionRepository.GoalCompletionCount goalCount(Long goalId, long completions) {
+        return new HabitCompletionRepository.GoalCompletionCount() {
+            @Override
+            public Long getGoalId() {
+                return goalId;
+            }
+
+            @Override
+            public long getCompletions() {
+                return completions;
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HabitPurgeServiceTest {
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private HabitCompletionRepository habitCompletionRepository;
+
+    @Mock
+    private CompletionIndexService completionIndexService;
+
+    @Mock
+    private HabitStreakStateService streakStateService;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HabitPurgeService purgeService;
+
+    private Habit habit;
+
+    @BeforeEach
+    void setUp() {
+        purgeService = new HabitPurgeService(habitRepository, habitCompletionRepository, completionIndexService,
+                streakStateService, dailyActivityService, transactionManager);
+        ReflectionTestUtils.setField(purgeService, "chunkSize", 2);
+        habit = Habit.builder()
+                .id(5L)
+                .user(User.builder().id(1L).build())
+                .name("Old habit")
+                .archivedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    void purge_DeletesInChunksThenRemovesHabit() {
+        LocalDate day = LocalDate.now().minusDays(3);
+        when(habitCompletionRepository.findCompletionDaysByHabitId(5L)).thenReturn(List.of(day));
+        when(habitCompletionRepository.deleteChunkByHabitId(5L, 2)).thenReturn(2, 2, 1);
+
+        long deleted = purgeService.purge(habit);
+
+        assertEquals(5, deleted);
+        InOrder order = inOrder(habitCompletionRepository, dailyActivityService, habitRepository);
+        order.verify(habitCompletionRepository, times(3)).deleteChunkByHabitId(5L, 2);
+        order.verify(dailyActivityService).recomputeDays(1L, List.of(day));
+        order.verify(habitRepository).deleteById(5L);
+        verify(completionIndexService).remove(5L);
+        verify(streakStateService).delete(5L);
+        // Three chunk transactions plus the final one
+        verify(transactionManager, times(4)).commit(any());
+    }
+}
@@ -0,0 +1,77 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitScheduleTest {
+
+    // 2024-01-01 is a Monday
+    private final LocalDate monday = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void fromDays_NullOrEmpty_IsDaily() {
+        assertEquals(HabitSchedule.DAILY, HabitSchedule.fromDays(null));
+        assertEquals(HabitSchedule.DAILY, HabitSchedule.fromDays(List.of()));
+        assertNull(HabitSchedule.toDays(HabitSchedule.DAILY));
+    }
+
+    @Test
+    void fromDays_RoundTripsInWeekOrder() {
+        int mask = HabitSchedule.fromDays(List.of("friday", "MONDAY", "Wednesday"));
+
+        assertEquals(0b10101, mask);
+        assertEquals(List.of("MONDAY", "WEDNESDAY", "FRIDAY"), HabitSchedule.toDays(mask));
+    }
+
+    @Test
+    void fromDays_UnknownDay_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> HabitSchedule.fromDays(List.of("FUNDAY")));
+    }
+
+    @Test
+    void weekdayMask_DailyExpandsToEveryDay() {
+        Habit daily = Habit.builder().frequencyMask(HabitSchedule.DAILY).build();
+        Habit weekends = Habit.builder().frequencyMask(0b1100000).build();
+
+        assertEquals(CompletionBitmap.EVERY_DAY, HabitSchedule.weekdayMask(daily));
+        assertTrue(HabitSchedule.isScheduled(HabitSchedule.weekdayMask(weekends), monday.plusDays(5)));
+        assertFalse(HabitSchedule.isScheduled(HabitSchedule.weekdayMask(weekends), monday));
+    }
+
+    @Test
+    void countScheduledDays_MatchesDayByDayCount() {
+        for (int mask = 0; mask <= CompletionBitmap.EVERY_DAY; mask++) {
+            for (int offset = 0; offset < 7; offset++) {
+                LocalDate start = monday.plusDays(offset);
+                for (int length = 0; length < 30; length++) {
+                    LocalDate end = start.plusDays(length - 1);
+                    assertEquals(countByLoop(mask, start, end), HabitSchedule.countScheduledDays(mask, start, end),
+                            "mask=" + mask + " start=" + start + " end=" + end);
+                }
+            }
+        }
+    }
+
+    @Test
+    void countScheduledDays_LongRange() {
+        int weekdays = HabitSchedule.fromDays(List.of("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY"));
+
+        // 2024 has 366 days starting on a Monday: 52 full weeks plus Monday and Tuesday
+        assertEquals(262, HabitSchedule.countScheduledDays(weekdays, monday, LocalDate.of(2024, 12, 31)));
+        assertEquals(0, HabitSchedule.countScheduledDays(weekdays, monday.plusDays(1), monday));
+    }
+
+    private static long countByLoop(int mask, LocalDate start, LocalDate end) {
+        long count = 0;
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            if ((mask & HabitSchedule.bit(DayOfWeek.from(d))) != 0) count++;
+        }
+        return count;
+    }
+}
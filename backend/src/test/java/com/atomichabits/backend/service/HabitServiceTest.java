@@ -1,8 +1,12 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.dto.CompletionBatchRequest;
+import com.atomichabits.backend.dto.CompletionBatchResponse;
 import com.atomichabits.backend.dto.HabitRequest;
 import com.atomichabits.backend.dto.HabitResponse;
 import com.atomichabits.backend.exception.ResourceNotFoundException;
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.Goal;
 import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.HabitCompletion;
 import com.atomichabits.backend.model.User;
@@ -15,14 +19,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +47,24 @@ class HabitServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CompletionIndexService completionIndexService;
+
+    @Mock
+    private HabitStreakStateService streakStateService;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private ChangeLogService changeLogService;
+
+    @Mock
+    private UserAggregateService userAggregateService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private HabitService habitService;
 
@@ -64,18 +92,18 @@ class HabitServiceTest {
         Habit activeHabit = Habit.builder().id(1L).user(user).name("Active").isActive(true).build();
         Habit inactiveHabit = Habit.builder().id(2L).user(user).name("Inactive").isActive(false).build();
         
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(habitRepository.findByUserId(1L)).thenReturn(Arrays.asList(activeHabit, inactiveHabit));
+        when(habitRepository.findByUserIdAndArchivedAtIsNull(1L)).thenReturn(Arrays.asList(activeHabit, inactiveHabit));
         
         // Act
-        List<HabitResponse> responses = habitService.getUserHabits("test@example.com");
+        List<HabitResponse> responses = habitService.getUserHabits(1L);
         
         // Assert
         assertEquals(2, responses.size());
         assertTrue(responses.stream().anyMatch(h -> h.getName().equals("Active")));
         assertTrue(responses.stream().anyMatch(h -> h.getName().equals("Inactive")));
-        // Verify we are calling findByUserId, NOT findByUserIdAndIsActiveTrue
-        verify(habitRepository).findByUserId(1L);
+        // Verify we are not filtering on active status, only on archived habits
+        verify(habitRepository).findByUserIdAndArchivedAtIsNull(1L);
+        verify(userRepository, never()).findByEmail(any());
     }
 
     @Test
@@ -83,14 +111,14 @@ class HabitServiceTest {
         HabitRequest request = new HabitRequest();
         request.setName("New Habit");
 
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
         when(habitRepository.save(any(Habit.class))).thenAnswer(invocation -> {
             Habit h = invocation.getArgument(0);
             h.setId(1L);
             return h;
         });
 
-        HabitResponse response = habitService.createHabit("test@example.com", request);
+        HabitResponse response = habitService.createHabit(1L, request);
 
         assertNotNull(response);
         assertEquals("New Habit", response.getName());
@@ -99,33 +127,186 @@ class HabitServiceTest {
 
     @Test
     void completeHabit_Success() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
         when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
-        when(habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(any(), any(), any())).thenReturn(false);
+        when(habitCompletionRepository.insertIfAbsent(eq(1L), any(LocalDateTime.class))).thenReturn(true);
 
-        habitService.completeHabit(1L, "test@example.com");
+        habitService.completeHabit(1L, 1L);
 
-        verify(habitCompletionRepository).save(any(HabitCompletion.class));
+        verify(habitCompletionRepository).insertIfAbsent(eq(1L), any(LocalDateTime.class));
+        verify(habitCompletionRepository, never()).existsByHabitIdAndCompletedAtBetween(any(), any(), any());
+        verify(completionIndexService).recordCompletion(habit, LocalDate.now());
+        verify(dailyActivityService).recordCompletions(eq(1L), argThat(times -> times.size() == 1));
+        verify(changeLogService).recordCompletions(1L, ChangeLogEntry.Operation.UPSERT, Map.of(1L, List.of(LocalDate.now())));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof HabitCompletedEvent completed
+                && completed.userId().equals(1L) && completed.completedAts().size() == 1));
     }
 
     @Test
     void completeHabit_AlreadyCompleted() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
         when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
-        when(habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(any(), any(), any())).thenReturn(true);
+        when(habitCompletionRepository.insertIfAbsent(eq(1L), any(LocalDateTime.class))).thenReturn(false);
 
-        habitService.completeHabit(1L, "test@example.com");
+        habitService.completeHabit(1L, 1L);
 
-        verify(habitCompletionRepository, never()).save(any(HabitCompletion.class));
+        verify(completionIndexService, never()).recordCompletion(any(), any());
+        verify(streakStateService, never()).refresh(any(), any());
+        verify(dailyActivityService, never()).recordCompletions(any(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
     }
 
     @Test
     void completeHabit_HabitNotFound() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
         when(habitRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> 
-            habitService.completeHabit(1L, "test@example.com")
+            habitService.completeHabit(1L, 1L)
         );
     }
+
+    @Test
+    void completeHabits_ReportsPerEntryResults() {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+        List<CompletionBatchRequest.Entry> entries = List.of(
+                entry(1L, today, today.atTime(7, 30)),
+                entry(1L, yesterday, null),
+                entry(1L, today, null),
+                entry(99L, today, null),
+                entry(1L, today.plusDays(1), null));
+        habit.setCreatedAt(today.minusDays(7).atStartOfDay());
+
+        HabitCompletionRepository.CompletionTime existing = new HabitCompletionRepository.CompletionTime() {
+            @Override
+            public Long getHabitId() {
+                return 1L;
+            }
+
+            @Override
+            public LocalDateTime getCompletedAt() {
+                return yesterday.atTime(20, 0);
+            }
+        };
+        when(habitRepository.findByUserIdAndIdInAndArchivedAtIsNull(eq(1L), any())).thenReturn(List.of(habit));
+        when(habitCompletionRepository.findCompletionTimesByHabitIdsBetween(any(), any(), any()))
+                .thenReturn(List.of(existing));
+
+        CompletionBatchResponse response = habitService.completeHabits(1L, entries);
+
+        assertEquals(1, response.getCreated());
+        assertEquals(2, response.getDuplicates());
+        assertEquals(2, response.getRejected());
+        assertEquals(List.of(
+                        CompletionBatchResponse.Status.CREATED,
+                        CompletionBatchResponse.Status.DUPLICATE,
+                        CompletionBatchResponse.Status.DUPLICATE,
+                        CompletionBatchResponse.Status.NOT_FOUND,
+                        CompletionBatchResponse.Status.INVALID_DATE),
+                response.getResults().stream().map(CompletionBatchResponse.Result::getStatus).toList());
+        verify(habitRepository, times(1)).findByUserIdAndIdInAndArchivedAtIsNull(eq(1L), any());
+        verify(habitCompletionRepository, times(1)).findCompletionTimesByHabitIdsBetween(any(), any(), any());
+        verify(habitCompletionRepository).insertAll(argThat(completions -> completions.size() == 1
+                && completions.iterator().next().getCompletedAt().equals(today.atTime(7, 30))));
+        verify(completionIndexService).recordCompletions(habit, List.of(today));
+        verify(dailyActivityService).recomputeDays(1L, java.util.Set.of(today));
+        verify(habitCompletionRepository, never()).save(any(HabitCompletion.class));
+    }
+
+    @Test
+    void completeHabits_DateBeforeTheHabitWasCreated_IsInvalid() {
+        LocalDate today = LocalDate.now();
+        habit.setCreatedAt(today.minusDays(3).atTime(12, 0));
+        List<CompletionBatchRequest.Entry> entries = List.of(
+                entry(1L, today.minusDays(4), null),
+                entry(1L, LocalDate.of(1, 1, 1), null),
+                entry(1L, today.minusDays(3), null));
+        when(habitRepository.findByUserIdAndIdInAndArchivedAtIsNull(eq(1L), any())).thenReturn(List.of(habit));
+        when(habitCompletionRepository.findCompletionTimesByHabitIdsBetween(any(), any(), any())).thenReturn(List.of());
+
+        CompletionBatchResponse response = habitService.completeHabits(1L, entries);
+
+        assertEquals(List.of(
+                        CompletionBatchResponse.Status.INVALID_DATE,
+                        CompletionBatchResponse.Status.INVALID_DATE,
+                        CompletionBatchResponse.Status.CREATED),
+                response.getResults().stream().map(CompletionBatchResponse.Result::getStatus).toList());
+        // Only the valid day bounds the lookup, and only it reaches the bitmap
+        verify(habitCompletionRepository).findCompletionTimesByHabitIdsBetween(any(),
+                eq(today.minusDays(3).atStartOfDay()), eq(LocalDateTime.of(today.minusDays(3), LocalTime.MAX)));
+        verify(completionIndexService).recordCompletions(habit, List.of(today.minusDays(3)));
+    }
+
+    @Test
+    void updateHabit_RefreshesStreakFromTheLockedBitmap() {
+        HabitRequest request = new HabitRequest();
+        request.setName("Renamed");
+        CompletionBitmap bitmap = CompletionBitmap.empty(LocalDate.now());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        when(habitRepository.save(habit)).thenReturn(habit);
+        when(completionIndexService.lockBitmap(habit)).thenReturn(bitmap);
+        when(streakStateService.snapshot(habit)).thenReturn(StreakSnapshot.NONE);
+
+        habitService.updateHabit(1L, 1L, request);
+
+        verify(streakStateService).refresh(habit, bitmap);
+        verify(completionIndexService, never()).getBitmap(any());
+    }
+
+    @Test
+    void deleteHabit_DeletesCompletionsInBulk() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        when(habitCompletionRepository.findCompletionDaysByHabitId(1L)).thenReturn(List.of(yesterday));
+
+        habitService.deleteHabit(1L, 1L);
+
+        verify(habitCompletionRepository).bulkDeleteByHabitId(1L);
+        verify(habitCompletionRepository, never()).findByHabitUserId(any());
+        verify(habitCompletionRepository, never()).deleteAll(any());
+        verify(dailyActivityService).recomputeDays(1L, List.of(yesterday));
+        verify(habitRepository).delete(habit);
+    }
+
+    @Test
+    void archiveHabit_HidesHabitAndKeepsCompletions() {
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+
+        habitService.archiveHabit(1L, 1L);
+
+        assertNotNull(habit.getArchivedAt());
+        assertFalse(habit.isActive());
+        verify(habitRepository).save(habit);
+        verify(habitCompletionRepository, never()).bulkDeleteByHabitId(any());
+        verify(habitRepository, never()).delete(any());
+    }
+
+    @Test
+    void archiveHabit_RecordsTheGoalItLeft() {
+        habit.setGoal(Goal.builder().id(5L).user(user).build());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+
+        habitService.archiveHabit(1L, 1L);
+
+        assertNull(habit.getGoal());
+        verify(changeLogService).record(1L, ChangeLogEntry.EntityType.GOAL, ChangeLogEntry.Operation.UPSERT, 5L);
+        verify(changeLogService).record(1L, ChangeLogEntry.EntityType.HABIT, ChangeLogEntry.Operation.DELETE, 1L);
+    }
+
+    @Test
+    void completeHabit_ArchivedHabitNotFound() {
+        habit.setArchivedAt(LocalDateTime.now());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+
+        assertThrows(ResourceNotFoundException.class, () ->
+            habitService.completeHabit(1L, 1L)
+        );
+        verify(habitCompletionRepository, never()).insertIfAbsent(any(), any());
+    }
+
+    private static CompletionBatchRequest.Entry entry(Long habitId, LocalDate date, LocalDateTime clientTimestamp) {
+        CompletionBatchRequest.Entry entry = new CompletionBatchRequest.Entry();
+        entry.setHabitId(habitId);
+        entry.setDate(date);
+        entry.setClientTimestamp(clientTimestamp);
+        return entry;
+    }
 }
@@ -0,0 +1,133 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.HabitStreakState;
+import com.atomichabits.backend.repository.HabitStreakStateRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HabitStreakStateServiceTest {
+
+    // 2024-01-01 is a Monday
+    private final LocalDate createdOn = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void compute_DailyHabit() {
+        Habit habit = habit();
+        LocalDate today = createdOn.plusDays(9);
+        CompletionBitmap bitmap = CompletionBitmap.of(createdOn, List.of(
+                createdOn, createdOn.plusDays(1), createdOn.plusDays(2),
+                today.minusDays(1), today));
+
+        HabitStreakState state = HabitStreakStateService.compute(habit, bitmap, today);
+
+        assertEquals(2, state.getCurrentStreak());
+        assertEquals(3, state.getLongestStreak());
+        assertEquals(5, state.getTotalCompletions());
+        assertEquals(today, state.getLastCompletedDay());
+        assertEquals(10, state.getScheduledDayCount());
+    }
+
+    @Test
+    void snapshots_WithoutStateRow_ComputesItWithoutWriting() {
+        HabitStreakStateRepository repository = mock(HabitStreakStateRepository.class);
+        CompletionIndexService completionIndexService = mock(CompletionIndexService.class);
+        HabitStreakStateService service = new HabitStreakStateService(repository, null, completionIndexService);
+        Habit habit = habit();
+        LocalDate today = LocalDate.now();
+        when(repository.findAllById(List.of(1L))).thenReturn(List.of());
+        when(completionIndexService.getBitmaps(List.of(habit)))
+                .thenReturn(Map.of(1L, CompletionBitmap.of(createdOn, List.of(today.minusDays(1), today))));
+
+        StreakSnapshot snapshot = service.snapshot(habit);
+
+        assertEquals(2, snapshot.currentStreak());
+        assertTrue(snapshot.completedToday());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void project_SameDay_ReturnsStoredFigures() {
+        LocalDate today = createdOn.plusDays(5);
+        HabitStreakState state = state(CompletionBitmap.EVERY_DAY, today, today, 4);
+
+        StreakSnapshot snapshot = HabitStreakStateService.project(state, today);
+
+        assertEquals(4, snapshot.currentStreak());
+        assertTrue(snapshot.completedToday());
+    }
+
+    @Test
+    void project_NextDay_StreakStillAlive() {
+        LocalDate asOf = createdOn.plusDays(5);
+        HabitStreakState state = state(CompletionBitmap.EVERY_DAY, asOf, asOf, 4);
+
+        StreakSnapshot snapshot = HabitStreakStateService.project(state, asOf.plusDays(1));
+
+        assertEquals(4, snapshot.currentStreak());
+        assertFalse(snapshot.completedToday());
+        assertEquals(7, snapshot.scheduledDays());
+    }
+
+    @Test
+    void project_MissedScheduledDay_ResetsStreak() {
+        LocalDate asOf = createdOn.plusDays(5);
+        HabitStreakState state = state(CompletionBitmap.EVERY_DAY, asOf, asOf, 4);
+
+        assertEquals(0, HabitStreakStateService.project(state, asOf.plusDays(2)).currentStreak());
+    }
+
+    @Test
+    void project_UncompletedAsOfDay_CountsAsMiss() {
+        // Uncompleted today: stored streak runs up to yesterday
+        LocalDate asOf = createdOn.plusDays(5);
+        HabitStreakState state = state(CompletionBitmap.EVERY_DAY, asOf, asOf.minusDays(1), 3);
+
+        assertEquals(3, HabitStreakStateService.project(state, asOf).currentStreak());
+        assertEquals(0, HabitStreakStateService.project(state, asOf.plusDays(1)).currentStreak());
+    }
+
+    @Test
+    void project_WeekendGap_OnWeekdaySchedule() {
+        int weekdays = 0x1F;
+        // Friday 2024-01-05 completed; reading on Monday 2024-01-08
+        LocalDate friday = LocalDate.of(2024, 1, 5);
+        HabitStreakState state = state(weekdays, friday, friday, 5);
+
+        StreakSnapshot monday = HabitStreakStateService.project(state, friday.plusDays(3));
+        StreakSnapshot tuesday = HabitStreakStateService.project(state, friday.plusDays(4));
+
+        assertEquals(5, monday.currentStreak());
+        assertEquals(6, monday.scheduledDays());
+        assertEquals(0, tuesday.currentStreak());
+    }
+
+    private Habit habit() {
+        return Habit.builder()
+                .id(1L)
+                .name("Test Habit")
+                .frequencyMask(HabitSchedule.DAILY)
+                .createdAt(createdOn.atTime(9, 0))
+                .build();
+    }
+
+    private HabitStreakState state(int mask, LocalDate asOf, LocalDate lastCompleted, int currentStreak) {
+        return HabitStreakState.builder()
+                .habitId(1L)
+                .currentStreak(currentStreak)
+                .longestStreak(currentStreak)
+                .lastCompletedDay(lastCompleted)
+                .totalCompletions(currentStreak)
+                .scheduledDayCount(HabitSchedule.countScheduledDays(mask, createdOn, asOf))
+                .weekdayMask(mask)
+                .asOfDay(asOf)
+                .build();
+    }
+}
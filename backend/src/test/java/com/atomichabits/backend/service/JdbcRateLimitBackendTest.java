@@ -0,0 +1,53 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.config.RateLimitProperties;
+import com.atomichabits.backend.repository.ConflictIgnoringInserts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRateLimitBackendTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcRateLimitBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:rate-limit-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table rate_limit_bucket (bucket_key varchar(200) primary key, "
+                + "tokens double precision not null, updated_at bigint not null)");
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setIdleTtlMs(0);
+        backend = new JdbcRateLimitBackend(jdbcTemplate, new ConflictIgnoringInserts(jdbcTemplate), properties);
+    }
+
+    @Test
+    void tryConsume_SharesOneBucketPerKeyAndRefills() {
+        double onePerSecond = 1 / 1000d;
+
+        assertTrue(backend.tryConsume("auth:ip:1", 2, onePerSecond, 1_000));
+        assertTrue(backend.tryConsume("auth:ip:1", 2, onePerSecond, 1_000));
+        assertFalse(backend.tryConsume("auth:ip:1", 2, onePerSecond, 1_500));
+        assertTrue(backend.tryConsume("auth:ip:2", 2, onePerSecond, 1_500));
+        assertTrue(backend.tryConsume("auth:ip:1", 2, onePerSecond, 2_000));
+        assertFalse(backend.tryConsume("auth:ip:1", 2, onePerSecond, 2_000));
+
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from rate_limit_bucket", Integer.class));
+    }
+
+    @Test
+    void prune_DropsIdleBuckets() {
+        backend.tryConsume("auth:ip:1", 2, 0, 1_000);
+
+        backend.prune();
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from rate_limit_bucket", Integer.class));
+    }
+}
@@ -0,0 +1,101 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.repository.LoginHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoginHistoryServiceTest {
+
+    @Mock
+    private LoginHistoryRepository loginHistoryRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private LoginHistoryService loginHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        // Flushes only when asked to
+        loginHistoryService = new LoginHistoryService(loginHistoryRepository, new DeviceService(), jdbcTemplate,
+                new SimpleMeterRegistry(), 2, 100, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        loginHistoryService.shutdown();
+    }
+
+    @Test
+    void isLockedOut_CountsFailuresInMemoryAfterOneLoad() {
+        when(loginHistoryRepository.findLoginTimesByUserIdAndStatusAfter(eq(1L), eq(LoginHistoryService.FAILED), any()))
+                .thenReturn(List.of(LocalDateTime.now().minusMinutes(1)));
+
+        for (int i = 0; i < LoginHistoryService.MAX_FAILED_ATTEMPTS - 2; i++) {
+            loginHistoryService.record(1L, "127.0.0.1", "Mozilla/5.0 (Windows NT 10.0)", LoginHistoryService.FAILED);
+        }
+        assertFalse(loginHistoryService.isLockedOut(1L));
+
+        loginHistoryService.record(1L, "127.0.0.1", "Mozilla/5.0 (Windows NT 10.0)", LoginHistoryService.FAILED);
+        assertTrue(loginHistoryService.isLockedOut(1L));
+        verify(loginHistoryRepository, times(1)).findLoginTimesByUserIdAndStatusAfter(any(), any(), any());
+    }
+
+    @Test
+    void isLockedOut_IgnoresFailuresOutsideTheWindow() {
+        when(loginHistoryRepository.findLoginTimesByUserIdAndStatusAfter(eq(1L), eq(LoginHistoryService.FAILED), any()))
+                .thenReturn(Collections.nCopies(LoginHistoryService.MAX_FAILED_ATTEMPTS,
+                        LocalDateTime.now().minusMinutes(LoginHistoryService.LOCKOUT_WINDOW_MINUTES + 1)));
+
+        assertFalse(loginHistoryService.isLockedOut(1L));
+    }
+
+    @Test
+    void shutdown_WritesQueuedAttemptsInBatches() throws InterruptedException {
+        when(loginHistoryRepository.findLoginTimesByUserIdAndStatusAfter(any(), any(), any())).thenReturn(List.of());
+        LoginHistoryService idle = new LoginHistoryService(loginHistoryRepository, new DeviceService(), jdbcTemplate,
+                new SimpleMeterRegistry(), 10, 100, 3_600_000);
+        for (int i = 0; i < 3; i++) {
+            idle.record(1L, "127.0.0.1", null, LoginHistoryService.SUCCESS);
+        }
+        idle.record(2L, "127.0.0.1", null, LoginHistoryService.FAILED);
+        verifyNoInteractions(jdbcTemplate);
+
+        idle.shutdown();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("insert into login_history"),
+                argThat((List<Object> rows) -> rows.size() == 4), eq(4), any());
+    }
+
+    @Test
+    void flush_FailedBatch_CountsItsAttemptsAsDropped() throws InterruptedException {
+        when(loginHistoryRepository.findLoginTimesByUserIdAndStatusAfter(any(), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenThrow(new IllegalStateException("database down"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LoginHistoryService idle = new LoginHistoryService(loginHistoryRepository, new DeviceService(), jdbcTemplate,
+                meterRegistry, 10, 100, 3_600_000);
+        for (int i = 0; i < 3; i++) {
+            idle.record(1L, "127.0.0.1", null, LoginHistoryService.FAILED);
+        }
+
+        assertThrows(IllegalStateException.class, idle::flush);
+
+        assertEquals(3, meterRegistry.counter("auth.login.history.dropped").count());
+        idle.shutdown();
+    }
+}
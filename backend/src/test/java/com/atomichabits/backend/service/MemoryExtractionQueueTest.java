@@ -0,0 +1,158 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.MemoryExtractionTask;
+import com.atomichabits.backend.repository.MemoryExtractionTaskRepository;
+import io.agentscope.core.message.Msg;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MemoryExtractionQueueTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private MemoryExtractionTaskRepository taskRepository;
+
+    @Mock
+    private MemoryService memoryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MemoryExtractionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new MemoryExtractionQueue(taskRepository, memoryService, transactionManager, meterRegistry, 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void process_ExtractsPendingMessagesTogetherThenDeletesThem() {
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(
+                task(1L, "I run before work", 0), task(2L, "Mornings are easier", 0), task(3L, "Not on Sundays", 0)));
+
+        queue.process(USER_ID);
+
+        ArgumentCaptor<List<Msg>> messages = ArgumentCaptor.forClass(List.class);
+        verify(memoryService, times(1)).ingestConversationSignals(eq(USER_ID), messages.capture());
+        assertEquals(List.of("I run before work", "Mornings are easier", "Not on Sundays"),
+                messages.getValue().stream().map(Msg::getTextContent).toList());
+        verify(taskRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        assertEquals(1, meterRegistry.counter("memory.extraction.runs", "result", "success").count());
+        assertEquals(1, meterRegistry.get("memory.extraction.lag").timer().count());
+    }
+
+    @Test
+    void process_KeepsFailedMessagesUntilTheirLastAttempt() {
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(
+                task(1L, "I run before work", 2), task(2L, "Mornings are easier", 0)));
+        when(memoryService.ingestConversationSignals(eq(USER_ID), anyList())).thenThrow(new IllegalStateException("LLM down"));
+
+        queue.process(USER_ID);
+
+        verify(taskRepository).incrementAttempts(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(taskRepository).deleteAllByIdInBatch(List.of(1L));
+        assertEquals(1, meterRegistry.counter("memory.extraction.runs", "result", "failed").count());
+    }
+
+    @Test
+    void process_LongBacklog_ExtractsEveryMessageATurnsWorthAtATime() {
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(
+                task(1L, "I run before work", 0), task(2L, "Mornings are easier", 0), task(3L, "Not on Sundays", 0),
+                task(4L, "I read at night", 0), task(5L, "Only fiction", 0)));
+        when(memoryService.ingestConversationSignals(eq(USER_ID), anyList()))
+                .thenReturn(1)
+                .thenThrow(new IllegalStateException("LLM down"));
+
+        queue.process(USER_ID);
+
+        verify(memoryService, times(2)).ingestConversationSignals(eq(USER_ID), anyList());
+        // The first group is done; only the one that failed is retried
+        verify(taskRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(taskRepository).incrementAttempts(eq(List.of(4L, 5L)), any(LocalDateTime.class));
+        verify(taskRepository, never()).deleteAllByIdInBatch(List.of(4L, 5L));
+        assertEquals(3, meterRegistry.counter("memory.extraction.messages").count());
+    }
+
+    @Test
+    void process_FailedGroupBacksOffLongerWithEachAttempt() {
+        when(memoryService.ingestConversationSignals(eq(USER_ID), anyList())).thenThrow(new IllegalStateException("LLM down"));
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+
+        LocalDateTime before = LocalDateTime.now();
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(task(1L, "I run before work", 0)));
+        queue.process(USER_ID);
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(task(1L, "I run before work", 1)));
+        queue.process(USER_ID);
+
+        verify(taskRepository, times(2)).incrementAttempts(eq(List.of(1L)), nextAttemptAt.capture());
+        LocalDateTime first = nextAttemptAt.getAllValues().get(0);
+        LocalDateTime second = nextAttemptAt.getAllValues().get(1);
+        assertFalse(first.isBefore(before.plusSeconds(60)));
+        assertFalse(second.isBefore(before.plusSeconds(120)));
+        verify(taskRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void dispatchReady_SkipsUsersStillBackingOff() {
+        when(taskRepository.count()).thenReturn(1L);
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(taskRepository.findReadyUserIds(any(), any(), now.capture(), any())).thenReturn(List.of());
+
+        LocalDateTime before = LocalDateTime.now();
+        queue.dispatchReady();
+
+        // The query is asked as of the poll, so a row whose nextAttemptAt is later is not ready yet
+        assertFalse(now.getValue().isBefore(before));
+        assertFalse(now.getValue().isAfter(LocalDateTime.now()));
+        verify(taskRepository, never()).findByUserIdOrderByIdAsc(any());
+        verifyNoInteractions(memoryService);
+    }
+
+    @Test
+    void dispatchReady_ProcessesUsersPastTheirDebounceWindow() throws InterruptedException {
+        when(taskRepository.count()).thenReturn(2L);
+        when(taskRepository.findReadyUserIds(any(), any(), any(), any())).thenReturn(List.of(USER_ID));
+        when(taskRepository.findByUserIdOrderByIdAsc(USER_ID)).thenReturn(List.of(task(1L, "I run before work", 0)));
+
+        queue.dispatchReady();
+        queue.shutdown();
+
+        verify(memoryService).ingestConversationSignals(eq(USER_ID), anyList());
+        assertEquals(2, meterRegistry.get("memory.extraction.queued").gauge().value());
+    }
+
+    private MemoryExtractionTask task(Long id, String message, int attempts) {
+        return MemoryExtractionTask.builder()
+                .id(id)
+                .userId(USER_ID)
+                .message(message)
+                .createdAt(LocalDateTime.now().minusSeconds(45))
+                .attempts(attempts)
+                .build();
+    }
+}
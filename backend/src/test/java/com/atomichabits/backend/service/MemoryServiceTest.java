@@ -21,8 +21,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +46,9 @@ class MemoryServiceTest {
     @Mock
     private HabitCompletionRepository habitCompletionRepository;
 
+    @Mock
+    private DailyActivityService dailyActivityService;
+
     @Mock
     private AgentScopeClient agentScopeClient;
 
@@ -78,16 +83,24 @@ class MemoryServiceTest {
                         ChatMessage.builder().role("user").content("I ran today").build()
                 ));
 
-        when(moodService.getMoodsSince(eq(1L), eq(start)))
+        when(dailyActivityService.getDay(1L, date))
+                .thenReturn(Optional.of(UserDailyActivity.builder()
+                        .userId(1L)
+                        .activityDay(date)
+                        .completionCount(1)
+                        .distinctHabitCount(1)
+                        .firstCompletionAt(start.plusHours(7))
+                        .lastCompletionAt(start.plusHours(7))
+                        .moodCounts(new java.util.HashMap<>(java.util.Map.of("HAPPY", 1)))
+                        .build()));
+
+        when(moodService.getMoodsBetween(eq(1L), eq(start), eq(end)))
                 .thenReturn(Collections.singletonList(
                         MoodLog.builder().moodType("HAPPY").createdAt(start.plusHours(1)).build()
                 ));
         
-        when(habitCompletionRepository.findByHabitUserIdAndCompletedAtBetween(
-                eq(1L), eq(start), eq(end)))
-                .thenReturn(Collections.singletonList(
-                        HabitCompletion.builder().habit(Habit.builder().name("Running").build()).build()
-                ));
+        when(habitCompletionRepository.findHabitNamesCompletedOn(1L, date))
+                .thenReturn(Collections.singletonList("Running"));
 
         // Mock AI call
         doReturn("User had a great day running.").when(memoryService).callAI(anyString());
@@ -97,7 +110,8 @@ class MemoryServiceTest {
 
         // Assert
         verify(memoryRepository).save(any(CoachMemory.class));
-        verify(memoryService).callAI(anyString());
+        verify(memoryService).callAI(argThat(prompt -> prompt.contains("Running")
+                && prompt.contains("first at 07:00") && prompt.contains("HAPPY")));
     }
 
     @Test
@@ -111,10 +125,8 @@ class MemoryServiceTest {
 
         when(chatMessageRepository.findByUserIdAndTimestampBetweenOrderByTimestampAsc(any(), any(), any()))
                 .thenReturn(Collections.emptyList());
-        when(moodService.getMoodsSince(any(Long.class), any()))
-                .thenReturn(Collections.emptyList());
-        when(habitCompletionRepository.findByHabitUserIdAndCompletedAtBetween(any(), any(), any()))
-                .thenReturn(Collections.emptyList());
+        when(dailyActivityService.getDay(1L, date))
+                .thenReturn(Optional.empty());
 
         // Act
         memoryService.generateSummaryForDate(user, date);
@@ -122,6 +134,8 @@ class MemoryServiceTest {
         // Assert
         verify(memoryRepository, never()).save(any());
         verify(memoryService, never()).callAI(anyString());
+        verify(moodService, never()).getMoodsBetween(any(), any(), any());
+        verify(habitCompletionRepository, never()).findHabitNamesCompletedOn(any(), any());
     }
 
     @Test
@@ -146,7 +160,7 @@ class MemoryServiceTest {
         String email = "test@example.com";
         User user = User.builder().id(1L).email(email).build();
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(memoryRepository.findTop20ByUserIdAndTypeOrderByCreatedAtDesc(eq(1L), any()))
                 .thenReturn(Collections.emptyList());
 
@@ -157,7 +171,7 @@ class MemoryServiceTest {
                         .build()
         );
 
-        int savedCount = memoryService.ingestConversationSignals(email, messages);
+        int savedCount = memoryService.ingestConversationSignals(1L, messages);
 
         assertTrue(savedCount > 0);
         verify(memoryRepository, atLeastOnce()).save(any(CoachMemory.class));
@@ -169,7 +183,7 @@ class MemoryServiceTest {
         User user = User.builder().id(1L).email(email).build();
         ReflectionTestUtils.setField(memoryService, "llmExtractionEnabled", true);
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(memoryRepository.findTop20ByUserIdAndTypeOrderByCreatedAtDesc(eq(1L), any()))
                 .thenReturn(Collections.emptyList());
         doReturn("{\"facts\":[\"I prefer short evening routines.\"],\"insights\":[\"I struggle to start after work.\"]}")
@@ -182,10 +196,27 @@ class MemoryServiceTest {
                         .build()
         );
 
-        int savedCount = memoryService.ingestConversationSignals(email, messages);
+        int savedCount = memoryService.ingestConversationSignals(1L, messages);
 
         assertTrue(savedCount > 0);
         verify(memoryService).callAIForSignalExtraction(anyString());
         verify(memoryRepository, atLeastOnce()).save(any(CoachMemory.class));
     }
+
+    @Test
+    void ingestConversationSignals_ModelCallFails_ThrowsSoTheExtractionIsRetried() {
+        ReflectionTestUtils.setField(memoryService, "llmExtractionEnabled", true);
+        when(agentScopeClient.isAvailable()).thenReturn(true);
+        when(agentScopeClient.tryCall(anyString(), anyString())).thenReturn(Optional.empty());
+
+        List<Msg> messages = List.of(
+                Msg.builder()
+                        .role(MsgRole.USER)
+                        .content(TextBlock.builder().text("I usually work late and prefer a short evening routine.").build())
+                        .build()
+        );
+
+        assertThrows(IllegalStateException.class, () -> memoryService.ingestConversationSignals(1L, messages));
+        verify(memoryRepository, never()).save(any(CoachMemory.class));
+    }
 }
@@ -2,7 +2,6 @@ package com.atomichabits.backend.service;
 
 import com.atomichabits.backend.model.Habit;
 import com.atomichabits.backend.model.User;
-import com.atomichabits.backend.repository.HabitCompletionRepository;
 import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,14 +11,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyList;
-import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -33,10 +31,7 @@ class NotificationServiceTest {
     private HabitRepository habitRepository;
 
     @Mock
-    private HabitCompletionRepository habitCompletionRepository;
-
-    @Mock
-    private HabitService habitService;
+    private HabitStreakStateService streakStateService;
 
     @InjectMocks
     private NotificationService notificationService;
@@ -56,36 +51,30 @@ class NotificationServiceTest {
     void sendDailyReminders_ShouldCheckHabits() {
         // Arrange
         when(userRepository.findAll()).thenReturn(Collections.singletonList(user));
-        when(habitRepository.findByUserIdAndIsActiveTrue(user.getId())).thenReturn(Arrays.asList(habit1, habit2));
+        when(habitRepository.findActiveScheduledOn(eq(user.getId()), anyInt())).thenReturn(Arrays.asList(habit1, habit2));
         
         // Habit 1 completed, Habit 2 not completed
-        when(habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(eq(101L), any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(true);
-        when(habitCompletionRepository.existsByHabitIdAndCompletedAtBetween(eq(102L), any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(false);
-        
-        // Mock streak calculation for uncompleted habit
-        when(habitCompletionRepository.findByHabitIdOrderByCompletedAtDesc(eq(102L)))
-                .thenReturn(Collections.emptyList());
-        when(habitService.calculateCurrentStreak(anyList())).thenReturn(0);
+        StreakSnapshot completed = new StreakSnapshot(1, 1, 1, true, 1, LocalDate.now());
+        when(streakStateService.snapshots(Arrays.asList(habit1, habit2)))
+                .thenReturn(Map.of(101L, completed, 102L, StreakSnapshot.NONE));
 
         // Act
         notificationService.sendDailyReminders();
 
         // Assert
-        verify(habitCompletionRepository, times(2)).existsByHabitIdAndCompletedAtBetween(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(streakStateService, times(1)).snapshots(Arrays.asList(habit1, habit2));
     }
     
     @Test
     void sendDailyReminders_ShouldNotCheckIfNoActiveHabits() {
         // Arrange
         when(userRepository.findAll()).thenReturn(Collections.singletonList(user));
-        when(habitRepository.findByUserIdAndIsActiveTrue(user.getId())).thenReturn(Collections.emptyList());
+        when(habitRepository.findActiveScheduledOn(eq(user.getId()), anyInt())).thenReturn(Collections.emptyList());
 
         // Act
         notificationService.sendDailyReminders();
 
         // Assert
-        verify(habitCompletionRepository, never()).existsByHabitIdAndCompletedAtBetween(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(streakStateService, never()).snapshots(any());
     }
 }
@@ -1,7 +1,8 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -9,22 +10,70 @@ class RateLimiterServiceTest {
 
     @Test
     void testRateLimiting() {
-        RateLimiterService service = new RateLimiterService();
-        ReflectionTestUtils.setField(service, "maxRequestsPerMinute", 10);
-        ReflectionTestUtils.setField(service, "blockDurationMs", 900000L);
-        String ip = "127.0.0.1";
+        RateLimiterService service = service(properties(10, 10));
+        String ip = "ip:127.0.0.1";
 
-        // Record 10 requests (allowed)
+        // The full bucket allows 10 requests
         for (int i = 0; i < 10; i++) {
-            assertFalse(service.isBlocked(ip));
-            service.recordRequest(ip);
+            assertTrue(service.tryAcquire(RateLimiterService.AUTH, ip));
         }
 
-        // 11th request should trigger block
-        assertFalse(service.isBlocked(ip)); // Still not blocked before recording
-        service.recordRequest(ip);
-        
-        // Now it should be blocked
-        assertTrue(service.isBlocked(ip));
+        // The 11th is over the limit, other callers are not affected
+        assertFalse(service.tryAcquire(RateLimiterService.AUTH, ip));
+        assertTrue(service.tryAcquire(RateLimiterService.AUTH, "ip:127.0.0.2"));
+        assertEquals(6, service.retryAfterSeconds(RateLimiterService.AUTH));
+    }
+
+    @Test
+    void unknownOrDisabledNamespace_IsNotLimited() {
+        RateLimitProperties properties = properties(0, 0);
+        RateLimiterService service = service(properties);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(service.tryAcquire(RateLimiterService.AUTH, "ip:127.0.0.1"));
+            assertTrue(service.tryAcquire("coach", "user:1"));
+        }
+    }
+
+    @Test
+    void inMemoryBackend_RefillsOverTimeUpToCapacity() {
+        InMemoryRateLimitBackend backend = new InMemoryRateLimitBackend(new RateLimitProperties());
+        double onePerSecond = 1 / 1000d;
+
+        assertTrue(backend.tryConsume("k", 2, onePerSecond, 0));
+        assertTrue(backend.tryConsume("k", 2, onePerSecond, 0));
+        assertFalse(backend.tryConsume("k", 2, onePerSecond, 500));
+        assertTrue(backend.tryConsume("k", 2, onePerSecond, 1000));
+        // A long pause refills to capacity, not beyond
+        assertTrue(backend.tryConsume("k", 2, onePerSecond, 60_000));
+        assertTrue(backend.tryConsume("k", 2, onePerSecond, 60_000));
+        assertFalse(backend.tryConsume("k", 2, onePerSecond, 60_000));
+    }
+
+    @Test
+    void inMemoryBackend_EvictsLeastRecentlyUsedKeysPerStripe() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setStripes(4);
+        properties.setMaxKeys(40);
+        InMemoryRateLimitBackend backend = new InMemoryRateLimitBackend(properties);
+
+        for (int i = 0; i < 1000; i++) {
+            backend.tryConsume("ip:" + i, 1, 0, 0);
+        }
+
+        assertTrue(backend.size() <= 40);
+    }
+
+    private RateLimiterService service(RateLimitProperties properties) {
+        return new RateLimiterService(new InMemoryRateLimitBackend(properties), properties, new SimpleMeterRegistry());
+    }
+
+    private RateLimitProperties properties(int capacity, double refillPerMinute) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillPerMinute(refillPerMinute);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getLimits().put(RateLimiterService.AUTH, limit);
+        return properties;
     }
 }
@@ -0,0 +1,165 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.dto.GoalResponse;
+import com.atomichabits.backend.dto.HabitResponse;
+import com.atomichabits.backend.dto.SyncResponse;
+import com.atomichabits.backend.model.ChangeLogEntry;
+import com.atomichabits.backend.model.ChangeLogEntry.EntityType;
+import com.atomichabits.backend.model.ChangeLogEntry.Operation;
+import com.atomichabits.backend.model.Habit;
+import com.atomichabits.backend.model.User;
+import com.atomichabits.backend.repository.ChangeLogRepository;
+import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
+import com.atomichabits.backend.repository.MoodRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncServiceTest {
+
+    @Mock
+    private ChangeLogService changeLogService;
+
+    @Mock
+    private ChangeLogRepository changeLogRepository;
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private HabitCompletionRepository habitCompletionRepository;
+
+    @Mock
+    private MoodRepository moodRepository;
+
+    @Mock
+    private HabitService habitService;
+
+    @Mock
+    private GoalService goalService;
+
+    @InjectMocks
+    private SyncService syncService;
+
+    private User user;
+    private Habit habit;
+    private final LocalDate day = LocalDate.of(2024, 3, 4);
+
+    @BeforeEach
+    void setUp() {
+        user = User.builder().id(1L).email("test@example.com").build();
+        habit = Habit.builder().id(10L).user(user).name("Read").isActive(true).build();
+    }
+
+    @Test
+    void sync_DeltaKeepsLastOperationPerEntity() {
+        when(changeLogService.currentVersion(1L)).thenReturn(6L);
+        when(changeLogRepository.findOldestVersion(1L)).thenReturn(1L);
+        when(changeLogRepository.findChanges(1L, 3L, 6L)).thenReturn(List.of(
+                entry(4, EntityType.HABIT, Operation.UPSERT, 10L, null),
+                entry(4, EntityType.HABIT, Operation.UPSERT, 11L, null),
+                entry(4, EntityType.COMPLETION, Operation.UPSERT, 10L, day),
+                entry(4, EntityType.COMPLETION, Operation.UPSERT, 11L, day),
+                entry(5, EntityType.HABIT, Operation.DELETE, 11L, null),
+                entry(5, EntityType.MOOD, Operation.DELETE, 20L, null),
+                entry(6, EntityType.COMPLETION, Operation.DELETE, 10L, day)));
+        when(habitRepository.findAllById(List.of(10L))).thenReturn(List.of(habit));
+        when(habitService.toResponses(List.of(habit))).thenReturn(List.of(HabitResponse.builder().id(10L).build()));
+
+        SyncResponse response = syncService.sync(1L, 3L);
+
+        assertFalse(response.isFull());
+        assertEquals(6L, response.getToken());
+        assertEquals(1, response.getHabits().size());
+        assertEquals(List.of(11L), response.getDeletedHabitIds());
+        // Habit 11 is gone, so only habit 10's completion is reported, as removed
+        assertEquals(1, response.getCompletions().size());
+        assertEquals(10L, response.getCompletions().get(0).getHabitId());
+        assertFalse(response.getCompletions().get(0).isCompleted());
+        assertEquals(List.of(20L), response.getDeletedMoodIds());
+        verifyNoInteractions(moodRepository, goalService);
+    }
+
+    @Test
+    void sync_ArchivedHabitRefreshesTheGoalItLeft() {
+        when(changeLogService.currentVersion(1L)).thenReturn(8L);
+        when(changeLogRepository.findOldestVersion(1L)).thenReturn(1L);
+        when(changeLogRepository.findChanges(1L, 7L, 8L)).thenReturn(List.of(
+                entry(8, EntityType.GOAL, Operation.UPSERT, 5L, null),
+                entry(8, EntityType.HABIT, Operation.DELETE, 10L, null)));
+        when(goalService.getGoals(1L, List.of(5L))).thenReturn(List.of(GoalResponse.builder().id(5L).build()));
+
+        SyncResponse response = syncService.sync(1L, 7L);
+
+        assertEquals(List.of(10L), response.getDeletedHabitIds());
+        assertEquals(1, response.getGoals().size());
+        assertEquals(5L, response.getGoals().get(0).getId());
+    }
+
+    @Test
+    void sync_WithoutTokenReturnsFullState() {
+        when(changeLogService.currentVersion(1L)).thenReturn(2L);
+        when(habitRepository.findByUserIdAndArchivedAtIsNull(1L)).thenReturn(List.of(habit));
+        when(habitCompletionRepository.findCompletionTimesByHabitIds(List.of(10L)))
+                .thenReturn(List.of(completionTime(10L, day.atTime(8, 0))));
+
+        SyncResponse response = syncService.sync(1L, null);
+
+        assertTrue(response.isFull());
+        assertEquals(2L, response.getToken());
+        assertEquals(1, response.getCompletions().size());
+        assertEquals(day, response.getCompletions().get(0).getDate());
+        verify(changeLogRepository, never()).findChanges(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void sync_PrunedTokenFallsBackToFullState() {
+        when(changeLogService.currentVersion(1L)).thenReturn(9L);
+        when(changeLogRepository.findOldestVersion(1L)).thenReturn(5L);
+
+        SyncResponse response = syncService.sync(1L, 2L);
+
+        assertTrue(response.isFull());
+        assertEquals(9L, response.getToken());
+        verify(habitRepository).findByUserIdAndArchivedAtIsNull(1L);
+        verify(changeLogRepository, never()).findChanges(anyLong(), anyLong(), anyLong());
+    }
+
+    private static ChangeLogEntry entry(long version, EntityType type, Operation operation, Long entityId, LocalDate day) {
+        return ChangeLogEntry.builder()
+                .userId(1L)
+                .version(version)
+                .entityType(type)
+                .operation(operation)
+                .entityId(entityId)
+                .entityDay(day)
+                .build();
+    }
+
+    private static HabitCompletionRepository.CompletionTime completionTime(Long habitId, LocalDateTime at) {
+        return new HabitCompletionRepository.CompletionTime() {
+            @Override
+            public Long getHabitId() {
+                return habitId;
+            }
+
+            @Override
+            public LocalDateTime getCompletedAt() {
+                return at;
+            }
+        };
+    }
+}
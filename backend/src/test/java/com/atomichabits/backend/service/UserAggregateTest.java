@@ -0,0 +1,78 @@
+package com.atomichabits.backend.service;
+
+import com.atomichabits.backend.model.Badge;
+import com.atomichabits.backend.model.Habit;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserAggregateTest {
+
+    private final LocalDate createdOn = LocalDate.of(2024, 1, 1);
+    private final LocalDate today = createdOn.plusDays(4);
+
+    @Test
+    void of_DerivesTotalsAndStreaks() {
+        UserAggregate aggregate = aggregate(CompletionBitmap.of(createdOn, List.of(
+                createdOn, today.minusDays(1), today)));
+
+        assertEquals(3, aggregate.totalCompletions());
+        assertEquals(2, aggregate.currentStreak());
+        assertEquals(2, aggregate.longestStreak());
+        assertEquals(3 * 10 + 2 * 50, aggregate.identityScore());
+        assertTrue(aggregate.findHabit(1L).orElseThrow().streak().completedToday());
+        assertTrue(aggregate.badgeNames().contains("First Step"));
+    }
+
+    @Test
+    void withCompletion_LeavesPreviousSnapshotUntouched() {
+        CompletionBitmap bitmap = CompletionBitmap.of(createdOn, List.of(today.minusDays(1)));
+        UserAggregate before = aggregate(bitmap);
+
+        UserAggregate after = before.withCompletion(8L, 1L, today, true);
+
+        assertEquals(8L, after.version());
+        assertEquals(2, after.totalCompletions());
+        assertEquals(2, after.currentStreak());
+        assertEquals(1, before.totalCompletions());
+        assertFalse(bitmap.contains(today));
+    }
+
+    @Test
+    void withHabit_NullDropsHabit() {
+        UserAggregate aggregate = aggregate(CompletionBitmap.of(createdOn, List.of(today)));
+
+        UserAggregate after = aggregate.withHabit(8L, 1L, null, null);
+
+        assertTrue(after.habits().isEmpty());
+        assertEquals(0, after.totalCompletions());
+    }
+
+    @Test
+    void onDay_NextDayWithoutCompletion_KeepsStreakUntilMissed() {
+        UserAggregate aggregate = aggregate(CompletionBitmap.of(createdOn, List.of(today.minusDays(1), today)));
+
+        UserAggregate tomorrow = aggregate.onDay(today.plusDays(1));
+        UserAggregate later = aggregate.onDay(today.plusDays(2));
+
+        assertEquals(2, tomorrow.currentStreak());
+        assertFalse(tomorrow.findHabit(1L).orElseThrow().streak().completedToday());
+        assertEquals(0, later.currentStreak());
+        assertEquals(2, later.longestStreak());
+    }
+
+    private UserAggregate aggregate(CompletionBitmap bitmap) {
+        Habit habit = Habit.builder()
+                .id(1L)
+                .name("Read")
+                .frequencyMask(HabitSchedule.DAILY)
+                .createdAt(createdOn.atTime(9, 0))
+                .build();
+        Badge badge = Badge.builder().id(1L).name("First Step").build();
+        return UserAggregate.of(1L, 7L, today, List.of(habit), Map.of(1L, bitmap), List.of(badge));
+    }
+}
@@ -1,12 +1,14 @@
 package com.atomichabits.backend.service;
 
+import com.atomichabits.backend.dto.UserProfileResponse;
 import com.atomichabits.backend.dto.UserStatsResponse;
 import com.atomichabits.backend.model.HabitCompletion;
 import com.atomichabits.backend.model.User;
-import com.atomichabits.backend.model.MoodLog;
+import com.atomichabits.backend.model.UserDailyActivity;
 import com.atomichabits.backend.repository.HabitCompletionRepository;
+import com.atomichabits.backend.repository.HabitRepository;
 import com.atomichabits.backend.repository.UserRepository;
-import com.atomichabits.backend.repository.MoodRepository;
+import com.atomichabits.backend.security.JwtTokenProvider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,16 +17,18 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,7 +44,25 @@ class UserServiceTest {
     private GamificationService gamificationService;
 
     @Mock
-    private MoodRepository moodRepository;
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private CompletionIndexService completionIndexService;
+
+    @Mock
+    private ChangeLogService changeLogService;
+
+    @Mock
+    private UserVersionService userVersionService;
+
+    @Mock
+    private UserAggregateService userAggregateService;
+
+    @Mock
+    private JwtTokenProvider tokenProvider;
 
     @InjectMocks
     private UserService userService;
@@ -57,10 +79,9 @@ class UserServiceTest {
 
     @Test
     void getUserStats_Empty() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(Collections.emptyList());
+        stubCompletions(Collections.emptyList());
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(0, stats.getCurrentStreak());
         assertEquals(0, stats.getLongestStreak());
@@ -70,16 +91,14 @@ class UserServiceTest {
 
     @Test
     void getUserStats_CurrentStreak_Today() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        
         List<HabitCompletion> completions = Arrays.asList(
             createCompletion(LocalDate.now()),
             createCompletion(LocalDate.now().minusDays(1)),
             createCompletion(LocalDate.now().minusDays(2))
         );
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
+        stubCompletions(completions);
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(3, stats.getCurrentStreak());
         assertEquals(3, stats.getLongestStreak());
@@ -88,15 +107,13 @@ class UserServiceTest {
 
     @Test
     void getUserStats_CurrentStreak_Yesterday() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        
         List<HabitCompletion> completions = Arrays.asList(
             createCompletion(LocalDate.now().minusDays(1)),
             createCompletion(LocalDate.now().minusDays(2))
         );
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
+        stubCompletions(completions);
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(2, stats.getCurrentStreak());
         assertEquals(2, stats.getLongestStreak());
@@ -104,16 +121,14 @@ class UserServiceTest {
 
     @Test
     void getUserStats_StreakBroken() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        
         List<HabitCompletion> completions = Arrays.asList(
             createCompletion(LocalDate.now()),
             // Missing yesterday
             createCompletion(LocalDate.now().minusDays(2))
         );
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
+        stubCompletions(completions);
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(1, stats.getCurrentStreak());
         assertEquals(1, stats.getLongestStreak());
@@ -121,15 +136,13 @@ class UserServiceTest {
 
     @Test
     void getUserStats_StreakBroken_LongAgo() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        
         List<HabitCompletion> completions = Arrays.asList(
             createCompletion(LocalDate.now().minusDays(5)),
             createCompletion(LocalDate.now().minusDays(6))
         );
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
+        stubCompletions(completions);
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(0, stats.getCurrentStreak());
         assertEquals(2, stats.getLongestStreak()); // Longest streak was 2 days
@@ -137,8 +150,6 @@ class UserServiceTest {
 
     @Test
     void getUserStats_LongestStreak_Multiple() {
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        
         List<HabitCompletion> completions = Arrays.asList(
             // Streak 1: 2 days (Today, Yesterday)
             createCompletion(LocalDate.now()),
@@ -151,58 +162,65 @@ class UserServiceTest {
             createCompletion(LocalDate.now().minusDays(6)),
             createCompletion(LocalDate.now().minusDays(7))
         );
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
+        stubCompletions(completions);
 
-        UserStatsResponse stats = userService.getUserStats("test@example.com");
+        UserStatsResponse stats = userService.getUserStats(1L);
 
         assertEquals(2, stats.getCurrentStreak());
         assertEquals(3, stats.getLongestStreak());
     }
 
+    @Test
+    void updateProfile_EmailChanged_IssuesTokenForNewEmail() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.existsByEmail("new@example.com")).thenReturn(false);
+        when(userRepository.save(user)).thenReturn(user);
+        when(tokenProvider.generateToken(user)).thenReturn("new-token");
+
+        UserProfileResponse profile = userService.updateProfile(1L, null, "new@example.com");
+
+        assertEquals("new@example.com", profile.getEmail());
+        assertEquals("new-token", profile.getAccessToken());
+        verify(userVersionService).evict("test@example.com");
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void updateProfile_SameEmail_KeepsToken() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        UserProfileResponse profile = userService.updateProfile(1L, "I am a runner", "test@example.com");
+
+        assertEquals("I am a runner", profile.getIdentityStatement());
+        assertNull(profile.getAccessToken());
+        verify(tokenProvider, never()).generateToken(any(User.class));
+    }
+
     @Test
     void getAdvancedStats_Success() {
         // Arrange
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-
         LocalDate today = LocalDate.now();
         LocalDate yesterday = today.minusDays(1);
         
-        // Mock Habits
-        com.atomichabits.backend.model.Habit habit1 = new com.atomichabits.backend.model.Habit();
-        habit1.setName("Run");
-        com.atomichabits.backend.model.Habit habit2 = new com.atomichabits.backend.model.Habit();
-        habit2.setName("Read");
-
-        // Mock Completions
-        // Today: Run, Read (2 completions)
-        HabitCompletion c1 = createCompletion(today, habit1);
-        HabitCompletion c2 = createCompletion(today, habit2);
-        // Yesterday: Run (1 completion)
-        HabitCompletion c3 = createCompletion(yesterday, habit1);
-        
-        List<HabitCompletion> completions = Arrays.asList(c1, c2, c3);
-        when(habitCompletionRepository.findByHabitUserId(1L)).thenReturn(completions);
-
-        // Mock Moods
-        // Today: HAPPY
-        MoodLog m1 = MoodLog.builder()
-                .userId(1L)
-                .moodType("HAPPY")
-                .createdAt(today.atStartOfDay())
-                .build();
-        // Yesterday: TIRED
-        MoodLog m2 = MoodLog.builder()
-                .userId(1L)
-                .moodType("TIRED")
-                .createdAt(yesterday.atStartOfDay())
-                .build();
-        
-        List<MoodLog> moodLogs = Arrays.asList(m1, m2);
-        when(moodRepository.findByUserIdAndCreatedAtBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(moodLogs);
+        // Rollup
+        // Today: Run, Read (2 completions), HAPPY
+        // Yesterday: Run (1 completion), TIRED
+        // Two days ago: no completions, TIRED twice
+        when(dailyActivityService.getRange(1L, today.minusDays(30), today)).thenReturn(List.of(
+                activity(today.minusDays(2), 0, Map.of("TIRED", 2)),
+                activity(yesterday, 1, Map.of("TIRED", 1)),
+                activity(today, 2, Map.of("HAPPY", 1))));
+        when(habitCompletionRepository.countByDayAndHabitNameSince(1L, today.minusDays(30))).thenReturn(List.of(
+                dailyCount(today, "Run", 1),
+                dailyCount(today, "Read", 1),
+                dailyCount(yesterday, "Run", 1)));
+        when(habitCompletionRepository.countByHabitName(1L)).thenReturn(List.of(
+                habitCount("Run", 2),
+                habitCount("Read", 1)));
 
         // Act
-        com.atomichabits.backend.dto.AdvancedUserStatsResponse stats = userService.getAdvancedStats("test@example.com");
+        com.atomichabits.backend.dto.AdvancedUserStatsResponse stats = userService.getAdvancedStats(1L);
 
         // Assert
         // Check Daily Completions
@@ -214,7 +232,7 @@ class UserServiceTest {
         
         // Check Mood Insights
         // HAPPY day (Today): 2 completions -> avg 2.0
-        // TIRED day (Yesterday): 1 completion -> avg 1.0
+        // TIRED days (Yesterday, two days ago): 1 completion -> avg 0.5
         List<com.atomichabits.backend.dto.MoodInsightDTO> insights = stats.getMoodInsights();
         assertEquals(2, insights.size());
         
@@ -227,20 +245,91 @@ class UserServiceTest {
         com.atomichabits.backend.dto.MoodInsightDTO tiredInsight = insights.stream()
                 .filter(i -> "TIRED".equals(i.getMood()))
                 .findFirst().orElseThrow();
-        assertEquals(1.0, tiredInsight.getAvgCompletions());
-        assertEquals(1, tiredInsight.getLogCount());
+        assertEquals(0.5, tiredInsight.getAvgCompletions());
+        assertEquals(3, tiredInsight.getLogCount());
+        assertEquals(List.of("Run"), tiredInsight.getTopHabits());
+
+        // Aggregate queries only; the completion history is never loaded
+        verify(habitCompletionRepository, never()).findByHabitUserId(any());
     }
 
-    private HabitCompletion createCompletion(LocalDate date) {
-        return HabitCompletion.builder()
-                .completedAt(date.atStartOfDay())
+    @Test
+    void getAdvancedStats_NoMoods_SkipsPerHabitCounts() {
+        LocalDate today = LocalDate.now();
+        when(dailyActivityService.getRange(1L, today.minusDays(30), today)).thenReturn(List.of(
+                activity(today, 3, Map.of())));
+        when(habitCompletionRepository.countByHabitName(1L)).thenReturn(List.of(habitCount("Run", 3)));
+
+        com.atomichabits.backend.dto.AdvancedUserStatsResponse stats = userService.getAdvancedStats(1L);
+
+        assertEquals(1, stats.getLast30Days().size());
+        assertEquals(3, stats.getLast30Days().get(0).getCount());
+        assertEquals(1.0 / 30, stats.getOverallCompletionRate());
+        assertEquals(0, stats.getMoodInsights().size());
+        verify(habitCompletionRepository, never()).countByDayAndHabitNameSince(any(), any());
+    }
+
+    private UserDailyActivity activity(LocalDate day, int completions, Map<String, Integer> moods) {
+        return UserDailyActivity.builder()
+                .userId(1L)
+                .activityDay(day)
+                .completionCount(completions)
+                .distinctHabitCount(completions)
+                .moodCounts(new java.util.HashMap<>(moods))
                 .build();
     }
-    
-    private HabitCompletion createCompletion(LocalDate date, com.atomichabits.backend.model.Habit habit) {
+
+    private static HabitCompletionRepository.DailyHabitCount dailyCount(LocalDate day, String habitName, long count) {
+        return new HabitCompletionRepository.DailyHabitCount() {
+            @Override
+            public LocalDate getDay() {
+                return day;
+            }
+
+            @Override
+            public String getHabitName() {
+                return habitName;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private static HabitCompletionRepository.HabitNameCount habitCount(String habitName, long count) {
+        return new HabitCompletionRepository.HabitNameCount() {
+            @Override
+            public String getHabitName() {
+                return habitName;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private void stubCompletions(List<HabitCompletion> completions) {
+        com.atomichabits.backend.model.Habit habit = com.atomichabits.backend.model.Habit.builder()
+                .id(10L)
+                .user(user)
+                .name("Habit")
+                .build();
+        List<LocalDate> days = completions.stream()
+                .map(c -> c.getCompletedAt().toLocalDate())
+                .toList();
+
+        when(habitRepository.findByUserIdAndArchivedAtIsNull(1L)).thenReturn(List.of(habit));
+        when(completionIndexService.getBitmaps(List.of(habit)))
+                .thenReturn(Map.of(10L, CompletionBitmap.of(LocalDate.now(), days)));
+    }
+
+    private HabitCompletion createCompletion(LocalDate date) {
         return HabitCompletion.builder()
                 .completedAt(date.atStartOfDay())
-                .habit(habit)
                 .build();
     }
 }